@@ -0,0 +1,358 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.media;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Process;
+import android.os.ProvinceProfile;
+import android.os.RemoteException;
+import android.os.SystemProperties;
+import android.util.Log;
+
+import com.huawei.media.aidl.IAnalyticCallback;
+import com.huawei.media.aidl.IAnalyticService;
+import com.huawei.media.aidl.MAParam;
+
+import java.util.ArrayDeque;
+
+/**
+ * Process-wide connection to the Huawei SQM analytic service
+ * (com.huawei.mediaService.MediaAnalyticService), shared by every
+ * MediaPlayer in the process.
+ *
+ * The service is bound once, asynchronously, and stays bound.  Calls are
+ * queued and made in order from a background thread, so players never wait
+ * on the service.  Calls made before it is connected wait in a bounded
+ * queue and are delivered once it has been initialized; if the queue
+ * overflows the oldest calls are dropped.
+ *
+ * Events are built with {@link #event}, which hands out a pooled
+ * {@link Event} whose parameters are kept as typed fields until the
+ * {@link MAParam} is built on the background thread:
+ * <pre>
+ * AnalyticServiceClient.get().event(HuaweiUtils.ACTION_SEEKEND)
+ *         .put(HuaweiUtils.PARAM_POSITION, position).send();
+ * </pre>
+ */
+final class AnalyticServiceClient {
+    private static final String TAG = "AnalyticServiceClient";
+    private static final boolean DEBUG = false;
+
+    private static final String ACTION_ANALYTIC_SERVICE =
+            "com.huawei.mediaService.MediaAnalyticService";
+
+    private static final int MAX_PENDING = 64;
+    private static final int MAX_POOL = 8;
+    /** Parameters an Event has room for before its arrays are grown. */
+    private static final int INITIAL_PARAMS = 8;
+
+    private static final int OP_OPEN = 0;
+    private static final int OP_EVENT = 1;
+    private static final int OP_CLOSE = 2;
+
+    private static AnalyticServiceClient sInstance;
+
+    /**
+     * One queued call.  For OP_EVENT, {@link #name} is the event and the
+     * parameters are {@link #mKeys} with either a string or an int value;
+     * OP_OPEN keeps its category, title and url as string parameters.
+     */
+    final class Event {
+        private int mOp;
+        private String mName;
+        private IAnalyticCallback mCallback;
+        private String[] mKeys = new String[INITIAL_PARAMS];
+        private String[] mStrings = new String[INITIAL_PARAMS];
+        private int[] mInts = new int[INITIAL_PARAMS];
+        private int mCount;
+
+        Event put(String key, int value) {
+            ensureCapacity();
+            mKeys[mCount] = key;
+            mStrings[mCount] = null;
+            mInts[mCount] = value;
+            mCount++;
+            return this;
+        }
+
+        Event put(String key, String value) {
+            ensureCapacity();
+            mKeys[mCount] = key;
+            mStrings[mCount] = value != null ? value : "";
+            mCount++;
+            return this;
+        }
+
+        /** Most events fit; the onEvent(String, String) path may not. */
+        private void ensureCapacity() {
+            if (mCount == mKeys.length) {
+                final int size = mCount * 2;
+                final String[] keys = new String[size];
+                final String[] strings = new String[size];
+                final int[] ints = new int[size];
+                System.arraycopy(mKeys, 0, keys, 0, mCount);
+                System.arraycopy(mStrings, 0, strings, 0, mCount);
+                System.arraycopy(mInts, 0, ints, 0, mCount);
+                mKeys = keys;
+                mStrings = strings;
+                mInts = ints;
+            }
+        }
+
+        String getString(int i) {
+            return mStrings[i] != null ? mStrings[i] : Integer.toString(mInts[i]);
+        }
+
+        /** Queue the event; it must not be touched afterwards. */
+        void send() {
+            enqueue(this);
+        }
+
+        MAParam toMAParam() {
+            final MAParam param = new MAParam();
+            for (int i=0; i<mCount; i++) {
+                param.addParam(mKeys[i], getString(i));
+            }
+            return param;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder(mName);
+            for (int i=0; i<mCount; i++) {
+                sb.append(i == 0 ? ' ' : '&').append(mKeys[i]).append('=').append(getString(i));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final Handler mHandler;
+    private final ArrayDeque<Event> mPending = new ArrayDeque<Event>();
+    private final ArrayDeque<Event> mPool = new ArrayDeque<Event>();
+    private boolean mBound;
+    private int mDropped;
+    /** Set on the background thread once initialize() has been called. */
+    private IAnalyticService mService;
+
+    private final Runnable mDeliverRunnable = new Runnable() {
+        @Override
+        public void run() {
+            deliverPending();
+        }
+    };
+
+    private final ServiceConnection mConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, final IBinder binder) {
+            Log.d(TAG, "onServiceConnected");
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    initialize(IAnalyticService.Stub.asInterface(binder));
+                }
+            });
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            Log.d(TAG, "onServiceDisconnected");
+            mHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    synchronized (AnalyticServiceClient.this) {
+                        mService = null;
+                    }
+                }
+            });
+        }
+    };
+
+    private AnalyticServiceClient() {
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+    }
+
+    static synchronized AnalyticServiceClient get() {
+        if (sInstance == null) {
+            sInstance = new AnalyticServiceClient();
+        }
+        return sInstance;
+    }
+
+    /** Bind the service if this process has not done so yet. */
+    void bind(Context context) {
+        synchronized (this) {
+            if (mBound) {
+                return;
+            }
+            mBound = true;
+        }
+        Log.d(TAG, "bindService");
+        if (!context.bindService(new Intent(ACTION_ANALYTIC_SERVICE), mConnection,
+                Context.BIND_AUTO_CREATE)) {
+            Log.w(TAG, "No analytic service");
+            synchronized (this) {
+                // Don't hold on to calls that can never be delivered.
+                while (!mPending.isEmpty()) {
+                    recycle(mPending.poll());
+                }
+            }
+        }
+    }
+
+    /** An empty event named {@code name}, to be filled in and sent. */
+    synchronized Event event(String name) {
+        return obtain(OP_EVENT, name, null);
+    }
+
+    void open(IAnalyticCallback callback, String category, String title, String url) {
+        final Event e;
+        synchronized (this) {
+            e = obtain(OP_OPEN, null, callback);
+        }
+        e.put("category", category).put("title", title).put("url", url).send();
+    }
+
+    void close() {
+        final Event e;
+        synchronized (this) {
+            e = obtain(OP_CLOSE, null, null);
+        }
+        e.send();
+    }
+
+    private Event obtain(int op, String name, IAnalyticCallback callback) {
+        Event e = mPool.poll();
+        if (e == null) {
+            e = new Event();
+        }
+        e.mOp = op;
+        e.mName = name;
+        e.mCallback = callback;
+        e.mCount = 0;
+        return e;
+    }
+
+    private void recycle(Event e) {
+        e.mCallback = null;
+        for (int i=0; i<e.mCount; i++) {
+            e.mKeys[i] = null;
+            e.mStrings[i] = null;
+        }
+        if (mPool.size() < MAX_POOL) {
+            mPool.add(e);
+        }
+    }
+
+    private void enqueue(Event e) {
+        synchronized (this) {
+            if (mPending.size() >= MAX_PENDING) {
+                recycle(mPending.poll());
+                mDropped++;
+            }
+            mPending.add(e);
+            if (mService == null) {
+                return;
+            }
+        }
+        mHandler.post(mDeliverRunnable);
+    }
+
+    private void initialize(IAnalyticService service) {
+        if (service == null) {
+            return;
+        }
+        try {
+            MAParam param = new MAParam();
+            param.addParam("DeviceType", "Android STB");
+            //begin by zhangyong at 20181121:add neimeng sqm reg
+            if (ProvinceProfile.get().nameEquals("cm201_neimeng")) {
+                Log.d("zhangyong", "write ntp ip 111.56.116.138 to database");
+                param.addParam("RegisterAddress", "TCP://127.0.0.1:37001");//"TCP://183.207.248.21:37000");
+            }
+            //add by ysten-mark for heilongjiang sqm reg
+            else if (ProvinceProfile.get().is(ProvinceProfile.Region.HEILONGJIANG)) {
+                param.addParam("RegisterAddress", "TCP://111.40.205.16:37000");
+            }//end add by ysten-mark for heilongjiang sqm reg
+            else {
+                param.addParam("RegisterAddress", "TCP://111.40.205.16:37000");//"TCP://183.207.248.21:37000");
+            }
+            //end by zhangyong at 20181121:add neimeng sqm reg
+            param.addParam("PlayerName", "hiplayer");
+            param.addParam("PlayerVersion", "2.1");
+            param.addParam("ViewerID", "");
+            param.addParam("STBID", SystemProperties.get("ro.serialno", "0000000000000000000000000000000"));
+            param.addParam("MACAddress", SystemProperties.get("persist.sys.mac.value", "00:00:00:00:00:00").replace(":", "-"));
+            Log.d(TAG, "param:" + param.toString());
+
+            service.initialize(param);
+        } catch (RemoteException e) {
+            Log.w(TAG, "initialize failed", e);
+            return;
+        }
+        synchronized (this) {
+            mService = service;
+        }
+        deliverPending();
+    }
+
+    private void deliverPending() {
+        while (true) {
+            final IAnalyticService service;
+            final Event e;
+            final int dropped;
+            synchronized (this) {
+                service = mService;
+                if (service == null || mPending.isEmpty()) {
+                    return;
+                }
+                e = mPending.poll();
+                dropped = mDropped;
+                mDropped = 0;
+            }
+            if (dropped > 0) {
+                Log.w(TAG, "Dropped " + dropped + " analytic calls");
+            }
+            try {
+                switch (e.mOp) {
+                    case OP_OPEN:
+                        service.open(e.mCallback, e.getString(0), e.getString(1), e.getString(2));
+                        break;
+                    case OP_EVENT:
+                        if (DEBUG) Log.d(TAG, "onEvent " + e);
+                        service.onEvent(e.mName, e.toMAParam());
+                        break;
+                    case OP_CLOSE:
+                        service.close();
+                        break;
+                }
+            } catch (Exception ex) {
+                Log.w(TAG, "Analytic call failed", ex);
+            }
+            synchronized (this) {
+                recycle(e);
+            }
+        }
+    }
+}
@@ -38,6 +38,7 @@ import android.os.Parcelable;
 import android.os.ParcelFileDescriptor;
 import android.os.Process;
 import android.os.PowerManager;
+import android.os.ProvinceProfile;
 import android.os.SystemProperties;
 import android.os.UserHandle;
 import android.util.Log;
@@ -89,9 +90,7 @@ import com.amlogic.SubTitleService.ISubTitleService;
 import com.cmcc.media.MediaPlayerEx;
 
 // huawei plugin start
-import com.huawei.media.aidl.IAnalyticService;
 import com.huawei.media.aidl.IAnalyticCallback;
-import com.huawei.media.aidl.MAParam;
 import android.os.RemoteException;
 import android.content.ServiceConnection;
 import android.content.ComponentName;
@@ -655,7 +654,6 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
     private String mPath;
     private String mSubPath;
 	private MediaPlayer mPlayer;
-    private Thread mThread = null;
     private SaveLogThread mSaveLogThread = null;
     private Looper mSavelogLooper = null;
     private boolean mSendPrepareEvent = false;
@@ -707,8 +705,6 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 	/*save player's status in file*/
 	private final Object mSaveLogLock = new Object();
 
-	/*  huawei plugin add by mark  */
-	private IAnalyticService service;
 
 	/**
      * Default constructor. Consider using one of the create() methods for
@@ -816,103 +812,31 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 	};
     };
 
-    ServiceConnection serviceConnection = new ServiceConnection() {
-        @Override
-        public void onServiceDisconnected(ComponentName name) {
-            Log.d(TAG, "onServiceDisconnected");
-            service = null;
-        }
-
-        @Override
-        public void onServiceConnected(ComponentName name, IBinder arg1) {
-            Log.d(TAG, "onServiceConnected");
-            service = IAnalyticService.Stub.asInterface(arg1);
-            if (service == null)
-                return;
-
-            try {
-				MAParam param = new MAParam();
-                param.addParam("DeviceType", "Android STB");
-                //begin by zhangyong at 20181121:add neimeng sqm reg 
-				if(SystemProperties.get("ro.ysten.province","master").equals("cm201_neimeng")){
-					Log.d("zhangyong", "write ntp ip 111.56.116.138 to database");
-					param.addParam("RegisterAddress", "TCP://127.0.0.1:37001");//"TCP://183.207.248.21:37000");
-                }
-				//add by ysten-mark for heilongjiang sqm reg
-				else if (SystemProperties.get("ro.ysten.province", "master").contains("heilongjiang")){
-					param.addParam("RegisterAddress", "TCP://111.40.205.16:37000");
-				}//end add by ysten-mark for heilongjiang sqm reg
-				else{
-					param.addParam("RegisterAddress", "TCP://111.40.205.16:37000");//"TCP://183.207.248.21:37000");
-	        }
-                //end by zhangyong at 20181121:add neimeng sqm reg 
-                param.addParam("PlayerName", "hiplayer");
-                param.addParam("PlayerVersion", "2.1");
-                param.addParam("ViewerID", "");
-                param.addParam("STBID",SystemProperties.get("ro.serialno", "0000000000000000000000000000000") );
-                param.addParam("MACAddress", SystemProperties.get("persist.sys.mac.value", "00:00:00:00:00:00").replace(":", "-"));
-                Log.d(TAG, "param:" + param.toString());
-                Log.d("zzl", "param:" + param.toString());
-
-	        service.initialize(param);
-            } catch (RemoteException e) {
-                 e.printStackTrace();
-            }
-        }
-    };
-
     public void open(String category, String title, String url) {
-        Log.d(TAG, "open category:" + category + ", title:" + title + ", url:" + url + ", service:" + service);
-        if (service == null)
-            return;
-        try {
-        Log.d(TAG, "open category2:" + category + ", title:" + title + ", url:" + url + ", service:" + service);
-            service.open(callback, category, title, url);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        Log.d(TAG, "open category:" + category + ", title:" + title + ", url:" + url);
+        AnalyticServiceClient.get().open(callback, category, title, url);
     }
 
+    /**
+     * Report an SQM event whose params are "key=value&..."; players in this
+     * class build the event with {@link AnalyticServiceClient#event} instead.
+     */
     public void onEvent(String eventName, String params) {
-        Log.d(TAG, "onEvent eventName:" + eventName + ", params:" + params);
-        if (service == null)
-            return;
-        try {
-            MAParam maParam = new MAParam();
-            if (params != null) {
-                maParam = getMAParam(params);
+        AnalyticServiceClient.Event event = AnalyticServiceClient.get().event(eventName);
+        if (params != null) {
+            for (String param : params.split("&")) {
+                String keyAndValue[] = param.split("=");
+                if (keyAndValue.length != 2)
+                    continue;
+                event.put(keyAndValue[0], keyAndValue[1]);
             }
-            Log.d(TAG, "onEvent eventName2:" + eventName + ", params:" + maParam.toString());
-            service.onEvent(eventName, maParam);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-    }
-
-    private MAParam getMAParam(String params) {
-        String s[] = params.split("&");
-        int length = s.length;
-        MAParam maParam = new MAParam();
-        for (int i = 0; i < length; i++) {
-            Log.d(TAG, " param =: " + s[i]);
-            String keyAndValue[] = s[i].split("=");
-            if (keyAndValue.length != 2)
-                continue;
-            maParam.addParam(keyAndValue[0], keyAndValue[1]);
         }
-        return maParam;
+        event.send();
     }
 
     public void close() {
         Log.d(TAG, "close");
-        if (service == null)
-            return;
-        try {
-            service.close();	
-            ActivityThread.currentApplication().unbindService(serviceConnection);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        AnalyticServiceClient.get().close();
     }
 
 	//add by ysten-mark for heilongjiang sqm get url string
@@ -1081,14 +1005,8 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
     public void setDisplay(SurfaceHolder sh) {
 		if (sh != null) {
 		// huawei plugin start
-		if("A20_neimeng".equals(SystemProperties.get("ro.ysten.province"))
-		 ||"heilongjiang".contains(SystemProperties.get("ro,ysten.province"))){     //add by ysten-mark for heilongjiang sqm bindservice
-            Log.d(TAG, "bindService start");
-            if( service == null) {
-                Log.d(TAG, "bindService in");
-                ActivityThread.currentApplication().bindService(new Intent("com.huawei.mediaService.MediaAnalyticService"),serviceConnection, Context.BIND_AUTO_CREATE);
-            }
-            Log.d(TAG, "bindService end");
+		if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM)){     //add by ysten-mark for heilongjiang sqm bindservice
+            AnalyticServiceClient.get().bind(ActivityThread.currentApplication());
 			}
 		//huawei plugin end
 		}
@@ -1143,7 +1061,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
         }
 /*
 		// huawei plugin start
-		if("A20_neimeng".equals(SystemProperties.get("ro.ysten.province"))
+		if(ProvinceProfile.get().nameEquals("A20_neimeng")
 		 ||"CM201_heilongjiang".equals(SystemProperties.get("ro,ysten.province"))){
             Log.d(TAG, "bindService start");
             if( service == null) {
@@ -1263,6 +1181,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
             request.recycle();
             reply.recycle();
         }
+        mSubtitleScheduler.setSpeed(speed);
     }
     public float getSpeed() {
         Parcel request = Parcel.obtain();
@@ -1537,7 +1456,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
             _setDataSource(path, keys, values);
         }
 		//modify by zhaolianghua at 20181109 begin:set drm info for hebei
-	if("cm201_hebei".equals(SystemProperties.get("ro.ysten.province"))){
+	if(ProvinceProfile.get().nameEquals("cm201_hebei")){
 		Log.d(TAG,"DRM URL path = "+path);
 		//donot use now
 		//setEleFromPath(path);
@@ -1611,7 +1530,6 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 
     //---- add for subtitle service---------------------------------------------------------------------------
     private ISubTitleService subTitleService = null;
-    private boolean mThreadStop = false;
     private boolean mSubtitleLoad = false;
     private boolean mSubtitleStarted = false;
     public int subtitleOpen(String path) {
@@ -1693,7 +1611,6 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
             setSurfaceViewParam(0,0,dispWidth,dispHeight);
         }
         if (mEventHandler != null && !mSubtitleStarted) {
-            mThreadStop = false;
             mEventHandler.removeMessages(MEDIA_AML_SUBTITLE_START);
             Message m = mEventHandler.obtainMessage(MEDIA_AML_SUBTITLE_START);
             mEventHandler.sendMessageDelayed(m, 500);
@@ -1736,10 +1653,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
             throw new RuntimeException(e);
         }
 
-        if(mThread != null){
-            mThreadStop = true;
-            mThread = null;
-        }
+        mSubtitleScheduler.stop();
     }
 
     private void subtitleShow() {
@@ -1749,11 +1663,10 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
         if(subtitleServiceDebug()) Log.i(TAG,"[subtitleShow] subtitleTotal:"+subtitleTotal()+", mSubtitleLoad:"+mSubtitleLoad);
 
         if(subtitleTotal() > 0 || mSubtitleLoad) {
-            if(subtitleServiceDebug()) Log.i(TAG,"[subtitleStartShow]mThread:"+mThread);
-            if(mThread == null) {
+            if(subtitleServiceDebug()) Log.i(TAG,"[subtitleStartShow]started:"+mSubtitleScheduler.isStarted());
+            if(!mSubtitleScheduler.isStarted()) {
                 mSubtitleStarted = true;
-                mThread = new Thread(runnable);
-                mThread.start();
+                mSubtitleScheduler.start();
             }
         }
     }
@@ -2254,50 +2167,39 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
         return language;
     }
 
-    private Runnable runnable = new Runnable() {
+    private final SubtitleScheduler mSubtitleScheduler = new SubtitleScheduler(
+            new SubtitleScheduler.Host() {
         @Override
-        public void run() {
-            int pos = 0;
-            while(!mThreadStop) {
-                if(subtitleServiceDisable()) {
-                    mThreadStop = true;
-                    break;
-                }
-
-                if(isPlaying()) {
-                    if(subtitleGetSubTypeDetial() == 6){//6:dvb type
-                        pos = getCurrentPcr();
-                    }
-                    else {
-                        pos = getIntParameter(KEY_PARAMETER_AML_PLAYER_GET_REAL_POSITION);
-                        if (pos == 0) {
-                            pos = getCurrentPosition();
-                        }
-                    }
-                }
+        public boolean isPlaying() {
+            return MediaPlayer.this.isPlaying();
+        }
 
-                //show subtitle
-                if(subtitleServiceDebug()) Log.i(TAG,"[runnable]showSub:"+pos);
-                try {
-                    if(subTitleService != null) {
-                        subTitleService.showSub(pos);
-                    }
-                    else {
-                        mThreadStop = true;
-                        break;
-                    }
-                } catch (RemoteException e) {
-                    throw new RuntimeException(e);
-                }
+        @Override
+        public int readPosition() {
+            if(subtitleGetSubTypeDetial() == 6){//6:dvb type
+                return getCurrentPcr();
+            }
+            int pos = getIntParameter(KEY_PARAMETER_AML_PLAYER_GET_REAL_POSITION);
+            if (pos == 0) {
+                pos = getCurrentPosition();
+            }
+            return pos;
+        }
 
-                try {
-                    Thread.sleep(300 - (pos % 300));
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                }
+        @Override
+        public boolean showSub(int pos) throws RemoteException {
+            if(subtitleServiceDisable() || subTitleService == null) {
+                return false;
             }
+            subTitleService.showSub(pos);
+            return true;
         }
-    };
+
+        @Override
+        public boolean isDebug() {
+            return subtitleServiceDebug();
+        }
+    });
 
     private boolean subtitleServiceDebug() {
         boolean ret = false;
@@ -2382,8 +2284,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
         if(SystemProperties.getBoolean("media.player.report.udp", false)&& !mSendPrepareEvent){
             int starttime = getCurrentPosition();
             long time = System.currentTimeMillis()/1000;
-            if(null == info)
-                info= getMediaInfo();
+            info = getMediaInfoSnapshot();
             StringBuffer buf=new StringBuffer();
             buf.append("<type>"+"Prepare"+"</type>");
             buf.append('\n');
@@ -2398,8 +2299,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 
             Log.e(TAG, buf.length()+" ,:"+buf.toString());	
         }else if(mContext != null && !mSendPrepareEvent){
-            if(null == info)
-                info= getMediaInfo();
+            info = getMediaInfoSnapshot();
             cmd.putExtra("TYPE", "PLAY_PREPARE");
 	     mSeekFlag=false;
             cmd.putExtra("START_TIME", mSetDataSourceTime);
@@ -2409,7 +2309,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 cmd.putExtra("URL", info.url);
             }
             if(!mbIsFileDescriptor){
-                mContext.sendBroadcast(cmd);
+                MediaQosReporter.report(mContext, cmd);
                 mSendPrepareEvent = true;
                 mSendQuitEvent = false;
                 //add by chenfeng at 20191005:fix MEDIA_BLURREDSCREEN_END may not send
@@ -2426,17 +2326,16 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 	     mSeekFlag=true;
             cmd.putExtra("PLAY_TIME", mSeekTime/1000);
             cmd.putExtra("START_TIME", System.currentTimeMillis());
-            if(null == info)
-               info= getMediaInfo();
+            info = getMediaInfoSnapshot();
                cmd.putExtra("ID", info.player_id);
             if(!mbIsFileDescriptor){
-               mContext.sendBroadcast(cmd);
+               MediaQosReporter.report(mContext, cmd);
                mSeekStartSend = true;
             }
 			// add by ysten-mark for heilongjiang sqm seekstart
-			if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
+			if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
 				int position = getCurrentPosition()/1000;
-				onEvent(HuaweiUtils.ACTION_SEEKSTART, HuaweiUtils.PARAM_POSITION + "=" + position);
+				AnalyticServiceClient.get().event(HuaweiUtils.ACTION_SEEKSTART).put(HuaweiUtils.PARAM_POSITION, position).send();
 			}
             mSeekNeedResend = false;
         }
@@ -2450,6 +2349,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 
         stayAwake(true);
         _start();
+        mSubtitleScheduler.setPlaying(true);
         if(subtitleServiceDebug()) Log.i(TAG,"[start]mPath:"+mPath);
     }
 
@@ -2470,18 +2370,17 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 long end = System.currentTimeMillis();
                 cmd.putExtra("TYPE", "BUFFER_END");
                 cmd.putExtra("END_TIME", end);
-                if(null == info)
-                    info= getMediaInfo();
+                info = getMediaInfoSnapshot();
                 cmd.putExtra("ID", info.player_id);
                 if((!mbIsFileDescriptor) && SystemProperties.get("sys.yst.mbufferstatus", "1").equals("0")){
                     SystemProperties.set("sys.yst.mbufferstatus", "1");
-                    mContext.sendBroadcast(cmd);
+                    MediaQosReporter.report(mContext, cmd);
                 }
                 mBufferingStartSend = false;
 		// add by ysten-mark for heilongjiang sqm bufferend
-		if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
+		if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
 			int position = getCurrentPosition()/1000;
-			onEvent(HuaweiUtils.ACTION_BUFFEREND, HuaweiUtils.PARAM_POSITION + "=" + position);
+			AnalyticServiceClient.get().event(HuaweiUtils.ACTION_BUFFEREND).put(HuaweiUtils.PARAM_POSITION, position).send();
 		}
 		// end add by ysten-mark for heilongjiang sqm bufferend
 	}
@@ -2490,8 +2389,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
             Log.w(TAG, "media event: BLURREDSCREEN END\n");
             if(mContext != null) {
                 int starttime = getCurrentPosition();
-                if(null == info)
-                    info = getMediaInfo();
+                info = getMediaInfoSnapshot();
                 cmd.putExtra("TYPE", "BLURREDSCREEN_END");
                 cmd.putExtra("ID", info.player_id);
                 cmd.putExtra("END_TIME", System.currentTimeMillis());
@@ -2500,7 +2398,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                     //begin by ysten.zhangjunjian,20191012 for blurred symbolic
                     SystemProperties.set("sys.yst.mblurredscreenstatus", "1");
                    //end by ysten.zhangjunjian,20191012 for blurred symbolic
-                    mContext.sendBroadcast(cmd);
+                    MediaQosReporter.report(mContext, cmd);
                     mBlurredscreenStartSend = false;
                 }
             }
@@ -2510,14 +2408,13 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
             Log.w(TAG, "media event: UNLOAD END\n");
             if(mContext != null) {
                 int starttime = getCurrentPosition();
-                if(null == info)
-                    info = getMediaInfo();
+                info = getMediaInfoSnapshot();
                 cmd.putExtra("TYPE", "UNLOAD_END");
                 cmd.putExtra("ID", info.player_id);
                 cmd.putExtra("END_TIME", System.currentTimeMillis());
                 if((!mbIsFileDescriptor)&& SystemProperties.get("sys.yst.munloadstatus", "1").equals("0")){
                      SystemProperties.set("sys.yst.munloadstatus", "1");
-                    mContext.sendBroadcast(cmd);
+                    MediaQosReporter.report(mContext, cmd);
                     mUnloadStartSend = false;
                 }
             }
@@ -2529,27 +2426,25 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                   cmd.putExtra("PLAY_TIME", mSeekTime/1000);
                   cmd.putExtra("TYPE", "SEEK_END");
                   cmd.putExtra("END_TIME", end);
-                  if(null == info)
-                      info= getMediaInfo();
+                  info = getMediaInfoSnapshot();
                   cmd.putExtra("ID", info.player_id);
                   if(!mbIsFileDescriptor){
-                      mContext.sendBroadcast(cmd);
+                      MediaQosReporter.report(mContext, cmd);
                   }
 		          mSeekStartSend = false;
 			  mEventHandler.postDelayed(seekBufferEvent,8000);
 	}
 
 	//add by ysten-mark for heilongjiang sqm seekend
-	if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
+	if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
 		int position = getCurrentPosition()/1000;
-		onEvent(HuaweiUtils.ACTION_SEEKEND, HuaweiUtils.PARAM_POSITION + "=" + position );
+		AnalyticServiceClient.get().event(HuaweiUtils.ACTION_SEEKEND).put(HuaweiUtils.PARAM_POSITION, position).send();
     }
 	//end add by ysten-mark for heilongjiang sqm seekend
 		
         if(SystemProperties.getBoolean("media.player.report.udp", false) && mSendPrepareEvent && !mSendQuitEvent){
             long time = System.currentTimeMillis()/1000;
-        if(null == info)
-			info= getMediaInfo();
+        info = getMediaInfoSnapshot();
 		StringBuffer buf=new StringBuffer();
         buf.append("<type>"+"Stop"+"</type>");
         buf.append('\n');
@@ -2567,29 +2462,24 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 			mPlayStartFlag=false; 
             cmd.putExtra("PLAY_TIME", starttime/1000);
             cmd.putExtra("TIME", System.currentTimeMillis());
-            if(null == info)
-                info= getMediaInfo();
+            info = getMediaInfoSnapshot();
                 cmd.putExtra("ID", info.player_id);
                 Log.d(TAG , "player id is : "+info.player_id);
                 //begin:add by zhanghk at 20190524:fix report two PLAY_QUIT problem
                 if(!mbIsFileDescriptor){
-                if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")
-                || SystemProperties.get("ro.ysten.province","master").contains("jiangsu")
-                || SystemProperties.get("ro.ysten.province","master").contains("anhui")
-                || SystemProperties.get("ro.ysten.province","master").contains("heilongjiang")
-                || SystemProperties.get("ro.ysten.province","master").contains("ningxia") ){
+                if(ProvinceProfile.get().has(ProvinceProfile.FLAG_QOS_REPORT_ONCE)){
                     if(!mQuitFlag){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                         mSendQuitEvent = true;
 			mQuitFlag=true;
                  }
 		   }else{
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                         mSendQuitEvent = true;
 		   }
 		   // add by ysten-mark for heilongjiang sqm played
-		   	if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
-                onEvent(HuaweiUtils.ACTION_PLAYEND,  HuaweiUtils.PARAM_ENDREASON + "=" + HuaweiUtils.ENDREASON_CLOSED); 
+		   	if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
+                AnalyticServiceClient.get().event(HuaweiUtils.ACTION_PLAYEND).put(HuaweiUtils.PARAM_ENDREASON, HuaweiUtils.ENDREASON_CLOSED).send(); 
                 close();
             }
 		   // end add by ysten-mark for heilongjiang sqm played
@@ -2625,6 +2515,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 			}
 
         _stop();
+        mSubtitleScheduler.setPlaying(false);
     }
 
     private native void _stop() throws IllegalStateException;
@@ -2671,14 +2562,14 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 		cmd = new Intent("MEDIA_PLAY_MONITOR_MESSAGE");
 		int detectid = 0;
                 Log.d(TAG,"....."+SystemProperties.get("sys.yst.mbufferstatus", "1")+"+++++"+SystemProperties.get("sys.yst.munloadstatus", "1")+"==="+SystemProperties.get("sys.yst.mblurredscreenstatus", "1"));
-                if(null==info) info=getMediaInfo();
+                info = getMediaInfoSnapshot();
 			if(SystemProperties.get("sys.yst.mbufferstatus", "1").equals("0")){
 				long end = System.currentTimeMillis();
 				cmd.putExtra("TYPE", "BUFFER_END");
 				cmd.putExtra("END_TIME", end);
 				detectid = Integer.valueOf(SystemProperties.get("sys.yst.softdetectid", "1"));
 				cmd.putExtra("ID", detectid);
-				mContext.sendBroadcast(cmd);
+				MediaQosReporter.report(mContext, cmd);
 				Log.d(TAG, "zhangjunjian----BUFFER_END in shutdownStop");
 				mBufferingStartSend = false;
 				SystemProperties.set("sys.yst.mbufferstatus", "1");
@@ -2690,7 +2581,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 				detectid = Integer.valueOf(SystemProperties.get("sys.yst.softdetectid", "1"));
 				cmd.putExtra("ID", detectid);
 				cmd.putExtra("END_TIME", System.currentTimeMillis());
-				mContext.sendBroadcast(cmd); 
+				MediaQosReporter.report(mContext, cmd); 
 				Log.d(TAG, "zhangjunjian----UNLOAD_END in shutdownStop");
 				//mUnloadStatus = 1;
 				SystemProperties.set("sys.yst.munloadstatus", "1");
@@ -2703,7 +2594,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 		        	cmd.putExtra("END_TIME", System.currentTimeMillis());        
 		        	int random = (int)(2+Math.random()*10);                                                                        
 		        	cmd.putExtra("RATIO", random);                             
-		        	mContext.sendBroadcast(cmd);
+		        	MediaQosReporter.report(mContext, cmd);
 				Log.d(TAG, "zhangjunjian----BLURREDSCREEN END in shutdownStop");				
 		        	//mBlurredscreenStatus = 1; 
 				SystemProperties.set("sys.yst.mblurredscreenstatus", "1");
@@ -2718,7 +2609,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 			cmd.putExtra("ID", detectid);                   
 			Log.d(TAG , "player id is : "+detectid);        
 			Log.e(TAG, "zhangjunjian----test----PLAY_QUIT-shutdownStop");
-			mContext.sendBroadcast(cmd);                          
+			MediaQosReporter.report(mContext, cmd);                          
 			mSendQuitEvent = true;                                
 			//mHuiKanFirstLoad = 0;
 	}
@@ -2736,11 +2627,51 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 		save_log_in_file(PRINT_LOG_PAUSE,mMesg);
 		
         _pause();
+        mSubtitleScheduler.setPlaying(false);
     }
 
     private native void _pause() throws IllegalStateException;
 
     private native Bitmap getSubtitleBitmap();
+    private native int native_getSubtitleBitmapWidth();
+    private native int native_getSubtitleBitmapHeight();
+    private native boolean native_renderSubtitleBitmap(Bitmap bitmap);
+
+    private final SubtitleBitmapPool mSubtitleBitmapPool = new SubtitleBitmapPool();
+    private volatile boolean mSubtitleBitmapReuse =
+            SystemProperties.getBoolean("media.subtitle.bitmap_reuse", false);
+
+    /**
+     * Render bitmap subtitles into two reused bitmaps instead of a new one
+     * per frame.  The bitmap of a {@link SubtitleData} is then only valid
+     * until the next {@link OnSubtitleDataListener#onSubtitleData} call
+     * returns, so a listener must draw it, or copy it, before then.
+     * Defaults to media.subtitle.bitmap_reuse.
+     *
+     * @hide
+     */
+    public void setSubtitleBitmapReuse(boolean reuse) {
+        mSubtitleBitmapReuse = reuse;
+        if (!reuse) {
+            mSubtitleBitmapPool.release();
+        }
+    }
+
+    private Bitmap obtainSubtitleBitmap() {
+        if (!mSubtitleBitmapReuse) {
+            return getSubtitleBitmap();
+        }
+        final int width = native_getSubtitleBitmapWidth();
+        final int height = native_getSubtitleBitmapHeight();
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        synchronized (mSubtitleBitmapPool) {
+            final Bitmap bitmap = mSubtitleBitmapPool.obtain(width, height);
+            return native_renderSubtitleBitmap(bitmap) ? bitmap : getSubtitleBitmap();
+        }
+    }
+
     /**
      * Set the low-level power management behavior for this MediaPlayer.  This
      * can be used when the MediaPlayer is not playing through a SurfaceHolder
@@ -2998,8 +2929,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
     public void release() {
         if(SystemProperties.getBoolean("media.player.report.udp", false) && mSendPrepareEvent && !mSendQuitEvent){
             long time = System.currentTimeMillis()/1000;
-            if(null == info)
-                info= getMediaInfo();
+            info = getMediaInfoSnapshot();
             StringBuffer buf=new StringBuffer();
             buf.append("<type>"+"Stop"+"</type>");
             buf.append('\n');
@@ -3016,11 +2946,10 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 cmd.putExtra("TYPE", "BUFFER_END");
                 cmd.putExtra("END_TIME", end);
                 SystemProperties.set("sys.yst.mbufferstatus", "1");
-                if(null == info)
-                    info= getMediaInfo();
+                info = getMediaInfoSnapshot();
                 cmd.putExtra("ID", info.player_id);
                 if(!mbIsFileDescriptor){
-                    mContext.sendBroadcast(cmd);
+                    MediaQosReporter.report(mContext, cmd);
                 }
                 mBufferingStartSend = false;
             }
@@ -3028,15 +2957,14 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 Log.w(TAG, "media event: BLURREDSCREEN END\n");
                 if(mContext != null) {
                     int starttime = getCurrentPosition();
-                    if(null == info)
-                        info = getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("TYPE", "BLURREDSCREEN_END");
                     cmd.putExtra("ID", info.player_id);
                     cmd.putExtra("END_TIME", System.currentTimeMillis());
                     cmd.putExtra("RATIO", 1);
                     SystemProperties.set("sys.yst.mblurredscreenstatus", "1");
                     if(!mbIsFileDescriptor){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                         mBlurredscreenStartSend = false;
                     }
                 }
@@ -3045,14 +2973,13 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 Log.w(TAG, "media event: UNLOAD END\n");
                 if(mContext != null) {
                     int starttime = getCurrentPosition();
-                    if(null == info)
-                        info = getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("TYPE", "UNLOAD_END");
                     cmd.putExtra("ID", info.player_id);
                     cmd.putExtra("END_TIME", System.currentTimeMillis());
                     SystemProperties.set("sys.yst.munloadstatus", "1");
                     if(!mbIsFileDescriptor){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                         mUnloadStartSend = false;
                     }
                 }
@@ -3065,29 +2992,24 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 		 mPlayStartFlag=false; 
                 cmd.putExtra("PLAY_TIME", starttime/1000);
                 cmd.putExtra("TIME", System.currentTimeMillis());
-                if(null == info)
-                    info= getMediaInfo();
+                info = getMediaInfoSnapshot();
                 cmd.putExtra("ID", info.player_id);
                 Log.d(TAG , "player id is : "+info.player_id);
                 //begin:add by zhanghk at 20190524:fix report two PLAY_QUIT problem
                 if(!mbIsFileDescriptor){
-		    if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")
-				|| SystemProperties.get("ro.ysten.province","master").contains("jiangsu")
-                || SystemProperties.get("ro.ysten.province","master").contains("ningxia")
-				|| SystemProperties.get("ro.ysten.province","master").contains("heilongjiang")
-				|| SystemProperties.get("ro.ysten.province","master").contains("anhui")){
+		    if(ProvinceProfile.get().has(ProvinceProfile.FLAG_QOS_REPORT_ONCE)){
 			if(!mQuitFlag){
-                            mContext.sendBroadcast(cmd);
+                            MediaQosReporter.report(mContext, cmd);
                             mSendQuitEvent = true;
 			    mQuitFlag=true;
 			}
                     }else{
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                         mSendQuitEvent = true;					
 		    }
 			//add by ysten-mark for heilongjiang sqm playend
-			if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
-                onEvent(HuaweiUtils.ACTION_PLAYEND,  HuaweiUtils.PARAM_ENDREASON + "=" + HuaweiUtils.ENDREASON_CLOSED); 
+			if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
+                AnalyticServiceClient.get().event(HuaweiUtils.ACTION_PLAYEND).put(HuaweiUtils.PARAM_ENDREASON, HuaweiUtils.ENDREASON_CLOSED).send(); 
                 close();
             }
 			//end add by ysten-mark for heilongjiang sqm playend
@@ -3115,6 +3037,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
         mOnBlurayInfoListener = null;
         subtitleClose();
         subtitleServiceRelease();
+        mSubtitleBitmapPool.release();
         if (mSavelogLooper != null) {
             mSavelogLooper.quitSafely();
             mSavelogLooper = null;
@@ -3147,8 +3070,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 
         if(SystemProperties.getBoolean("media.player.report.udp", false) && mSendPrepareEvent && !mSendQuitEvent){
             long time = System.currentTimeMillis()/1000;
-            if(null == info)
-                info= getMediaInfo();
+            info = getMediaInfoSnapshot();
             StringBuffer buf=new StringBuffer();
             buf.append("<type>"+"Stop"+"</type>");
             buf.append('\n');
@@ -3164,11 +3086,10 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 long end = System.currentTimeMillis();
                 cmd.putExtra("TYPE", "BUFFER_END");
                 cmd.putExtra("END_TIME", end);
-                if(null == info)
-                    info= getMediaInfo();
+                info = getMediaInfoSnapshot();
                 cmd.putExtra("ID", info.player_id);
                if(!mbIsFileDescriptor){
-                    mContext.sendBroadcast(cmd);
+                    MediaQosReporter.report(mContext, cmd);
                 }
                 mBufferingStartSend = false;
             }
@@ -3176,15 +3097,14 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 Log.w(TAG, "media event: BLURREDSCREEN END\n");
                 if(mContext != null) {
                     int starttime = getCurrentPosition();
-                    if(null == info)
-                        info = getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("TYPE", "BLURREDSCREEN_END");
                     cmd.putExtra("ID", info.player_id);
                     cmd.putExtra("END_TIME", System.currentTimeMillis());
                     cmd.putExtra("RATIO", 1);
                      SystemProperties.set("sys.yst.mblurredscreenstatus", "1");
                     if(!mbIsFileDescriptor){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                         mBlurredscreenStartSend = false;
                     }
                 }
@@ -3193,14 +3113,13 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 Log.w(TAG, "media event: UNLOAD END\n");
                 if(mContext != null) {
                     int starttime = getCurrentPosition();
-                   if(null == info)
-                        info = getMediaInfo();
+                   info = getMediaInfoSnapshot();
                     cmd.putExtra("TYPE", "UNLOAD_END");
                     cmd.putExtra("ID", info.player_id);
                     cmd.putExtra("END_TIME", System.currentTimeMillis());
                      SystemProperties.set("sys.yst.munloadstatus", "1");
                     if(!mbIsFileDescriptor){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                         mUnloadStartSend = false;
                     }
                 }
@@ -3214,29 +3133,24 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 	     mPlayStartFlag=false; 
             cmd.putExtra("PLAY_TIME", starttime/1000);
             cmd.putExtra("TIME", System.currentTimeMillis());
-            if(null == info)
-                info= getMediaInfo();
+            info = getMediaInfoSnapshot();
             cmd.putExtra("ID", info.player_id);
             Log.d(TAG , "player id is : "+info.player_id);
             //begin:add by zhanghk at 20190524:fix report two PLAY_QUIT problem
             if(!mbIsFileDescriptor){
-		if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")
-			|| SystemProperties.get("ro.ysten.province","master").contains("jiangsu")
-			|| SystemProperties.get("ro.ysten.province","master").contains("anhui")
-			|| SystemProperties.get("ro.ysten.province","master").contains("heilongjiang")
-            || SystemProperties.get("ro.ysten.province","master").contains("ningxia")){
+		if(ProvinceProfile.get().has(ProvinceProfile.FLAG_QOS_REPORT_ONCE)){
 		    if(!mQuitFlag){
-                         mContext.sendBroadcast(cmd);
+                         MediaQosReporter.report(mContext, cmd);
                          mSendQuitEvent = true;
                          mQuitFlag=true;
 		    }
                 }else{
-                    mContext.sendBroadcast(cmd);
+                    MediaQosReporter.report(mContext, cmd);
                     mSendQuitEvent = true;			
 		}
 			//add by ysten-mark for heilongjiang sqm playend
-		if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
-                onEvent(HuaweiUtils.ACTION_PLAYEND,  HuaweiUtils.PARAM_ENDREASON + "=" + HuaweiUtils.ENDREASON_CLOSED); 
+		if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
+                AnalyticServiceClient.get().event(HuaweiUtils.ACTION_PLAYEND).put(HuaweiUtils.PARAM_ENDREASON, HuaweiUtils.ENDREASON_CLOSED).send(); 
                 close();
         }
 			//add by ysten-mark for heilongjiang sqm playend
@@ -3269,6 +3183,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
         }
 
         stayAwake(false);
+        invalidateMediaInfo();
         _reset();
         // make sure none of the listeners get called anymore
         if (mEventHandler != null) {
@@ -3619,8 +3534,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 		}
 
 		/*Begin: Update MediaInfo*/
-		if (null == info)
-			info= getMediaInfo();
+		info = getMediaInfoSnapshot();
 
 		if (info.hls_para == null)
 			info.hls_para = new ReportParam_Hls();
@@ -3764,12 +3678,46 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 				+ "|adecdrop:" + info.adec_drop
 				+ "|adecunderflow:" + info.adec_underflow
 				+ "|aptserr:" + info.adec_pts_error);
-			mContext.sendBroadcast(it_report_unicom);
+			MediaQosReporter.report(mContext, it_report_unicom);
 		}
 
 		return ret;
 	}
 
+    /**
+     * Bumped when {@link #info} may no longer match the native player: a new
+     * data source was prepared, or its streams or tracks changed.
+     */
+    private int mMediaInfoGeneration;
+    private int mMediaInfoSnapshotGeneration = -1;
+
+    private void invalidateMediaInfo() {
+        mMediaInfoGeneration++;
+    }
+
+    /**
+     * The MediaInfo of the current data source, fetched from mediaserver
+     * only if the last snapshot has been invalidated since.  QoS and SQM
+     * reports, which mostly just need player_id and url, go through this.
+     */
+    private MediaInfo getMediaInfoSnapshot() {
+        if (info == null || mMediaInfoSnapshotGeneration != mMediaInfoGeneration) {
+            return refreshMediaInfo();
+        }
+        return info;
+    }
+
+    private MediaInfo refreshMediaInfo() {
+        final int generation = mMediaInfoGeneration;
+        final MediaInfo mediaInfo = getMediaInfo();
+        // getMediaInfo() hands back the old snapshot if mediaserver can't
+        // answer yet; try again next time.
+        if (mediaInfo != null && mediaInfo != info) {
+            mMediaInfoSnapshotGeneration = generation;
+        }
+        return mediaInfo;
+    }
+
     /**
     * @hide
     */
@@ -4531,6 +4479,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 
     private void selectOrDeselectTrack(int index, boolean select)
             throws IllegalStateException {
+        invalidateMediaInfo();
         // handle subtitle track through subtitle controller
         SubtitleTrack track = null;
         // add select subtitle
@@ -4865,8 +4814,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 					Log.e(TAG, "MEDIA_EXIT");
                     if(SystemProperties.getBoolean("media.player.report.udp", false)&& mSendPrepareEvent && !mSendQuitEvent){
                         long time = System.currentTimeMillis()/1000;
-                        if(null == info)
-                            info= getMediaInfo();
+                        info = getMediaInfoSnapshot();
                         StringBuffer buf=new StringBuffer();
                         buf.append("<type>"+"Stop"+"</type>");
                         buf.append('\n');
@@ -4885,29 +4833,24 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 			 mPlayStartFlag=false; 
                         cmd.putExtra("PLAY_TIME", starttime/1000);
                         cmd.putExtra("TIME", System.currentTimeMillis());
-                        if(null == info)
-                            info= getMediaInfo();
+                        info = getMediaInfoSnapshot();
                         cmd.putExtra("ID", info.player_id);
                         Log.d(TAG , "player id is : "+info.player_id);
                         //begin:add by zhanghk at 20190524:fix report two PLAY_QUIT problem
                         if(!mbIsFileDescriptor){
-			    if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")
-					|| SystemProperties.get("ro.ysten.province","master").contains("jiangsu")
-					|| SystemProperties.get("ro.ysten.province","master").contains("anhui")
-					|| SystemProperties.get("ro.ysten.province","master").contains("heilongjiang")
-                    || SystemProperties.get("ro.ysten.province","master").contains("ningxia")){
+			    if(ProvinceProfile.get().has(ProvinceProfile.FLAG_QOS_REPORT_ONCE)){
 				if(!mQuitFlag){
-                                    mContext.sendBroadcast(cmd);
+                                    MediaQosReporter.report(mContext, cmd);
                                     mSendQuitEvent = true;
                                     mQuitFlag=true;
 				}
                             }else{
-                                mContext.sendBroadcast(cmd);
+                                MediaQosReporter.report(mContext, cmd);
                                 mSendQuitEvent = true;						
 			    }
 			//add by ysten-mark for heilongjiang sqm playend
-			 if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
-                onEvent(HuaweiUtils.ACTION_PLAYEND,  HuaweiUtils.PARAM_ENDREASON + "=" + HuaweiUtils.ENDREASON_CLOSED); 
+			 if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
+                AnalyticServiceClient.get().event(HuaweiUtils.ACTION_PLAYEND).put(HuaweiUtils.PARAM_ENDREASON, HuaweiUtils.ENDREASON_CLOSED).send(); 
                 close();
              } 
 			//add by ysten-mark for heilongjiang sqm playend
@@ -4931,8 +4874,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 if(SystemProperties.getBoolean("media.player.report.udp", false)){
                     int starttime = getCurrentPosition();
                     long time = current_time/1000;
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     StringBuffer buf=new StringBuffer();
                     buf.append("<type>"+"CacheBytes"+"</type>");
                     buf.append('\n');
@@ -4961,8 +4903,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                     cmd.putExtra("SECONDS", mSecond);
                     mLastReportTime = current_time;
                     cmd.putExtra("TIME", current_time/*-mReportTimeOffset*/);
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("ID", info.player_id);
                     cmd.putExtra("PLAY_TIME", starttime);
                     if (msg.obj instanceof Parcel) {
@@ -4977,14 +4918,14 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 			        cmd.putExtra("BYTES", cached_bytes);
                     }
                     if(!mbIsFileDescriptor){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                     }
                 }
                 return;
             case MEDIA_BLURREDSCREEN_START:
                 Log.w(TAG, "media event: BLURREDSCREEN START\n");
                 //add by chenfeng at 20191005:limit MEDIA_BLURREDSCREEN_START
-                if(SystemProperties.get("ro.ysten.province","master").contains("guangdong")) {
+                if(ProvinceProfile.get().is(ProvinceProfile.Region.GUANGDONG)) {
                     if(mBlurredscreenStartCnt == 0) {
                         mEventHandler.postDelayed(blurredscreenStartEvent,2*60*60*1000);
                     }
@@ -4998,14 +4939,13 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 }
                 if(mContext != null) {
                     int starttime = getCurrentPosition();
-                    if(null == info)
-                        info = getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("TYPE", "BLURREDSCREEN_START");
                     cmd.putExtra("ID", info.player_id);
                     cmd.putExtra("START_TIME", System.currentTimeMillis());
                     cmd.putExtra("PLAY_TIME", starttime/1000);
                     if(!mbIsFileDescriptor){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
 			//begin by ysten.zhangjunjian for blurred end event 
 			SystemProperties.set("sys.yst.mblurredscreenstatus", "0");
                         mBlurredscreenStartSend = true;
@@ -5015,7 +4955,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                         Random rand = new Random();
 			            int number = rand.nextInt(END-START+1) + START;
 		               Log.d("zjj","huapingshichang"+number);
-                       if(SystemProperties.get("ro.ysten.province","master").contains("guangdong")){
+                       if(ProvinceProfile.get().is(ProvinceProfile.Region.GUANGDONG)){
                        mEventHandler.postDelayed(blurredscreenStartTimeEvent,number);
                        }
 		       //end by ysten.zhangjunjian for blurred end event
@@ -5026,14 +4966,13 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 Log.w(TAG, "media event: BLURREDSCREEN END\n");
                 if(mContext != null && mBlurredscreenStartSend) {
                     int starttime = getCurrentPosition();
-                    if(null == info)
-                        info = getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("TYPE", "BLURREDSCREEN_END");
                     cmd.putExtra("ID", info.player_id);
                     cmd.putExtra("END_TIME", System.currentTimeMillis());
                     cmd.putExtra("RATIO", msg.arg1);
                     if((!mbIsFileDescriptor)&& SystemProperties.get("sys.yst.mblurredscreenstatus", "1").equals("0")){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
 			//begin ysten.zhangjunjian,20191012,for blurred symbolic
                         SystemProperties.set("sys.yst.mblurredscreenstatus", "1");
                         mBlurredscreenStartSend = false;
@@ -5045,14 +4984,13 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 Log.w(TAG, "media event: UNLOAD START\n");
                 if(mContext != null) {
                     int starttime = getCurrentPosition();
-                    if(null == info)
-                        info = getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("TYPE", "UNLOAD_START");
                     cmd.putExtra("ID", info.player_id);
                     cmd.putExtra("START_TIME", System.currentTimeMillis());
                     cmd.putExtra("PLAY_TIME", starttime/1000);
                     if(!mbIsFileDescriptor){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
 			//begin ysten.zhangjunjian,20191012,for unload symbolic
                         Log.d(TAG,"2222");
                         SystemProperties.set("sys.yst.munloadstatus", "0");
@@ -5060,7 +4998,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                         Random rand = new Random();
                          int number2 = rand.nextInt(END-START+1) + START;
                          Log.d("zjj","unload"+number2);
-                        if(SystemProperties.get("ro.ysten.province","master").contains("guangdong")){
+                        if(ProvinceProfile.get().is(ProvinceProfile.Region.GUANGDONG)){
                          mEventHandler.postDelayed(unloadStartTimeEvent,number2);
                         }
 		        //end ysten.zhangjunjian,20191012,for unload symbolic
@@ -5071,14 +5009,13 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 Log.w(TAG, "media event: UNLOAD END\n");
                 if(mContext != null) {
                     int starttime = getCurrentPosition();
-                    if(null == info)
-                        info = getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("TYPE", "UNLOAD_END");
                     cmd.putExtra("ID", info.player_id);
                     cmd.putExtra("END_TIME", System.currentTimeMillis());
                     if((!mbIsFileDescriptor)&& SystemProperties.get("sys.yst.munloadstatus", "1").equals("0")){
                         Log.d(TAG,"END222");
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
 			//begin ysten.zhangjunjian,20191012,for unload symbolic
                         SystemProperties.set("sys.yst.munloadstatus", "1");	
 			mUnloadStartSend = false;
@@ -5095,17 +5032,16 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 	             mSeekFlag=true;
                     cmd.putExtra("PLAY_TIME", mSeekTime/1000);
                     cmd.putExtra("START_TIME", System.currentTimeMillis());
-                    if(null == info)
-                       info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("ID", info.player_id);
                     if(!mbIsFileDescriptor){
-                       mContext.sendBroadcast(cmd);
+                       MediaQosReporter.report(mContext, cmd);
 		               mSeekStartSend = true;
                     }
 			//add by ysten-mark for heilongjiang sqm seekstart
-				   if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
+				   if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
                       int position = getCurrentPosition()/1000;
-                      onEvent(HuaweiUtils.ACTION_SEEKSTART, HuaweiUtils.PARAM_POSITION + "=" + position);
+                      AnalyticServiceClient.get().event(HuaweiUtils.ACTION_SEEKSTART).put(HuaweiUtils.PARAM_POSITION, position).send();
                     }
 			//add by ysten-mark for heilongjiang sqm seekstart
                 } else {
@@ -5116,8 +5052,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 if(SystemProperties.getBoolean("media.player.report.udp", false)){
                     int starttime = getCurrentPosition();
                     long time = System.currentTimeMillis()/1000;
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     StringBuffer buf=new StringBuffer();
                     buf.append("<type>"+"Resume"+"</type>");
                     buf.append('\n');
@@ -5139,16 +5074,15 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                     cmd.putExtra("TYPE", "RESUME_MESSAGE");
                     cmd.putExtra("PLAY_TIME", starttime/1000);
                     cmd.putExtra("TIME", System.currentTimeMillis());
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     if(!mbIsFileDescriptor){
                     cmd.putExtra("ID", info.player_id);
-                    mContext.sendBroadcast(cmd);
+                    MediaQosReporter.report(mContext, cmd);
                     }
 					//add by ysten-mark for heilongjiang sqm resume
-					if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
+					if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
                     int position = getCurrentPosition()/1000;
-                    onEvent(HuaweiUtils.ACTION_RESUME, HuaweiUtils.PARAM_POSITION + "=" + position);
+                    AnalyticServiceClient.get().event(HuaweiUtils.ACTION_RESUME).put(HuaweiUtils.PARAM_POSITION, position).send();
 //				+ "&" + HuaweiUtils.PARAM_VIDEO_SIZE + "=" + videoSize); 
                     }
 					//end add by ysten-mark for heilongjiang sqm resume
@@ -5158,14 +5092,12 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 if(mContext != null) {
                      long start = System.currentTimeMillis();
                      cmd.putExtra("TYPE", "PLAY_STARTUP");
-                     if(null == info) {
-                        info = getMediaInfo();
-					}
+                     info = getMediaInfoSnapshot();
 					//add by zhanghk at 20181111 start:fix STARTUP ID is 0 problem
 					cmd.putExtra("ID", info.player_id);
 					cmd.putExtra("TIME", start);
                     if(!mbIsFileDescriptor){
-					    mContext.sendBroadcast(cmd);
+					    MediaQosReporter.report(mContext, cmd);
                     }
 				}
                 return;
@@ -5173,8 +5105,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 if(SystemProperties.getBoolean("media.player.report.udp", false)){
                     int starttime = getCurrentPosition();
                     long time = System.currentTimeMillis()/1000;
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     StringBuffer buf=new StringBuffer();
                     buf.append("<type>"+"Start"+"</type>");
                     buf.append('\n');
@@ -5196,7 +5127,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                     cmd.putExtra("TYPE", "PLAY_START");
                     cmd.putExtra("PLAY_TIME", starttime/1000);
                     cmd.putExtra("END_TIME", System.currentTimeMillis());
-                    info = getMediaInfo();
+                    info = refreshMediaInfo();
                     if ((info != null) && (info.total_video_num > 0)) {
                         cmd.putExtra("ID", info.player_id);
                         cmd.putExtra("BITRATE", info.bitrate);
@@ -5208,22 +5139,18 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 					}
                     //begin:add by zhanghk at 20190525:for report many PLAY_START problem
                     if(!mbIsFileDescriptor){
-			if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")
-				|| SystemProperties.get("ro.ysten.province","master").contains("jiangsu")
-				|| SystemProperties.get("ro.ysten.province","master").contains("anhui")
-				|| SystemProperties.get("ro.ysten.province","master").contains("A20_sc")
-				|| SystemProperties.get("ro.ysten.province", "master").contains("heilongjiang")
-                || SystemProperties.get("ro.ysten.province","master").contains("ningxia")){
+			if(ProvinceProfile.get().has(ProvinceProfile.FLAG_QOS_REPORT_ONCE)
+				|| ProvinceProfile.get().nameContains("A20_sc")){
 			    if(!mPlayStartFlag){
-                                mContext.sendBroadcast(cmd);
+                                MediaQosReporter.report(mContext, cmd);
 				mPlayStartFlag=true;
 			    }
 			}else{
-			    mContext.sendBroadcast(cmd);
+			    MediaQosReporter.report(mContext, cmd);
 			}
                     }
                     //end:add by zhanghk at 20190525:for report many PLAY_START problem
-				if(SystemProperties.get("ro.ysten.province","master").contains("heilongjiang")){
+				if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
 					//getIPPort();
 					open("VOD", "TEST", info.url);
 					String mm_url = info.url;
@@ -5250,11 +5177,13 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 							@Override
                 			public void run() {
                                 mstrServerIP = GetInetAddress(mstrServerIP);
-								onEvent(HuaweiUtils.ACTION_PLAYSTART, HuaweiUtils.PARAM_SERVERIP + "=" + mstrServerIP 
-									+ "&" + HuaweiUtils.PARAM_SERVERPORT + "=" + mServerPort
-									+ "&" + HuaweiUtils.PARAM_BITRATE+ "=" + info.bitrate
-									+ "&" + HuaweiUtils.PARAM_DURATION+ "=" + info.duration
-									+ "&" + HuaweiUtils.PARAM_VIDEO_SIZE + "=" + info.file_size);
+								AnalyticServiceClient.get().event(HuaweiUtils.ACTION_PLAYSTART)
+									.put(HuaweiUtils.PARAM_SERVERIP, mstrServerIP)
+									.put(HuaweiUtils.PARAM_SERVERPORT, mServerPort)
+									.put(HuaweiUtils.PARAM_BITRATE, info.bitrate)
+									.put(HuaweiUtils.PARAM_DURATION, info.duration)
+									.put(HuaweiUtils.PARAM_VIDEO_SIZE, info.file_size)
+									.send();
 								Log.d("mark","mstrServerIP = "+ mstrServerIP);
 								Log.d("mark","mServerPort = "+ mServerPort);
 							}
@@ -5271,8 +5200,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 if(SystemProperties.getBoolean("media.player.report.udp", false)){
                     int starttime = getCurrentPosition();
                     long time = System.currentTimeMillis()/1000;
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     StringBuffer buf=new StringBuffer();
                     buf.append("<type>"+"BitrateChange"+"</type>");
                     buf.append('\n');
@@ -5286,8 +5214,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 }else if(mContext != null){
                     cmd.putExtra("TYPE", "BITRATE_CHANGE");
                     cmd.putExtra("TIME", System.currentTimeMillis());
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("OLDID", info.player_id);
                     cmd.putExtra("ID", info.player_id);
                     Parcel parcel = (Parcel) msg.obj;
@@ -5298,11 +5225,14 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
 
                     cmd.putExtra("TO_BITRATE", msg.arg1);
                     if(!mbIsFileDescriptor){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                     }
                 }
+                // The stream, and with it the bitrate and url, has changed.
+                invalidateMediaInfo();
                 return;
             case MEDIA_PREPARED:
+                invalidateMediaInfo();
                 if(300 != msg.arg1)
                 	scanInternalSubtitleTracks();
                 if (mOnPreparedListener != null)
@@ -5311,14 +5241,12 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 if (mContext != null){
 					long start = System.currentTimeMillis();
 					cmd.putExtra("TYPE", "PREPARE_COMPLETED");
-					if (null == info){
-						info = getMediaInfo();
-						if(null != info)
-							cmd.putExtra("ID", info.player_id);
-					}
+					info = getMediaInfoSnapshot();
+					if(null != info)
+						cmd.putExtra("ID", info.player_id);
                     cmd.putExtra("TIME", start);
                     if(!mbIsFileDescriptor){
-					    mContext.sendBroadcast(cmd);
+					    MediaQosReporter.report(mContext, cmd);
                     }
 				}
 
@@ -5327,8 +5255,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 if(SystemProperties.getBoolean("media.player.report.udp", false)&& !mSendPrepareEvent){
                     int starttime = getCurrentPosition();
                     long time = System.currentTimeMillis()/1000;
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     StringBuffer buf=new StringBuffer();
                     buf.append("<type>"+"Prepare"+"</type>");
                     buf.append('\n');
@@ -5344,8 +5271,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                     Log.e(TAG, buf.length()+" ,:"+buf.toString());	
                 }else if(mContext != null && !mSendPrepareEvent){
                     long start = System.currentTimeMillis();
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("TYPE", "PLAY_PREPARE");
 		     mSeekFlag=false;
                     cmd.putExtra("START_TIME", start);
@@ -5355,7 +5281,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                         cmd.putExtra("URL", info.url);
                     }
                     if(!mbIsFileDescriptor){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                         mSendPrepareEvent = true;
                         mSendQuitEvent = false;
                         //add by chenfeng at 20191005:fix MEDIA_BLURREDSCREEN_END may not send
@@ -5368,6 +5294,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 }
                 return;
             case MEDIA_PLAYBACK_COMPLETE:
+                mSubtitleScheduler.setPlaying(false);
                 if (mOnCompletionListener != null)
                     mOnCompletionListener.onCompletion(mMediaPlayer);
                 stayAwake(false);
@@ -5387,8 +5314,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 if(SystemProperties.getBoolean("media.player.report.udp", false)){
                     int starttime = getCurrentPosition();
                     long time = System.currentTimeMillis()/1000;
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     StringBuffer buf=new StringBuffer();
                     buf.append("<type>"+"Pause"+"</type>");
                     buf.append('\n');
@@ -5407,17 +5333,16 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                     cmd.putExtra("TYPE", "PAUSE_MESSAGE");
                     cmd.putExtra("PLAY_TIME", starttime/1000);
                     cmd.putExtra("TIME", System.currentTimeMillis());
-                    if(null == info)
-                        info= getMediaInfo();
+                    info = getMediaInfoSnapshot();
                     cmd.putExtra("ID", info.player_id);
                     if(!mbIsFileDescriptor){
-                        mContext.sendBroadcast(cmd);
+                        MediaQosReporter.report(mContext, cmd);
                     }
                 }
 				// huawei plugin start {{
-				if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
+				if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
 					int position = getCurrentPosition()/1000;
-					onEvent(HuaweiUtils.ACTION_PAUSE, HuaweiUtils.PARAM_POSITION + "=" + position);
+					AnalyticServiceClient.get().event(HuaweiUtils.ACTION_PAUSE).put(HuaweiUtils.PARAM_POSITION, position).send();
 //				+ "&" + HuaweiUtils.PARAM_VIDEO_SIZE + "=" + videoSize); 
 				}
                 break;
@@ -5434,25 +5359,25 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                     subtitleResetForSeek();
                   }
               }
+              mSubtitleScheduler.resyncNow();
               // fall through
               if (mContext != null && mSeekStartSend == true){
                   long end = System.currentTimeMillis();
                   cmd.putExtra("PLAY_TIME", mSeekTime/1000);
                   cmd.putExtra("TYPE", "SEEK_END");
                   cmd.putExtra("END_TIME", end);
-                  if(null == info)
-                      info= getMediaInfo();
+                  info = getMediaInfoSnapshot();
                   cmd.putExtra("ID", info.player_id);
                   if(!mbIsFileDescriptor){
-                      mContext.sendBroadcast(cmd);
+                      MediaQosReporter.report(mContext, cmd);
 		              mSeekStartSend = false;
                   }
 		  mEventHandler.postDelayed(seekBufferEvent,8000);
               }
 			  // huawei plugin start {{
-			  if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
+			  if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
 				  int position = getCurrentPosition()/1000;
-				  onEvent(HuaweiUtils.ACTION_SEEKEND, HuaweiUtils.PARAM_POSITION + "=" + position);
+				  AnalyticServiceClient.get().event(HuaweiUtils.ACTION_SEEKEND).put(HuaweiUtils.PARAM_POSITION, position).send();
 //				+ "&" + HuaweiUtils.PARAM_VIDEO_SIZE + "=" + videoSize); 
     }
 	      return;
@@ -5480,7 +5405,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                   Log.e(TAG, "gddy report error code (" + msg.arg1 + "," + msg.arg2 + ")");
               }
 			  //add by zhaolianghua for drm @20181115
-	      if("cm201_hebei".equals(SystemProperties.get("ro.ysten.province"))&&msg.arg1==302
+	      if(ProvinceProfile.get().nameEquals("cm201_hebei")&&msg.arg1==302
 			      &&msg.arg2<0){
 		      Log.d(TAG,"error code for DRM");
 		      msg.arg1 = 10000;
@@ -5500,6 +5425,14 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
               return;
 
             case MEDIA_INFO:
+                // The media clock stops while buffering; keep subtitles with it.
+                if (msg.arg1 == MEDIA_INFO_BUFFERING_START
+                        || msg.arg1 == MEDIA_INFO_BUFFERING_BROADCAST_START) {
+                    mSubtitleScheduler.setBuffering(true);
+                } else if (msg.arg1 == MEDIA_INFO_BUFFERING_END
+                        || msg.arg1 == MEDIA_INFO_BUFFERING_BROADCAST_END) {
+                    mSubtitleScheduler.setBuffering(false);
+                }
                 switch (msg.arg1) {
                 case MEDIA_INFO_VIDEO_TRACK_LAGGING:
                 case MEDIA_INFO_NETWORK_BANDWIDTH:
@@ -5507,6 +5440,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                     Log.i(TAG, "Info (" + msg.arg1 + "," + msg.arg2 + ")");
                     break;
                 case MEDIA_INFO_METADATA_UPDATE:
+                    invalidateMediaInfo();
                     scanInternalSubtitleTracks();
                     // fall through
 
@@ -5519,8 +5453,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                     if(SystemProperties.getBoolean("media.player.report.udp", false)){
                         mBufferStartTime = System.currentTimeMillis();
                         long time = mBufferStartTime /1000;
-                        if(null == info)
-                            info= getMediaInfo();
+                        info = getMediaInfoSnapshot();
                         StringBuffer buf=new StringBuffer();
                         buf.append("<type>"+"BufferStart"+"</type>");
                         buf.append('\n');
@@ -5536,27 +5469,26 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                         cmd.putExtra("TYPE", "BUFFER_START");
                         cmd.putExtra("START_TIME", start);
                         cmd.putExtra("PLAY_TIME", starttime/1000);
-                        if(null == info)
-                            info= getMediaInfo();
+                        info = getMediaInfoSnapshot();
                         cmd.putExtra("ID", info.player_id);
 			//begin by ysten.zhangjunjian for buffer symbolic
 			SystemProperties.set("sys.yst.mbufferstatus", "0");
 			//end by ysten.zhangjunjian for buffer symbolic
 			            mBufferStartFlag = true;
 						//add by ysten-mark for heilongjiang sqm bufferstart
-						if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
+						if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
 							int position = getCurrentPosition()/1000;
-							onEvent(HuaweiUtils.ACTION_BUFFERSTART, HuaweiUtils.PARAM_POSITION + "=" + position);
+							AnalyticServiceClient.get().event(HuaweiUtils.ACTION_BUFFERSTART).put(HuaweiUtils.PARAM_POSITION, position).send();
 						}
                         //begin:add by zhanghk at 20190525:fix report BUFFER after seek problem
                         if(!mbIsFileDescriptor){
-			    if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang") || SystemProperties.get("ro.ysten.province", "master").contains("heilongjiang")){
+			    if(ProvinceProfile.get().has(ProvinceProfile.FLAG_QOS_SKIP_SEEK_BUFFERING)){
 				if(!mSeekFlag){
-				    mContext.sendBroadcast(cmd); 
+				    MediaQosReporter.report(mContext, cmd); 
 				    mBufferingStartSend = true;
 				}
 			    }else{
-                                mContext.sendBroadcast(cmd);
+                                MediaQosReporter.report(mContext, cmd);
 			        mBufferingStartSend = true;
 			    }
                         }
@@ -5567,8 +5499,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 case MEDIA_INFO_BUFFERING_BROADCAST_END:
                     if(SystemProperties.getBoolean("media.player.report.udp", false)){
                         long time = System.currentTimeMillis()/1000;
-                        if(null == info)
-                            info= getMediaInfo();
+                        info = getMediaInfoSnapshot();
                         StringBuffer buf=new StringBuffer();
                         buf.append("<type>"+"BufferStart"+"</type>");
                         buf.append('\n');
@@ -5588,26 +5519,24 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                         }
                         cmd.putExtra("TYPE", "BUFFER_END");
                         cmd.putExtra("END_TIME", end);
-                        if(null == info)
-                            info= getMediaInfo();
+                        info = getMediaInfoSnapshot();
                         cmd.putExtra("ID", info.player_id);
                         //begin:add by zhanghk at 20190525:fix report BUFFER after seek problem
                         //begin:add by mark:fix report BUFFER after seek problem
-					if(SystemProperties.get("ro.ysten.province").contains("heilongjiang")){
+					if(ProvinceProfile.get().has(ProvinceProfile.FLAG_SQM_EVENTS)){
                     int position = getCurrentPosition()/1000;
-                    onEvent(HuaweiUtils.ACTION_BUFFEREND, HuaweiUtils.PARAM_POSITION + "=" + position);
+                    AnalyticServiceClient.get().event(HuaweiUtils.ACTION_BUFFEREND).put(HuaweiUtils.PARAM_POSITION, position).send();
 //				+ "&" + HuaweiUtils.PARAM_VIDEO_SIZE + "=" + videoSize); 
                     }
                         if((!mbIsFileDescriptor)&& SystemProperties.get("sys.yst.mbufferstatus", "1").equals("0")){
                             SystemProperties.set("sys.yst.mbufferstatus", "1");
-			    if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")
-				|| SystemProperties.get("ro.ysten.province", "master").contains("heilongjiang")){
+			    if(ProvinceProfile.get().has(ProvinceProfile.FLAG_QOS_SKIP_SEEK_BUFFERING)){
 				if(!mSeekFlag){
-                                    mContext.sendBroadcast(cmd);
+                                    MediaQosReporter.report(mContext, cmd);
 			            mBufferingStartSend = false;
 			        }
 			    }else{
-				mContext.sendBroadcast(cmd);
+				MediaQosReporter.report(mContext, cmd);
 				mBufferingStartSend = false;
 			    }
                         }
@@ -5635,7 +5564,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                             cmd.putExtra("ERROR_CODE", msg.arg2);
                             cmd.putExtra("TIME", System.currentTimeMillis());
                             if(!mbIsFileDescriptor){
-                                mContext.sendBroadcast(cmd);
+                                MediaQosReporter.report(mContext, cmd);
                             }
                         }
                     }
@@ -5674,7 +5603,7 @@ public class MediaPlayer implements SubtitleController.Listener, MediaPlayerEx
                 }else{
                 if (msg.obj instanceof Parcel) {
                     Parcel parcel = (Parcel) msg.obj;
-                    Bitmap bitmap = getSubtitleBitmap();
+                    Bitmap bitmap = obtainSubtitleBitmap();
                     SubtitleData data = new SubtitleData(parcel, bitmap);
                     parcel.recycle();
                     mOnSubtitleDataListener.onSubtitleData(mMediaPlayer, data);
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.media;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.ServiceConnection;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.IBinder;
+import android.os.Message;
+import android.os.Messenger;
+import android.os.Process;
+import android.os.RemoteException;
+import android.os.SystemProperties;
+import android.util.Log;
+
+import java.util.ArrayList;
+
+/**
+ * Delivers the QoS/SQM events of every MediaPlayer in the process
+ * (PLAY_PREPARE, BUFFER_START, SEEK_END, UNLOAD_END, PLAY_QUIT...) in batches.
+ *
+ * Events were sent as one system broadcast each, straight from the player,
+ * so a buffering storm on a weak link turned into a storm of broadcasts in
+ * ActivityManagerService.  Events are now recorded in a fixed-size ring and
+ * flushed from a background thread once a second, or as soon as
+ * {@link #BATCH_SIZE} are pending.
+ *
+ * A batch goes to the stats service bound with {@link #ACTION_QOS_SERVICE}
+ * as one {@link #MSG_QOS_EVENTS} Message: its data holds the events, each a
+ * Bundle of the event's extras plus {@link #EXTRA_ACTION}, under
+ * {@link #KEY_EVENTS}, and the number of events lost to overflow under
+ * {@link #KEY_DROPPED}.
+ *
+ * The per-event broadcasts are kept as a compatibility sink.  They are
+ * used when no stats service is installed, or in addition to it when
+ * media.qos.broadcast is true, and are sent in the original order.  With
+ * no stats service there is nothing to batch for, so each event is then
+ * flushed as soon as it is reported, off the player's thread, rather than
+ * held back for the batch window.
+ */
+final class MediaQosReporter {
+    private static final String TAG = "MediaQosReporter";
+
+    public static final String ACTION_QOS_SERVICE = "android.media.action.QOS_STATS_SERVICE";
+    public static final int MSG_QOS_EVENTS = 1;
+    public static final String KEY_EVENTS = "events";
+    public static final String KEY_DROPPED = "dropped";
+    public static final String EXTRA_ACTION = "ACTION";
+
+    private static final int CAPACITY = 256;
+    private static final int BATCH_SIZE = 32;
+    private static final long FLUSH_INTERVAL = 1000;
+
+    private static MediaQosReporter sInstance;
+
+    /** Ring of pending events; a slot is reused once its event is flushed. */
+    private final String[] mActions = new String[CAPACITY];
+    private final Bundle[] mExtras = new Bundle[CAPACITY];
+    private int mHead;
+    private int mCount;
+    private int mDropped;
+    private boolean mFlushScheduled;
+
+    private final Context mContext;
+    private final Handler mHandler;
+    private final boolean mUseService;
+    private final boolean mUseBroadcast;
+    private Messenger mService;
+
+    private final Runnable mFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    private final ServiceConnection mConnection = new ServiceConnection() {
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder service) {
+            synchronized (MediaQosReporter.this) {
+                mService = new Messenger(service);
+            }
+            mHandler.post(mFlushRunnable);
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            synchronized (MediaQosReporter.this) {
+                mService = null;
+            }
+        }
+    };
+
+    private MediaQosReporter(Context context) {
+        mContext = context;
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        mHandler = new Handler(thread.getLooper());
+
+        final Intent service = new Intent(ACTION_QOS_SERVICE);
+        mUseService = context.getPackageManager().resolveService(service, 0) != null
+                && context.bindService(service, mConnection, Context.BIND_AUTO_CREATE);
+        mUseBroadcast = !mUseService || SystemProperties.getBoolean("media.qos.broadcast", false);
+        Log.i(TAG, "QoS events to " + (mUseService ? "stats service" : "")
+                + (mUseService && mUseBroadcast ? " and " : "")
+                + (mUseBroadcast ? "broadcasts" : ""));
+    }
+
+    /**
+     * Queue the event described by {@code event}'s action and extras.  The
+     * extras are copied, so the caller may go on modifying {@code event}.
+     */
+    static void report(Context context, Intent event) {
+        final MediaQosReporter reporter;
+        synchronized (MediaQosReporter.class) {
+            if (sInstance == null) {
+                final Context app = context.getApplicationContext();
+                sInstance = new MediaQosReporter(app != null ? app : context);
+            }
+            reporter = sInstance;
+        }
+        reporter.add(event);
+    }
+
+    private synchronized void add(Intent event) {
+        if (mCount == CAPACITY) {
+            mHead = (mHead + 1) % CAPACITY;
+            mCount--;
+            mDropped++;
+        }
+        final int slot = (mHead + mCount) % CAPACITY;
+        mActions[slot] = event.getAction();
+        mExtras[slot] = event.getExtras();
+        mCount++;
+
+        // A player is often released right after PLAY_QUIT; don't leave the
+        // end of the session waiting for the timer.  Broadcast receivers
+        // don't get batches, so don't delay their events either.
+        if (!mUseService || mCount >= BATCH_SIZE
+                || "PLAY_QUIT".equals(event.getStringExtra("TYPE"))) {
+            mHandler.removeCallbacks(mFlushRunnable);
+            mHandler.post(mFlushRunnable);
+            mFlushScheduled = true;
+        } else if (!mFlushScheduled) {
+            mHandler.postDelayed(mFlushRunnable, FLUSH_INTERVAL);
+            mFlushScheduled = true;
+        }
+    }
+
+    private void flush() {
+        final String[] actions;
+        final Bundle[] extras;
+        final int dropped;
+        final Messenger service;
+        synchronized (this) {
+            mFlushScheduled = false;
+            service = mService;
+            if (mCount == 0 || (mUseService && service == null && !mUseBroadcast)) {
+                // Keep the events until the service is connected.
+                return;
+            }
+            actions = new String[mCount];
+            extras = new Bundle[mCount];
+            for (int i=0; i<mCount; i++) {
+                final int slot = (mHead + i) % CAPACITY;
+                actions[i] = mActions[slot];
+                extras[i] = mExtras[slot];
+                mActions[slot] = null;
+                mExtras[slot] = null;
+            }
+            mHead = 0;
+            mCount = 0;
+            dropped = mDropped;
+            mDropped = 0;
+        }
+        if (dropped > 0) {
+            Log.w(TAG, "Dropped " + dropped + " QoS events");
+        }
+
+        if (service != null) {
+            final ArrayList<Bundle> events = new ArrayList<Bundle>(actions.length);
+            for (int i=0; i<actions.length; i++) {
+                final Bundle b = extras[i] != null ? new Bundle(extras[i]) : new Bundle();
+                b.putString(EXTRA_ACTION, actions[i]);
+                events.add(b);
+            }
+            final Message msg = Message.obtain(null, MSG_QOS_EVENTS);
+            final Bundle data = new Bundle();
+            data.putParcelableArrayList(KEY_EVENTS, events);
+            data.putInt(KEY_DROPPED, dropped);
+            msg.setData(data);
+            try {
+                service.send(msg);
+            } catch (RemoteException e) {
+                Log.w(TAG, "Lost " + actions.length + " QoS events", e);
+            }
+        }
+
+        if (mUseBroadcast) {
+            for (int i=0; i<actions.length; i++) {
+                final Intent intent = new Intent(actions[i]);
+                if (extras[i] != null) {
+                    intent.putExtras(extras[i]);
+                }
+                mContext.sendBroadcast(intent);
+            }
+        }
+    }
+}
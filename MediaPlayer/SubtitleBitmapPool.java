@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.media;
+
+import android.graphics.Bitmap;
+
+/**
+ * Two preallocated bitmaps that a MediaPlayer renders bitmap subtitles
+ * (PGS, DVB, VOB) into, in turn, instead of allocating a new screen-sized
+ * bitmap for every subtitle frame.
+ *
+ * Frame n goes into one buffer while the listener may still be drawing
+ * frame n-1 from the other.  A bitmap handed out with a frame is therefore
+ * only valid until the listener's onSubtitleData() call for the next frame
+ * returns; after that it may be overwritten.  Buffers are only reallocated
+ * when the subtitle size changes.
+ *
+ * Buffers that are dropped, on a size change or on {@link #release}, are
+ * never recycled: every buffer has been handed to a listener, which may
+ * still draw it, so they are left to the garbage collector.
+ *
+ * Usage across all pools in the process is kept for dumpsys meminfo,
+ * which reads it without loading MediaPlayer and its native library.
+ *
+ * @hide
+ */
+public final class SubtitleBitmapPool {
+    private static final Object sStatsLock = new Object();
+    private static int sPools;
+    private static long sBytes;
+    private static long sPeakBytes;
+    private static long sAllocations;
+    private static long sReuses;
+
+    private final Bitmap[] mBuffers = new Bitmap[2];
+    private int mNext;
+    private boolean mCounted;
+
+    /** The buffer to render the next {@code width} x {@code height} frame into. */
+    synchronized Bitmap obtain(int width, int height) {
+        mNext ^= 1;
+        Bitmap bitmap = mBuffers[mNext];
+        if (bitmap != null && bitmap.getWidth() == width && bitmap.getHeight() == height) {
+            synchronized (sStatsLock) {
+                sReuses++;
+            }
+            return bitmap;
+        }
+        free(mNext);
+        bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        mBuffers[mNext] = bitmap;
+        synchronized (sStatsLock) {
+            if (!mCounted) {
+                mCounted = true;
+                sPools++;
+            }
+            sAllocations++;
+            sBytes += bitmap.getByteCount();
+            if (sBytes > sPeakBytes) {
+                sPeakBytes = sBytes;
+            }
+        }
+        return bitmap;
+    }
+
+    /** Drop both buffers; the pool may be used again afterwards. */
+    synchronized void release() {
+        free(0);
+        free(1);
+        synchronized (sStatsLock) {
+            if (mCounted) {
+                mCounted = false;
+                sPools--;
+            }
+        }
+    }
+
+    private void free(int index) {
+        final Bitmap bitmap = mBuffers[index];
+        if (bitmap == null) {
+            return;
+        }
+        mBuffers[index] = null;
+        synchronized (sStatsLock) {
+            sBytes -= bitmap.getByteCount();
+        }
+    }
+
+    /** Summary for dumpsys meminfo, or null if no pool was ever used. */
+    public static String getAllocations() {
+        synchronized (sStatsLock) {
+            if (sAllocations == 0) {
+                return null;
+            }
+            return "   pools: " + sPools + ", live: " + sBytes / 1024 + "K, peak: "
+                    + sPeakBytes / 1024 + "K, allocations: " + sAllocations
+                    + ", reuses: " + sReuses + "\n";
+        }
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.media;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Drives the subtitle service's showSub() for one MediaPlayer.
+ *
+ * This replaces a thread per player that, for the whole of playback, read
+ * the position from the player (or the PCR for DVB subtitles) and called
+ * showSub() every 300ms.  That cost two or three binder calls per tick,
+ * even while paused.
+ *
+ * The position is now read from the player only on a resync, and in
+ * between is extrapolated from the uptime clock, so a tick costs the one
+ * showSub() call.  A resync happens on start, on resume, after a seek,
+ * and every {@link #RESYNC_INTERVAL} to correct drift; until the player
+ * reports that it is actually playing, e.g. while a stream is still
+ * buffering after start(), every tick resyncs.  Ticks are aligned to
+ * {@link #TICK} boundaries of media time, as before.  Whether to tick at
+ * all follows the player's start(), pause() and stop() calls rather than
+ * its native state, and while paused or stopped nothing is scheduled.
+ *
+ * While the player is buffering the media clock stands still, so nothing
+ * is scheduled either, and the position is read again once buffering
+ * ends.  At any speed other than 1x the position is not extrapolated:
+ * every tick reads it from the player, as the old thread did.
+ *
+ * All schedulers share one background thread.
+ */
+final class SubtitleScheduler {
+    private static final String TAG = "SubtitleScheduler";
+
+    /**
+     * The subtitle service only reports which cue is current at a given
+     * position, not when cues start or end, so this is how finely cue
+     * boundaries are followed.
+     */
+    static final int TICK = 300;
+    static final long RESYNC_INTERVAL = 5000;
+
+    interface Host {
+        boolean isPlaying();
+        /** The media time subtitles are timed against, in ms. */
+        int readPosition();
+        /** Show the subtitle for {@code pos}; false if there is no service any more. */
+        boolean showSub(int pos) throws RemoteException;
+        boolean isDebug();
+    }
+
+    private static HandlerThread sThread;
+
+    private final Host mHost;
+    private final Handler mHandler;
+
+    // Only touched on the scheduler thread.
+    private int mAnchorPos;
+    private long mAnchorTime;
+    private boolean mClockRunning;
+
+    // Set by the player; read on the scheduler thread.
+    private volatile boolean mStarted;
+    private volatile boolean mPlaying;
+    private volatile boolean mReset;
+    private volatile boolean mSeeked;
+    private volatile boolean mBuffering;
+    private volatile float mSpeed = 1.0f;
+
+    private final Runnable mResyncRunnable = new Runnable() {
+        @Override
+        public void run() {
+            resync();
+        }
+    };
+
+    private final Runnable mTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            tick();
+        }
+    };
+
+    SubtitleScheduler(Host host) {
+        mHost = host;
+        synchronized (SubtitleScheduler.class) {
+            if (sThread == null) {
+                sThread = new HandlerThread(TAG, Process.THREAD_PRIORITY_DISPLAY);
+                sThread.start();
+            }
+        }
+        mHandler = new Handler(sThread.getLooper());
+    }
+
+    boolean isStarted() {
+        return mStarted;
+    }
+
+    /**
+     * Start showing subtitles.  Playback state is whatever was last passed
+     * to {@link #setPlaying}, which may have been before this.
+     */
+    void start() {
+        mStarted = true;
+        mReset = true;
+        mBuffering = false;
+        postResync();
+    }
+
+    void stop() {
+        mStarted = false;
+        mHandler.removeCallbacks(mResyncRunnable);
+        mHandler.removeCallbacks(mTickRunnable);
+    }
+
+    /** Playback started, resumed, paused or stopped. */
+    void setPlaying(boolean playing) {
+        mPlaying = playing;
+        if (mStarted) {
+            postResync();
+        }
+    }
+
+    /** The player stalled to buffer, or resumed after buffering. */
+    void setBuffering(boolean buffering) {
+        if (mBuffering == buffering) {
+            return;
+        }
+        mBuffering = buffering;
+        if (mStarted) {
+            postResync();
+        }
+    }
+
+    /** The playback speed changed, e.g. for trick play. */
+    void setSpeed(float speed) {
+        mSpeed = speed;
+        if (mStarted) {
+            postResync();
+        }
+    }
+
+    /** The media clock jumped, e.g. after a seek. */
+    void resyncNow() {
+        mSeeked = true;
+        if (mStarted) {
+            postResync();
+        }
+    }
+
+    private void postResync() {
+        mHandler.removeCallbacks(mTickRunnable);
+        mHandler.removeCallbacks(mResyncRunnable);
+        mHandler.post(mResyncRunnable);
+    }
+
+    private void resync() {
+        if (!mStarted) {
+            return;
+        }
+        if (mReset) {
+            mReset = false;
+            mAnchorPos = 0;
+            mClockRunning = false;
+        }
+        final long now = SystemClock.uptimeMillis();
+        // Where the clock had got to; kept as is if the player is not
+        // playing, as its position may not be valid, unless it just seeked.
+        int pos = mAnchorPos;
+        if (mClockRunning) {
+            pos += (int) (now - mAnchorTime);
+        }
+        final boolean seeked = mSeeked;
+        mSeeked = false;
+        mClockRunning = !mBuffering && mHost.isPlaying();
+        if (mClockRunning || seeked) {
+            pos = mHost.readPosition();
+        }
+        mAnchorPos = pos;
+        mAnchorTime = now;
+        show(pos);
+    }
+
+    private void tick() {
+        if (!mStarted) {
+            return;
+        }
+        final long elapsed = SystemClock.uptimeMillis() - mAnchorTime;
+        if (!mClockRunning || elapsed >= RESYNC_INTERVAL || mSpeed != 1.0f) {
+            resync();
+            return;
+        }
+        show(mAnchorPos + (int) elapsed);
+    }
+
+    private void show(int pos) {
+        if (mHost.isDebug()) Log.i(TAG, "showSub:" + pos);
+        try {
+            if (!mHost.showSub(pos)) {
+                mStarted = false;
+                return;
+            }
+        } catch (RemoteException e) {
+            Log.w(TAG, "showSub failed", e);
+            mStarted = false;
+            return;
+        }
+        if (mPlaying && !mBuffering) {
+            mHandler.postDelayed(mTickRunnable,
+                    mSpeed == 1.0f ? TICK - (pos % TICK) : TICK);
+        }
+    }
+}
@@ -18,23 +18,29 @@ package com.android.server.pm;
 
 import android.content.pm.ApplicationInfo;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 class GrantedPermissions {
     int pkgFlags;
 
-    HashSet<String> grantedPermissions = new HashSet<String>();
+    PermissionSet grantedPermissions = new PermissionSet();
 
     int[] gids;
 
+    /**
+     * Distinct gid arrays handed out by {@link #internGids}; nearly all
+     * packages have one of a handful of combinations.  Guarded by mPackages.
+     */
+    private static final ArrayList<int[]> sGids = new ArrayList<int[]>();
+
     GrantedPermissions(int pkgFlags) {
         setFlags(pkgFlags);
     }
 
-    @SuppressWarnings("unchecked")
     GrantedPermissions(GrantedPermissions base) {
         pkgFlags = base.pkgFlags;
-        grantedPermissions = (HashSet<String>) base.grantedPermissions.clone();
+        grantedPermissions = new PermissionSet(base.grantedPermissions);
 
         if (base.gids != null) {
             gids = base.gids.clone();
@@ -48,4 +54,26 @@ class GrantedPermissions {
                         | ApplicationInfo.FLAG_FORWARD_LOCK
                         | ApplicationInfo.FLAG_EXTERNAL_STORAGE);
     }
+
+    /**
+     * An array equal to {@code gids} that may be shared with other packages.
+     * This is safe because gid arrays are always replaced, never modified.
+     */
+    static int[] internGids(int[] gids) {
+        if (gids == null) {
+            return null;
+        }
+        for (int i=0; i<sGids.size(); i++) {
+            if (Arrays.equals(sGids.get(i), gids)) {
+                return sGids.get(i);
+            }
+        }
+        sGids.add(gids);
+        return gids;
+    }
+
+    /** Number of distinct arrays returned by {@link #internGids}. */
+    static int getInternedGidsCount() {
+        return sGids.size();
+    }
 }
@@ -109,6 +109,7 @@ import android.os.Message;
 import android.os.Parcel;
 import android.os.ParcelFileDescriptor;
 import android.os.Process;
+import android.os.ProvinceProfile;
 import android.os.RemoteException;
 import android.os.SELinux;
 import android.os.ServiceManager;
@@ -158,6 +159,7 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -186,8 +188,11 @@ adb shell am instrument -w -e class com.android.unit_tests.PackageManagerTests c
  */
 public class PackageManagerService extends IPackageManager.Stub {
     static final String TAG = "PackageManager";
-    //begin:add by zhanghk at 20181125:add jiangsu laterscan content
-    static final String specialApkNameList[] = {
+    /**
+     * Packages whose scan the CM201_jiangsu build defers until after boot,
+     * unless ro.pm.deferred_scan names others.  See {@link #mDeferredScanPackages}.
+     */
+    static final String[] JIANGSU_DEFERRED_SCAN_PACKAGES = {
             "cn.com.sina.sports",
             "com.qiyi.video",
             "com.letv.android.client",
@@ -200,7 +205,6 @@ public class PackageManagerService extends IPackageManager.Stub {
             "cn.com.fetion",
             "com.sds.android.ttpod.vip"
     };
-    //end:add by zhanghk at 20181125:add jiangsu laterscan content   
     private int hasSignatureMD5Check = 0;
     private static final String mSignatureMD5 = "FDEA780930F857BC89191A7D2F6134FC";
     static final boolean DEBUG_SETTINGS = false;
@@ -222,7 +226,7 @@ public class PackageManagerService extends IPackageManager.Stub {
     private static final int BLUETOOTH_UID = Process.BLUETOOTH_UID;
     private static final int SHELL_UID = Process.SHELL_UID;
 
-    private static final boolean GET_CERTIFICATES = true;
+    static final boolean GET_CERTIFICATES = true;
 
     private static final int REMOVE_EVENTS =
         FileObserver.CLOSE_WRITE | FileObserver.DELETE | FileObserver.MOVED_FROM;
@@ -305,6 +309,8 @@ public class PackageManagerService extends IPackageManager.Stub {
     final DisplayMetrics mMetrics;
     final int mDefParseFlags;
     final String[] mSeparateProcesses;
+    final PackageParserCache mPackageParserCache;
+    final ParallelPackageParser mParallelPackageParser;
     private String installapkpath;
 
     // This is where all application persistent data goes.
@@ -327,8 +333,6 @@ public class PackageManagerService extends IPackageManager.Stub {
 
     // This is the object monitoring the system app dir.
     final FileObserver mVendorInstallObserver;
-    //add by zhanghk at 20181125:add jiangsu laterscan content
-    int scanMode = SCAN_MONITOR | SCAN_NO_PATHS | SCAN_DEFER_DEX | SCAN_BOOTING;
     // This is the object monitoring the ctc app dir.
     final FileObserver mCtcInstallObserver;
 
@@ -346,8 +350,32 @@ public class PackageManagerService extends IPackageManager.Stub {
     final File mAppInstallDir;
     private File mAppInstallCtcDir;
     static boolean isTelecomSign = false;
-    //add by zhanghk at 20181125:add jiangsu laterscan content
-    private Boolean mDataScaned = false;
+
+    /**
+     * Packages in mAppInstallDir that are not scanned at boot but once
+     * BOOT_COMPLETED has been sent, on a background priority thread, so that
+     * large third-party apps do not hold up the boot.  They are then
+     * announced with ACTION_PACKAGE_ADDED and sent their own BOOT_COMPLETED.
+     * Configured with the comma separated ro.pm.deferred_scan; empty if no
+     * scan is deferred.
+     */
+    final HashSet<String> mDeferredScanPackages = new HashSet<String>();
+
+    /** APKs set aside by the boot scan; null once they have been scanned. */
+    ArrayList<File> mDeferredScanFiles;
+
+    /** Updated system apps among mDeferredScanPackages whose update may be gone. */
+    final ArrayList<String> mDeferredDeletedUpdatedSystemApps = new ArrayList<String>();
+
+    /** Whether the boot scan regranted permissions, so the deferred scan must too. */
+    boolean mDeferredScanRegrantPermissions;
+
+    /**
+     * Packages that getInstalledPackages() leaves out on this build, so that
+     * operator launchers do not list the platform's own media and bluetooth
+     * apps.  Fixed at boot.
+     */
+    final HashSet<String> mHiddenInstalledPackages = new HashSet<String>();
 
     /**
      * Directory to which applications installed internally have native
@@ -388,6 +416,9 @@ public class PackageManagerService extends IPackageManager.Stub {
     final Settings mSettings;
     boolean mRestoredSettings;
 
+    // True if this is the first boot of a new build.
+    boolean mBuildChanged;
+
     // Group-ids that are given to all packages as read from etc/permissions/*.xml.
     int[] mGlobalGids;
 
@@ -426,6 +457,17 @@ public class PackageManagerService extends IPackageManager.Stub {
     final ActivityIntentResolver mActivities =
             new ActivityIntentResolver();
 
+    /**
+     * Results of queryIntentReceivers(), keyed by receiverQueryCacheKey().
+     * Cleared when a receiver is added or removed, and when the per-user
+     * package state they depend on changes; see
+     * {@link PackageSettingBase#sUserStateGeneration}.
+     */
+    final HashMap<String, List<ResolveInfo>> mReceiverQueryCache =
+            new HashMap<String, List<ResolveInfo>>();
+    int mReceiverQueryCacheGeneration;
+    static final int MAX_RECEIVER_QUERY_CACHE = 64;
+
     // All available receivers, for your resolving pleasure.
     final ActivityIntentResolver mReceivers =
             new ActivityIntentResolver();
@@ -455,11 +497,6 @@ public class PackageManagerService extends IPackageManager.Stub {
     
     // Broadcast actions that are only available to the system.
     final HashSet<String> mProtectedBroadcasts = new HashSet<String>();
-    //begin:add by zhanghk at 20181125:add jiangsu laterscan content
-    private List<String> mDataDirApkName = new ArrayList<String>();
-    static final int DATA_APP_SCAN_END2= 102;
-    static final int DATA_APP_SCAN_START2= 103;
-    //end:add by zhanghk at 20181125:add jiangsu laterscan content
 
     /** List of packages waiting for verification. */
     final SparseArray<PackageVerificationState> mPendingVerification
@@ -467,6 +504,23 @@ public class PackageManagerService extends IPackageManager.Stub {
 
     HashSet<PackageParser.Package> mDeferredDexOpt = null;
 
+    /**
+     * Packages whose dexopt performBootDexOpt() left until after boot; null
+     * once they are done.  One of them that is started before then is
+     * optimized on demand through performDexOpt().  Kept in boot scan order.
+     */
+    LinkedHashSet<PackageParser.Package> mPostBootDexOpt = null;
+
+    /** Packages that performBootDexOpt() always optimizes before boot completes. */
+    static final String[] BOOT_DEXOPT_PACKAGES = {
+            "com.android.iptvauth",
+            "com.ysten.auth",
+            "com.cmcc.loginauth"
+    };
+
+    /** How long after BOOT_COMPLETED to start on mPostBootDexOpt. */
+    static final int POST_BOOT_DEXOPT_DELAY = 60 * 1000;
+
     /** Token for keys in mPendingVerification. */
     private int mPendingVerificationToken = 0;
 
@@ -652,8 +706,6 @@ public class PackageManagerService extends IPackageManager.Stub {
     };
     final SparseArray<PostInstallData> mRunningInstalls = new SparseArray<PostInstallData>();
     int mNextInstallToken = 1;  // nonzero; will be wrapped back to 1 when ++ overflows
-    //add by zhanghk at 20181125:add jiangsu laterscan content
-    final List<String> possiblyDeletedUpdatedSystemApps = new ArrayList<String>();
     private final String mRequiredVerifierPackage;
     class PackageHandler extends Handler {
         private boolean mBound = false;
@@ -895,6 +947,9 @@ public class PackageManagerService extends IPackageManager.Stub {
                         PackageInstalledInfo res = data.res;
 
                         if (res.returnCode == PackageManager.INSTALL_SUCCEEDED) {
+                            // Receivers and run-as/sdcard expect the new
+                            // package in packages.xml and packages.list.
+                            mSettings.flushWrites();
                             res.removedInfo.sendBroadcast(false, true, false);
                             Bundle extras = new Bundle(1);
                             extras.putInt(Intent.EXTRA_UID, res.uid);
@@ -1112,29 +1167,6 @@ public class PackageManagerService extends IPackageManager.Stub {
 
                     break;
                 }
-                //begin:add by zhanghk at 20181125:add jiangsu laterscan content
-			    case DATA_APP_SCAN_START2:{
-                     Slog.i(TAG,"get DATA_APP_SCAN_START2 msg=0001");
-                     boolean onlycore = (Boolean)msg.obj;
-                     DataScanThear2 data = new DataScanThear2(onlycore);
-                     data.start();
-                     break;
-                }
-				case DATA_APP_SCAN_END2:{
-                     Slog.i(TAG,"get DATA_APP_SCAN_END2 msg 00005 write and send get ret");
-                     long datamsg = SystemClock.uptimeMillis();
-                     updateAllSharedLibrariesLPw();
-                     boolean regrantPermissions = mSettings.mInternalSdkPlatform != mSdkVersion;
-                     updatePermissionsLPw(null, null, UPDATE_PERMISSIONS_ALL| (regrantPermissions? (UPDATE_PERMISSIONS_REPLACE_PKG|UPDATE_PERMISSIONS_REPLACE_ALL) : 0));
-                     mSettings.writeLPr();
-                     //sendLaterLauncherFresh();
-                     sendLaterBootBroad();
-                     //saveLauncherName();
-                     //clearLimitApplication();
-                     Slog.i(TAG,"get DATA_APP_SCAN_END2 msg over="+((SystemClock.uptimeMillis()-datamsg)/1000f)+"seconds");
-                     break;
-                }
-                //end:add by zhanghk at 20181125:add jiangsu laterscan content
             }
         }
     }
@@ -1183,6 +1215,38 @@ public class PackageManagerService extends IPackageManager.Stub {
         return res;
     }
 
+    private void readDeferredScanPackages() {
+        String packages = SystemProperties.get("ro.pm.deferred_scan");
+        if (!TextUtils.isEmpty(packages)) {
+            for (String name : packages.split(",")) {
+                name = name.trim();
+                if (name.length() > 0) {
+                    mDeferredScanPackages.add(name);
+                }
+            }
+        } else if (ProvinceProfile.get().nameEquals("CM201_jiangsu")
+                && !SystemProperties.getBoolean("ro.laterscan.enable", false)) {
+            mDeferredScanPackages.addAll(Arrays.asList(JIANGSU_DEFERRED_SCAN_PACKAGES));
+        }
+    }
+
+    private void readHiddenInstalledPackages() {
+        final ProvinceProfile province = ProvinceProfile.get();
+        // add by ysten xumiao at 20190327:gansu sync jidi
+        if (province.has(ProvinceProfile.FLAG_JIDI) || province.is(ProvinceProfile.Region.GANSU)) {
+            mHiddenInstalledPackages.add("com.amlogic.VideoPlayer");
+            mHiddenInstalledPackages.add("com.droidapp.mediaserver");
+            mHiddenInstalledPackages.add("com.amlogic.bluetooth");
+        }
+        //add by ysten.huanghongyan 2018.12.21 for CM201_henan
+        if (province.nameContains("CM201_henan")) {
+            mHiddenInstalledPackages.add("com.amlogic.mediacenter");
+            mHiddenInstalledPackages.add("com.droidapp.mediaserver");
+            mHiddenInstalledPackages.add("com.amlogic.bluetooth");
+            mHiddenInstalledPackages.add("com.amlogic.miracast");
+        }
+    }
+
     public PackageManagerService(Context context, Installer installer,
             boolean factoryTest, boolean onlyCore) {
         EventLog.writeEvent(EventLogTags.BOOT_PROGRESS_PMS_START,
@@ -1196,6 +1260,10 @@ public class PackageManagerService extends IPackageManager.Stub {
         mFactoryTest = factoryTest;
         mOnlyCore = onlyCore;
         mNoDexOpt = "eng".equals(SystemProperties.get("ro.build.type"));
+        if (!onlyCore) {
+            readDeferredScanPackages();
+        }
+        readHiddenInstalledPackages();
         mMetrics = new DisplayMetrics();
         mSettings = new Settings(context);
         mSettings.addSharedUserLPw("android.uid.system", Process.SYSTEM_UID,
@@ -1233,6 +1301,13 @@ public class PackageManagerService extends IPackageManager.Stub {
         WindowManager wm = (WindowManager)context.getSystemService(Context.WINDOW_SERVICE);
         Display d = wm.getDefaultDisplay();
         d.getMetrics(mMetrics);
+        // The cache is only valid for a normal parse: skip it when parsing
+        // core apps only or with debug process separation.
+        mPackageParserCache = (mOnlyCore || mSeparateProcesses != null) ? null
+                : new PackageParserCache(new File(Environment.getDataDirectory(),
+                        "system/package_cache"));
+        mParallelPackageParser = new ParallelPackageParser(mSeparateProcesses, mOnlyCore, mMetrics,
+                mPackageParserCache);
 
         synchronized (mInstallLock) {
         // writer
@@ -1267,6 +1342,15 @@ public class PackageManagerService extends IPackageManager.Stub {
             mRestoredSettings = mSettings.readLPw(this, sUserManager.getUsers(false),
                     mSdkVersion, mOnlyCore);
 
+            // After a system update every package's certificates are
+            // verified again instead of being taken from the settings.
+            mBuildChanged = !Build.FINGERPRINT.equals(mSettings.mFingerprint);
+            if (mBuildChanged) {
+                Slog.i(TAG, "Build changed from " + mSettings.mFingerprint
+                        + "; verifying all package certificates");
+            }
+            mSettings.mFingerprint = Build.FINGERPRINT;
+
             String customResolverActivity = Resources.getSystem().getString(
                     R.string.config_customResolverActivity);
             if (TextUtils.isEmpty(customResolverActivity)) {
@@ -1283,11 +1367,7 @@ public class PackageManagerService extends IPackageManager.Stub {
 
             // Set flag to monitor and not change apk file paths when
             // scanning install directories.
-            //begin:add by zhanghk at 20181125:add jiangsu laterscan content
-            if(!"CM201_jiangsu".equals(SystemProperties.get("ro.ysten.province"))){
-                int scanMode = SCAN_MONITOR | SCAN_NO_PATHS | SCAN_DEFER_DEX | SCAN_BOOTING;
-            }
-            //end:add by zhanghk at 20181125:add jiangsu laterscan content
+            int scanMode = SCAN_MONITOR | SCAN_NO_PATHS | SCAN_DEFER_DEX | SCAN_BOOTING;
             if (mNoDexOpt) {
                 Slog.w(TAG, "Running ENG build: no pre-dexopt!");
                 scanMode |= SCAN_NO_DEX;
@@ -1461,11 +1541,7 @@ public class PackageManagerService extends IPackageManager.Stub {
             mInstaller.moveFiles();
 
             // Prune any system packages that no longer exist.
-            //begin:add by zhanghk at 20181125:add jiangsu laterscan content
-            if(!"CM201_jiangsu".equals(SystemProperties.get("ro.ysten.province"))){
-                final List<String> possiblyDeletedUpdatedSystemApps = new ArrayList<String>();
-            }
-            //end:add by zhanghk at 20181125:add jiangsu laterscan content
+            final List<String> possiblyDeletedUpdatedSystemApps = new ArrayList<String>();
             if (!mOnlyCore) {
                 Iterator<PackageSetting> psit = mSettings.mPackages.values().iterator();
                 while (psit.hasNext()) {
@@ -1509,7 +1585,12 @@ public class PackageManagerService extends IPackageManager.Stub {
                     } else {
                         final PackageSetting disabledPs = mSettings.getDisabledSystemPkgLPr(ps.name);
                         if (disabledPs.codePath == null || !disabledPs.codePath.exists()) {
-                            possiblyDeletedUpdatedSystemApps.add(ps.name);
+                            if (mDeferredScanPackages.contains(ps.name)) {
+                                // Its update may be among the deferred APKs.
+                                mDeferredDeletedUpdatedSystemApps.add(ps.name);
+                            } else {
+                                possiblyDeletedUpdatedSystemApps.add(ps.name);
+                            }
                         }
                     }
                 }
@@ -1534,14 +1615,15 @@ public class PackageManagerService extends IPackageManager.Stub {
                 mAppInstallObserver = new AppDirObserver(
                     mAppInstallDir.getPath(), OBSERVER_EVENTS, false, false);
                 mAppInstallObserver.startWatching();
-                //begin:add by zhanghk at 20181125:add jiangsu laterscan content
-                if("CM201_jiangsu".equals(SystemProperties.get("ro.ysten.province"))){
-                    scanDirLI_ExceptTenApk(mAppInstallDir, 0, scanMode, 0);
-                }else{
+                if (mDeferredScanPackages.isEmpty()) {
                     scanDirLI(mAppInstallDir, 0, scanMode, 0);
+                } else {
+                    mDeferredScanFiles = new ArrayList<File>();
+                    scanDirLI(mAppInstallDir, 0, scanMode, 0, mDeferredScanFiles);
+                    Slog.i(TAG, "Deferring scan of " + mDeferredScanFiles.size()
+                            + " packages until boot completes");
                 }
-                //end:add by zhanghk at 20181125:add jiangsu laterscan content
-    
+
                 mDrmAppInstallObserver = new AppDirObserver(
                     mDrmAppPrivateInstallDir.getPath(), OBSERVER_EVENTS, false, false);
                 mDrmAppInstallObserver.startWatching();
@@ -1554,27 +1636,7 @@ public class PackageManagerService extends IPackageManager.Stub {
                  * previously-updated app, remove them completely.
                  * Otherwise, just revoke their system-level permissions.
                  */
-                for (String deletedAppName : possiblyDeletedUpdatedSystemApps) {
-                    PackageParser.Package deletedPkg = mPackages.get(deletedAppName);
-                    mSettings.removeDisabledSystemPackageLPw(deletedAppName);
-
-                    String msg;
-                    if (deletedPkg == null) {
-                        msg = "Updated system package " + deletedAppName
-                                + " no longer exists; wiping its data";
-                        removeDataDirsLI(deletedAppName);
-                    } else {
-                        msg = "Updated system app + " + deletedAppName
-                                + " no longer present; removing system privileges for "
-                                + deletedAppName;
-
-                        deletedPkg.applicationInfo.flags &= ~ApplicationInfo.FLAG_SYSTEM;
-
-                        PackageSetting deletedPs = mSettings.mPackages.get(deletedAppName);
-                        deletedPs.pkgFlags &= ~ApplicationInfo.FLAG_SYSTEM;
-                    }
-                    reportSettingsProblem(Log.WARN, msg);
-                }
+                removeDeletedUpdatedSystemAppsLI(possiblyDeletedUpdatedSystemApps);
             } else {
                 mAppInstallObserver = null;
                 mDrmAppInstallObserver = null;
@@ -1584,6 +1646,12 @@ public class PackageManagerService extends IPackageManager.Stub {
             // the correct library paths.
             updateAllSharedLibrariesLPw();
 
+            // With a deferred scan pending, the entries of the deferred
+            // APKs have not been used yet; prune once that scan is done.
+            if (mPackageParserCache != null && mDeferredScanFiles == null) {
+                mPackageParserCache.prune();
+            }
+
             EventLog.writeEvent(EventLogTags.BOOT_PROGRESS_PMS_SCAN_END,
                     SystemClock.uptimeMillis());
             Slog.i(TAG, "Time to scan packages: "
@@ -1602,6 +1670,7 @@ public class PackageManagerService extends IPackageManager.Stub {
                     + mSettings.mInternalSdkPlatform + " to " + mSdkVersion
                     + "; regranting permissions for internal storage");
             mSettings.mInternalSdkPlatform = mSdkVersion;
+            mDeferredScanRegrantPermissions = regrantPermissions;
             
             updatePermissionsLPw(null, null, UPDATE_PERMISSIONS_ALL
                     | (regrantPermissions
@@ -3343,26 +3412,6 @@ public class PackageManagerService extends IPackageManager.Stub {
     @Override
     public List<ResolveInfo> queryIntentReceivers(Intent intent, String resolvedType, int flags,
             int userId) {
-            //begin:add by zhanghk at 20181125:add jiangsu laterscan content
-            if("CM201_jiangsu".equals(SystemProperties.get("ro.ysten.province"))){
-                String action = intent.getAction();
-		        if(SystemProperties.get("ro.laterscan.enable","false").equals("false") && Intent.ACTION_BOOT_COMPLETED.equals(action)&&!mDataScaned){
-                    Slog.i(TAG,"get CTION_BOOT_COMPLETED to later scan");
-                    mDataScaned = true;
-			        Message datamsg2 = mHandler.obtainMessage(DATA_APP_SCAN_START2);
-			        datamsg2.obj = mOnlyCore;
-			        int startscan2 = SystemProperties.getInt("persist.sys.yst.startscan2",3000);
-			        String isPppoeConn = SystemProperties.get("init.svc.pppoe_conn_eth0","stopped");
-			        if(isPppoeConn.equals("running"))
-			        {
-				        Slog.i(TAG,"pppoe is running");
-				        startscan2 = SystemProperties.getInt("persist.sys.yst.startscan2pppoe",5000);
-			        }
-			        Slog.i(TAG,"startscan2 = " + startscan2);
-			        mHandler.sendMessageDelayed(datamsg2,startscan2);
-                }
-             }
-            //end:add by zhanghk at 20181125:add jiangsu laterscan content
         if (!sUserManager.exists(userId)) return Collections.emptyList();
         ComponentName comp = intent.getComponent();
         if (comp == null) {
@@ -3386,7 +3435,11 @@ public class PackageManagerService extends IPackageManager.Stub {
         synchronized (mPackages) {
             String pkgName = intent.getPackage();
             if (pkgName == null) {
-                return mReceivers.queryIntent(intent, resolvedType, flags, userId);
+                final String key = receiverQueryCacheKey(intent, resolvedType, flags, userId);
+                if (key == null) {
+                    return mReceivers.queryIntent(intent, resolvedType, flags, userId);
+                }
+                return queryIntentReceiversCachedLPr(key, intent, resolvedType, flags, userId);
             }
             final PackageParser.Package pkg = mPackages.get(pkgName);
             if (pkg != null) {
@@ -3397,6 +3450,51 @@ public class PackageManagerService extends IPackageManager.Stub {
         }
     }
 
+    /**
+     * The key under which the receivers of {@code intent} are cached, or
+     * null if they are not.  Only intents that are just an action, perhaps
+     * with a MIME type, are cached: that covers the broadcasts the system
+     * sends most, such as BOOT_COMPLETED and CONNECTIVITY_CHANGE, and keeps
+     * the number of entries bounded.
+     */
+    private static String receiverQueryCacheKey(Intent intent, String resolvedType, int flags,
+            int userId) {
+        final String action = intent.getAction();
+        if (action == null || intent.getData() != null || intent.getCategories() != null
+                || (intent.getFlags()&Intent.FLAG_DEBUG_LOG_RESOLUTION) != 0) {
+            return null;
+        }
+        return action + '/' + resolvedType + '/' + Integer.toHexString(flags) + '/' + userId
+                + (intent.isExcludingStopped() ? "/x" : "");
+    }
+
+    private List<ResolveInfo> queryIntentReceiversCachedLPr(String key, Intent intent,
+            String resolvedType, int flags, int userId) {
+        if (mReceiverQueryCacheGeneration != PackageSettingBase.sUserStateGeneration) {
+            mReceiverQueryCache.clear();
+            mReceiverQueryCacheGeneration = PackageSettingBase.sUserStateGeneration;
+        }
+        List<ResolveInfo> cached = mReceiverQueryCache.get(key);
+        if (cached == null) {
+            cached = mReceivers.queryIntent(intent, resolvedType, flags, userId);
+            if (cached == null) {
+                return null;
+            }
+            if (mReceiverQueryCache.size() >= MAX_RECEIVER_QUERY_CACHE) {
+                mReceiverQueryCache.clear();
+            }
+            mReceiverQueryCache.put(key, cached);
+        }
+        // Callers in the activity manager modify both the list and the
+        // ResolveInfos in it, so each gets its own shallow copies.
+        final int N = cached.size();
+        final ArrayList<ResolveInfo> list = new ArrayList<ResolveInfo>(N);
+        for (int i=0; i<N; i++) {
+            list.add(new ResolveInfo(cached.get(i)));
+        }
+        return list;
+    }
+
     @Override
     public ResolveInfo resolveService(Intent intent, String resolvedType, int flags, int userId) {
         List<ResolveInfo> query = queryIntentServices(intent, resolvedType, flags, userId);
@@ -3510,24 +3608,10 @@ public class PackageManagerService extends IPackageManager.Stub {
             } else {
                 list = new ArrayList<PackageInfo>(mPackages.size());
                 for (PackageParser.Package p : mPackages.values()) {
-                    PackageInfo pi = generatePackageInfo(p, flags, userId);
-if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") || 
-    SystemProperties.get("ro.ysten.province","master").contains("jidi") ||
-    SystemProperties.get("ro.ysten.province","master").contains("gansu")){// add by ysten xumiao at 20190327:gansu sync jidi
-		    if(pi != null && (pi.packageName.equals("com.amlogic.VideoPlayer") || pi.packageName.equals("com.droidapp.mediaserver")
-					    || pi.packageName.equals("com.amlogic.bluetooth")))
-			    continue;
-}
-            //add by ysten.huanghongyan 2018.12.21 for CM201_henan
-            if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
-                if(pi != null &&(pi.packageName.equals("com.amlogic.mediacenter") || 
-                        pi.packageName.equals("com.droidapp.mediaserver") || 
-                        pi.packageName.equals("com.amlogic.bluetooth") || 
-                        pi.packageName.equals("com.amlogic.mediacenter") || 
-                        pi.packageName.equals("com.amlogic.miracast")))
+                    if (mHiddenInstalledPackages.contains(p.packageName)) {
                         continue;
-            }
-            //end by ysten.huanghongyan 2018.12.21 for CM201_henan
+                    }
+                    PackageInfo pi = generatePackageInfo(p, flags, userId);
                     if (pi != null) {
                         list.add(pi);
                     }
@@ -3789,6 +3873,15 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
     }
 
     private void scanDirLI(File dir, int flags, int scanMode, long currentTime) {
+        scanDirLI(dir, flags, scanMode, currentTime, null);
+    }
+
+    /**
+     * Scan the APKs in {@code dir}.  If {@code deferred} is not null, those
+     * of {@link #mDeferredScanPackages} are added to it instead of scanned.
+     */
+    private void scanDirLI(File dir, int flags, int scanMode, long currentTime,
+            List<File> deferred) {
         String[] files = dir.list();
         if (files == null) {
             Log.d(TAG, "No files in app dir " + dir);
@@ -3800,59 +3893,84 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
                     + " flags=0x" + Integer.toHexString(flags));
         }
 
-        int i;
-        for (i=0; i<files.length; i++) {
-            File file = new File(dir, files[i]);
+        ArrayList<File> apks = new ArrayList<File>(files.length);
+        for (int i=0; i<files.length; i++) {
             if (!isPackageFilename(files[i])) {
                 // Ignore entries which are not apk's
                 continue;
             }
-            PackageParser.Package pkg = scanPackageLI(file,
-                    flags|PackageParser.PARSE_MUST_BE_APK, scanMode, currentTime, null);
-            // Don't mess around with apps in system partition.
-            if (pkg == null && (flags & PackageParser.PARSE_IS_SYSTEM) == 0 &&
-                    mLastScanError == PackageManager.INSTALL_FAILED_INVALID_APK) {
-                // Delete the apk
-                Slog.w(TAG, "Cleaning up failed install of " + file);
-                file.delete();
+            if (deferred != null && isDeferredScanFile(files[i])) {
+                deferred.add(new File(dir, files[i]));
+                continue;
             }
+            apks.add(new File(dir, files[i]));
         }
+        scanFilesLI(dir, apks, flags, scanMode, currentTime, null);
     }
-	
-	private void scanDirLI_ExceptTenApk(File dir, int flags, int scanMode, long currentTime) {
-        String[] files = dir.list();
-        if (files == null) {
-            Log.d(TAG, "No files in app dir " + dir);
-            return;
+
+    /**
+     * Whether {@code fileName} is the APK of one of {@link #mDeferredScanPackages}
+     * as named by the installer, i.e. "<package>.apk" or "<package>-<n>.apk".
+     */
+    private boolean isDeferredScanFile(String fileName) {
+        int end = fileName.lastIndexOf('-');
+        if (end < 0) {
+            end = fileName.length() - ".apk".length();
         }
+        return end > 0 && mDeferredScanPackages.contains(fileName.substring(0, end));
+    }
 
-        if (DEBUG_PACKAGE_SCANNING) {
-            Log.d(TAG, "Scanning app dir " + dir + " scanMode=" + scanMode
-                    + " flags=0x" + Integer.toHexString(flags));
+    /**
+     * Scan the APKs {@code files} of {@code dir}: parse them in parallel,
+     * then commit them one at a time, in order, on this thread.  Packages
+     * that were scanned successfully are added to {@code scanned} if it is
+     * not null.
+     */
+    private void scanFilesLI(File dir, List<File> files, int flags, int scanMode,
+            long currentTime, List<PackageParser.Package> scanned) {
+        final long startTime = SystemClock.uptimeMillis();
+        final int parseFlags = flags | PackageParser.PARSE_MUST_BE_APK | mDefParseFlags;
+
+        // Signatures recorded for an unchanged file are reused when it is
+        // committed, so only collect certificates for the others up front.
+        // Only the settings of files in this directory are checked, as that
+        // means a stat of each.
+        final HashSet<File> certsCached = new HashSet<File>();
+        synchronized (mPackages) {
+            final HashMap<File, PackageSetting> settingsByPath =
+                    new HashMap<File, PackageSetting>();
+            for (PackageSetting ps : mSettings.mPackages.values()) {
+                if (ps.codePath != null) {
+                    settingsByPath.put(ps.codePath, ps);
+                }
+            }
+            for (int i=0; i<files.size(); i++) {
+                final File file = files.get(i);
+                final PackageSetting ps = settingsByPath.get(file);
+                if (ps != null && canReuseSignaturesLPr(ps, file)) {
+                    certsCached.add(file);
+                }
+            }
         }
 
-        int i;
-		int j;
-        for (i=0; i<files.length; i++) {
-            File file = new File(dir, files[i]);
-            if (!isPackageFilename(files[i])) {
-                // Ignore entries which are not apk's
-                continue;
+        final List<ParallelPackageParser.ParseResult> results =
+                mParallelPackageParser.parse(files, parseFlags, certsCached);
+        final long parseTime = SystemClock.uptimeMillis();
+
+        for (int i=0; i<files.size(); i++) {
+            final File file = files.get(i);
+            final ParallelPackageParser.ParseResult res = results.get(i);
+            PackageParser.Package pkg;
+            if (res != null) {
+                pkg = scanParsedPackageLI(file, res.parser, res.pkg, parseFlags, scanMode,
+                        currentTime, null);
+            } else {
+                pkg = scanPackageLI(file, flags|PackageParser.PARSE_MUST_BE_APK, scanMode,
+                        currentTime, null);
+            }
+            if (pkg != null && scanned != null) {
+                scanned.add(pkg);
             }
-			for(j=0;j<specialApkNameList.length;j++){
-				String a = specialApkNameList[j];
-				if(files[i].contains(a)){
-					Log.d(TAG,"scanDirLI_ExceptTenApk find specialApk ="+specialApkNameList[j]);
-					break;
-				}
-			}
-			if(j != specialApkNameList.length)
-			{
-				Log.d(TAG,"scanDirLI_ExceptTenApk find specialApk 2");
-				continue;
-			}
-            PackageParser.Package pkg = scanPackageLI(file,
-                    flags|PackageParser.PARSE_MUST_BE_APK, scanMode, currentTime, null);
             // Don't mess around with apps in system partition.
             if (pkg == null && (flags & PackageParser.PARSE_IS_SYSTEM) == 0 &&
                     mLastScanError == PackageManager.INSTALL_FAILED_INVALID_APK) {
@@ -3861,42 +3979,34 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
                 file.delete();
             }
         }
+
+        final long endTime = SystemClock.uptimeMillis();
+        Slog.i(TAG, "Scanned " + files.size() + " packages in " + dir + ": parse "
+                + (parseTime - startTime) + "ms, commit " + (endTime - parseTime) + "ms");
     }
-	
-	private void scanDirLIForData_TenApk(File dir, int flags, int scanMode, long currentTime) {
-        String[] files = dir.list();
-        if (files == null) {
-            Log.d(TAG, "No files in app dir " + dir);
-            return;
-        }
-        if (DEBUG_PACKAGE_SCANNING) {
-            Log.d(TAG, "Scanning app dir " + dir + " scanMode=" + scanMode
-                    + " flags=0x" + Integer.toHexString(flags));
-        }
-		int j;
-        for (int i=0; i<files.length; i++) {
-            File file = new File(dir, files[i]);
-            if (!isPackageFilename(files[i])) {
-                continue;
+
+    /** See the constructor; also run for the updated system apps of a deferred scan. */
+    private void removeDeletedUpdatedSystemAppsLI(List<String> possiblyDeleted) {
+        for (String deletedAppName : possiblyDeleted) {
+            PackageParser.Package deletedPkg = mPackages.get(deletedAppName);
+            mSettings.removeDisabledSystemPackageLPw(deletedAppName);
+
+            String msg;
+            if (deletedPkg == null) {
+                msg = "Updated system package " + deletedAppName
+                        + " no longer exists; wiping its data";
+                removeDataDirsLI(deletedAppName);
+            } else {
+                msg = "Updated system app + " + deletedAppName
+                        + " no longer present; removing system privileges for "
+                        + deletedAppName;
+
+                deletedPkg.applicationInfo.flags &= ~ApplicationInfo.FLAG_SYSTEM;
+
+                PackageSetting deletedPs = mSettings.mPackages.get(deletedAppName);
+                deletedPs.pkgFlags &= ~ApplicationInfo.FLAG_SYSTEM;
             }
-			for(j=0;j<specialApkNameList.length;j++){
-				String a = specialApkNameList[j];
-				if(files[i].contains(a)){
-					Log.d(TAG,"scanDirLIForData find specialApk ="+specialApkNameList[j]);
-					
-					PackageParser.Package pkg = scanPackageLI(file,
-							flags|PackageParser.PARSE_MUST_BE_APK, scanMode, currentTime, null);
-					if(pkg!=null){
-						mDataDirApkName.add(pkg.packageName);
-					}
-					if (pkg == null && (flags & PackageParser.PARSE_IS_SYSTEM) == 0 &&
-							mLastScanError == PackageManager.INSTALL_FAILED_INVALID_APK) {
-						Slog.w(TAG, "Cleaning up failed install of " + file);
-						file.delete();
-					}
-				}
-			}
-            
+            reportSettingsProblem(Log.WARN, msg);
         }
     }
 
@@ -3925,26 +4035,46 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
         Slog.println(priority, TAG, msg);
     }
 
+    /**
+     * Whether the signatures recorded in {@code ps} can be used for
+     * {@code srcFile} without reading the archive: it must be the same file,
+     * with the same size and modification time as when they were collected,
+     * and the build must not have changed since.
+     */
+    private boolean canReuseSignaturesLPr(PackageSetting ps, File srcFile) {
+        return !mBuildChanged
+                && ps.codePath.equals(srcFile)
+                && ps.timeStamp == srcFile.lastModified()
+                && ps.codeSize == srcFile.length()
+                && ps.signatures.mSignatures != null
+                && ps.signatures.mSignatures.length != 0;
+    }
+
     private boolean collectCertificatesLI(PackageParser pp, PackageSetting ps,
             PackageParser.Package pkg, File srcFile, int parseFlags) {
         if (GET_CERTIFICATES) {
-            if (ps != null
-                    && ps.codePath.equals(srcFile)
+            if (ps != null && canReuseSignaturesLPr(ps, srcFile)) {
+                // Optimization: reuse the existing cached certificates
+                // if the package appears to be unchanged.
+                pkg.mSignatures = ps.signatures.mSignatures;
+                return true;
+            } else if (ps != null && ps.codePath.equals(srcFile)
                     && ps.timeStamp == srcFile.lastModified()) {
-                if (ps.signatures.mSignatures != null
-                        && ps.signatures.mSignatures.length != 0) {
-                    // Optimization: reuse the existing cached certificates
-                    // if the package appears to be unchanged.
-                    pkg.mSignatures = ps.signatures.mSignatures;
-                    return true;
-                }
-                
-                Slog.w(TAG, "PackageSetting for " + ps.name + " is missing signatures.  Collecting certs again to recover them.");
+                Slog.i(TAG, "PackageSetting for " + ps.name + (mBuildChanged
+                        ? " is from an older build." : " has changed size or is missing signatures.")
+                        + "  Collecting certs again.");
             } else {
                 Log.i(TAG, srcFile.toString() + " changed; collecting certs");
             }
-            
-            if (!pp.collectCertificates(pkg, parseFlags)) {
+
+            if (pkg.mSignatures != null) {
+                // Already collected while parsing in parallel.
+                return true;
+            }
+            final long certsStart = System.nanoTime();
+            final boolean collected = pp.collectCertificates(pkg, parseFlags);
+            PackageTimings.record(PackageTimings.COLLECT_CERTIFICATES, certsStart);
+            if (!collected) {
                 mLastScanError = pp.getParseError();
                 return false;
             }
@@ -3962,11 +4092,23 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
         String scanPath = scanFile.getPath();
         if (DEBUG_INSTALL) Slog.d(TAG, "Parsing: " + scanPath);
         parseFlags |= mDefParseFlags;
-        PackageParser pp = new PackageParser(scanPath);
-        pp.setSeparateProcesses(mSeparateProcesses);
-        pp.setOnlyCoreApps(mOnlyCore);
+        PackageParser pp = mParallelPackageParser.newParser(scanPath);
+        final long parseStart = System.nanoTime();
         final PackageParser.Package pkg = pp.parsePackage(scanFile,
                 scanPath, mMetrics, parseFlags);
+        PackageTimings.record(PackageTimings.PARSE_PACKAGE, parseStart);
+        return scanParsedPackageLI(scanFile, pp, pkg, parseFlags, scanMode, currentTime, user);
+    }
+
+    /*
+     *  Second half of scanPackageLI(File, ...): reconcile the package {@code pp}
+     *  parsed from {@code scanFile} with the existing settings and add it.
+     *  {@code parseFlags} must already include mDefParseFlags.
+     */
+    private PackageParser.Package scanParsedPackageLI(File scanFile, PackageParser pp,
+            PackageParser.Package pkg, int parseFlags, int scanMode, long currentTime,
+            UserHandle user) {
+        mLastScanError = PackageManager.INSTALL_SUCCEEDED;
 	/*if(null != pkg && (("com.antutu.ABenchMark").equals(pkg.packageName) || ("com.antutu.benchmark.full").equals(pkg.packageName))){
 		parseFlags  = mDefParseFlags | PackageParser.PARSE_IS_SYSTEM |PackageParser.PARSE_IS_SYSTEM_DIR |PackageParser.PARSE_MUST_BE_APK;
 	 }*/
@@ -4201,7 +4343,7 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
                         + " has no signatures that match those in shared user "
                         + pkgSetting.sharedUser.name + "; ignoring!");
                 //add by zhanghk at 20181030 begin:add jiangsu sign
-                if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+                if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
                     if (!mSignatureMD5.equals("") && SystemProperties.get("persist.sys.sig.check","true").equals("true")) {
                         Log.d(TAG, "Shared UserID " + pkg.mSharedUserId);
                         if(pkg.mSharedUserId!=null && pkg.mSharedUserId.equals("android.uid.system"))
@@ -4250,58 +4392,155 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
         }
     }
 
+    /**
+     * Run the dexopt that the boot scan deferred.  Only what the device needs
+     * to reach the home screen is optimized now: apps that may run in the
+     * system uid, persistent apps, home apps and the IPTV auth apps, plus
+     * their libraries.  The rest waits until after BOOT_COMPLETED; see
+     * {@link #mPostBootDexOpt}.
+     */
     public boolean performBootDexOpt() {
         HashSet<PackageParser.Package> pkgs = null;
         synchronized (mPackages) {
             pkgs = mDeferredDexOpt;
             mDeferredDexOpt = null;
         }
-        boolean tag = false;
-        if (pkgs != null) {
-            int i = 0;
-            int count = pkgs.size();
-            tag = (count > 0) ? true : false;
-            for (PackageParser.Package pkg : pkgs) {
-                //if (!isFirstBoot()) {
-                    i++;
-                    if (!"mobile".equals(SystemProperties.get("sys.proj.type", null))) {
-                        try {
-                            ActivityManagerNative.getDefault().showBootMessage(
-                                    mContext.getResources().getString(
-                                            com.android.internal.R.string.android_upgrading_apk,
-                                            i, pkgs.size()), true);
-                        } catch (RemoteException e) {
-                        }
-                    }
-                //}
-                PackageParser.Package p = pkg;
-                synchronized (mInstallLock) {
-                    if (!p.mDidDexOpt) {
-                        performDexOptLI(p, false, false, true);
+        if (pkgs == null || pkgs.size() == 0) {
+            return false;
+        }
+
+        final long startTime = SystemClock.uptimeMillis();
+        final HashSet<String> bootPackageNames = getBootDexOptPackageNames();
+        final ArrayList<PackageParser.Package> bootPkgs = new ArrayList<PackageParser.Package>();
+        final ArrayList<PackageParser.Package> laterPkgs = new ArrayList<PackageParser.Package>();
+        for (PackageParser.Package pkg : pkgs) {
+            if (pkg.applicationInfo.uid == Process.SYSTEM_UID
+                    || (pkg.applicationInfo.flags&ApplicationInfo.FLAG_PERSISTENT) != 0
+                    || bootPackageNames.contains(pkg.packageName)) {
+                bootPkgs.add(pkg);
+            } else {
+                laterPkgs.add(pkg);
+            }
+        }
+        if (laterPkgs.size() > 0) {
+            synchronized (mPackages) {
+                mPostBootDexOpt = new LinkedHashSet<PackageParser.Package>(laterPkgs);
+            }
+        }
+
+        for (int i=0; i<bootPkgs.size(); i++) {
+            if (!"mobile".equals(SystemProperties.get("sys.proj.type", null))) {
+                try {
+                    ActivityManagerNative.getDefault().showBootMessage(
+                            mContext.getResources().getString(
+                                    com.android.internal.R.string.android_upgrading_apk,
+                                    i + 1, bootPkgs.size()), true);
+                } catch (RemoteException e) {
+                }
+            }
+            PackageParser.Package p = bootPkgs.get(i);
+            synchronized (mInstallLock) {
+                if (!p.mDidDexOpt) {
+                    performDexOptLI(p, false, false, true);
+                }
+            }
+        }
+        Slog.i(TAG, "Boot dexopt of " + bootPkgs.size() + " packages took "
+                + (SystemClock.uptimeMillis() - startTime) + "ms; "
+                + laterPkgs.size() + " deferred until after boot");
+        return bootPkgs.size() > 0;
+    }
+
+    private HashSet<String> getBootDexOptPackageNames() {
+        final HashSet<String> names = new HashSet<String>(Arrays.asList(BOOT_DEXOPT_PACKAGES));
+        final Intent intent = new Intent(Intent.ACTION_MAIN);
+        intent.addCategory(Intent.CATEGORY_HOME);
+        final List<ResolveInfo> homes = queryIntentActivities(intent, null, 0, 0);
+        for (int i=0; i<homes.size(); i++) {
+            names.add(homes.get(i).activityInfo.packageName);
+        }
+        return names;
+    }
+
+    private void schedulePostBootDexOpt() {
+        mHandler.postDelayed(new Runnable() {
+            @Override public void run() {
+                new Thread("PackageManagerPostBootDexOpt") {
+                    @Override public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        performPostBootDexOpt();
                     }
+                }.start();
+            }
+        }, POST_BOOT_DEXOPT_DELAY);
+    }
+
+    private void performPostBootDexOpt() {
+        final ArrayList<PackageParser.Package> pkgs;
+        synchronized (mPackages) {
+            pkgs = new ArrayList<PackageParser.Package>(mPostBootDexOpt);
+        }
+        final long startTime = SystemClock.uptimeMillis();
+        int performed = 0;
+        // Take the install lock per package so that installs and on-demand
+        // dexopt of a starting app only wait for one package.
+        for (int i=0; i<pkgs.size(); i++) {
+            PackageParser.Package p = pkgs.get(i);
+            synchronized (mInstallLock) {
+                if (!p.mDidDexOpt
+                        && performDexOptLI(p, false, false, true) == DEX_OPT_PERFORMED) {
+                    performed++;
                 }
             }
         }
-        return tag;
+        synchronized (mPackages) {
+            mPostBootDexOpt = null;
+        }
+        Slog.i(TAG, "Post-boot dexopt of " + performed + "/" + pkgs.size() + " packages took "
+                + (SystemClock.uptimeMillis() - startTime) + "ms");
     }
 
+    /**
+     * Optimize {@code packageName} before its code is run, if that has not
+     * happened yet.  A package that shares its uid with others may have
+     * their code loaded into its processes as well, so those of them still
+     * waiting for post-boot dexopt are optimized along with it.
+     */
     public boolean performDexOpt(String packageName) {
         enforceSystemOrRoot("Only the system can request dexopt be performed");
 
-        if (!mNoDexOpt) {
-            return false;
-        }
-
-        PackageParser.Package p;
+        final ArrayList<PackageParser.Package> pkgs = new ArrayList<PackageParser.Package>();
         synchronized (mPackages) {
-            p = mPackages.get(packageName);
+            final PackageParser.Package p = mPackages.get(packageName);
             if (p == null || p.mDidDexOpt) {
                 return false;
             }
+            if (mNoDexOpt) {
+                pkgs.add(p);
+            } else if (mPostBootDexOpt != null && mPostBootDexOpt.contains(p)) {
+                pkgs.add(p);
+                final PackageSetting ps = (PackageSetting) p.mExtras;
+                if (ps != null && ps.sharedUser != null) {
+                    for (PackageSetting other : ps.sharedUser.packages) {
+                        if (other.pkg != null && other.pkg != p && !other.pkg.mDidDexOpt
+                                && mPostBootDexOpt.contains(other.pkg)) {
+                            pkgs.add(other.pkg);
+                        }
+                    }
+                }
+            }
         }
-        synchronized (mInstallLock) {
-            return performDexOptLI(p, false, false, true) == DEX_OPT_PERFORMED;
+        boolean performed = false;
+        for (int i=0; i<pkgs.size(); i++) {
+            final PackageParser.Package p = pkgs.get(i);
+            synchronized (mInstallLock) {
+                if (!p.mDidDexOpt
+                        && performDexOptLI(p, false, false, true) == DEX_OPT_PERFORMED) {
+                    performed = true;
+                }
+            }
         }
+        return performed;
     }
 
     private void performDexOptLibsLI(ArrayList<String> libs, boolean forceDex, boolean defer,
@@ -5364,6 +5603,9 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
                     r.append(a.info.name);
                 }
             }
+            if (N > 0) {
+                mReceiverQueryCache.clear();
+            }
             if (r != null) {
                 if (DEBUG_PACKAGE_SCANNING) Log.d(TAG, "  Receivers: " + r);
             }
@@ -5530,6 +5772,7 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
             }
 
             pkgSetting.setTimeStamp(scanFileTime);
+            pkgSetting.codeSize = scanFile.length();
         }
 
         return pkg;
@@ -5715,6 +5958,9 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
                 r.append(a.info.name);
             }
         }
+        if (N > 0) {
+            mReceiverQueryCache.clear();
+        }
         if (r != null) {
             if (DEBUG_REMOVE) Log.d(TAG, "  Receivers: " + r);
         }
@@ -5908,13 +6154,13 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
             return;
         }
         final GrantedPermissions gp = ps.sharedUser != null ? ps.sharedUser : ps;
-        HashSet<String> origPermissions = gp.grantedPermissions;
+        Set<String> origPermissions = gp.grantedPermissions;
         boolean changedPermission = false;
 
         if (replace) {
             ps.permissionsFixed = false;
             if (gp == ps) {
-                origPermissions = new HashSet<String>(gp.grantedPermissions);
+                origPermissions = new PermissionSet(gp.grantedPermissions);
                 gp.grantedPermissions.clear();
                 gp.gids = mGlobalGids;
             }
@@ -6023,6 +6269,7 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
             // changed.
             ps.permissionsFixed = true;
         }
+        gp.gids = GrantedPermissions.internGids(gp.gids);
         ps.haveGids = true;
     }
 
@@ -6044,7 +6291,7 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
     }
 
     private boolean grantSignaturePermission(String perm, PackageParser.Package pkg,
-                                          BasePermission bp, HashSet<String> origPermissions) {
+                                          BasePermission bp, Set<String> origPermissions) {
         boolean allowed;
         allowed = (compareSignatures(
                 bp.packageSetting.signatures.mSignatures, pkg.mSignatures)
@@ -6112,8 +6359,11 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
                 int userId) {
             if (!sUserManager.exists(userId)) return null;
             mFlags = flags;
-            return super.queryIntent(intent, resolvedType,
+            final long start = System.nanoTime();
+            final List<ResolveInfo> result = super.queryIntent(intent, resolvedType,
                     (flags & PackageManager.MATCH_DEFAULT_ONLY) != 0, userId);
+            PackageTimings.record(PackageTimings.QUERY_INTENT, start);
+            return result;
         }
 
         public List<ResolveInfo> queryIntentForPackage(Intent intent, String resolvedType,
@@ -6315,8 +6565,11 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
                 int userId) {
             if (!sUserManager.exists(userId)) return null;
             mFlags = flags;
-            return super.queryIntent(intent, resolvedType,
+            final long start = System.nanoTime();
+            final List<ResolveInfo> result = super.queryIntent(intent, resolvedType,
                     (flags & PackageManager.MATCH_DEFAULT_ONLY) != 0, userId);
+            PackageTimings.record(PackageTimings.QUERY_INTENT, start);
+            return result;
         }
 
         public List<ResolveInfo> queryIntentForPackage(Intent intent, String resolvedType,
@@ -6515,8 +6768,11 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
             if (!sUserManager.exists(userId))
                 return null;
             mFlags = flags;
-            return super.queryIntent(intent, resolvedType,
+            final long start = System.nanoTime();
+            final List<ResolveInfo> result = super.queryIntent(intent, resolvedType,
                     (flags & PackageManager.MATCH_DEFAULT_ONLY) != 0, userId);
+            PackageTimings.record(PackageTimings.QUERY_INTENT, start);
+            return result;
         }
 
         public List<ResolveInfo> queryIntentForPackage(Intent intent, String resolvedType,
@@ -6954,6 +7210,11 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
                 }
             }
 
+            if (removedPackage != null || addedPackage != null) {
+                // Receivers and run-as/sdcard expect packages.xml and
+                // packages.list to match the broadcast.
+                mSettings.flushWrites();
+            }
             if (removedPackage != null) {
                 Bundle extras = new Bundle(1);
                 extras.putInt(Intent.EXTRA_UID, removedAppId);
@@ -7002,7 +7263,7 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
             IPackageInstallObserver observer, int flags, String installerPackageName,
             VerificationParams verificationParams, ContainerEncryptionParams encryptionParams) {
         //add by zhanghk at 20181030 begin:add jiangsu sign
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+        if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
             int perm = getAppPermission();
             if(perm == 0){
 			    try {
@@ -7045,7 +7306,7 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
         final int uid = Binder.getCallingUid();
 		
 		/*begin:add by zhanghui at 20200414:give henanwhitelist install permission*/
-        if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
+        if(ProvinceProfile.get().nameContains("CM201_henan")){
             String mCallingApp = mContext.getPackageManager().getNameForUid(uid);
             Slog.d(TAG, "installPackageWithVerificationAndEncryption flags= mCallingApp		:" + mCallingApp);
             if(mCallingApp != null && isInUpdateWhiteList(mHenanWhiteList,mCallingApp)){
@@ -9721,7 +9982,7 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
             Slog.d(TAG, "manifestDigest was not present, but parser got: " + parsedManifest);
         }
         //add by zhanghk at 20181030 begin:add jiangsu sign
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+        if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
             if (!mSignatureMD5.equals("") && SystemProperties.get("persist.sys.sig.check","true").equals("true")) {
                 Log.d(TAG, "Shared UserID " + pkg.mSharedUserId);
                 if(pkg.mSharedUserId!=null && pkg.mSharedUserId.equals("android.uid.system"))
@@ -10023,6 +10284,7 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
         }
 
         if (res) {
+            mSettings.flushWrites();
             info.sendBroadcast(true, systemUpdate, removedForAllUsers);
 
             // If the removed package was a system update, the old system package
@@ -11166,13 +11428,24 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
         enforceSystemOrRoot("Only the system can request entering safe mode");
 
         if (!mSystemReady) {
-            mSafeMode = true;
+            synchronized (mPackages) {
+                mSafeMode = true;
+                mReceiverQueryCache.clear();
+            }
         }
     }
 
     public void systemReady() {
         mSystemReady = true;
 
+        // Settings are written behind; get them on disk before power goes.
+        mContext.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                mSettings.flushWrites();
+            }
+        }, new IntentFilter(Intent.ACTION_SHUTDOWN));
+
         // Read the compatibilty setting when the system is ready.
         boolean compatibilityModeEnabled = android.provider.Settings.Global.getInt(
                 mContext.getContentResolver(),
@@ -11213,6 +11486,25 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
             }
         }
         sUserManager.systemReady();
+
+        final boolean postBootDexOpt;
+        synchronized (mPackages) {
+            postBootDexOpt = mPostBootDexOpt != null;
+        }
+        if (mDeferredScanFiles != null || postBootDexOpt) {
+            mContext.registerReceiver(new BroadcastReceiver() {
+                @Override
+                public void onReceive(Context context, Intent intent) {
+                    context.unregisterReceiver(this);
+                    if (mDeferredScanFiles != null) {
+                        scheduleDeferredScan();
+                    }
+                    if (postBootDexOpt) {
+                        schedulePostBootDexOpt();
+                    }
+                }
+            }, new IntentFilter(Intent.ACTION_BOOT_COMPLETED));
+        }
     }
 
     public boolean isSafeMode() {
@@ -11330,6 +11622,8 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
         boolean fullPreferred = false;
         
         String packageName = null;
+        boolean dumpMemory = false;
+        boolean dumpTimings = false;
         
         int opti = 0;
         while (opti < args.length) {
@@ -11342,9 +11636,12 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
                 // Right now we only know how to print all.
             } else if ("-h".equals(opt)) {
                 pw.println("Package manager dump options:");
-                pw.println("  [-h] [-f] [cmd] ...");
+                pw.println("  [-h] [-f] [--memory] [--timings [reset]] [cmd] ...");
                 pw.println("    -f: print details of intent filters");
                 pw.println("    -h: print this help");
+                pw.println("    --memory: print the memory used by package settings");
+                pw.println("    --timings: print the time spent parsing, resolving and");
+                pw.println("      persisting; --timings reset clears it");
                 pw.println("  cmd may be one of:");
                 pw.println("    l[ibraries]: list known shared libraries");
                 pw.println("    f[ibraries]: list device features");
@@ -11362,11 +11659,32 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
                 return;
             } else if ("-f".equals(opt)) {
                 dumpState.setOptionEnabled(DumpState.OPTION_SHOW_FILTERS);
+            } else if ("--memory".equals(opt)) {
+                dumpMemory = true;
+            } else if ("--timings".equals(opt)) {
+                dumpTimings = true;
             } else {
                 pw.println("Unknown argument: " + opt + "; use -h for help");
             }
         }
         
+        if (dumpMemory) {
+            synchronized (mPackages) {
+                mSettings.dumpMemoryLPr(pw);
+            }
+            return;
+        }
+
+        if (dumpTimings) {
+            if (opti < args.length && "reset".equals(args[opti])) {
+                PackageTimings.reset();
+                pw.println("Package manager timings reset");
+            } else {
+                PackageTimings.dump(pw);
+            }
+            return;
+        }
+
         // Is the caller requesting to dump a particular piece of data?
         if (opti < args.length) {
             String cmd = args[opti];
@@ -12373,47 +12691,111 @@ if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jidi") ||
         }
     }
 	
-	public class DataScanThear2 extends Thread{
-        boolean onlyCore = false;
-        public DataScanThear2(boolean monlycore) {
-               onlyCore = monlycore;
-        }
-        public void run() {
-            if (!onlyCore) {
-                 Slog.i(TAG, "**********scan data/app begin: ");
-                 long datatime = SystemClock.uptimeMillis();
-                 scanDirLIForData_TenApk(mAppInstallDir, 0, scanMode, 0);
-                for (String deletedAppName : possiblyDeletedUpdatedSystemApps) {
-                    PackageParser.Package deletedPkg = mPackages.get(deletedAppName);
-                    mSettings.removeDisabledSystemPackageLPw(deletedAppName);
-                    String msg;
-                    if (deletedPkg == null) {
-                         msg = "Updated system package " + deletedAppName + " no longer exists; wiping its data";
-                         removeDataDirsLI(deletedAppName);
-                    } else {
-                         msg = "Updated system app + " + deletedAppName + " no longer present; removing system privileges for "+ deletedAppName;
-                         deletedPkg.applicationInfo.flags &= ~ApplicationInfo.FLAG_SYSTEM;
-                         PackageSetting deletedPs = mSettings.mPackages.get(deletedAppName);
-                         deletedPs.pkgFlags &= ~ApplicationInfo.FLAG_SYSTEM;
+    /**
+     * Once the system has booted, scan {@link #mDeferredScanFiles} after
+     * persist.sys.yst.startscan2 ms (persist.sys.yst.startscan2pppoe while
+     * PPPoE is dialing), leaving the first moments after boot to the apps
+     * that were already running.
+     */
+    private void scheduleDeferredScan() {
+        int delay = SystemProperties.getInt("persist.sys.yst.startscan2", 3000);
+        if ("running".equals(SystemProperties.get("init.svc.pppoe_conn_eth0", "stopped"))) {
+            delay = SystemProperties.getInt("persist.sys.yst.startscan2pppoe", 5000);
+        }
+        Slog.i(TAG, "Scanning deferred packages in " + delay + "ms");
+        mHandler.postDelayed(new Runnable() {
+            @Override public void run() {
+                new Thread("PackageManagerDeferredScan") {
+                    @Override public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        scanDeferredPackages();
+                    }
+                }.start();
+            }
+        }, delay);
+    }
+
+    private void scanDeferredPackages() {
+        final long startTime = SystemClock.uptimeMillis();
+        final List<File> files = mDeferredScanFiles;
+        final ArrayList<PackageParser.Package> scanned
+                = new ArrayList<PackageParser.Package>(files.size());
+        int scanMode = SCAN_MONITOR | SCAN_NO_PATHS | SCAN_BOOTING;
+        if (mNoDexOpt) {
+            scanMode |= SCAN_NO_DEX;
+        }
+
+        final int parseFlags = PackageParser.PARSE_MUST_BE_APK | mDefParseFlags;
+
+        // Parse (or read from the cache) one package at a time on this
+        // thread, at its background priority and without any lock, then
+        // take the install lock per package so that installs in the
+        // meantime only wait for one package, not the whole set.
+        for (int i=0; i<files.size(); i++) {
+            final File file = files.get(i);
+            final HashSet<File> certsCached = new HashSet<File>();
+            synchronized (mPackages) {
+                for (PackageSetting ps : mSettings.mPackages.values()) {
+                    if (ps.codePath != null && ps.codePath.equals(file)) {
+                        if (canReuseSignaturesLPr(ps, file)) {
+                            certsCached.add(file);
+                        }
+                        break;
                     }
-                   reportSettingsProblem(Log.WARN, msg);
-               }
-               mHandler.sendEmptyMessage(DATA_APP_SCAN_END2);
-               Slog.i(TAG, "Time to scan data app over: "+ ((SystemClock.uptimeMillis()-datatime)/1000f) + " seconds");
-        } else {
-               mAppInstallObserver = null;
-               mDrmAppInstallObserver = null;
+                }
+            }
+            final ParallelPackageParser.ParseResult res = mParallelPackageParser.parse(
+                    Collections.singletonList(file), parseFlags, certsCached).get(0);
+            synchronized (mInstallLock) {
+                PackageParser.Package pkg;
+                if (res != null) {
+                    pkg = scanParsedPackageLI(file, res.parser, res.pkg, parseFlags, scanMode,
+                            0, null);
+                } else {
+                    pkg = scanPackageLI(file, PackageParser.PARSE_MUST_BE_APK, scanMode, 0, null);
+                }
+                if (pkg != null) {
+                    scanned.add(pkg);
+                } else if (mLastScanError == PackageManager.INSTALL_FAILED_INVALID_APK) {
+                    Slog.w(TAG, "Cleaning up failed install of " + file);
+                    file.delete();
+                }
+            }
         }
-        };
-    }
-    private void sendLaterBootBroad(){
-        if(mDataDirApkName.size()>0){
-            for (int i = 0; i < mDataDirApkName.size(); i++) {
-                //Slog.i(TAG,"get DATA_APP_SCAN_END package name="+mDataDirApkName.get(i).toString());
-                sendBootBroadcast(Intent.ACTION_BOOT_COMPLETED,mDataDirApkName.get(i).toString(),null,mDataDirApkName.get(i).toString(),null,null);
-             }
+
+        synchronized (mInstallLock) {
+            synchronized (mPackages) {
+                mDeferredScanFiles = null;
+                removeDeletedUpdatedSystemAppsLI(mDeferredDeletedUpdatedSystemApps);
+                mDeferredDeletedUpdatedSystemApps.clear();
+                updateAllSharedLibrariesLPw();
+                updatePermissionsLPw(null, null, UPDATE_PERMISSIONS_ALL
+                        | (mDeferredScanRegrantPermissions
+                                ? (UPDATE_PERMISSIONS_REPLACE_PKG|UPDATE_PERMISSIONS_REPLACE_ALL)
+                                : 0));
+                mSettings.writeLPr();
+            }
+        }
+        if (mPackageParserCache != null) {
+            mPackageParserCache.prune();
+        }
+        Slog.i(TAG, "Time to scan deferred packages: "
+                + ((SystemClock.uptimeMillis()-startTime)/1000f) + " seconds");
+
+        // The packages missed both the boot-time package list and the
+        // boot broadcast, so announce them now, once they are on disk.
+        mSettings.flushWrites();
+        for (int i=0; i<scanned.size(); i++) {
+            final PackageParser.Package pkg = scanned.get(i);
+            Bundle extras = new Bundle(1);
+            extras.putInt(Intent.EXTRA_UID, pkg.applicationInfo.uid);
+            sendPackageBroadcast(Intent.ACTION_PACKAGE_ADDED, pkg.packageName,
+                    extras, null, null, null);
+            sendBootBroadcast(Intent.ACTION_BOOT_COMPLETED, pkg.packageName, null,
+                    pkg.packageName, null, null);
         }
     }
+
     private void sendBootBroadcast(String action, String pkg,
             Bundle extras, String targetPkg, IIntentReceiver finishedReceiver,
             int[] userIds) {
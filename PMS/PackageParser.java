@@ -26,8 +26,10 @@ import android.content.res.TypedArray;
 import android.content.res.XmlResourceParser;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Parcel;
 import android.os.PatternMatcher;
 import android.os.UserHandle;
+import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.Base64;
 import android.util.DisplayMetrics;
@@ -252,7 +254,7 @@ public class PackageParser {
     /*
     public static PackageInfo generatePackageInfo(PackageParser.Package p,
             int gids[], int flags, long firstInstallTime, long lastUpdateTime,
-            HashSet<String> grantedPermissions) {
+            Set<String> grantedPermissions) {
         PackageUserState state = new PackageUserState();
         return generatePackageInfo(p, gids, flags, firstInstallTime, lastUpdateTime,
                 grantedPermissions, state, UserHandle.getCallingUserId());
@@ -267,7 +269,7 @@ public class PackageParser {
      */
     public static PackageInfo generatePackageInfo(PackageParser.Package p,
             int gids[], int flags, long firstInstallTime, long lastUpdateTime,
-            HashSet<String> grantedPermissions, PackageUserState state) {
+            Set<String> grantedPermissions, PackageUserState state) {
 
         return generatePackageInfo(p, gids, flags, firstInstallTime, lastUpdateTime,
                 grantedPermissions, state, UserHandle.getCallingUserId());
@@ -288,7 +290,7 @@ public class PackageParser {
 
     public static PackageInfo generatePackageInfo(PackageParser.Package p,
             int gids[], int flags, long firstInstallTime, long lastUpdateTime,
-            HashSet<String> grantedPermissions, PackageUserState state, int userId) {
+            Set<String> grantedPermissions, PackageUserState state, int userId) {
 
         if (!checkUseInstalledOrBlocked(flags, state)) {
             return null;
@@ -3456,7 +3458,7 @@ public class PackageParser {
         public String packageName;
 
         // For now we only support one application per package.
-        public final ApplicationInfo applicationInfo = new ApplicationInfo();
+        public final ApplicationInfo applicationInfo;
 
         public final ArrayList<Permission> permissions = new ArrayList<Permission>(0);
         public final ArrayList<PermissionGroup> permissionGroups = new ArrayList<PermissionGroup>(0);
@@ -3562,10 +3564,16 @@ public class PackageParser {
 
         public Package(String _name) {
             packageName = _name;
+            applicationInfo = new ApplicationInfo();
             applicationInfo.packageName = _name;
             applicationInfo.uid = -1;
         }
 
+        Package(String _name, ApplicationInfo _applicationInfo) {
+            packageName = _name;
+            applicationInfo = _applicationInfo;
+        }
+
         public void setPackageName(String newName) {
             packageName = newName;
             applicationInfo.packageName = newName;
@@ -3643,6 +3651,12 @@ public class PackageParser {
             className = null;
         }
 
+        Component(Package _owner, String _className) {
+            owner = _owner;
+            intents = new ArrayList<II>(0);
+            className = _className;
+        }
+
         public Component(final ParsePackageItemArgs args, final PackageItemInfo outInfo) {
             owner = args.owner;
             intents = new ArrayList<II>(0);
@@ -3929,6 +3943,12 @@ public class PackageParser {
             info = _info;
             info.applicationInfo = args.owner.applicationInfo;
         }
+
+        Activity(Package _owner, String _className, ActivityInfo _info) {
+            super(_owner, _className);
+            info = _info;
+            info.applicationInfo = _owner.applicationInfo;
+        }
         
         public void setPackageName(String packageName) {
             super.setPackageName(packageName);
@@ -3970,6 +3990,12 @@ public class PackageParser {
             info = _info;
             info.applicationInfo = args.owner.applicationInfo;
         }
+
+        Service(Package _owner, String _className, ServiceInfo _info) {
+            super(_owner, _className);
+            info = _info;
+            info.applicationInfo = _owner.applicationInfo;
+        }
         
         public void setPackageName(String packageName) {
             super.setPackageName(packageName);
@@ -4013,6 +4039,12 @@ public class PackageParser {
             info.applicationInfo = args.owner.applicationInfo;
             syncable = false;
         }
+
+        Provider(Package _owner, String _className, ProviderInfo _info) {
+            super(_owner, _className);
+            info = _info;
+            info.applicationInfo = _owner.applicationInfo;
+        }
         
         public Provider(Provider existingProvider) {
             super(existingProvider);
@@ -4064,6 +4096,11 @@ public class PackageParser {
             super(args, _info);
             info = _info;
         }
+
+        Instrumentation(Package _owner, String _className, InstrumentationInfo _info) {
+            super(_owner, _className);
+            info = _info;
+        }
         
         public void setPackageName(String packageName) {
             super.setPackageName(packageName);
@@ -4099,6 +4136,13 @@ public class PackageParser {
         public int icon;
         public int logo;
         public int preferred;
+
+        public IntentInfo() {
+        }
+
+        IntentInfo(IntentFilter filter) {
+            super(filter);
+        }
     }
 
     public final static class ActivityIntentInfo extends IntentInfo {
@@ -4108,6 +4152,11 @@ public class PackageParser {
             activity = _activity;
         }
 
+        ActivityIntentInfo(Activity _activity, IntentFilter filter) {
+            super(filter);
+            activity = _activity;
+        }
+
         public String toString() {
             StringBuilder sb = new StringBuilder(128);
             sb.append("ActivityIntentInfo{");
@@ -4126,6 +4175,11 @@ public class PackageParser {
             service = _service;
         }
 
+        ServiceIntentInfo(Service _service, IntentFilter filter) {
+            super(filter);
+            service = _service;
+        }
+
         public String toString() {
             StringBuilder sb = new StringBuilder(128);
             sb.append("ServiceIntentInfo{");
@@ -4144,6 +4198,11 @@ public class PackageParser {
             this.provider = provider;
         }
 
+        ProviderIntentInfo(Provider provider, IntentFilter filter) {
+            super(filter);
+            this.provider = provider;
+        }
+
         public String toString() {
             StringBuilder sb = new StringBuilder(128);
             sb.append("ProviderIntentInfo{");
@@ -4155,6 +4214,377 @@ public class PackageParser {
         }
     }
 
+    /**
+     * Flatten a package freshly returned by {@link #parsePackage} so that it
+     * can be cached and later restored with {@link #readPackageFromParcel}
+     * instead of being parsed again.  Only what parsing produces is written;
+     * signatures and everything the package manager attaches later are not.
+     *
+     * Returns false, writing nothing usable, for packages that cannot be
+     * flattened (those declaring key sets).  The format is only meant to be
+     * read back by the same build.
+     *
+     * @hide
+     */
+    public static boolean writePackageToParcel(Package pkg, Parcel dest) {
+        if (pkg.mKeySetMapping != null || pkg.mSigningKeys != null
+                || pkg.mSignatures != null || pkg.manifestDigest != null) {
+            return false;
+        }
+        dest.writeString(pkg.packageName);
+        pkg.applicationInfo.writeToParcel(dest, 0);
+
+        dest.writeInt(pkg.permissions.size());
+        for (Permission perm : pkg.permissions) {
+            perm.info.writeToParcel(dest, 0);
+            dest.writeInt(perm.tree ? 1 : 0);
+            dest.writeBundle(perm.metaData);
+        }
+        dest.writeInt(pkg.permissionGroups.size());
+        for (PermissionGroup group : pkg.permissionGroups) {
+            group.info.writeToParcel(dest, 0);
+            dest.writeBundle(group.metaData);
+        }
+        writeActivities(pkg.activities, dest);
+        writeActivities(pkg.receivers, dest);
+        dest.writeInt(pkg.providers.size());
+        for (Provider p : pkg.providers) {
+            dest.writeString(p.className);
+            writeProviderInfo(p.info, dest);
+            dest.writeBundle(p.metaData);
+            dest.writeInt(p.syncable ? 1 : 0);
+            writeIntentInfos(p.intents, dest);
+        }
+        dest.writeInt(pkg.services.size());
+        for (Service s : pkg.services) {
+            dest.writeString(s.className);
+            writeComponentInfo(s.info, dest);
+            dest.writeString(s.info.permission);
+            dest.writeInt(s.info.flags);
+            dest.writeBundle(s.metaData);
+            writeIntentInfos(s.intents, dest);
+        }
+        dest.writeInt(pkg.instrumentation.size());
+        for (Instrumentation i : pkg.instrumentation) {
+            dest.writeString(i.className);
+            i.info.writeToParcel(dest, 0);
+            dest.writeBundle(i.metaData);
+        }
+
+        dest.writeStringList(pkg.requestedPermissions);
+        dest.writeInt(pkg.requestedPermissionsRequired.size());
+        for (Boolean required : pkg.requestedPermissionsRequired) {
+            dest.writeInt(required ? 1 : 0);
+        }
+        writeNullableStringList(pkg.protectedBroadcasts, dest);
+        writeNullableStringList(pkg.libraryNames, dest);
+        writeNullableStringList(pkg.usesLibraries, dest);
+        writeNullableStringList(pkg.usesOptionalLibraries, dest);
+
+        if (pkg.preferredActivityFilters != null) {
+            dest.writeInt(pkg.preferredActivityFilters.size());
+            for (ActivityIntentInfo intent : pkg.preferredActivityFilters) {
+                dest.writeInt(pkg.activities.indexOf(intent.activity));
+                writeIntentInfo(intent, dest);
+            }
+        } else {
+            dest.writeInt(-1);
+        }
+
+        writeNullableStringList(pkg.mOriginalPackages, dest);
+        dest.writeString(pkg.mRealPackage);
+        writeNullableStringList(pkg.mAdoptPermissions, dest);
+        dest.writeBundle(pkg.mAppMetaData);
+        dest.writeString(pkg.mPath);
+        dest.writeString(pkg.mScanPath);
+        dest.writeInt(pkg.mVersionCode);
+        dest.writeString(pkg.mVersionName);
+        dest.writeString(pkg.mSharedUserId);
+        dest.writeInt(pkg.mSharedUserLabel);
+        dest.writeTypedList(pkg.configPreferences);
+        if (pkg.reqFeatures != null) {
+            dest.writeInt(1);
+            dest.writeTypedList(pkg.reqFeatures);
+        } else {
+            dest.writeInt(0);
+        }
+        dest.writeInt(pkg.installLocation);
+        dest.writeInt(pkg.mRequiredForAllUsers ? 1 : 0);
+        dest.writeString(pkg.mRestrictedAccountType);
+        dest.writeString(pkg.mRequiredAccountType);
+        return true;
+    }
+
+    /**
+     * Restore a package written by {@link #writePackageToParcel}.
+     *
+     * @hide
+     */
+    public static Package readPackageFromParcel(Parcel src) {
+        final String packageName = src.readString();
+        final Package pkg = new Package(packageName,
+                ApplicationInfo.CREATOR.createFromParcel(src));
+
+        int N = src.readInt();
+        for (int i=0; i<N; i++) {
+            Permission perm = new Permission(pkg, PermissionInfo.CREATOR.createFromParcel(src));
+            perm.tree = src.readInt() != 0;
+            perm.metaData = src.readBundle();
+            pkg.permissions.add(perm);
+        }
+        N = src.readInt();
+        for (int i=0; i<N; i++) {
+            PermissionGroup group = new PermissionGroup(pkg,
+                    PermissionGroupInfo.CREATOR.createFromParcel(src));
+            group.metaData = src.readBundle();
+            pkg.permissionGroups.add(group);
+        }
+        readActivities(pkg, pkg.activities, src);
+        readActivities(pkg, pkg.receivers, src);
+        N = src.readInt();
+        for (int i=0; i<N; i++) {
+            Provider p = new Provider(pkg, src.readString(), readProviderInfo(pkg, src));
+            p.metaData = src.readBundle();
+            p.syncable = src.readInt() != 0;
+            int M = src.readInt();
+            for (int j=0; j<M; j++) {
+                ProviderIntentInfo intent = new ProviderIntentInfo(p,
+                        IntentFilter.CREATOR.createFromParcel(src));
+                readIntentInfo(intent, src);
+                p.intents.add(intent);
+            }
+            pkg.providers.add(p);
+        }
+        N = src.readInt();
+        for (int i=0; i<N; i++) {
+            final String className = src.readString();
+            final ServiceInfo info = new ServiceInfo();
+            readComponentInfo(pkg, info, src);
+            info.permission = src.readString();
+            info.flags = src.readInt();
+            Service s = new Service(pkg, className, info);
+            s.metaData = src.readBundle();
+            int M = src.readInt();
+            for (int j=0; j<M; j++) {
+                ServiceIntentInfo intent = new ServiceIntentInfo(s,
+                        IntentFilter.CREATOR.createFromParcel(src));
+                readIntentInfo(intent, src);
+                s.intents.add(intent);
+            }
+            pkg.services.add(s);
+        }
+        N = src.readInt();
+        for (int i=0; i<N; i++) {
+            Instrumentation instr = new Instrumentation(pkg, src.readString(),
+                    InstrumentationInfo.CREATOR.createFromParcel(src));
+            instr.metaData = src.readBundle();
+            pkg.instrumentation.add(instr);
+        }
+
+        src.readStringList(pkg.requestedPermissions);
+        N = src.readInt();
+        for (int i=0; i<N; i++) {
+            pkg.requestedPermissionsRequired.add(src.readInt() != 0);
+        }
+        pkg.protectedBroadcasts = readNullableStringList(src);
+        pkg.libraryNames = readNullableStringList(src);
+        pkg.usesLibraries = readNullableStringList(src);
+        pkg.usesOptionalLibraries = readNullableStringList(src);
+
+        N = src.readInt();
+        if (N >= 0) {
+            pkg.preferredActivityFilters = new ArrayList<ActivityIntentInfo>(N);
+            for (int i=0; i<N; i++) {
+                final int index = src.readInt();
+                ActivityIntentInfo intent = new ActivityIntentInfo(
+                        index >= 0 ? pkg.activities.get(index) : null,
+                        IntentFilter.CREATOR.createFromParcel(src));
+                readIntentInfo(intent, src);
+                pkg.preferredActivityFilters.add(intent);
+            }
+        }
+
+        pkg.mOriginalPackages = readNullableStringList(src);
+        pkg.mRealPackage = src.readString();
+        pkg.mAdoptPermissions = readNullableStringList(src);
+        pkg.mAppMetaData = src.readBundle();
+        pkg.mPath = src.readString();
+        pkg.mScanPath = src.readString();
+        pkg.mVersionCode = src.readInt();
+        pkg.mVersionName = src.readString();
+        pkg.mSharedUserId = src.readString();
+        pkg.mSharedUserLabel = src.readInt();
+        src.readTypedList(pkg.configPreferences, ConfigurationInfo.CREATOR);
+        if (src.readInt() != 0) {
+            pkg.reqFeatures = src.createTypedArrayList(FeatureInfo.CREATOR);
+        }
+        pkg.installLocation = src.readInt();
+        pkg.mRequiredForAllUsers = src.readInt() != 0;
+        pkg.mRestrictedAccountType = src.readString();
+        pkg.mRequiredAccountType = src.readString();
+        return pkg;
+    }
+
+    private static void writeActivities(ArrayList<Activity> activities, Parcel dest) {
+        dest.writeInt(activities.size());
+        for (Activity a : activities) {
+            dest.writeString(a.className);
+            writeActivityInfo(a.info, dest);
+            dest.writeBundle(a.metaData);
+            writeIntentInfos(a.intents, dest);
+        }
+    }
+
+    private static void readActivities(Package pkg, ArrayList<Activity> activities, Parcel src) {
+        final int N = src.readInt();
+        for (int i=0; i<N; i++) {
+            Activity a = new Activity(pkg, src.readString(), readActivityInfo(pkg, src));
+            a.metaData = src.readBundle();
+            int M = src.readInt();
+            for (int j=0; j<M; j++) {
+                ActivityIntentInfo intent = new ActivityIntentInfo(a,
+                        IntentFilter.CREATOR.createFromParcel(src));
+                readIntentInfo(intent, src);
+                a.intents.add(intent);
+            }
+            activities.add(a);
+        }
+    }
+
+    /**
+     * Components are written without the ApplicationInfo that their own
+     * writeToParcel() embeds; every one of them shares the package's, so it
+     * is stored once and attached again on read.  The info's metaData is
+     * left out as well since parsing only ever fills in the component's.
+     */
+    private static void writeComponentInfo(ComponentInfo info, Parcel dest) {
+        dest.writeString(info.name);
+        dest.writeString(info.packageName);
+        dest.writeInt(info.labelRes);
+        TextUtils.writeToParcel(info.nonLocalizedLabel, dest, 0);
+        dest.writeInt(info.icon);
+        dest.writeInt(info.logo);
+        dest.writeString(info.processName);
+        dest.writeInt(info.descriptionRes);
+        dest.writeInt(info.enabled ? 1 : 0);
+        dest.writeInt(info.exported ? 1 : 0);
+    }
+
+    private static void readComponentInfo(Package pkg, ComponentInfo info, Parcel src) {
+        info.name = src.readString();
+        info.packageName = src.readString();
+        info.labelRes = src.readInt();
+        info.nonLocalizedLabel = TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(src);
+        info.icon = src.readInt();
+        info.logo = src.readInt();
+        info.processName = src.readString();
+        info.descriptionRes = src.readInt();
+        info.enabled = src.readInt() != 0;
+        info.exported = src.readInt() != 0;
+        info.applicationInfo = pkg.applicationInfo;
+    }
+
+    private static void writeActivityInfo(ActivityInfo info, Parcel dest) {
+        writeComponentInfo(info, dest);
+        dest.writeInt(info.theme);
+        dest.writeInt(info.launchMode);
+        dest.writeString(info.permission);
+        dest.writeString(info.taskAffinity);
+        dest.writeString(info.targetActivity);
+        dest.writeInt(info.flags);
+        dest.writeInt(info.screenOrientation);
+        dest.writeInt(info.configChanges);
+        dest.writeInt(info.softInputMode);
+        dest.writeInt(info.uiOptions);
+        dest.writeString(info.parentActivityName);
+    }
+
+    private static ActivityInfo readActivityInfo(Package pkg, Parcel src) {
+        final ActivityInfo info = new ActivityInfo();
+        readComponentInfo(pkg, info, src);
+        info.theme = src.readInt();
+        info.launchMode = src.readInt();
+        info.permission = src.readString();
+        info.taskAffinity = src.readString();
+        info.targetActivity = src.readString();
+        info.flags = src.readInt();
+        info.screenOrientation = src.readInt();
+        info.configChanges = src.readInt();
+        info.softInputMode = src.readInt();
+        info.uiOptions = src.readInt();
+        info.parentActivityName = src.readString();
+        return info;
+    }
+
+    private static void writeProviderInfo(ProviderInfo info, Parcel dest) {
+        writeComponentInfo(info, dest);
+        dest.writeString(info.authority);
+        dest.writeString(info.readPermission);
+        dest.writeString(info.writePermission);
+        dest.writeInt(info.grantUriPermissions ? 1 : 0);
+        dest.writeTypedArray(info.uriPermissionPatterns, 0);
+        dest.writeTypedArray(info.pathPermissions, 0);
+        dest.writeInt(info.multiprocess ? 1 : 0);
+        dest.writeInt(info.initOrder);
+        dest.writeInt(info.flags);
+        dest.writeInt(info.isSyncable ? 1 : 0);
+    }
+
+    private static ProviderInfo readProviderInfo(Package pkg, Parcel src) {
+        final ProviderInfo info = new ProviderInfo();
+        readComponentInfo(pkg, info, src);
+        info.authority = src.readString();
+        info.readPermission = src.readString();
+        info.writePermission = src.readString();
+        info.grantUriPermissions = src.readInt() != 0;
+        info.uriPermissionPatterns = src.createTypedArray(PatternMatcher.CREATOR);
+        info.pathPermissions = src.createTypedArray(PathPermission.CREATOR);
+        info.multiprocess = src.readInt() != 0;
+        info.initOrder = src.readInt();
+        info.flags = src.readInt();
+        info.isSyncable = src.readInt() != 0;
+        return info;
+    }
+
+    private static void writeIntentInfos(ArrayList<? extends IntentInfo> intents, Parcel dest) {
+        dest.writeInt(intents.size());
+        for (IntentInfo intent : intents) {
+            writeIntentInfo(intent, dest);
+        }
+    }
+
+    private static void writeIntentInfo(IntentInfo intent, Parcel dest) {
+        intent.writeToParcel(dest, 0);
+        dest.writeInt(intent.hasDefault ? 1 : 0);
+        dest.writeInt(intent.labelRes);
+        TextUtils.writeToParcel(intent.nonLocalizedLabel, dest, 0);
+        dest.writeInt(intent.icon);
+        dest.writeInt(intent.logo);
+        dest.writeInt(intent.preferred);
+    }
+
+    private static void readIntentInfo(IntentInfo intent, Parcel src) {
+        intent.hasDefault = src.readInt() != 0;
+        intent.labelRes = src.readInt();
+        intent.nonLocalizedLabel = TextUtils.CHAR_SEQUENCE_CREATOR.createFromParcel(src);
+        intent.icon = src.readInt();
+        intent.logo = src.readInt();
+        intent.preferred = src.readInt();
+    }
+
+    private static void writeNullableStringList(List<String> list, Parcel dest) {
+        if (list != null) {
+            dest.writeInt(1);
+            dest.writeStringList(list);
+        } else {
+            dest.writeInt(0);
+        }
+    }
+
+    private static ArrayList<String> readNullableStringList(Parcel src) {
+        return src.readInt() != 0 ? src.createStringArrayList() : null;
+    }
+
     /**
      * @hide
      */
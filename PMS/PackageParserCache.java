@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.pm;
+
+import android.content.pm.PackageParser;
+import android.os.Build;
+import android.os.FileUtils;
+import android.os.Parcel;
+import android.util.AtomicFile;
+import android.util.Slog;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+
+import libcore.io.IoUtils;
+
+/**
+ * On-disk cache of parsed packages, so that APKs that have not changed since
+ * the last boot do not need their manifest parsed (and an AssetManager
+ * built for them) again.
+ *
+ * There is one file per APK under /data/system/package_cache.  An entry is
+ * only used if the APK's path, size and modification time, the parse flags
+ * and the build fingerprint all match what was recorded with it.  Because
+ * the entries are flattened Parcels, whose layout may change with any
+ * update, the whole cache is also dropped when ro.build.fingerprint changes.
+ *
+ * Entries are written with {@link AtomicFile} and read back through it, so
+ * a write interrupted by a crash falls back to the previous entry.  Each
+ * entry also ends with {@link #END_MAGIC} at a known offset; an entry that
+ * was truncated anyway is rejected rather than unparcelled into a partial
+ * package, as reading past the end of a Parcel does not fail.
+ *
+ * Reads and writes of different APKs may happen concurrently from the
+ * parse workers.
+ */
+final class PackageParserCache {
+    static final String TAG = "PackageParserCache";
+
+    private static final int MAGIC = 0x50504333; // "PPC3"
+    private static final int END_MAGIC = 0x50504345; // "PPCE"
+    private static final String FINGERPRINT_FILE = "fingerprint";
+    /** Suffix AtomicFile gives the backup of a file being rewritten. */
+    private static final String BACKUP_SUFFIX = ".bak";
+
+    private final File mCacheDir;
+    private final String mFingerprint;
+
+    /** Entries read or written since boot; everything else is pruned. */
+    private final HashSet<String> mUsed = new HashSet<String>();
+
+    PackageParserCache(File cacheDir) {
+        mCacheDir = cacheDir;
+        mFingerprint = Build.FINGERPRINT;
+
+        final File fingerprintFile = new File(cacheDir, FINGERPRINT_FILE);
+        String cachedFingerprint = null;
+        try {
+            cachedFingerprint = IoUtils.readFileAsString(fingerprintFile.getPath());
+        } catch (IOException e) {
+            // No cache yet.
+        }
+        if (!mFingerprint.equals(cachedFingerprint)) {
+            Slog.i(TAG, "Build changed, clearing " + cacheDir);
+            FileUtils.deleteContents(cacheDir);
+            cacheDir.mkdirs();
+            FileUtils.setPermissions(cacheDir.toString(),
+                    FileUtils.S_IRWXU|FileUtils.S_IRWXG, -1, -1);
+            FileOutputStream out = null;
+            try {
+                out = new FileOutputStream(fingerprintFile);
+                out.write(mFingerprint.getBytes());
+            } catch (IOException e) {
+                Slog.w(TAG, "Unable to write " + fingerprintFile, e);
+            } finally {
+                IoUtils.closeQuietly(out);
+            }
+        }
+    }
+
+    private File cacheFileFor(File apk) {
+        String name = apk.getPath();
+        if (name.startsWith("/")) {
+            name = name.substring(1);
+        }
+        return new File(mCacheDir, name.replace('/', '@'));
+    }
+
+    private void noteUsed(File cacheFile) {
+        synchronized (mUsed) {
+            mUsed.add(cacheFile.getName());
+        }
+    }
+
+    /**
+     * The cached result of parsing {@code apk} with {@code parseFlags}, or
+     * null if there is none or it is stale.
+     */
+    PackageParser.Package read(File apk, int parseFlags) {
+        final File cacheFile = cacheFileFor(apk);
+        final AtomicFile file = new AtomicFile(cacheFile);
+        final byte[] bytes;
+        try {
+            // Restores the previous entry if a write did not complete.
+            bytes = file.readFully();
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed reading " + cacheFile, e);
+            return null;
+        }
+        noteUsed(cacheFile);
+
+        final Parcel p = Parcel.obtain();
+        try {
+            p.unmarshall(bytes, 0, bytes.length);
+            if (bytes.length < 8) {
+                return null;
+            }
+            // The entry's length, then the end marker, close the entry.
+            p.setDataPosition(bytes.length - 8);
+            if (p.readInt() != bytes.length - 8 || p.readInt() != END_MAGIC) {
+                Slog.w(TAG, "Truncated cache entry " + cacheFile);
+                file.delete();
+                return null;
+            }
+            p.setDataPosition(0);
+            if (p.readInt() != MAGIC
+                    || !mFingerprint.equals(p.readString())
+                    || !apk.getPath().equals(p.readString())
+                    || p.readLong() != apk.length()
+                    || p.readLong() != apk.lastModified()
+                    || p.readInt() != parseFlags) {
+                return null;
+            }
+            final PackageParser.Package pkg = PackageParser.readPackageFromParcel(p);
+            if (p.dataPosition() != bytes.length - 8) {
+                Slog.w(TAG, "Inconsistent cache entry " + cacheFile);
+                file.delete();
+                return null;
+            }
+            return pkg;
+        } catch (RuntimeException e) {
+            Slog.w(TAG, "Corrupt cache entry " + cacheFile, e);
+            file.delete();
+            return null;
+        } finally {
+            p.recycle();
+        }
+    }
+
+    /**
+     * Record the result of parsing {@code apk} with {@code parseFlags}.
+     * Must be called before anything else modifies {@code pkg}.
+     */
+    void write(File apk, int parseFlags, PackageParser.Package pkg) {
+        final File cacheFile = cacheFileFor(apk);
+        noteUsed(cacheFile);
+
+        final byte[] bytes;
+        final Parcel p = Parcel.obtain();
+        try {
+            p.writeInt(MAGIC);
+            p.writeString(mFingerprint);
+            p.writeString(apk.getPath());
+            p.writeLong(apk.length());
+            p.writeLong(apk.lastModified());
+            p.writeInt(parseFlags);
+            if (!PackageParser.writePackageToParcel(pkg, p)) {
+                new AtomicFile(cacheFile).delete();
+                return;
+            }
+            p.writeInt(p.dataPosition());
+            p.writeInt(END_MAGIC);
+            bytes = p.marshall();
+        } finally {
+            p.recycle();
+        }
+
+        final AtomicFile file = new AtomicFile(cacheFile);
+        FileOutputStream out = null;
+        try {
+            out = file.startWrite();
+            out.write(bytes);
+            file.finishWrite(out);
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed writing " + cacheFile, e);
+            file.failWrite(out);
+        }
+    }
+
+    /**
+     * Delete entries that were not used since boot, i.e. those of APKs that
+     * no longer exist.  Call once the boot scan is complete.  The backup
+     * AtomicFile keeps of an entry in use is kept with it.
+     */
+    void prune() {
+        final String[] names = mCacheDir.list();
+        if (names == null) {
+            return;
+        }
+        synchronized (mUsed) {
+            for (String name : names) {
+                String entry = name;
+                if (entry.endsWith(BACKUP_SUFFIX)) {
+                    entry = entry.substring(0, entry.length() - BACKUP_SUFFIX.length());
+                }
+                if (!FINGERPRINT_FILE.equals(entry) && !mUsed.contains(entry)) {
+                    new File(mCacheDir, name).delete();
+                }
+            }
+        }
+    }
+}
@@ -54,6 +54,9 @@ class PackageSettingBase extends GrantedPermissions {
     String resourcePathString;
     String nativeLibraryPathString;
     long timeStamp;
+    // Size of codePath when its signatures were last collected; together
+    // with timeStamp it decides whether they can be reused on the next scan.
+    long codeSize;
     long firstInstallTime;
     long lastUpdateTime;
     int versionCode;
@@ -69,6 +72,14 @@ class PackageSettingBase extends GrantedPermissions {
 
     private static final PackageUserState DEFAULT_USER_STATE = new PackageUserState();
 
+    /**
+     * Bumped whenever the per-user state of any package may have changed, so
+     * that results derived from it, such as the package manager's receiver
+     * query cache, can tell they are stale.  Guarded by mPackages like the
+     * state itself.
+     */
+    static int sUserStateGeneration;
+
     // Whether this package is currently stopped, thus can not be
     // started until explicitly launched by the user.
     private final SparseArray<PackageUserState> userState = new SparseArray<PackageUserState>();
@@ -102,6 +113,7 @@ class PackageSettingBase extends GrantedPermissions {
         resourcePathString = base.resourcePathString;
         nativeLibraryPathString = base.nativeLibraryPathString;
         timeStamp = base.timeStamp;
+        codeSize = base.codeSize;
         firstInstallTime = base.firstInstallTime;
         lastUpdateTime = base.lastUpdateTime;
         versionCode = base.versionCode;
@@ -113,6 +125,7 @@ class PackageSettingBase extends GrantedPermissions {
         permissionsFixed = base.permissionsFixed;
         haveGids = base.haveGids;
         userState.clear();
+        sUserStateGeneration++;
         for (int i=0; i<base.userState.size(); i++) {
             userState.put(base.userState.keyAt(i),
                     new PackageUserState(base.userState.valueAt(i)));
@@ -165,12 +178,14 @@ class PackageSettingBase extends GrantedPermissions {
         gids = base.gids;
 
         timeStamp = base.timeStamp;
+        codeSize = base.codeSize;
         firstInstallTime = base.firstInstallTime;
         lastUpdateTime = base.lastUpdateTime;
         signatures = base.signatures;
         permissionsFixed = base.permissionsFixed;
         haveGids = base.haveGids;
         userState.clear();
+        sUserStateGeneration++;
         for (int i=0; i<base.userState.size(); i++) {
             userState.put(base.userState.keyAt(i), base.userState.valueAt(i));
         }
@@ -179,6 +194,7 @@ class PackageSettingBase extends GrantedPermissions {
     }
 
     private PackageUserState modifyUserState(int userId) {
+        sUserStateGeneration++;
         PackageUserState state = userState.get(userId);
         if (state == null) {
             state = new PackageUserState();
@@ -367,5 +383,6 @@ class PackageSettingBase extends GrantedPermissions {
 
     void removeUser(int userId) {
         userState.delete(userId);
+        sUserStateGeneration++;
     }
 }
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.pm;
+
+import java.io.PrintWriter;
+
+/**
+ * Running counts and times of the package manager operations that dominate
+ * boot and install: parsing, certificate collection, intent resolution and
+ * reading or writing the settings.  Shown by "dumpsys package --timings",
+ * and cleared by "dumpsys package --timings reset", so that a change can be
+ * measured on a device by rebooting or repeating a workload and comparing.
+ *
+ * Recording is a few arithmetic operations under one lock; parse workers
+ * call in concurrently.
+ *
+ * This is on-device instrumentation only.  The numbers depend on the
+ * device, its storage and the installed packages, so they compare runs on
+ * one device and are not a substitute for a host-side benchmark over a
+ * fixed APK corpus and synthetic packages.xml files, which does not exist
+ * yet.
+ */
+final class PackageTimings {
+    static final int PARSE_PACKAGE = 0;
+    static final int COLLECT_CERTIFICATES = 1;
+    static final int QUERY_INTENT = 2;
+    static final int WRITE_SETTINGS = 3;
+    static final int PERSIST_SETTINGS = 4;
+    static final int READ_SETTINGS = 5;
+
+    private static final String[] NAMES = {
+        "parsePackage",
+        "collectCertificates",
+        "queryIntent",
+        "writeSettings",
+        "persistSettings",
+        "readSettings",
+    };
+
+    private static final long[] sCount = new long[NAMES.length];
+    private static final long[] sTotalNanos = new long[NAMES.length];
+    private static final long[] sMaxNanos = new long[NAMES.length];
+
+    private PackageTimings() {
+    }
+
+    /** Record one {@code op} that started at {@code startNanos}, from System.nanoTime(). */
+    static void record(int op, long startNanos) {
+        final long nanos = System.nanoTime() - startNanos;
+        synchronized (sCount) {
+            sCount[op]++;
+            sTotalNanos[op] += nanos;
+            if (nanos > sMaxNanos[op]) {
+                sMaxNanos[op] = nanos;
+            }
+        }
+    }
+
+    static void reset() {
+        synchronized (sCount) {
+            for (int i=0; i<NAMES.length; i++) {
+                sCount[i] = 0;
+                sTotalNanos[i] = 0;
+                sMaxNanos[i] = 0;
+            }
+        }
+    }
+
+    static void dump(PrintWriter pw) {
+        pw.println("Package manager timings (count, total ms, average us, max us):");
+        synchronized (sCount) {
+            for (int i=0; i<NAMES.length; i++) {
+                pw.print("  "); pw.print(NAMES[i]); pw.print(": ");
+                pw.print(sCount[i]); pw.print(", ");
+                pw.print(sTotalNanos[i] / 1000000); pw.print(", ");
+                pw.print(sCount[i] > 0 ? sTotalNanos[i] / sCount[i] / 1000 : 0); pw.print(", ");
+                pw.println(sMaxNanos[i] / 1000);
+            }
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.pm;
+
+import android.content.pm.PackageParser;
+import android.os.Process;
+import android.util.DisplayMetrics;
+import android.util.Slog;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parse stage of a directory scan.  The APKs are parsed, and where needed
+ * their certificates collected, on a fixed pool of worker threads sized to
+ * the number of cores.  Results are handed back in the order the files were
+ * submitted, so the commit into the package manager's state, which stays on
+ * the scanning thread, is as deterministic as a serial scan.
+ *
+ * Workers touch nothing but their own {@link PackageParser} and the
+ * {@link PackageParserCache}: no package manager lock is held or needed
+ * while parsing.
+ */
+final class ParallelPackageParser {
+    static final String TAG = PackageManagerService.TAG;
+
+    static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
+
+    static final class ParseResult {
+        final File scanFile;
+        final PackageParser parser;
+        /** The parsed package, or null; the error is then in {@link #parser}. */
+        final PackageParser.Package pkg;
+
+        ParseResult(File _scanFile, PackageParser _parser, PackageParser.Package _pkg) {
+            scanFile = _scanFile;
+            parser = _parser;
+            pkg = _pkg;
+        }
+    }
+
+    private final String[] mSeparateProcesses;
+    private final boolean mOnlyCore;
+    private final DisplayMetrics mMetrics;
+    private final PackageParserCache mCache;
+
+    ParallelPackageParser(String[] separateProcesses, boolean onlyCore, DisplayMetrics metrics,
+            PackageParserCache cache) {
+        mSeparateProcesses = separateProcesses;
+        mOnlyCore = onlyCore;
+        mMetrics = metrics;
+        mCache = cache;
+    }
+
+    PackageParser newParser(String scanPath) {
+        PackageParser pp = new PackageParser(scanPath);
+        pp.setSeparateProcesses(mSeparateProcesses);
+        pp.setOnlyCoreApps(mOnlyCore);
+        return pp;
+    }
+
+    /**
+     * Parse {@code files}.  Certificates are collected up front for every
+     * file not in {@code certsCached}, i.e. every file whose recorded
+     * signatures cannot be reused.  The returned list is in the same order
+     * as {@code files}; an entry is null if its worker failed unexpectedly,
+     * in which case the caller should fall back to a serial scan of that
+     * file.
+     */
+    List<ParseResult> parse(List<File> files, final int parseFlags, final Set<File> certsCached) {
+        final int N = files.size();
+        final ArrayList<ParseResult> results = new ArrayList<ParseResult>(N);
+        final int threads = Math.min(MAX_THREADS, N);
+        if (threads <= 1) {
+            for (int i=0; i<N; i++) {
+                results.add(parseOne(files.get(i), parseFlags, certsCached));
+            }
+            return results;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+                    private final AtomicInteger mCount = new AtomicInteger();
+                    @Override public Thread newThread(final Runnable r) {
+                        return new Thread("PackageParser-" + mCount.incrementAndGet()) {
+                            @Override public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_FOREGROUND);
+                                r.run();
+                            }
+                        };
+                    }
+                });
+        try {
+            final ArrayList<Future<ParseResult>> futures = new ArrayList<Future<ParseResult>>(N);
+            for (int i=0; i<N; i++) {
+                final File file = files.get(i);
+                futures.add(executor.submit(new Callable<ParseResult>() {
+                    @Override public ParseResult call() {
+                        return parseOne(file, parseFlags, certsCached);
+                    }
+                }));
+            }
+            for (int i=0; i<N; i++) {
+                ParseResult res = null;
+                try {
+                    res = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Slog.w(TAG, "Interrupted parsing " + files.get(i), e);
+                } catch (ExecutionException e) {
+                    Slog.w(TAG, "Failed parsing " + files.get(i), e.getCause());
+                }
+                results.add(res);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private ParseResult parseOne(File scanFile, int parseFlags, Set<File> certsCached) {
+        final String scanPath = scanFile.getPath();
+        final PackageParser pp = newParser(scanPath);
+        PackageParser.Package pkg = mCache != null ? mCache.read(scanFile, parseFlags) : null;
+        if (pkg == null) {
+            final long parseStart = System.nanoTime();
+            pkg = pp.parsePackage(scanFile, scanPath, mMetrics, parseFlags);
+            PackageTimings.record(PackageTimings.PARSE_PACKAGE, parseStart);
+            if (pkg != null && mCache != null) {
+                mCache.write(scanFile, parseFlags, pkg);
+            }
+        }
+        if (pkg != null && PackageManagerService.GET_CERTIFICATES
+                && !certsCached.contains(scanFile)) {
+            final long certsStart = System.nanoTime();
+            if (!pp.collectCertificates(pkg, parseFlags)) {
+                // Leave it to the commit stage, which repeats the collection
+                // and reports the error against the package.
+                pkg.mSignatures = null;
+            }
+            PackageTimings.record(PackageTimings.COLLECT_CERTIFICATES, certsStart);
+        }
+        return new ParseResult(scanFile, pp, pkg);
+    }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.pm;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of permission names stored as a bitset over a process-wide table of
+ * every permission name seen, which replaces a HashSet per package or shared
+ * user.  A package with 20 grants then costs a few longs rather than a hash
+ * table and 20 entries.
+ *
+ * The table only ever grows, so an index stays valid for the life of the
+ * process.  Instances, like the settings they belong to, are guarded by
+ * mPackages; the table has its own lock since it is shared by all of them.
+ */
+final class PermissionSet extends AbstractSet<String> {
+    private static final long[] EMPTY = new long[0];
+
+    private static final HashMap<String, Integer> sIndices = new HashMap<String, Integer>();
+    private static final ArrayList<String> sNames = new ArrayList<String>();
+
+    private long[] mBits = EMPTY;
+    private int mSize;
+
+    PermissionSet() {
+    }
+
+    PermissionSet(PermissionSet base) {
+        mBits = base.mSize == 0 ? EMPTY : base.mBits.clone();
+        mSize = base.mSize;
+    }
+
+    private static int indexOf(String name, boolean create) {
+        synchronized (sIndices) {
+            Integer index = sIndices.get(name);
+            if (index != null) {
+                return index;
+            }
+            if (!create) {
+                return -1;
+            }
+            index = sNames.size();
+            sNames.add(name.intern());
+            sIndices.put(sNames.get(index), index);
+            return index;
+        }
+    }
+
+    private static String nameAt(int index) {
+        synchronized (sIndices) {
+            return sNames.get(index);
+        }
+    }
+
+    /** Number of distinct permission names in the table. */
+    static int getTableSize() {
+        synchronized (sIndices) {
+            return sNames.size();
+        }
+    }
+
+    /** Bytes used by this set's bitset. */
+    int getBitsetBytes() {
+        return mBits.length * 8;
+    }
+
+    private boolean isSet(int index) {
+        final int word = index >>> 6;
+        return word < mBits.length && (mBits[word] & (1L << index)) != 0;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final int index = indexOf((String) o, false);
+        return index >= 0 && isSet(index);
+    }
+
+    @Override
+    public boolean add(String name) {
+        final int index = indexOf(name, true);
+        if (isSet(index)) {
+            return false;
+        }
+        final int word = index >>> 6;
+        if (word >= mBits.length) {
+            final long[] bits = new long[word + 1];
+            System.arraycopy(mBits, 0, bits, 0, mBits.length);
+            mBits = bits;
+        }
+        mBits[word] |= 1L << index;
+        mSize++;
+        return true;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof String)) {
+            return false;
+        }
+        final int index = indexOf((String) o, false);
+        if (index < 0 || !isSet(index)) {
+            return false;
+        }
+        clearIndex(index);
+        return true;
+    }
+
+    private void clearIndex(int index) {
+        mBits[index >>> 6] &= ~(1L << index);
+        mSize--;
+    }
+
+    @Override
+    public void clear() {
+        mBits = EMPTY;
+        mSize = 0;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int mNext = nextSet(0);
+            private int mLast = -1;
+
+            private int nextSet(int from) {
+                final int N = mBits.length * 64;
+                for (int i=from; i<N; i++) {
+                    if (isSet(i)) {
+                        return i;
+                    }
+                }
+                return -1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return mNext >= 0;
+            }
+
+            @Override
+            public String next() {
+                if (mNext < 0) {
+                    throw new NoSuchElementException();
+                }
+                mLast = mNext;
+                mNext = nextSet(mNext + 1);
+                return nameAt(mLast);
+            }
+
+            @Override
+            public void remove() {
+                if (mLast < 0) {
+                    throw new IllegalStateException();
+                }
+                clearIndex(mLast);
+                mLast = -1;
+            }
+        };
+    }
+}
@@ -32,7 +32,6 @@ import android.net.Uri;
 import android.os.PatternMatcher;
 import android.util.LogPrinter;
 import com.android.internal.util.FastXmlSerializer;
-import com.android.internal.util.JournaledFile;
 import com.android.internal.util.XmlUtils;
 import com.android.server.pm.PackageManagerService.DumpState;
 
@@ -66,6 +65,7 @@ import android.util.SparseArray;
 import android.util.Xml;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -84,8 +84,6 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
 
-import libcore.io.IoUtils;
-
 /**
  * Holds information about dynamic settings.
  */
@@ -117,6 +115,9 @@ final class Settings {
     private final File mSettingsFilename;
     private final File mBackupSettingsFilename;
     private final File mPackageListFilename;
+    private final SettingsPersister mPersister;
+    /** Size of the last serialized packages.xml, to size the next buffer. */
+    private int mSettingsSizeHint = 64 * 1024;
     private final File mStoppedPackagesFilename;
     private final File mBackupStoppedPackagesFilename;
 
@@ -134,6 +135,10 @@ final class Settings {
     int mInternalSdkPlatform;
     int mExternalSdkPlatform;
 
+    // Build fingerprint the settings were last written by; used to force
+    // a full re-verification of package certificates after an update.
+    String mFingerprint;
+
     Boolean mReadExternalStorageEnforced;
 
     /** Device identity for the purpose of package verification. */
@@ -205,6 +210,8 @@ final class Settings {
         mBackupSettingsFilename = new File(mSystemDir, "packages-backup.xml");
         mPackageListFilename = new File(mSystemDir, "packages.list");
         FileUtils.setPermissions(mPackageListFilename, 0660, SYSTEM_UID, PACKAGE_INFO_GID);
+        mPersister = new SettingsPersister(mSettingsFilename, mBackupSettingsFilename,
+                mPackageListFilename);
 
         // Deprecated: Needed for migration
         mStoppedPackagesFilename = new File(mSystemDir, "packages-stopped.xml");
@@ -502,7 +509,7 @@ final class Settings {
                         }
                         p.appId = dis.appId;
                         // Clone permissions
-                        p.grantedPermissions = new HashSet<String>(dis.grantedPermissions);
+                        p.grantedPermissions = new PermissionSet(dis.grantedPermissions);
                         // Clone component info
                         List<UserInfo> users = getAllUsers();
                         if (users != null) {
@@ -673,7 +680,7 @@ final class Settings {
                 newGids = PackageManagerService.appendInts(newGids, bp.gids);
             }
         }
-        sus.gids = newGids;
+        sus.gids = GrantedPermissions.internGids(newGids);
     }
 
     int removePackageLPw(String name) {
@@ -1258,33 +1265,24 @@ final class Settings {
         }
     }
 
+    /**
+     * Serialize the settings and hand them to {@link #mPersister}, which
+     * writes packages.xml and packages.list off this thread.  Call
+     * {@link #flushWrites} where the files must be on disk.
+     */
     void writeLPr() {
-        //Debug.startMethodTracing("/data/system/packageprof", 8 * 1024 * 1024);
+        final long start = System.nanoTime();
+        writeSettingsLPr();
+        PackageTimings.record(PackageTimings.WRITE_SETTINGS, start);
+    }
 
-        // Keep the old settings around until we know the new ones have
-        // been successfully written.
-        if (mSettingsFilename.exists()) {
-            // Presence of backup settings file indicates that we failed
-            // to persist settings earlier. So preserve the older
-            // backup for future reference since the current settings
-            // might have been corrupted.
-            if (!mBackupSettingsFilename.exists()) {
-                if (!mSettingsFilename.renameTo(mBackupSettingsFilename)) {
-                    Log.wtf(PackageManagerService.TAG, "Unable to backup package manager settings, "
-                            + " current changes will be lost at reboot");
-                    return;
-                }
-            } else {
-                mSettingsFilename.delete();
-                Slog.w(PackageManagerService.TAG, "Preserving older settings backup");
-            }
-        }
+    private void writeSettingsLPr() {
+        //Debug.startMethodTracing("/data/system/packageprof", 8 * 1024 * 1024);
 
         mPastSignatures.clear();
 
         try {
-            FileOutputStream fstr = new FileOutputStream(mSettingsFilename);
-            BufferedOutputStream str = new BufferedOutputStream(fstr);
+            ByteArrayOutputStream str = new ByteArrayOutputStream(mSettingsSizeHint);
 
             //XmlSerializer serializer = XmlUtils.serializerInstance();
             XmlSerializer serializer = new FastXmlSerializer();
@@ -1297,6 +1295,9 @@ final class Settings {
             serializer.startTag(null, "last-platform-version");
             serializer.attribute(null, "internal", Integer.toString(mInternalSdkPlatform));
             serializer.attribute(null, "external", Integer.toString(mExternalSdkPlatform));
+            if (mFingerprint != null) {
+                serializer.attribute(null, "fingerprint", mFingerprint);
+            }
             serializer.endTag(null, "last-platform-version");
 
             if (mVerifierDeviceIdentity != null) {
@@ -1373,92 +1374,64 @@ final class Settings {
             serializer.endTag(null, "packages");
 
             serializer.endDocument();
+            final byte[] settings = str.toByteArray();
+            mSettingsSizeHint = settings.length;
 
-            str.flush();
-            FileUtils.sync(fstr);
-            str.close();
-
-            // New settings successfully written, old ones are no longer
-            // needed.
-            mBackupSettingsFilename.delete();
-            FileUtils.setPermissions(mSettingsFilename.toString(),
-                    FileUtils.S_IRUSR|FileUtils.S_IWUSR
-                    |FileUtils.S_IRGRP|FileUtils.S_IWGRP,
-                    -1, -1);
-
-            // Write package list file now, use a JournaledFile.
-            File tempFile = new File(mPackageListFilename.getAbsolutePath() + ".tmp");
-            JournaledFile journal = new JournaledFile(mPackageListFilename, tempFile);
-
-            final File writeTarget = journal.chooseForWrite();
-            fstr = new FileOutputStream(writeTarget);
-            str = new BufferedOutputStream(fstr);
-            try {
-                FileUtils.setPermissions(fstr.getFD(), 0660, SYSTEM_UID, PACKAGE_INFO_GID);
-
-                StringBuilder sb = new StringBuilder();
-                for (final PackageSetting pkg : mPackages.values()) {
-                    if (pkg.pkg == null || pkg.pkg.applicationInfo == null) {
-                        Slog.w(TAG, "Skipping " + pkg + " due to missing metadata");
-                        continue;
-                    }
+            // Build the package list now too, while the settings are locked.
+            StringBuilder sb = new StringBuilder();
+            for (final PackageSetting pkg : mPackages.values()) {
+                if (pkg.pkg == null || pkg.pkg.applicationInfo == null) {
+                    Slog.w(TAG, "Skipping " + pkg + " due to missing metadata");
+                    continue;
+                }
 
-                    final ApplicationInfo ai = pkg.pkg.applicationInfo;
-                    final String dataPath = ai.dataDir;
-                    final boolean isDebug = (ai.flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
-                    final int[] gids = pkg.getGids();
+                final ApplicationInfo ai = pkg.pkg.applicationInfo;
+                final String dataPath = ai.dataDir;
+                final boolean isDebug = (ai.flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+                final int[] gids = pkg.getGids();
 
-                    // Avoid any application that has a space in its path.
-                    if (dataPath.indexOf(" ") >= 0)
-                        continue;
+                // Avoid any application that has a space in its path.
+                if (dataPath.indexOf(" ") >= 0)
+                    continue;
 
-                    // we store on each line the following information for now:
-                    //
-                    // pkgName    - package name
-                    // userId     - application-specific user id
-                    // debugFlag  - 0 or 1 if the package is debuggable.
-                    // dataPath   - path to package's data path
-                    // seinfo     - seinfo label for the app (assigned at install time)
-                    // gids       - supplementary gids this app launches with
-                    //
-                    // NOTE: We prefer not to expose all ApplicationInfo flags for now.
-                    //
-                    // DO NOT MODIFY THIS FORMAT UNLESS YOU CAN ALSO MODIFY ITS USERS
-                    // FROM NATIVE CODE. AT THE MOMENT, LOOK AT THE FOLLOWING SOURCES:
-                    //   system/core/run-as/run-as.c
-                    //   system/core/sdcard/sdcard.c
-                    //
-                    sb.setLength(0);
-                    sb.append(ai.packageName);
-                    sb.append(" ");
-                    sb.append((int)ai.uid);
-                    sb.append(isDebug ? " 1 " : " 0 ");
-                    sb.append(dataPath);
-                    sb.append(" ");
-                    sb.append(ai.seinfo);
-                    sb.append(" ");
-                    if (gids != null && gids.length > 0) {
-                        sb.append(gids[0]);
-                        for (int i = 1; i < gids.length; i++) {
-                            sb.append(",");
-                            sb.append(gids[i]);
-                        }
-                    } else {
-                        sb.append("none");
+                // we store on each line the following information for now:
+                //
+                // pkgName    - package name
+                // userId     - application-specific user id
+                // debugFlag  - 0 or 1 if the package is debuggable.
+                // dataPath   - path to package's data path
+                // seinfo     - seinfo label for the app (assigned at install time)
+                // gids       - supplementary gids this app launches with
+                //
+                // NOTE: We prefer not to expose all ApplicationInfo flags for now.
+                //
+                // DO NOT MODIFY THIS FORMAT UNLESS YOU CAN ALSO MODIFY ITS USERS
+                // FROM NATIVE CODE. AT THE MOMENT, LOOK AT THE FOLLOWING SOURCES:
+                //   system/core/run-as/run-as.c
+                //   system/core/sdcard/sdcard.c
+                //
+                sb.append(ai.packageName);
+                sb.append(" ");
+                sb.append((int)ai.uid);
+                sb.append(isDebug ? " 1 " : " 0 ");
+                sb.append(dataPath);
+                sb.append(" ");
+                sb.append(ai.seinfo);
+                sb.append(" ");
+                if (gids != null && gids.length > 0) {
+                    sb.append(gids[0]);
+                    for (int i = 1; i < gids.length; i++) {
+                        sb.append(",");
+                        sb.append(gids[i]);
                     }
-                    sb.append("\n");
-                    str.write(sb.toString().getBytes());
+                } else {
+                    sb.append("none");
                 }
-                str.flush();
-                FileUtils.sync(fstr);
-                str.close();
-                journal.commit();
-            } catch (Exception e) {
-                Log.wtf(TAG, "Failed to write packages.list", e);
-                IoUtils.closeQuietly(str);
-                journal.rollback();
+                sb.append("\n");
             }
 
+            mPersister.schedule(settings, sb.toString().getBytes());
+
             writeAllUsersPackageRestrictionsLPr();
             return;
 
@@ -1469,13 +1442,6 @@ final class Settings {
             Log.wtf(PackageManagerService.TAG, "Unable to write package manager settings, "
                     + "current changes will be lost at reboot", e);
         }
-        // Clean up partially written files
-        if (mSettingsFilename.exists()) {
-            if (!mSettingsFilename.delete()) {
-                Log.wtf(PackageManagerService.TAG, "Failed to clean up mangled file: "
-                        + mSettingsFilename);
-            }
-        }
         //Debug.stopMethodTracing();
     }
 
@@ -1488,6 +1454,7 @@ final class Settings {
         }
         serializer.attribute(null, "codePath", pkg.codePathString);
         serializer.attribute(null, "ft", Long.toHexString(pkg.timeStamp));
+        serializer.attribute(null, "sz", Long.toHexString(pkg.codeSize));
         serializer.attribute(null, "it", Long.toHexString(pkg.firstInstallTime));
         serializer.attribute(null, "ut", Long.toHexString(pkg.lastUpdateTime));
         serializer.attribute(null, "version", String.valueOf(pkg.versionCode));
@@ -1541,6 +1508,7 @@ final class Settings {
         }
         serializer.attribute(null, "flags", Integer.toString(pkg.pkgFlags));
         serializer.attribute(null, "ft", Long.toHexString(pkg.timeStamp));
+        serializer.attribute(null, "sz", Long.toHexString(pkg.codeSize));
         serializer.attribute(null, "it", Long.toHexString(pkg.firstInstallTime));
         serializer.attribute(null, "ut", Long.toHexString(pkg.lastUpdateTime));
         serializer.attribute(null, "version", String.valueOf(pkg.versionCode));
@@ -1648,8 +1616,25 @@ final class Settings {
         }
     }
 
+    /**
+     * Wait until everything passed to {@link #writeLPr} is on disk.  Does
+     * not need mPackages, and should not be called with it held.
+     */
+    void flushWrites() {
+        mPersister.flush();
+    }
+
     boolean readLPw(PackageManagerService service, List<UserInfo> users, int sdkVersion,
             boolean onlyCore) {
+        mPersister.flush();
+        final long start = System.nanoTime();
+        final boolean result = readSettingsLPw(service, users, sdkVersion, onlyCore);
+        PackageTimings.record(PackageTimings.READ_SETTINGS, start);
+        return result;
+    }
+
+    private boolean readSettingsLPw(PackageManagerService service, List<UserInfo> users,
+            int sdkVersion, boolean onlyCore) {
         FileInputStream str = null;
         if (mBackupSettingsFilename.exists()) {
             try {
@@ -1763,6 +1748,7 @@ final class Settings {
                         }
                     } catch (NumberFormatException e) {
                     }
+                    mFingerprint = parser.getAttributeValue(null, "fingerprint");
                 } else if (tagName.equals("verifier")) {
                     final String deviceIdentity = parser.getAttributeValue(null, "device");
                     try {
@@ -2266,6 +2252,13 @@ final class Settings {
                 }
             }
         }
+        String codeSizeStr = parser.getAttributeValue(null, "sz");
+        if (codeSizeStr != null) {
+            try {
+                ps.codeSize = Long.parseLong(codeSizeStr, 16);
+            } catch (NumberFormatException e) {
+            }
+        }
         timeStampStr = parser.getAttributeValue(null, "it");
         if (timeStampStr != null) {
             try {
@@ -2320,6 +2313,7 @@ final class Settings {
         String uidError = null;
         int pkgFlags = 0;
         long timeStamp = 0;
+        long codeSize = 0;
         long firstInstallTime = 0;
         long lastUpdateTime = 0;
         PackageSettingBase packageSetting = null;
@@ -2376,6 +2370,13 @@ final class Settings {
                     }
                 }
             }
+            String codeSizeStr = parser.getAttributeValue(null, "sz");
+            if (codeSizeStr != null) {
+                try {
+                    codeSize = Long.parseLong(codeSizeStr, 16);
+                } catch (NumberFormatException e) {
+                }
+            }
             timeStampStr = parser.getAttributeValue(null, "it");
             if (timeStampStr != null) {
                 try {
@@ -2421,6 +2422,7 @@ final class Settings {
                             + parser.getPositionDescription());
                 } else {
                     packageSetting.setTimeStamp(timeStamp);
+                    packageSetting.codeSize = codeSize;
                     packageSetting.firstInstallTime = firstInstallTime;
                     packageSetting.lastUpdateTime = lastUpdateTime;
                 }
@@ -2431,6 +2433,7 @@ final class Settings {
                             codePathStr), new File(resourcePathStr), nativeLibraryPathStr, userId,
                             versionCode, pkgFlags);
                     packageSetting.setTimeStamp(timeStamp);
+                    packageSetting.codeSize = codeSize;
                     packageSetting.firstInstallTime = firstInstallTime;
                     packageSetting.lastUpdateTime = lastUpdateTime;
                     mPendingPackages.add((PendingPackage) packageSetting);
@@ -2647,7 +2650,7 @@ final class Settings {
         }
     }
 
-    private void readGrantedPermissionsLPw(XmlPullParser parser, HashSet<String> outPerms)
+    private void readGrantedPermissionsLPw(XmlPullParser parser, PermissionSet outPerms)
             throws IOException, XmlPullParserException {
         int outerDepth = parser.getDepth();
         int type;
@@ -2661,7 +2664,7 @@ final class Settings {
             if (tagName.equals(TAG_ITEM)) {
                 String name = parser.getAttributeValue(null, ATTR_NAME);
                 if (name != null) {
-                    outPerms.add(name.intern());
+                    outPerms.add(name);
                 } else {
                     PackageManagerService.reportSettingsProblem(Log.WARN,
                             "Error in package manager settings: <perms> has" + " no name at "
@@ -3185,6 +3188,86 @@ final class Settings {
         }
     }
 
+    // Rough Dalvik sizes of a HashSet<String>, for comparison in dumpMemoryLPr:
+    // the HashSet and its HashMap, the table header, one slot and one entry.
+    private static final int HASH_SET_BYTES = 16 + 48 + 16;
+    private static final int HASH_SET_SLOT_BYTES = 4;
+    private static final int HASH_SET_ENTRY_BYTES = 32;
+
+    private static int estimateHashSetBytes(int size) {
+        int capacity = 2;
+        while (capacity * 3 / 4 < size) {
+            capacity <<= 1;
+        }
+        return HASH_SET_BYTES + capacity * HASH_SET_SLOT_BYTES + size * HASH_SET_ENTRY_BYTES;
+    }
+
+    /** Approximate heap used by permission grants, gids and component state. */
+    void dumpMemoryLPr(PrintWriter pw) {
+        final ArrayList<GrantedPermissions> all = new ArrayList<GrantedPermissions>();
+        all.addAll(mPackages.values());
+        all.addAll(mDisabledSysPackages.values());
+        all.addAll(mSharedUsers.values());
+
+        int grants = 0;
+        long bitsetBytes = 0;
+        long hashSetBytes = 0;
+        int gidArrays = 0;
+        long gidBytes = 0;
+        final HashSet<int[]> distinctGids = new HashSet<int[]>();
+        long distinctGidBytes = 0;
+        for (int i=0; i<all.size(); i++) {
+            final GrantedPermissions gp = all.get(i);
+            grants += gp.grantedPermissions.size();
+            bitsetBytes += 16 + gp.grantedPermissions.getBitsetBytes();
+            hashSetBytes += estimateHashSetBytes(gp.grantedPermissions.size());
+            if (gp.gids != null) {
+                gidArrays++;
+                gidBytes += 12 + 4 * gp.gids.length;
+                if (distinctGids.add(gp.gids)) {
+                    distinctGidBytes += 12 + 4 * gp.gids.length;
+                }
+            }
+        }
+
+        int componentSets = 0;
+        int components = 0;
+        final List<UserInfo> users = getAllUsers();
+        for (PackageSetting ps : mPackages.values()) {
+            if (users == null) {
+                break;
+            }
+            for (UserInfo user : users) {
+                HashSet<String> cmp = ps.getEnabledComponents(user.id);
+                if (cmp != null) {
+                    componentSets++;
+                    components += cmp.size();
+                }
+                cmp = ps.getDisabledComponents(user.id);
+                if (cmp != null) {
+                    componentSets++;
+                    components += cmp.size();
+                }
+            }
+        }
+
+        pw.println("Package settings memory (approximate):");
+        pw.print("  settings: "); pw.print(mPackages.size()); pw.print(" packages, ");
+                pw.print(mDisabledSysPackages.size()); pw.print(" disabled system, ");
+                pw.print(mSharedUsers.size()); pw.println(" shared users");
+        pw.print("  permission grants: "); pw.print(grants);
+                pw.print(" over "); pw.print(PermissionSet.getTableSize());
+                pw.println(" distinct names");
+        pw.print("    bitsets: "); pw.print(bitsetBytes);
+                pw.print(" bytes (as HashSets: "); pw.print(hashSetBytes); pw.println(" bytes)");
+        pw.print("  gids: "); pw.print(gidArrays); pw.print(" references to ");
+                pw.print(distinctGids.size()); pw.print(" arrays, ");
+                pw.print(distinctGidBytes); pw.print(" bytes (unshared: ");
+                pw.print(gidBytes); pw.println(" bytes)");
+        pw.print("  component state: "); pw.print(componentSets); pw.print(" sets, ");
+                pw.print(components); pw.println(" components");
+    }
+
     void dumpReadMessagesLPr(PrintWriter pw, DumpState dumpState) {
         pw.println("Settings parse messages:");
         pw.print(mReadMessages.toString());
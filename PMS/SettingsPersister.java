@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2011 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.pm;
+
+import static android.os.Process.PACKAGE_INFO_GID;
+import static android.os.Process.SYSTEM_UID;
+
+import android.os.FileUtils;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.util.Log;
+import android.util.Slog;
+
+import com.android.internal.util.JournaledFile;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import libcore.io.IoUtils;
+
+/**
+ * Writes packages.xml and packages.list behind the package manager's back.
+ *
+ * {@link Settings#writeLPr} serializes the settings into memory while
+ * mPackages is held, which only costs CPU, and hands the bytes over here.
+ * The files are then written and synced on a background thread, without any
+ * package manager lock.  Snapshots that arrive while a write is in progress
+ * replace each other, so a burst of changes costs at most one more write.
+ *
+ * Where the files have to be on disk the package manager waits with
+ * {@link #flush}: before the broadcasts of an install or removal, since
+ * run-as and sdcard read packages.list, and on shutdown.
+ *
+ * packages.xml keeps its backup-file protocol: it is renamed to
+ * packages-backup.xml before being rewritten, and the backup is only removed
+ * once the new file has been synced, so an interrupted write is recovered by
+ * {@link Settings#readLPw} exactly as before.
+ */
+final class SettingsPersister {
+    static final String TAG = PackageManagerService.TAG;
+
+    private final File mSettingsFilename;
+    private final File mBackupSettingsFilename;
+    private final File mPackageListFilename;
+
+    private final HandlerThread mThread;
+    private final Handler mHandler;
+
+    private final Object mLock = new Object();
+    /** Latest snapshot not yet written, or null. */
+    private byte[] mPendingSettings;
+    private byte[] mPendingPackageList;
+    private boolean mWriting;
+
+    private final Runnable mWriteRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writePending();
+        }
+    };
+
+    SettingsPersister(File settingsFilename, File backupSettingsFilename,
+            File packageListFilename) {
+        mSettingsFilename = settingsFilename;
+        mBackupSettingsFilename = backupSettingsFilename;
+        mPackageListFilename = packageListFilename;
+        mThread = new HandlerThread("PackageSettingsWriter",
+                Process.THREAD_PRIORITY_BACKGROUND);
+        mThread.start();
+        mHandler = new Handler(mThread.getLooper());
+    }
+
+    /**
+     * Write {@code settings} to packages.xml and {@code packageList} to
+     * packages.list, replacing any snapshot that has not been written yet.
+     */
+    void schedule(byte[] settings, byte[] packageList) {
+        synchronized (mLock) {
+            final boolean post = mPendingSettings == null;
+            mPendingSettings = settings;
+            mPendingPackageList = packageList;
+            if (post) {
+                mHandler.post(mWriteRunnable);
+            }
+        }
+    }
+
+    /**
+     * Wait until every scheduled snapshot is on disk.  Call before reading
+     * the files back.
+     */
+    void flush() {
+        synchronized (mLock) {
+            while (mPendingSettings != null || mWriting) {
+                try {
+                    mLock.wait();
+                } catch (InterruptedException e) {
+                }
+            }
+        }
+    }
+
+    private void writePending() {
+        final byte[] settings;
+        final byte[] packageList;
+        synchronized (mLock) {
+            settings = mPendingSettings;
+            packageList = mPendingPackageList;
+            mPendingSettings = null;
+            mPendingPackageList = null;
+            if (settings == null) {
+                return;
+            }
+            mWriting = true;
+        }
+        final long start = System.nanoTime();
+        try {
+            if (writeSettings(settings)) {
+                writePackageList(packageList);
+            }
+        } finally {
+            PackageTimings.record(PackageTimings.PERSIST_SETTINGS, start);
+            synchronized (mLock) {
+                mWriting = false;
+                mLock.notifyAll();
+            }
+        }
+    }
+
+    private boolean writeSettings(byte[] settings) {
+        // Keep the old settings around until we know the new ones have
+        // been successfully written.
+        if (mSettingsFilename.exists()) {
+            // Presence of backup settings file indicates that we failed
+            // to persist settings earlier. So preserve the older
+            // backup for future reference since the current settings
+            // might have been corrupted.
+            if (!mBackupSettingsFilename.exists()) {
+                if (!mSettingsFilename.renameTo(mBackupSettingsFilename)) {
+                    Log.wtf(TAG, "Unable to backup package manager settings, "
+                            + " current changes will be lost at reboot");
+                    return false;
+                }
+            } else {
+                mSettingsFilename.delete();
+                Slog.w(TAG, "Preserving older settings backup");
+            }
+        }
+
+        FileOutputStream fstr = null;
+        try {
+            fstr = new FileOutputStream(mSettingsFilename);
+            fstr.write(settings);
+            FileUtils.sync(fstr);
+            fstr.close();
+
+            // New settings successfully written, old ones are no longer
+            // needed.
+            mBackupSettingsFilename.delete();
+            FileUtils.setPermissions(mSettingsFilename.toString(),
+                    FileUtils.S_IRUSR|FileUtils.S_IWUSR
+                    |FileUtils.S_IRGRP|FileUtils.S_IWGRP,
+                    -1, -1);
+            return true;
+        } catch (IOException e) {
+            Log.wtf(TAG, "Unable to write package manager settings, "
+                    + "current changes will be lost at reboot", e);
+            IoUtils.closeQuietly(fstr);
+        }
+        // Clean up partially written files
+        if (mSettingsFilename.exists()) {
+            if (!mSettingsFilename.delete()) {
+                Log.wtf(TAG, "Failed to clean up mangled file: " + mSettingsFilename);
+            }
+        }
+        return false;
+    }
+
+    private void writePackageList(byte[] packageList) {
+        File tempFile = new File(mPackageListFilename.getAbsolutePath() + ".tmp");
+        JournaledFile journal = new JournaledFile(mPackageListFilename, tempFile);
+
+        final File writeTarget = journal.chooseForWrite();
+        FileOutputStream fstr = null;
+        try {
+            fstr = new FileOutputStream(writeTarget);
+            FileUtils.setPermissions(fstr.getFD(), 0660, SYSTEM_UID, PACKAGE_INFO_GID);
+            fstr.write(packageList);
+            FileUtils.sync(fstr);
+            fstr.close();
+            journal.commit();
+        } catch (Exception e) {
+            Log.wtf(TAG, "Failed to write packages.list", e);
+            IoUtils.closeQuietly(fstr);
+            journal.rollback();
+        }
+    }
+}
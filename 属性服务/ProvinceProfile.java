@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+/**
+ * Parsed form of the read-only {@code ro.ysten.province} build property.
+ *
+ * The property names the operator build, e.g. "CM201_heilongjiang",
+ * "CM202_anhui_gate" or "A20_jidi_chongqing": a product prefix, a province
+ * and optional variant tokens.  It is read once, when this class is
+ * initialized (the zygote does that before forking anything), and broken
+ * down into a {@link Region} plus a set of capability flags, so that code on
+ * per-key or per-broadcast paths can test the build with a field compare
+ * instead of a native property read and a string scan.
+ *
+ * For the few checks that need the exact name, {@link #nameEquals} and
+ * {@link #nameContains} compare against the cached value.
+ *
+ * {@hide}
+ */
+public final class ProvinceProfile {
+    public static final String PROPERTY = "ro.ysten.province";
+
+    /** The province a build is for. */
+    public enum Region {
+        MASTER(null),
+        ANHUI("anhui"),
+        BEIJING("beijing"),
+        CHONGQING("chongqing"),
+        FUJIAN("fujian"),
+        GANSU("gansu"),
+        GUANGDONG("guangdong"),
+        HEBEI("hebei"),
+        HEILONGJIANG("heilongjiang"),
+        HENAN("henan"),
+        HUBEI("hubei"),
+        HUNAN("hunan"),
+        JIANGSU("jiangsu"),
+        JIANGXI("jiangxi"),
+        NEIMENG("neimeng"),
+        NINGXIA("ningxia"),
+        SHANGHAI("shanghai"),
+        YUNNAN("yunnan"),
+        ZHEJIANG("zhejiang"),
+        OTHER(null);
+
+        /** Substring of the property value that identifies the region. */
+        final String token;
+
+        Region(String _token) {
+            token = _token;
+        }
+    }
+
+    // Variant tokens.
+    public static final int FLAG_HOMESCHOOL = 1 << 0;
+    public static final int FLAG_JIDI = 1 << 1;
+
+    // Derived capabilities.
+    /** MediaPlayer binds the Huawei SQM analytic service. */
+    public static final int FLAG_SQM = 1 << 16;
+    /** MediaPlayer itself reports its playback events to the SQM service. */
+    public static final int FLAG_SQM_EVENTS = 1 << 17;
+    /** PLAY_START and PLAY_QUIT are reported once per playback session. */
+    public static final int FLAG_QOS_REPORT_ONCE = 1 << 18;
+    /** Buffering caused by a seek is not reported as a QoS event. */
+    public static final int FLAG_QOS_SKIP_SEEK_BUFFERING = 1 << 19;
+
+    private static final ProvinceProfile sInstance =
+            new ProvinceProfile(SystemProperties.get(PROPERTY, "master"));
+
+    private final String mName;
+    private final Region mRegion;
+    private final int mFlags;
+
+    ProvinceProfile(String name) {
+        mName = name != null ? name : "master";
+        mRegion = parseRegion(mName);
+        mFlags = parseFlags(mName, mRegion);
+    }
+
+    public static ProvinceProfile get() {
+        return sInstance;
+    }
+
+    static Region parseRegion(String name) {
+        if (name.length() == 0 || name.equals("master")) {
+            return Region.MASTER;
+        }
+        for (Region region : Region.values()) {
+            if (region.token != null && name.contains(region.token)) {
+                return region;
+            }
+        }
+        return Region.OTHER;
+    }
+
+    static int parseFlags(String name, Region region) {
+        int flags = 0;
+        if (name.contains("homeschool")) flags |= FLAG_HOMESCHOOL;
+        if (name.contains("jidi")) flags |= FLAG_JIDI;
+        if (region == Region.HEILONGJIANG || region == Region.NEIMENG) {
+            flags |= FLAG_SQM;
+        }
+        if (region == Region.HEILONGJIANG) {
+            flags |= FLAG_SQM_EVENTS;
+        }
+        final boolean zhejiang = name.contains("CM201_zhejiang");
+        if (zhejiang || region == Region.JIANGSU || region == Region.ANHUI
+                || region == Region.HEILONGJIANG || region == Region.NINGXIA) {
+            flags |= FLAG_QOS_REPORT_ONCE;
+        }
+        if (zhejiang || region == Region.HEILONGJIANG) {
+            flags |= FLAG_QOS_SKIP_SEEK_BUFFERING;
+        }
+        return flags;
+    }
+
+    /** The raw property value, "master" if unset. */
+    public String name() {
+        return mName;
+    }
+
+    public Region region() {
+        return mRegion;
+    }
+
+    /** True if the build is for {@code region}. */
+    public boolean is(Region region) {
+        return mRegion == region;
+    }
+
+    /** True if any of the FLAG_* bits in {@code flags} is set. */
+    public boolean has(int flags) {
+        return (mFlags & flags) != 0;
+    }
+
+    public boolean nameEquals(String name) {
+        return mName.equals(name);
+    }
+
+    public boolean nameEqualsIgnoreCase(String name) {
+        return mName.equalsIgnoreCase(name);
+    }
+
+    public boolean nameContains(String token) {
+        return mName.contains(token);
+    }
+
+    @Override
+    public String toString() {
+        return "ProvinceProfile{" + mName + " region=" + mRegion
+                + " flags=0x" + Integer.toHexString(mFlags) + "}";
+    }
+}
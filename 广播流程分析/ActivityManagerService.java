@@ -128,6 +128,7 @@ import android.content.pm.ResolveInfo;
 import android.content.pm.ServiceInfo;
 import android.content.res.CompatibilityInfo;
 import android.content.res.Configuration;
+import android.database.ContentObserver;
 import android.graphics.Bitmap;
 import android.net.Proxy;
 import android.net.ProxyProperties;
@@ -156,6 +157,7 @@ import android.os.SELinux;
 import android.os.ServiceManager;
 import android.os.StrictMode;
 import android.os.SystemClock;
+import android.os.ProvinceProfile;
 import android.os.SystemProperties;
 import android.os.UpdateLock;
 import android.os.UserHandle;
@@ -470,6 +472,17 @@ public final class ActivityManagerService extends ActivityManagerNative
 
     BroadcastQueue mFgBroadcastQueue;
     BroadcastQueue mBgBroadcastQueue;
+
+    /**
+     * Per-action receiver filtering and ordering for manifest receivers,
+     * built once for this device's province in the constructor.
+     */
+    final BroadcastReceiverRules mReceiverRules;
+
+    /**
+     * Limits receiver process cold starts while the device is booting.
+     */
+    final BootBroadcastThrottle mBootBroadcastThrottle;
     // Convenient for easy iteration over the queues. Foreground is first
     // so that dispatch of foreground broadcasts gets precedence.
     final BroadcastQueue[] mBroadcastQueues = new BroadcastQueue[2];
@@ -1270,7 +1283,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                         Dialog d = new AppErrorDialog(mContext,
                                 ActivityManagerService.this, res, proc);
                         /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-                        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu") && 
+                        if(ProvinceProfile.get().nameEquals("CM201_jiangsu") && 
                             proc.info.processName.contains("com.ysten.android.istouch"))
                         {
                             Slog.w(TAG, "com.ysten.android.istouch crash");
@@ -1856,6 +1869,7 @@ public final class ActivityManagerService extends ActivityManagerNative
     };
 
     static final int COLLECT_PSS_BG_MSG = 1;
+    static final int LOAD_AUTORUN_BLACKLIST_BG_MSG = 2;
 
     final Handler mBgHandler = new Handler(BackgroundThread.getHandler().getLooper()) {
         @Override
@@ -1909,6 +1923,10 @@ public final class ActivityManagerService extends ActivityManagerNative
                     }
                 } while (true);
             }
+            case LOAD_AUTORUN_BLACKLIST_BG_MSG: {
+                mAutoRunBlacklist = readSystemDataBase();
+                if (DEBUG_BROADCAST) Slog.d(TAG, "Loaded autorun blacklist: " + mAutoRunBlacklist);
+            } break;
             }
         }
     };
@@ -2216,6 +2234,8 @@ public final class ActivityManagerService extends ActivityManagerNative
         mBgBroadcastQueue = new BroadcastQueue(this, "background", BROADCAST_BG_TIMEOUT, true);
         mBroadcastQueues[0] = mFgBroadcastQueue;
         mBroadcastQueues[1] = mBgBroadcastQueue;
+        mReceiverRules = buildReceiverRules(ProvinceProfile.get().name());
+        mBootBroadcastThrottle = new BootBroadcastThrottle(this);
 
         mServices = new ActiveServices(this);
         mProviderMap = new ProviderMap(this);
@@ -3164,7 +3184,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         Intent intent = new Intent(mTopAction, mTopData != null ? Uri.parse(mTopData) : null);
         boolean bPackageExist = false;
         //begin: add by tianchining at 20190814
-        if (SystemProperties.get("ro.ysten.province", "master").equals("A20_jidi_chongqing")) {
+        if (ProvinceProfile.get().nameEquals("A20_jidi_chongqing")) {
           boolean isHome = true;
           SystemProperties.set("sys.app.launcher.displayed", "1");
           ComponentName componentName = null;
@@ -3199,7 +3219,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         //end: add by tianchining at 20190814
 
         //begin by ysten.zhangjunjian,20180911,add for hubei
-        if (SystemProperties.get("ro.ysten.province","master").equals("CM201_hubei")) {
+        if (ProvinceProfile.get().nameEquals("CM201_hubei")) {
                     boolean isHome = true;
                     SystemProperties.set("sys.app.launcher.displayed", "1");
                    
@@ -3212,7 +3232,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                     }
          //end by ysten.zhangjunjian,20180911,add for hubei
 		//begin by ysten.huanghongyan,20181121,add for henan		 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("CM201_heilongjiang")){
+         }else if(ProvinceProfile.get().nameContains("CM201_heilongjiang")){
 			boolean isHome = true;
 			SystemProperties.set("sys.app.launcher.displayed", "1");
 			Log.d(TAG, "mark debug ------com.android.iptvauth for heilongjiang------");
@@ -3223,7 +3243,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 			{
 				intent.addCategory(Intent.CATEGORY_HOME);
 			}
-		 }else if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
+		 }else if(ProvinceProfile.get().nameContains("CM201_henan")){
                     boolean isHome = true;
                     SystemProperties.set("sys.app.launcher.displayed", "1");
 					//隐藏wifi
@@ -3236,7 +3256,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                       }
 		 //end by ysten.huanghongyan,20181121,add for henan
          //begin by ysten.zhanghk at 20190520,add for zhejiang		 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")){
+         }else if(ProvinceProfile.get().nameContains("CM201_zhejiang")){
                     boolean isHome = true;
                     ComponentName componentName = new ComponentName("com.yst.whitebox","com.yst.whitebox.MainActivity");
                     intent.setComponent(componentName);
@@ -3246,7 +3266,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                       }
          //end by ysten.zhanghk at 20190520,add for zhejiang
 		 //begin by ysten.zhangy,20190521,add for neimeng,first start Auth apk 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("neimeng")){
+         }else if(ProvinceProfile.get().is(ProvinceProfile.Region.NEIMENG)){
 		            boolean isHome = true;
                     ComponentName componentName = new ComponentName("com.ysten.auth","com.ysten.auth.LaucherActivity");
                     intent.setComponent(componentName);
@@ -3255,7 +3275,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                       intent.addCategory(Intent.CATEGORY_HOME);
                       }
 		 //end by ysten.zhangy,20190521,add for neimeng,first start Auth apk 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("CM201_ahaschool")){
+         }else if(ProvinceProfile.get().nameContains("CM201_ahaschool")){
 			 //begin by ysten.lijg,20190423,add for ahaschool
                     boolean isHome = true;
                     SystemProperties.set("sys.app.launcher.displayed", "1");
@@ -3267,7 +3287,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                       }
 		 //end by ysten.lijg,20190423,add for ahaschool
 		 //begin by huxiang,20190504,add for jiangsu jike		 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("CM201_homeschool")){
+         }else if(ProvinceProfile.get().nameContains("CM201_homeschool")){
 			 //begin by ysten.lijg,20190625,add for homeschool
                     boolean isHome = true;
                     SystemProperties.set("sys.app.launcher.displayed", "1");
@@ -3278,7 +3298,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                       intent.addCategory(Intent.CATEGORY_HOME);
                       }
 		 //end by ysten.lijg,20190625,add for homeschool	 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("CM202_jike")||SystemProperties.get("ro.ysten.province","master").contains("CM202_hunan_gate")){
+         }else if(ProvinceProfile.get().nameContains("CM202_jike")||ProvinceProfile.get().nameContains("CM202_hunan_gate")){
               if (isActivityRunning(mContext,"com.ysten.com.gatewayprogress.SplashActivity")){
                   
                 }else{
@@ -3289,7 +3309,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                 //}
                     }
 		 //end by huxiang,20190504,add for jiangsu jike
-         }else if(SystemProperties.get("ro.ysten.province","master").equals("CM201_ningxia")){
+         }else if(ProvinceProfile.get().nameEquals("CM201_ningxia")){
           //begin: add by ysten.tianchining at 20190311 for ningxia: add a case
             Log.d(TAG, "TCN_ADD ==> getHomeIntent");
             boolean isHome = true;
@@ -3307,7 +3327,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                 Log.d(TAG, "TCN_ADD ==> getHomeIntent: CATEGORY_HOME");
             }
           //end: add by ysten.tianchining at 20190311 for ningxia: add a case
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("A20_sc")){
+         }else if(ProvinceProfile.get().nameContains("A20_sc")){
                     boolean isHome = true;
                     ComponentName componentName = new ComponentName("com.ysten.zeroconf","com.ysten.zeroconf.MainActivity");
                     intent.setComponent(componentName);
@@ -3526,7 +3546,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             }
         }
 		//add by huxiang at 20190504 for jike default launcher
-		if(SystemProperties.get("ro.ysten.province","master").equals("CM202_jike")){
+		if(ProvinceProfile.get().nameEquals("CM202_jike")){
 		    packageName="tv.icntv.ott";
 			className="tv.icntv.ott.icntv";
 		}
@@ -3766,7 +3786,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             ensureBootCompleted();
         }
         /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")|| SystemProperties.get("ro.ysten.province","master").equals("CM202_jike")){
+        if(ProvinceProfile.get().nameEquals("CM201_jiangsu")|| ProvinceProfile.get().nameEquals("CM202_jike")){
             setDefaultLauncher(userId);
         }
         /*add by zhanghk at 20181030 end:add jiangsu customized content*/
@@ -3805,7 +3825,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         } else {
         intent = getHomeIntent();
 	//add by zhaolianghua for jiangxi start up @20181129
-	if(SystemProperties.get("ro.ysten.province").contains("jiangxi")){
+	if(ProvinceProfile.get().is(ProvinceProfile.Region.JIANGXI)){
 		int value=SystemProperties.getInt("persist.sys.launcher.value",0);
 		if(value==1){
 			if(TextUtils.isEmpty(SystemProperties.get("sys.ysten.checkend"))){
@@ -3832,13 +3852,13 @@ public final class ActivityManagerService extends ActivityManagerNative
 		}
 	}	//add by zhaolianghua end
 		//begin: add by zhuhengxuan at 20190909 for hebei IPTV start
-		if("cm201_hebei".equals(SystemProperties.get("ro.ysten.province","master"))){
+		if(ProvinceProfile.get().nameEquals("cm201_hebei")){
 			ComponentName componentName = new ComponentName("com.android.smart.terminal.iptv", "com.amt.app.IPTVActivity");
 			intent.setComponent(componentName);
 		}
 		//end: add by zhuhengxuan at 20190909 for hebei delay IPTV start
         //begin by ysten.zhangjunjian,20190410,guangdong launcher
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_guangdong")){
+        if(ProvinceProfile.get().nameEquals("CM201_guangdong")){
 			String value=SystemProperties.get("persist.sys.app.falg","0");
             SystemProperties.set("sys.app.launcher.displayed", "1");
             SystemProperties.set("persist.sys.unifiedversion", "1");
@@ -3861,7 +3881,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 		}
         //end by ysten.zhangjunjian,20190410,guangdong launcher
         //add by mark at 20190625 for A20_anhui launcher
-        if(SystemProperties.get("ro.ysten.province","master").equals("A20_anhui")){
+        if(ProvinceProfile.get().nameEquals("A20_anhui")){
               if (isActivityRunning(mContext,"com.chinamobile.launcherjs.main")){
                       return true;
                 }else{
@@ -3872,7 +3892,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                     }
         }
         //add by huxiang at 20190622 for CM202_anhui_gate launcher
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM202_anhui_gate")){
+        if(ProvinceProfile.get().nameEquals("CM202_anhui_gate")){
 			if (isActivityRunning(mContext,"com.android.provision.SplashActivity")){
                       return true;
                 }else{
@@ -3883,7 +3903,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
         //add end by huxiang at 20190622 for CM202_anhui_gate launcher
 	//begin by ysten.lizheng,20181127,fujian launcher
-	if(SystemProperties.get("ro.ysten.province").contains("fujian")){
+	if(ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)){
         int value=SystemProperties.getInt("persist.sys.launcher.value",0);
         boolean launcherSwitch=SystemProperties.getBoolean("persist.sys.launcher.switch",false);
 	      if(value==1&&!launcherSwitch){              
@@ -4004,10 +4024,10 @@ public final class ActivityManagerService extends ActivityManagerNative
                     intent.setFlags(intent.getFlags() | Intent.FLAG_ACTIVITY_NEW_TASK);
 		    //modify by zhaolianghua for delay start launcher@20190117
 			//modify by zhuhengxuan for hebei delay start launcher@20190117
-			if("cm201_hebei".equals(SystemProperties.get("ro.ysten.province","master"))){
+			if(ProvinceProfile.get().nameEquals("cm201_hebei")){
 				Log.d(TAG,"----zhuhengxuan----hebei start delay launcher");
 				delayStartIPTVLauncher(intent, aInfo,"com.android.smart.terminal.iptv");
-			}else if("cm201_jiangxi".equals(SystemProperties.get("ro.ysten.province","master"))){
+			}else if(ProvinceProfile.get().nameEquals("cm201_jiangxi")){
 		            //modify:add by zhuhengxuan for 江西延时启动launcher 并且整合广东launcher启动代码 防止代码相互影响@20190506
 			    Log.d(TAG,"----zhuhengxuan----jiangxi start delay launcher");
 			    int launchervalue_jiangxi=SystemProperties.getInt("persist.sys.launcher.value",0);
@@ -4018,7 +4038,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 			        delayStartWaitLauncher(intent, aInfo);
 			    }
 		    //modify:end by zhuhengxuan for 江西延时启动launcher 并且整合广东launcher启动代码 防止代码相互影响@20190506
-		    }else if(SystemProperties.get("ro.ysten.province","master").contains("jidi")){
+		    }else if(ProvinceProfile.get().has(ProvinceProfile.FLAG_JIDI)){
 						final Intent fintent=intent;
 						final ActivityInfo fainfo=aInfo;
 						int time = Integer.parseInt( SystemProperties.get("persist.sys.launcher.delaytime", "0") );
@@ -4064,7 +4084,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
         
         /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+        if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
             mHandler.postDelayed(new Runnable() {
                 @Override
                 public void run() {
@@ -4353,7 +4373,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             String profileFile, ParcelFileDescriptor profileFd, Bundle options) {
 
             //begin: add by ysten.tianchining at 20190408: handle start tvclient 
-            if(intent != null && SystemProperties.get("ro.ysten.province").contains("ningxia")){
+            if(intent != null && ProvinceProfile.get().is(ProvinceProfile.Region.NINGXIA)){
                 if(intent.getComponent() != null 
                     && intent.getComponent().getClassName() != null){
                     String pkgName = intent.getComponent().getClassName();
@@ -4370,7 +4390,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             //end: add by ysten.tianchining at 20190408: handle start tvclient    
 
 	    //add by zhaolianghua for jiangxi start up @20181129
-	    if(intent!=null&&SystemProperties.get("ro.ysten.province").contains("jiangxi")){
+	    if(intent!=null&&ProvinceProfile.get().is(ProvinceProfile.Region.JIANGXI)){
 		    if(intent.getComponent()!=null){
 			    if(intent.getComponent().getClassName()!=null){
 				    String pkgName=intent.getComponent().getClassName();
@@ -4395,7 +4415,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 		    }
 	    }	    //add by zhaolianghua end 
 		//begin by lizheng 20181127 stop tm1 autoboot
-		if(intent!=null&&SystemProperties.get("ro.ysten.province").contains("fujian")){
+		if(intent!=null&&ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)){
                 if(intent.getComponent()!=null){
                   if(intent.getComponent().getClassName()!=null){
                   	String pkgName=intent.getComponent().getClassName();
@@ -4698,6 +4718,9 @@ public final class ActivityManagerService extends ActivityManagerNative
                 return;
             }
             r.reportFullyDrawnLocked();
+            if (r.isHomeActivity()) {
+                mBootBroadcastThrottle.onHomeDrawnLocked("fully drawn");
+            }
         }
     }
 
@@ -6641,6 +6664,10 @@ public final class ActivityManagerService extends ActivityManagerNative
             mBooting = false;
             enableScreen = !mBooted;
             mBooted = true;
+            if (booting) {
+                // Boot is declared complete once home has come up and gone idle.
+                mBootBroadcastThrottle.onHomeDrawnLocked("home idle");
+            }
         }
         
         if (booting) {
@@ -6659,7 +6686,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             ActivityStack stack = ActivityRecord.getStackLocked(token);
             if (stack != null) {
 		//add by zhaolianghua for jiangxi start up @20181129
-		if(!bootComplete&&SystemProperties.get("ro.ysten.province").contains("jiangxi")){
+		if(!bootComplete&&ProvinceProfile.get().is(ProvinceProfile.Region.JIANGXI)){
 			ActivityRecord r = ActivityRecord.forToken(token);
 			if(r.info.name.contains("com.huawei.stb.tm1")||r.info.name.contains("tv.icntv.ott")
 					||r.info.name.contains("com.ysten.sjiptv")
@@ -6671,7 +6698,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 		}
 		//add by zhaolianghua end
 		//begin by ysten lizheng 20181127 for fujian
-        if(SystemProperties.get("ro.ysten.province").contains("fujian")){
+        if(ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)){
             	  	   ActivityRecord r = ActivityRecord.forToken(token);
 					   			Log.d(TAG,"r.info.name=" +r.info.name);
 					   if (!bootComplete){
@@ -9668,8 +9695,8 @@ public final class ActivityManagerService extends ActivityManagerNative
             app.maxAdj = ProcessList.PERSISTENT_PROC_ADJ;
         }
         if (app.thread == null && mPersistentStartingProcesses.indexOf(app) < 0) {
-        if (SystemProperties.get("ro.ysten.province", "master").equals("CM201_hubei")
-           || SystemProperties.get("ro.ysten.province", "master").equals("A20_jidi_chongqing")) {
+        if (ProvinceProfile.get().nameEquals("CM201_hubei")
+           || ProvinceProfile.get().nameEquals("A20_jidi_chongqing")) {
             //begin by ysten.lijg,20190508,add for hubei
             if (allowPersistentStart) {
                  mPersistentStartingProcesses.add(app);
@@ -11044,6 +11071,9 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
 
         retrieveSettings();
+        if (ProvinceProfile.get().nameEquals("CM201_jiangsu")) {
+            registerAutoRunBlacklistObserver();
+        }
 
         synchronized (this) {
             readGrantedUriPermissionsLocked();
@@ -11054,9 +11084,10 @@ public final class ActivityManagerService extends ActivityManagerNative
         synchronized (this) {
             // Start up initial activity.
             mBooting = true;
+            mBootBroadcastThrottle.onSystemReadyLocked();
             if (mNeedRmRecoveryDir) {
                 //modify by huxiang at 2019/7/10 for TR069 update
-				if(!SystemProperties.get("ro.ysten.province","master").equals("CM202_anhui_gate")){
+				if(!ProvinceProfile.get().nameEquals("CM202_anhui_gate")){
                     rmRecoveryDir();
 				}
 				//modify end by huxiang at 2019/7/10 for TR069 update
@@ -12142,6 +12173,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                 pw.println("  cmd may be one of:");
                 pw.println("    a[ctivities]: activity stack state");
                 pw.println("    b[roadcasts] [PACKAGE_NAME] [history [-s]]: broadcast state");
+                pw.println("    b[roadcasts] latency [--reset]: broadcast latency histograms");
                 pw.println("    i[ntents] [PACKAGE_NAME]: pending intent state");
                 pw.println("    p[rocesses] [PACKAGE_NAME]: process state");
                 pw.println("    o[om]: out of memory management");
@@ -12328,7 +12360,7 @@ public final class ActivityManagerService extends ActivityManagerNative
     }
     //begin:add by ysten zengzhiliang at 20190123:apk whitelist
     private boolean isInWhiteList(String packageName) {
-        if(SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("cm201_yunnan"))
+        if(ProvinceProfile.get().nameEqualsIgnoreCase("cm201_yunnan"))
         {
             for (int i = 0; i < mYunnanWhiteList.length; i++) {
 				if (packageName.equals(mYunnanWhiteList[i])) {
@@ -12338,7 +12370,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
 
     //begin:add by mark at 20190919:apk whitelist
-        if(SystemProperties.get("ro.ysten.province","master").contains("cm201_heilongjiang"))
+        if(ProvinceProfile.get().nameContains("cm201_heilongjiang"))
         {
             for (int i = 0; i < mHLJWhiteList.length; i++) {
 				if (packageName.equals(mHLJWhiteList[i])) {
@@ -12348,14 +12380,14 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
 
 	//begin:add by ysten zhuhengxuan at 20190123:apk whitelist
-	if(SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("cm201_jiangxi")){
+	if(ProvinceProfile.get().nameEqualsIgnoreCase("cm201_jiangxi")){
 		for (int i = 0; i < mJiangxiWhiteList.length; i++) {
 			if (packageName.equals(mJiangxiWhiteList[i])) {
 				return true;
 			}
 		}
         }
-        if(SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("cm201_hebei")){
+        if(ProvinceProfile.get().nameEqualsIgnoreCase("cm201_hebei")){
                 for (int i = 0; i < mHebeiWhiteList.length; i++) {
                         if (packageName.equals(mHebeiWhiteList[i])) {
                                 return true;
@@ -13097,6 +13129,22 @@ public final class ActivityManagerService extends ActivityManagerNative
             dumpPackage = null;
         }
 
+        if ("latency".equals(dumpPackage)) {
+            pw.println("ACTIVITY MANAGER BROADCAST LATENCY (dumpsys activity broadcasts latency)");
+            final boolean reset = opti < args.length && "--reset".equals(args[opti]);
+            for (BroadcastQueue q : mBroadcastQueues) {
+                if (reset) {
+                    q.mLatencyStats.reset();
+                } else {
+                    q.dumpLatencyLocked(pw);
+                }
+            }
+            if (reset) {
+                pw.println("  Latency statistics reset.");
+            }
+            return;
+        }
+
         pw.println("ACTIVITY MANAGER BROADCAST STATE (dumpsys activity broadcasts)");
         if (!onlyHistory && dumpAll) {
             if (mRegisteredReceivers.size() > 0) {
@@ -13175,6 +13223,9 @@ public final class ActivityManagerService extends ActivityManagerNative
                 pw.println("  mBroadcastsScheduled [" + queue.mQueueName + "]="
                         + queue.mBroadcastsScheduled);
             }
+            pw.println("  Receiver rules:");
+            mReceiverRules.dump(pw, "    ");
+            mBootBroadcastThrottle.dumpLocked(pw, "  ");
             pw.println("  mHandler:");
             mHandler.dump(new PrintWriterPrinter(pw), "    ");
             needSep = true;
@@ -14200,7 +14251,7 @@ public final class ActivityManagerService extends ActivityManagerNative
     private final void cleanUpApplicationRecordLocked(ProcessRecord app,
             boolean restarting, boolean allowRestart, int index) {
         //begin:add by zhanghk at 20190916:prevent launcher is killed when playing 4K video
-        if(SystemProperties.get("ro.ysten.province","master").contains("jiangsu")){
+        if(ProvinceProfile.get().is(ProvinceProfile.Region.JIANGSU)){
             DevInfoManager manager = (DevInfoManager) mContext.getSystemService(DevInfoManager.DATA_SERVER);
             String packageName = manager.getValue(DevInfoManager.Launcher);
             Log.d(TAG,"jiangsu default package name:"+packageName);
@@ -15019,10 +15070,7 @@ public final class ActivityManagerService extends ActivityManagerNative
     private List<ResolveInfo> collectReceiverComponents(Intent intent, String resolvedType,
             int[] users) {
         List<ResolveInfo> receivers = null;
-	 boolean setFirst = false;
-	 String act = intent.getAction();
-	 if(act != null && act.equals("cn.10086.action.HDC_LOGIN_STATUS_UPDATE"))
-	 	setFirst = true;
+        String act = intent.getAction();
         try {
             HashSet<ComponentName> singleUserReceivers = null;
             boolean scannedFirstReceivers = false;
@@ -15088,272 +15136,195 @@ public final class ActivityManagerService extends ActivityManagerNative
         } catch (RemoteException ex) {
             // pm is in same process, this will never happen.
         }
-		//add by ysten.huanghongyan 2018.11.27 for CM201_henan		
-		if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
-			if(("android.intent.action.BOOT_COMPLETED".equals(act)) || ("android.net.conn.CONNECTIVITY_CHANGE".equals(act))) {
-				if(receivers != null) {
-					for (int i=0; i<receivers.size(); i++) {
-						ResolveInfo info = receivers.get(i);
-						String packageName = info.activityInfo.packageName;
-						for(int j=0;j<apkNameListHA.length;j++){
-							String a = apkNameListHA[j];
-							if(packageName.equals(a)){
-								Log.d(TAG,"not send BOOT_COMPLETED to"  + packageName);
-								receivers.remove(i);
-								i--;
-								break;
-							}
-						}
-					}
-				}
-			}
-		} 		
-		//end by ysten.huanghongyan 2018.11.27 for CM201_henan 
-	 if(act != null && act.equals("android.net.conn.CONNECTIVITY_CHANGE")){
-		ResolveInfo ri = null;
-		for(int i =0; i < receivers.size(); i++){
-			ri = receivers.get(i);
-				if(ri.activityInfo != null && ri.activityInfo.packageName != null && (ri.activityInfo.packageName.equals("com.chinamobile.launcherjs")
-					|| ri.activityInfo.packageName.equals("net.sunniwell.status"))){
-				receivers.remove(i);
-				receivers.add(0,ri);
-			}
-		}
-	 }
-	 if(act != null && act.equals("cn.cmvideo.action.LOGIN_SUCESS") && SystemProperties.getBoolean("sys.start.boot", false)){
-		ResolveInfo ri = null;
-		for(int i =0; i < receivers.size(); i++){
-			ri = receivers.get(i);
-				if(ri.activityInfo != null && ri.activityInfo.packageName != null && (ri.activityInfo.packageName.equals("com.bestv.ott.baseservices")
-					|| ri.activityInfo.packageName.equals("net.sunniwell.app.ott.chinamobile"))){
-				receivers.remove(i);
-				receivers.add(0,ri);
-			}
-		}
-	 }
-     
-	 if(setFirst && null != receivers){
-		for(int i =0; i < receivers.size(); i++){
-			Slog.w(TAG, "receiveraa " + intent + receivers.get(i).activityInfo.packageName+ "!");
-		}
-		ResolveInfo ri = null;
-		for(int i =0; i < receivers.size(); i++){
-			ri = receivers.get(i);
-			if(i!=0&& ri.activityInfo != null && ri.activityInfo.packageName != null && ri.activityInfo.packageName.equals("com.chinamobile.launcherjs")){
-				receivers.remove(i);
-				receivers.add(0,ri);
-				Slog.w(TAG, "receivers d to first 222" );
-			}
-		}
-		 for(int i =0; i < receivers.size(); i++){
-			Slog.w(TAG, "receivers " + intent + receivers.get(i).activityInfo.packageName+ "!");
-		}
-	 }
-	 
- 
-	 
+        List<ResolveInfo> deferred = null;
+        if (Intent.ACTION_BOOT_COMPLETED.equals(act)) {
+            if (mDelayBootReceivers == null) {
+                mDelayBootReceivers = new ArrayList<ResolveInfo>();
+            }
+            deferred = mDelayBootReceivers;
+        }
+        receivers = mReceiverRules.apply(act, receivers, deferred);
+
         /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-		if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+		if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
 		    if (DEBUG_BROADCAST)
 		        Log.d(TAG,"-------------collectReceiverComponents---------------receivers="+receivers+"----intent="+intent);
 		    act = intent.getAction();
 		    if (DEBUG_BROADCAST)
 		        Log.d(TAG,"-------------collectReceiverComponents---------------action="+act);
-		    if("android.intent.action.BOOT_COMPLETED".equals(act)){
-			    Log.d(TAG,"-------------collectReceiverComponents BOOT_COMPLETED---------------receivers="+receivers+"----intent="+intent);
-		        if(receivers != null)
-			    {
-				    ArrayList<String> list = (ArrayList<String>) readSystemDataBase();
-			        if(flag&&list.size()>0){
-			            for(int i=0;i<receivers.size();i++){
-				            ResolveInfo info = receivers.get(i);
-					        String packageName = info.activityInfo.packageName;
-					        Log.d(TAG,"-------------collectReceiverComponents---------------packageName="+packageName);
-					        for(int j=0;j<list.size();j++){
-					            String a = list.get(j);
-						        if(packageName.equals(a)){
-							        Log.d(TAG,"-------------collectReceiverComponents---------------a="+packageName);
-						            receivers.remove(i);
-							        i--;
-							        break;
-						        }
-					        }
-				        }
-				        if (DEBUG_BROADCAST)
-			                Log.d(TAG,"-------------collectReceiverComponents------blacklist---------receivers="+receivers+"----intent="+intent);
-			        } 
-			    }
+		    if("android.intent.action.BOOT_COMPLETED".equals(act) && receivers != null){
+		        // Loaded in systemReady() and refreshed off-thread; never do I/O here.
+		        final HashSet<String> blacklist = mAutoRunBlacklist;
+		        if (blacklist != null && blacklist.size() > 0) {
+		            for (int i=receivers.size()-1; i>=0; i--) {
+		                if (blacklist.contains(receivers.get(i).activityInfo.packageName)) {
+		                    receivers.remove(i);
+		                }
+		            }
+		            if (receivers.size() == 0) {
+		                receivers = null;
+		            }
+		            if (DEBUG_BROADCAST)
+		                Log.d(TAG,"-------------collectReceiverComponents------blacklist---------receivers="+receivers+"----intent="+intent);
+		        }
 		    }
 		
-		    //disable these apk receiver for jiangsu mobile test
-		    boolean startload = SystemProperties.getBoolean("persist.jsmoblie.startloadtest", false);
-            if (DEBUG_BROADCAST)
-		        Slog.d(TAG, "startload = " + startload);
-            if(startload){
-			    if("android.net.conn.CONNECTIVITY_CHANGE".equals(act)) {
-				    if (DEBUG_BROADCAST)
-				        Log.d(TAG,"-------------collectReceiverComponents CONNECTIVITY_CHANGE---------------receivers="+receivers+"----intent="+intent);
-				    if(receivers != null)
-				    {
-					    for(int i=0;i<receivers.size();i++){
-				            ResolveInfo info = receivers.get(i);
-					        String packageName = info.activityInfo.packageName;
-						    if (DEBUG_BROADCAST)
-					            Log.d(TAG,"-------------collectReceiverComponents CONNECTIVITY_CHANGE---------------packageName="+packageName);
-					        for(int j=0;j<apkNameListJS.length;j++){
-					            String a = apkNameListJS[j];
-						        if(packageName.equals(a)){
-								    if (DEBUG_BROADCAST)
-							            Log.d(TAG,"-------------collectReceiverComponents CONNECTIVITY_CHANGE---------------a="+packageName);
-						            receivers.remove(i);
-							        i--;
-							        break;
-						        }
-					        } 
-				        }
-				    }
-			    }
-		    }
 		}
         /*add by zhanghk at 20181030 end:add jiangsu customized content*/
-	//add by zhaolianghua for jiangxi start up @20181129
-	if (SystemProperties.get("ro.ysten.province","master").contains("jiangxi")){
-		boolean launcherProvision=SystemProperties.getBoolean("persist.sys.launcher.provision",false);
-		int launcherValue=SystemProperties.getInt("persist.sys.launcher.value",0);
-		//add by zhuhengxuan at 20190506 for 防止ProvisionJX过早启动
-		String checkEnd = SystemProperties.get("sys.ysten.checkend","false");
-		act = intent.getAction();
-		if(receivers != null){
-			for(int i=0;i<receivers.size();i++){
-				ResolveInfo info = receivers.get(i);
-				String packageName = info.activityInfo.packageName;
-				Log.d(TAG,"-------------collectReceiverComponents---------------packageName="+packageName);
-				if (packageName.equals("com.huawei.stb.tm1")&&act.equals("android.net.conn.CONNECTIVITY_CHANGE")){
-					//modify by zhuhengxuan at 20190506 for 江西防止ProvisionJX过早启动
-					if (launcherProvision||launcherValue==2||checkEnd.equals("false")){
-						Log.d(TAG,"stop "+ packageName +" receive "+act);
-						receivers.remove(i);
-					}
-				}
-			}
-		}
-	}
-	//add by zhaolianghua end
-	//begin by lizheng 20181127 fujian stop tm1 autoboot
-		if(SystemProperties.get("ro.ysten.province","master").contains("fujian")){
-			//Log.d(TAG,"-------------collectReceiverComponents CONNECTIVITY_CHANGE---------------receivers="+receivers+"----intent="+intent);
-		boolean launcherSwitch=SystemProperties.getBoolean("persist.sys.launcher.switch",false);
-		boolean launcherProvision=SystemProperties.getBoolean("persist.sys.launcher.provision",false);
-		int launcherValue=SystemProperties.getInt("persist.sys.launcher.value",0);
-
-				if(receivers != null){
-					for(int i=0;i<receivers.size();i++){
-				        ResolveInfo info = receivers.get(i);
-					    String packageName = info.activityInfo.packageName;
-						Log.d(TAG,"-------------collectReceiverComponents---------------packageName="+packageName+" action="+act);
-						if (act.equals("android.net.conn.CONNECTIVITY_CHANGE")){
-								if (launcherSwitch&&launcherProvision||launcherValue==2){
-                                if(packageName.equals("com.huawei.stb.tm1")){
-								Log.d(TAG,"stop "+ packageName +" receive "+act);									
-						        receivers.remove(i);
-								}
-								}
-                                if(isBlackList(packageName))
-								{
-								Log.d(TAG,"stop "+ packageName +" receive "+act);
-								receivers.remove(i);
-								}								
-						}
-						}
-				}
-		}
-		//end by lizheng 20181127 fujian stop tm1 autoboot
-	 if(act != null && act.equals("android.intent.action.BOOT_COMPLETED")){
-		 ResolveInfo ri = null;
-		 for(int i =0; i < receivers.size(); i++){
-			 ri = receivers.get(i);
-			 if(ri.activityInfo != null && ri.activityInfo.packageName != null && isDelayBootPackage(ri.activityInfo.packageName)){
-				receivers.remove(i);
-				if(mDelayBootReceivers == null)
-					mDelayBootReceivers = new ArrayList<ResolveInfo>();
-				mDelayBootReceivers.add(ri);
-			 }
-		 }
-	 }
         return receivers;
     }
-	
-	private boolean isBlackList(String pkg) {
-	    for(String s:delayApkListFJ) {
-		    if(pkg.equals(s)){
-				Log.d(TAG,s+" is in blacklist");
-			    return true;
-			}
-	    }
-	    return false;
-    }
 
-	private List<String> packageNameList = new ArrayList<String>();
-	private boolean flag = false;
+    private BroadcastReceiverRules buildReceiverRules(String province) {
+        final String BOOT = Intent.ACTION_BOOT_COMPLETED;
+        final String CONNECTIVITY = "android.net.conn.CONNECTIVITY_CHANGE";
+        BroadcastReceiverRules rules = new BroadcastReceiverRules();
+
+        rules.prioritize(CONNECTIVITY, null,
+                "com.chinamobile.launcherjs", "net.sunniwell.status");
+        rules.prioritize(CONNECTIVITY, null, BootBroadcastThrottle.FIRST_PACKAGES);
+        rules.prioritize(BOOT, null, BootBroadcastThrottle.FIRST_PACKAGES);
+        rules.prioritize("cn.10086.action.HDC_LOGIN_STATUS_UPDATE", null,
+                "com.chinamobile.launcherjs");
+        rules.prioritize("cn.cmvideo.action.LOGIN_SUCESS",
+                new BroadcastReceiverRules.Condition() {
+                    @Override public boolean isActive() {
+                        return SystemProperties.getBoolean("sys.start.boot", false);
+                    }
+                }, "com.bestv.ott.baseservices", "net.sunniwell.app.ott.chinamobile");
+
+        //add by ysten.huanghongyan 2018.11.27 for CM201_henan
+        if (province.contains("CM201_henan")) {
+            rules.blacklist(BOOT, null, apkNameListHA);
+            rules.blacklist(CONNECTIVITY, null, apkNameListHA);
+        }
+        //disable these apk receiver for jiangsu mobile test
+        if (province.equals("CM201_jiangsu")) {
+            rules.blacklist(CONNECTIVITY, new BroadcastReceiverRules.Condition() {
+                @Override public boolean isActive() {
+                    return SystemProperties.getBoolean("persist.jsmoblie.startloadtest", false);
+                }
+            }, apkNameListJS);
+        }
+        //add by zhaolianghua for jiangxi start up @20181129
+        if (province.contains("jiangxi")) {
+            rules.blacklist(CONNECTIVITY, new BroadcastReceiverRules.Condition() {
+                @Override public boolean isActive() {
+                    // Keep ProvisionJX from starting too early.
+                    return SystemProperties.getBoolean("persist.sys.launcher.provision", false)
+                            || SystemProperties.getInt("persist.sys.launcher.value", 0) == 2
+                            || SystemProperties.get("sys.ysten.checkend", "false").equals("false");
+                }
+            }, "com.huawei.stb.tm1");
+        }
+        //begin by lizheng 20181127 fujian stop tm1 autoboot
+        if (province.contains("fujian")) {
+            rules.blacklist(CONNECTIVITY, new BroadcastReceiverRules.Condition() {
+                @Override public boolean isActive() {
+                    return (SystemProperties.getBoolean("persist.sys.launcher.switch", false)
+                            && SystemProperties.getBoolean("persist.sys.launcher.provision", false))
+                            || SystemProperties.getInt("persist.sys.launcher.value", 0) == 2;
+                }
+            }, "com.huawei.stb.tm1");
+            rules.blacklist(CONNECTIVITY, null, delayApkListFJ);
+        }
+        if (province.contains("hubei")) {
+            rules.defer(BOOT, null, mHubeiDelayReceiverArray);
+        }
+        return rules;
+    }
+	
+	/**
+	 * Jiangsu BOOT_COMPLETED autorun blacklist.  Loaded in systemReady(),
+	 * before BOOT_COMPLETED can be sent, and then replaced wholesale on the
+	 * background thread whenever the backing settings or blacklist.info
+	 * change.
+	 */
+	private volatile HashSet<String> mAutoRunBlacklist = null;
+	private static final String AUTORUN_BLACKLIST_FILE = "blacklist.info";
+	/** Watches blacklist.info; kept here so it is not collected. */
+	private FileObserver mAutoRunBlacklistFileObserver;
 	private static final String URI = "Device.X_CMCC_OTV.Extention";
 	private static final String AppAutoRunBlackListFlag = ".AppAutoRunBlackListFlag";
 	private static final String NumOfAppAutoRunBlackList = ".NumOfAppAutoRunBlackList";
 	private static final String AppAutoRunBlackList = ".AppAutoRunBlackList";
 	private static final String PackageName = ".PackageName";
 	private static final String ClassName = ".ClassName";
-	private List<String> readSystemDataBase() {
-		// TODO Auto-generated method stub
-		Log.d(TAG, "-----readSystemDataBase------");
-		flag = false;
-		packageNameList.clear();
+	private void registerAutoRunBlacklistObserver() {
+		ContentObserver observer = new ContentObserver(mBgHandler) {
+			@Override
+			public void onChange(boolean selfChange) {
+				mBgHandler.removeMessages(LOAD_AUTORUN_BLACKLIST_BG_MSG);
+				mBgHandler.sendEmptyMessage(LOAD_AUTORUN_BLACKLIST_BG_MSG);
+			}
+		};
+		ContentResolver resolver = mContext.getContentResolver();
+		resolver.registerContentObserver(Settings.System.getUriFor(URI + AppAutoRunBlackListFlag),
+				false, observer, UserHandle.USER_ALL);
+		resolver.registerContentObserver(Settings.System.getUriFor(URI + NumOfAppAutoRunBlackList),
+				false, observer, UserHandle.USER_ALL);
+		mAutoRunBlacklistFileObserver = new FileObserver(
+				SystemProperties.get("ro.propfile.path", "/data"),
+				FileObserver.CLOSE_WRITE | FileObserver.MOVED_TO | FileObserver.DELETE) {
+			@Override
+			public void onEvent(int event, String path) {
+				if (AUTORUN_BLACKLIST_FILE.equals(path)) {
+					mBgHandler.removeMessages(LOAD_AUTORUN_BLACKLIST_BG_MSG);
+					mBgHandler.sendEmptyMessage(LOAD_AUTORUN_BLACKLIST_BG_MSG);
+				}
+			}
+		};
+		mAutoRunBlacklistFileObserver.startWatching();
+		// The first load is done here, off the lock but before boot can
+		// complete, so BOOT_COMPLETED never goes out without the blacklist.
+		mAutoRunBlacklist = readSystemDataBase();
+		if (DEBUG_BROADCAST) Slog.d(TAG, "Loaded autorun blacklist: " + mAutoRunBlacklist);
+	}
+
+	/**
+	 * Reads the autorun blacklist from settings and blacklist.info.  Does I/O,
+	 * so only call it from mBgHandler, or once from systemReady().
+	 */
+	private HashSet<String> readSystemDataBase() {
+		HashSet<String> packageNames = new HashSet<String>();
+		boolean enabled = false;
 		String f = Settings.System.getString(mContext.getContentResolver(), URI
 				+ AppAutoRunBlackListFlag);
 		if (TextUtils.isEmpty(f)) {
-			flag = true;
-		} else if (!TextUtils.isEmpty(f) && "true".equals(f.toLowerCase())) {
-			flag = true;
+			enabled = true;
+		} else if ("true".equals(f.toLowerCase())) {
+			enabled = true;
 		}
-		Log.d(TAG, "-----flag=" + flag);
-		if (flag) {
+		if (enabled) {
 			String num_str = Settings.System.getString(
 					mContext.getContentResolver(), URI
 							+ NumOfAppAutoRunBlackList);
-			Log.d(TAG, "-----num_str=" + num_str);
+			int num = 0;
 			if (!TextUtils.isEmpty(num_str)) {
-				int num = Integer.valueOf(num_str).intValue();
-				if (num > 0) {
-					// read blacklist
-					HashMap<String, String> map = readfile("blacklist.info");
-					Log.d(TAG, "-----map=" + map);
-					if (map != null && map.size() > 0) {
-						ArrayList<String> list = getPackageKeyList(map);
-						Log.d(TAG, "-----list=" + list);
-						if (list != null && list.size() > 0) {
-							for (int i = 0; i < num && i < list.size(); i++) {
-								String mPackageName = map.get(list.get(i));
-								Log.d(TAG, "-----mPackageName=" + mPackageName);
-								if (!TextUtils.isEmpty(mPackageName)) {
-									packageNameList.add(mPackageName);
-								}
+				try {
+					num = Integer.parseInt(num_str.trim());
+				} catch (NumberFormatException e) {
+					Slog.w(TAG, "Bad " + NumOfAppAutoRunBlackList + ": " + num_str);
+				}
+			}
+			if (num > 0) {
+				// read blacklist
+				HashMap<String, String> map = readfile(AUTORUN_BLACKLIST_FILE);
+				if (map != null && map.size() > 0) {
+					ArrayList<String> list = getPackageKeyList(map);
+					if (list != null && list.size() > 0) {
+						for (int i = 0; i < num && i < list.size(); i++) {
+							String mPackageName = map.get(list.get(i));
+							if (!TextUtils.isEmpty(mPackageName)) {
+								packageNames.add(mPackageName);
 							}
 						}
 					}
 				}
 			}
 		}
-		return packageNameList;
+		return packageNames;
 	}
     
-    private boolean isDelayBootPackage(String pkg) {
-        if (SystemProperties.get("ro.ysten.province", "master").contains("hubei")) {
-            for(String s:mHubeiDelayReceiverArray) {
-                if(pkg.equals(s))
-                    return true;
-            }
-            return false;
-        }
-        return false;
-    }
 	
 	private HashMap<String, String> readfile(String str) {
 		// TODO Auto-generated method stub
@@ -15477,7 +15448,7 @@ public final class ActivityManagerService extends ActivityManagerNative
     }
 
     private boolean iptvIsWhitelistedPackage(String pkgName) {
-        if(SystemProperties.get("ro.ysten.province", "master").contains("hubei")){
+        if(ProvinceProfile.get().is(ProvinceProfile.Region.HUBEI)){
            return (pkgName.equals("com.android.smart.terminal.iptv")
                       || pkgName.equals("com.bestv.ott.baseservices")
                       || pkgName.equals("com.android.iptvauth")
@@ -15508,7 +15479,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
 
         /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-		if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+		if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
 		    if (DEBUG_BROADCAST)
 		        Log.d(TAG,"---------zjw----broadcastIntentLocked----action="+intent.getAction());
 		    if("cn.10086.action.HDC_LOGIN_STATUS_UPDATE".equals(intent.getAction()) 
@@ -15538,9 +15509,9 @@ public final class ActivityManagerService extends ActivityManagerNative
 		    }
         }
         
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")
+        if(ProvinceProfile.get().nameEquals("CM201_jiangsu")
                 //add by ysten zengzhiliang at 20190125:yunnan change from FLAG_EXCLUDE_STOPPED_PACKAGES
-                ||SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("cm201_yunnan")){
+                ||ProvinceProfile.get().nameEqualsIgnoreCase("cm201_yunnan")){
             // By default broadcasts do not go to stopped apps.
             intent.addFlags(Intent.FLAG_INCLUDE_STOPPED_PACKAGES); //jscmcc change from FLAG_EXCLUDE_STOPPED_PACKAGES
         } else {
@@ -18744,7 +18715,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                 intent.putExtra(Intent.EXTRA_USER_HANDLE, userId);
                 intent.addFlags(Intent.FLAG_RECEIVER_NO_ABORT);
                 /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-				if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+				if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
 				    intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
 				}
                 /*add by zhanghk at 20181030 end:add jiangsu customized content*/
@@ -0,0 +1,299 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.am;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import android.app.ActivityManager;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.ResolveInfo;
+import android.os.SystemClock;
+import android.os.SystemProperties;
+import android.util.Slog;
+import android.util.TimeUtils;
+
+/**
+ * Boot dispatch mode for manifest receivers.
+ *
+ * Right after boot, BOOT_COMPLETED and the connectivity broadcasts fan out to
+ * dozens of receivers, and each one that is not running gets its process
+ * cold started.  While boot mode is on, those cold starts are only allowed
+ * for the launcher and authentication packages (and persistent apps); every
+ * other receiver is taken out of its broadcast and parked.  Once the home
+ * activity has drawn, the parked receivers are replayed as ordered
+ * broadcasts of at most {@link #MAX_COLD_STARTS} receivers each, one batch at
+ * a time, so no more than that many processes are started per batch.
+ *
+ * Nothing more is parked once home has drawn and BOOT_COMPLETED has been
+ * dispatched, and boot mode ends when every parked receiver has then been
+ * replayed.  At the latest, {@link #BOOT_MODE_TIMEOUT} after system ready,
+ * boot mode is turned off and whatever is still parked is replayed at
+ * once, a broadcast at a time.  The time from system ready to the launcher
+ * drawing is
+ * recorded and shown in "dumpsys activity broadcasts".
+ *
+ * All methods must be called with the activity manager lock held.
+ */
+final class BootBroadcastThrottle {
+    static final String TAG = "BootBroadcastThrottle";
+
+    /**
+     * Receivers that are cold started as soon as their broadcast reaches
+     * them, ahead of everything else.
+     */
+    static final String[] FIRST_PACKAGES = new String[] {
+            "com.chinamobile.launcherjs",
+            "com.android.iptvauth",
+    };
+
+    /** Broadcasts whose receivers are throttled while in boot mode. */
+    static final String[] BOOT_STORM_ACTIONS = new String[] {
+            Intent.ACTION_BOOT_COMPLETED,
+            "android.net.conn.CONNECTIVITY_CHANGE",
+            "android.net.conn.CONNECTIVITY_CHANGE_IMMEDIATE",
+            "android.net.ethernet.ETHERNET_STATE_CHANGE",
+    };
+
+    /** Maximum number of parked receivers replayed in one batch. */
+    static final int MAX_COLD_STARTS = SystemProperties.getInt("ro.sys.boot_bcast_cold_starts",
+            ActivityManager.isLowRamDeviceStatic() ? 2 : 4);
+
+    /**
+     * Boot mode is abandoned this long after system ready no matter what,
+     * and anything still parked is replayed.
+     */
+    static final long BOOT_MODE_TIMEOUT = 120*1000;
+
+    static final class ParkedBroadcast {
+        final BroadcastQueue queue;
+        final BroadcastRecord source;
+        final ArrayList<Object> receivers = new ArrayList<Object>();
+
+        ParkedBroadcast(BroadcastQueue _queue, BroadcastRecord _source) {
+            queue = _queue;
+            source = _source;
+        }
+    }
+
+    final ActivityManagerService mService;
+    final HashSet<String> mFirstPackages = new HashSet<String>();
+    final HashSet<String> mStormActions = new HashSet<String>();
+
+    private boolean mEnabled;
+    private boolean mHomeDrawn;
+    private boolean mBootCompletedDispatched;
+
+    /** Parked receivers, grouped by the broadcast they were taken out of. */
+    private final ArrayList<ParkedBroadcast> mParked = new ArrayList<ParkedBroadcast>();
+
+    /** The replay batch currently being dispatched, if any. */
+    private BroadcastRecord mReleasing;
+
+    private long mSystemReadyTime;
+    private long mHomeDrawnTime;
+    private String mHomeDrawnReason;
+    private long mBootModeEndTime;
+    private int mParkedCount;
+    private int mBatchCount;
+
+    BootBroadcastThrottle(ActivityManagerService service) {
+        mService = service;
+        mEnabled = SystemProperties.getBoolean("ro.sys.boot_bcast_throttle", true);
+        for (String pkg : FIRST_PACKAGES) {
+            mFirstPackages.add(pkg);
+        }
+        for (String action : BOOT_STORM_ACTIONS) {
+            mStormActions.add(action);
+        }
+    }
+
+    void onSystemReadyLocked() {
+        mSystemReadyTime = SystemClock.uptimeMillis();
+        if (!mEnabled) {
+            return;
+        }
+        mService.mHandler.postDelayed(new Runnable() {
+            @Override public void run() {
+                synchronized (mService) {
+                    if (mEnabled) {
+                        Slog.w(TAG, "Boot mode timed out with " + mParked.size()
+                                + " parked broadcasts");
+                        mEnabled = false;
+                        mBootCompletedDispatched = true;
+                        if (!mHomeDrawn) {
+                            onHomeDrawnLocked("timeout");
+                        }
+                        flushParkedLocked();
+                    }
+                }
+            }
+        }, BOOT_MODE_TIMEOUT);
+    }
+
+    /**
+     * Called when the home activity has drawn its first frame (or reported
+     * itself fully drawn).  Records time-to-launcher and starts replaying
+     * parked receivers.
+     */
+    void onHomeDrawnLocked(String reason) {
+        if (mHomeDrawn) {
+            return;
+        }
+        mHomeDrawn = true;
+        mHomeDrawnTime = SystemClock.uptimeMillis();
+        mHomeDrawnReason = reason;
+        Slog.i(TAG, "Launcher drawn (" + reason + ") " + (mHomeDrawnTime - mSystemReadyTime)
+                + "ms after system ready, uptime " + mHomeDrawnTime + "ms");
+        releaseNextBatchLocked();
+    }
+
+    /**
+     * Decide whether the manifest receiver {@code info} of {@code r} may
+     * cold start its process now.  If not, it is parked for later replay
+     * and true is returned; the caller must then move on to the next
+     * receiver.
+     */
+    boolean parkColdStartLocked(BroadcastQueue queue, BroadcastRecord r, ResolveInfo info) {
+        if (!mEnabled || (mHomeDrawn && mBootCompletedDispatched) || r == mReleasing
+                || r.intent == null || !mStormActions.contains(r.intent.getAction())) {
+            return false;
+        }
+        final ApplicationInfo ai = info.activityInfo.applicationInfo;
+        if (mFirstPackages.contains(ai.packageName)
+                || (ai.flags & ApplicationInfo.FLAG_PERSISTENT) != 0) {
+            return false;
+        }
+        final ProcessRecord app = mService.getProcessRecordLocked(info.activityInfo.processName,
+                ai.uid, false);
+        if (app != null && app.thread != null) {
+            return false;
+        }
+
+        ParkedBroadcast parked = null;
+        final int N = mParked.size();
+        if (N > 0 && mParked.get(N-1).source == r) {
+            parked = mParked.get(N-1);
+        } else {
+            parked = new ParkedBroadcast(queue, r);
+            mParked.add(parked);
+        }
+        parked.receivers.add(info);
+        mParkedCount++;
+        if (ActivityManagerService.DEBUG_BROADCAST) Slog.v(TAG, "Parked " + ai.packageName
+                + " for " + r.intent.getAction());
+        return true;
+    }
+
+    /**
+     * Called for every ordered broadcast that finishes dispatching.
+     */
+    void onBroadcastFinishedLocked(BroadcastRecord r) {
+        if (!mEnabled) {
+            return;
+        }
+        if (r == mReleasing) {
+            mReleasing = null;
+            releaseNextBatchLocked();
+        } else if (r.intent != null && Intent.ACTION_BOOT_COMPLETED.equals(r.intent.getAction())) {
+            mBootCompletedDispatched = true;
+            releaseNextBatchLocked();
+        }
+    }
+
+    private void releaseNextBatchLocked() {
+        if (!mEnabled || !mHomeDrawn || mReleasing != null) {
+            return;
+        }
+        if (mParked.size() == 0) {
+            if (mBootCompletedDispatched) {
+                mEnabled = false;
+                mBootModeEndTime = SystemClock.uptimeMillis();
+                Slog.i(TAG, "Boot mode finished: " + mParkedCount + " receivers replayed in "
+                        + mBatchCount + " batches");
+            }
+            return;
+        }
+
+        final ParkedBroadcast parked = mParked.get(0);
+        final ArrayList<Object> receivers;
+        if (parked.receivers.size() <= MAX_COLD_STARTS) {
+            receivers = parked.receivers;
+            mParked.remove(0);
+        } else {
+            receivers = new ArrayList<Object>(parked.receivers.subList(0, MAX_COLD_STARTS));
+            parked.receivers.subList(0, MAX_COLD_STARTS).clear();
+        }
+
+        mReleasing = replayLocked(parked, receivers);
+    }
+
+    /**
+     * Replay every receiver that is still parked, one broadcast per source
+     * broadcast, and end boot mode.
+     */
+    private void flushParkedLocked() {
+        for (int i=0; i<mParked.size(); i++) {
+            final ParkedBroadcast parked = mParked.get(i);
+            replayLocked(parked, parked.receivers);
+        }
+        mParked.clear();
+        mReleasing = null;
+        mBootModeEndTime = SystemClock.uptimeMillis();
+        Slog.i(TAG, "Boot mode abandoned: " + mParkedCount + " receivers replayed in "
+                + mBatchCount + " batches");
+    }
+
+    private BroadcastRecord replayLocked(ParkedBroadcast parked, ArrayList<Object> receivers) {
+        final BroadcastRecord src = parked.source;
+        final BroadcastRecord r = new BroadcastRecord(parked.queue, src.intent, src.callerApp,
+                src.callerPackage, src.callingPid, src.callingUid, src.resolvedType,
+                src.requiredPermission, src.appOp, receivers, null, 0, null, null,
+                true, src.sticky, false, src.userId);
+        mBatchCount++;
+        if (ActivityManagerService.DEBUG_BROADCAST) Slog.v(TAG, "Replaying " + receivers.size()
+                + " parked receivers for " + src.intent.getAction());
+        parked.queue.enqueueOrderedBroadcastLocked(r);
+        parked.queue.scheduleBroadcastsLocked();
+        return r;
+    }
+
+    void dumpLocked(PrintWriter pw, String prefix) {
+        pw.print(prefix); pw.print("Boot broadcast throttle: ");
+        pw.print(mEnabled ? "active" : "inactive");
+        pw.print(" maxColdStarts="); pw.println(MAX_COLD_STARTS);
+        pw.print(prefix); pw.print("  time to launcher: ");
+        if (mHomeDrawnTime != 0) {
+            TimeUtils.formatDuration(mHomeDrawnTime - mSystemReadyTime, pw);
+            pw.print(" after system ready (uptime ");
+            TimeUtils.formatDuration(mHomeDrawnTime, pw);
+            pw.print(", "); pw.print(mHomeDrawnReason); pw.println(")");
+        } else {
+            pw.println("(not drawn yet)");
+        }
+        pw.print(prefix); pw.print("  parked="); pw.print(mParkedCount);
+        pw.print(" batches="); pw.print(mBatchCount);
+        pw.print(" pending="); pw.print(mParked.size());
+        if (mBootModeEndTime != 0) {
+            pw.print(" ended at uptime ");
+            TimeUtils.formatDuration(mBootModeEndTime, pw);
+        }
+        pw.println();
+    }
+}
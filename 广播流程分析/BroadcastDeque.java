@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.am;
+
+import java.util.HashMap;
+
+import android.content.Intent;
+import android.os.SystemClock;
+
+/**
+ * Ring-buffer deque of pending broadcasts, with a hash index on the intent
+ * filter identity ({@link Intent#filterEquals}) so that
+ * FLAG_RECEIVER_REPLACE_PENDING can find the newest matching broadcast
+ * without scanning the queue.
+ *
+ * Every element is tagged with a sequence number that stays fixed while it
+ * is queued (pushing at the front counts down, pushing at the back counts
+ * up), which is what the index stores.  Only the head may be removed, so the
+ * indexed element for a filter is always the one closest to the tail.
+ *
+ * Keys are built from a {@link Intent#cloneFilter} snapshot taken at
+ * enqueue, which is also kept per element and used to find its key again on
+ * removal: the queue mutates the component of the head broadcast's intent
+ * while it is being delivered.
+ *
+ * The uptime at which each element was enqueued is kept alongside it for
+ * latency accounting; a replaced element keeps its predecessor's time.
+ *
+ * Not thread safe; callers hold the activity manager lock.
+ */
+final class BroadcastDeque {
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Index entry: hashes and compares like the intent's filter, and records
+     * the sequence number of the newest queued broadcast with that filter.
+     * Stored keys hold a filter snapshot, never a record's live intent.
+     */
+    private static final class FilterKey {
+        Intent intent;
+        int hash;
+        int seq;
+
+        FilterKey set(Intent _intent) {
+            intent = _intent;
+            hash = _intent.filterHashCode();
+            return this;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FilterKey && intent.filterEquals(((FilterKey)o).intent);
+        }
+    }
+
+    private BroadcastRecord[] mItems = new BroadcastRecord[MIN_CAPACITY];
+    private long[] mEnqueueTimes = new long[MIN_CAPACITY];
+    /** Filter snapshot of each element, as indexed. */
+    private Intent[] mFilters = new Intent[MIN_CAPACITY];
+    private int mHead;
+    private int mSize;
+
+    /** Sequence number of the element at the head of the queue. */
+    private int mFirstSeq;
+
+    private final HashMap<FilterKey, FilterKey> mIndex = new HashMap<FilterKey, FilterKey>();
+
+    /** Reused lookup key so index probes do not allocate. */
+    private final FilterKey mProbe = new FilterKey();
+
+    int size() {
+        return mSize;
+    }
+
+    BroadcastRecord get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index=" + index + " size=" + mSize);
+        }
+        return mItems[(mHead + index) & (mItems.length - 1)];
+    }
+
+    /** Uptime at which the element at {@code index} was enqueued. */
+    long getEnqueueTime(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index=" + index + " size=" + mSize);
+        }
+        return mEnqueueTimes[(mHead + index) & (mItems.length - 1)];
+    }
+
+    void add(BroadcastRecord r) {
+        ensureCapacity();
+        final int slot = (mHead + mSize) & (mItems.length - 1);
+        mItems[slot] = r;
+        mEnqueueTimes[slot] = SystemClock.uptimeMillis();
+        final int seq = mFirstSeq + mSize;
+        mSize++;
+        FilterKey key = lookup(r.intent);
+        if (key == null) {
+            key = new FilterKey().set(r.intent.cloneFilter());
+            mIndex.put(key, key);
+        }
+        mFilters[slot] = key.intent;
+        key.seq = seq;
+    }
+
+    void addFirst(BroadcastRecord r) {
+        ensureCapacity();
+        mHead = (mHead - 1) & (mItems.length - 1);
+        mItems[mHead] = r;
+        mEnqueueTimes[mHead] = SystemClock.uptimeMillis();
+        mFirstSeq--;
+        mSize++;
+        FilterKey key = lookup(r.intent);
+        if (key == null) {
+            key = new FilterKey().set(r.intent.cloneFilter());
+            key.seq = mFirstSeq;
+            mIndex.put(key, key);
+        }
+        mFilters[mHead] = key.intent;
+    }
+
+    BroadcastRecord removeFirst() {
+        if (mSize == 0) {
+            throw new IndexOutOfBoundsException("removeFirst on empty queue");
+        }
+        final BroadcastRecord r = mItems[mHead];
+        final Intent filter = mFilters[mHead];
+        mItems[mHead] = null;
+        mFilters[mHead] = null;
+        mHead = (mHead + 1) & (mItems.length - 1);
+        mSize--;
+        final FilterKey key = lookup(filter);
+        if (key != null && key.seq == mFirstSeq) {
+            // Nothing with this filter can still be queued behind the newest one.
+            mIndex.remove(key);
+        }
+        mFirstSeq++;
+        return r;
+    }
+
+    /**
+     * Position of the newest queued broadcast whose intent
+     * {@link Intent#filterEquals} {@code intent}, or -1.
+     */
+    int lastIndexOfFilter(Intent intent) {
+        final FilterKey key = lookup(intent);
+        return key != null ? key.seq - mFirstSeq : -1;
+    }
+
+    /**
+     * Replace the broadcast at {@code index}, which must have the same intent
+     * filter as {@code r}.
+     */
+    BroadcastRecord replace(int index, BroadcastRecord r) {
+        final int slot = (mHead + index) & (mItems.length - 1);
+        final BroadcastRecord old = get(index);
+        mItems[slot] = r;
+        return old;
+    }
+
+    private FilterKey lookup(Intent intent) {
+        final FilterKey key = mIndex.get(mProbe.set(intent));
+        mProbe.intent = null;
+        return key;
+    }
+
+    private void ensureCapacity() {
+        if (mSize < mItems.length) {
+            return;
+        }
+        final BroadcastRecord[] items = new BroadcastRecord[mItems.length << 1];
+        final long[] times = new long[items.length];
+        final Intent[] filters = new Intent[items.length];
+        final int firstPart = mItems.length - mHead;
+        System.arraycopy(mItems, mHead, items, 0, firstPart);
+        System.arraycopy(mItems, 0, items, firstPart, mHead);
+        System.arraycopy(mEnqueueTimes, mHead, times, 0, firstPart);
+        System.arraycopy(mEnqueueTimes, 0, times, firstPart, mHead);
+        System.arraycopy(mFilters, mHead, filters, 0, firstPart);
+        System.arraycopy(mFilters, 0, filters, firstPart, mHead);
+        mItems = items;
+        mEnqueueTimes = times;
+        mFilters = filters;
+        mHead = 0;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.am;
+
+import android.content.Intent;
+import android.os.SystemProperties;
+import android.util.Slog;
+
+/**
+ * Project specific ordering decisions for one {@link BroadcastQueue}.
+ *
+ * Operator launcher projects (ro.jsmobile.launcher, or sys.proj.type of
+ * "unicom" / "mobile") want their login and connectivity broadcasts to jump
+ * the ordered queue once during boot, pre-empting whatever ordered broadcast
+ * is queued behind the active one.  Whether that applies is decided once at
+ * queue construction and refreshed from a system property change callback,
+ * so the dispatch path only reads a field.
+ */
+final class BroadcastDispatchPolicy {
+    static final String TAG = BroadcastQueue.TAG;
+
+    private volatile boolean mPreemptEnabled;
+
+    /**
+     * Number of receivers the pre-empted broadcast had already been sent to.
+     * Non-zero once the one-shot pre-emption has happened.
+     */
+    int mPreemptedAt = 0;
+
+    BroadcastDispatchPolicy() {
+        update();
+        SystemProperties.addChangeCallback(new Runnable() {
+            @Override public void run() {
+                update();
+            }
+        });
+    }
+
+    void update() {
+        mPreemptEnabled = isPreemptingProject(SystemProperties.get("ro.jsmobile.launcher", ""),
+                SystemProperties.get("sys.proj.type", null));
+    }
+
+    static boolean isPreemptingProject(String jsmobile, String projType) {
+        return "true".equals(jsmobile) || "unicom".equals(projType) || "mobile".equals(projType);
+    }
+
+    static boolean isPreemptingAction(String action) {
+        return "cn.10086.action.HDC_LOGIN_STATUS_UPDATE".equals(action)
+                || "cn.cmvideo.action.LOGIN_SUCESS".equals(action)
+                || "android.net.conn.CONNECTIVITY_CHANGE".equals(action);
+    }
+
+    boolean isPreemptEnabled() {
+        return mPreemptEnabled;
+    }
+
+    /**
+     * Whether an ordered broadcast should be queued at the front instead of
+     * the back.
+     */
+    boolean shouldEnqueueFirst(BroadcastRecord r) {
+        if (!mPreemptEnabled || mPreemptedAt != 0) {
+            return false;
+        }
+        final Intent intent = r.intent;
+        return intent != null && isPreemptingAction(intent.getAction());
+    }
+
+    /**
+     * Called before the ordered queue is processed.  If a broadcast was
+     * queued in front of one that had already started, rewind that one so
+     * it resumes cleanly once it is back at the head.
+     */
+    void preemptSecondOrderedLocked(BroadcastDeque ordered) {
+        if (!mPreemptEnabled || mPreemptedAt != 0 || ordered.size() < 2) {
+            return;
+        }
+        final BroadcastRecord br = ordered.get(1);
+        if (br.nextReceiver == 0) {
+            return;
+        }
+        Slog.d(TAG, "had send to num is : " + br.nextReceiver);
+        mPreemptedAt = br.nextReceiver;
+        if (br.state == BroadcastRecord.APP_RECEIVE) {
+            // Still receiving: redeliver to the receiver we interrupted.
+            br.nextReceiver = br.nextReceiver - 1;
+        } else {
+            br.nextReceiver = br.nextReceiver + 1;
+        }
+        br.state = BroadcastRecord.IDLE;
+    }
+}
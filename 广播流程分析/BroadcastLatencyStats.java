@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.am;
+
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import android.os.SystemClock;
+import android.util.TimeUtils;
+
+/**
+ * Broadcast dispatch latency histograms for one {@link BroadcastQueue},
+ * kept per action and per receiver package.
+ *
+ * Each key owns a fixed block of int buckets; recording a sample is a hash
+ * lookup and a few array increments, so nothing is allocated per broadcast
+ * once a key has been seen.  The number of distinct keys is capped, and
+ * anything beyond the cap is folded into {@link #OTHER}.
+ *
+ * Not thread safe; callers hold the activity manager lock.
+ */
+final class BroadcastLatencyStats {
+    /** Time from enqueue until the first receiver is invoked. */
+    static final int ENQUEUE_TO_DISPATCH = 0;
+    /** Time from dispatch until the broadcast (or one receiver) is finished. */
+    static final int DISPATCH_TO_FINISH = 1;
+    /** Time spent waiting for a receiver's process to be started. */
+    static final int PROCESS_START = 2;
+    static final int NUM_METRICS = 3;
+
+    static final String[] METRIC_NAMES = new String[] {
+            "enqueue->dispatch", "dispatch->finish", "process start",
+    };
+
+    /** Upper bounds (inclusive, in ms) of each bucket; the last bucket is open. */
+    static final long[] BUCKET_BOUNDS = new long[] {
+            1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 20000,
+    };
+    static final int NUM_BUCKETS = BUCKET_BOUNDS.length + 1;
+
+    static final int MAX_KEYS = 128;
+    static final String OTHER = "<other>";
+
+    static final class Histogram {
+        final int[] counts = new int[NUM_METRICS * NUM_BUCKETS];
+        final long[] sum = new long[NUM_METRICS];
+        final long[] max = new long[NUM_METRICS];
+
+        void add(int metric, long ms) {
+            if (ms < 0) {
+                ms = 0;
+            }
+            int bucket = 0;
+            while (bucket < BUCKET_BOUNDS.length && ms > BUCKET_BOUNDS[bucket]) {
+                bucket++;
+            }
+            counts[metric * NUM_BUCKETS + bucket]++;
+            sum[metric] += ms;
+            if (ms > max[metric]) {
+                max[metric] = ms;
+            }
+        }
+
+        int count(int metric) {
+            int total = 0;
+            for (int i=0; i<NUM_BUCKETS; i++) {
+                total += counts[metric * NUM_BUCKETS + i];
+            }
+            return total;
+        }
+    }
+
+    final HashMap<String, Histogram> mByAction = new HashMap<String, Histogram>();
+    final HashMap<String, Histogram> mByPackage = new HashMap<String, Histogram>();
+    long mSinceTime = SystemClock.uptimeMillis();
+
+    void noteAction(String action, int metric, long ms) {
+        histogramFor(mByAction, action).add(metric, ms);
+    }
+
+    void notePackage(String packageName, int metric, long ms) {
+        histogramFor(mByPackage, packageName).add(metric, ms);
+    }
+
+    void reset() {
+        mByAction.clear();
+        mByPackage.clear();
+        mSinceTime = SystemClock.uptimeMillis();
+    }
+
+    private static Histogram histogramFor(HashMap<String, Histogram> map, String key) {
+        if (key == null) {
+            key = OTHER;
+        }
+        Histogram h = map.get(key);
+        if (h == null) {
+            if (map.size() >= MAX_KEYS) {
+                key = OTHER;
+                h = map.get(key);
+            }
+            if (h == null) {
+                h = new Histogram();
+                map.put(key, h);
+            }
+        }
+        return h;
+    }
+
+    void dump(PrintWriter pw, String prefix) {
+        pw.print(prefix); pw.print("Bucket bounds (ms):");
+        for (long bound : BUCKET_BOUNDS) {
+            pw.print(" "); pw.print(bound);
+        }
+        pw.println(" +");
+        pw.print(prefix); pw.print("Collected for ");
+        TimeUtils.formatDuration(SystemClock.uptimeMillis() - mSinceTime, pw);
+        pw.println();
+        dumpMap(pw, prefix, "By action:", mByAction);
+        dumpMap(pw, prefix, "By receiver package:", mByPackage);
+    }
+
+    private static void dumpMap(PrintWriter pw, String prefix, String title,
+            HashMap<String, Histogram> map) {
+        if (map.size() == 0) {
+            return;
+        }
+        pw.print(prefix); pw.println(title);
+        for (Map.Entry<String, Histogram> ent : map.entrySet()) {
+            final Histogram h = ent.getValue();
+            pw.print(prefix); pw.print("  "); pw.print(ent.getKey()); pw.println(":");
+            for (int m=0; m<NUM_METRICS; m++) {
+                final int count = h.count(m);
+                if (count == 0) {
+                    continue;
+                }
+                pw.print(prefix); pw.print("    "); pw.print(METRIC_NAMES[m]);
+                pw.print(": n="); pw.print(count);
+                pw.print(" avg="); pw.print(h.sum[m] / count);
+                pw.print("ms max="); pw.print(h.max[m]); pw.print("ms [");
+                for (int b=0; b<NUM_BUCKETS; b++) {
+                    if (b > 0) pw.print(" ");
+                    pw.print(h.counts[m * NUM_BUCKETS + b]);
+                }
+                pw.println("]");
+            }
+        }
+    }
+}
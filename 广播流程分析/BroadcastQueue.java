@@ -18,7 +18,6 @@ package com.android.server.am;
 
 import java.io.FileDescriptor;
 import java.io.PrintWriter;
-import java.util.ArrayList;
 
 import android.app.ActivityManager;
 import android.app.AppGlobals;
@@ -38,7 +37,6 @@ import android.os.Process;
 import android.os.RemoteException;
 import android.os.SystemClock;
 import android.os.UserHandle;
-import android.os.SystemProperties;
 import android.util.EventLog;
 import android.util.Log;
 import android.util.Slog;
@@ -85,7 +83,7 @@ public final class BroadcastQueue {
      * a bunch of processes to execute IntentReceiver components.  Background-
      * and foreground-priority broadcasts are queued separately.
      */
-    final ArrayList<BroadcastRecord> mParallelBroadcasts = new ArrayList<BroadcastRecord>();
+    final BroadcastDeque mParallelBroadcasts = new BroadcastDeque();
 
     /**
      * List of all active broadcasts that are to be executed one at a time.
@@ -94,7 +92,7 @@ public final class BroadcastQueue {
      * broadcasts, separate background- and foreground-priority queues are
      * maintained.
      */
-    final ArrayList<BroadcastRecord> mOrderedBroadcasts = new ArrayList<BroadcastRecord>();
+    final BroadcastDeque mOrderedBroadcasts = new BroadcastDeque();
 
     /**
      * Historical data of past broadcasts, for debugging.
@@ -129,7 +127,22 @@ public final class BroadcastQueue {
      * The receiver index that is pending, to restart the broadcast if needed.
      */
     int mPendingBroadcastRecvIndex;
-    int insertnum = 0;
+
+    /**
+     * Uptime at which we started the process for mPendingBroadcast.
+     */
+    long mPendingBroadcastStartTime;
+
+    /**
+     * Dispatch latency histograms, per action and per receiver package.
+     */
+    final BroadcastLatencyStats mLatencyStats = new BroadcastLatencyStats();
+
+    /**
+     * Project specific ordering of this queue's ordered broadcasts.
+     */
+    final BroadcastDispatchPolicy mDispatchPolicy;
+
     static final int BROADCAST_INTENT_MSG = ActivityManagerService.FIRST_BROADCAST_QUEUE_MSG;
     static final int BROADCAST_TIMEOUT_MSG = ActivityManagerService.FIRST_BROADCAST_QUEUE_MSG + 1;
 
@@ -171,6 +184,7 @@ public final class BroadcastQueue {
         mQueueName = name;
         mTimeoutPeriod = timeoutPeriod;
         mDelayBehindServices = allowDelayBehindServices;
+        mDispatchPolicy = new BroadcastDispatchPolicy();
     }
 
     public boolean isPendingBroadcastProcessLocked(int pid) {
@@ -182,59 +196,39 @@ public final class BroadcastQueue {
     }
 
     public void enqueueOrderedBroadcastLocked(BroadcastRecord r) {
-        String jsmobile = SystemProperties.get("ro.jsmobile.launcher" , "");
-        String proj_type = SystemProperties.get("sys.proj.type", null);
-        if (("true".equals(jsmobile) || "unicom".equals(proj_type) || "mobile".equals(proj_type)) && insertnum==0) {
-            if (r.intent != null) {
-                String act = r.intent.getAction();
-                if (act != null && act.equals("net.sunniwell.action.START_UPGRADE_ACTION")) {
-                    Object obj = r.intent.getExtra("UpgradeFileUrl");
-                    String upgradeurl = null;
-                    if (obj instanceof String) {
-                        upgradeurl = (String)obj;
-                        Slog.d(TAG, "upgradeurl is : "+upgradeurl);
-                        if (null == upgradeurl)
-                            return;
-                    }
-                }
-                if (act != null &&( act.equals("cn.10086.action.HDC_LOGIN_STATUS_UPDATE")
-                        || act.equals("cn.cmvideo.action.LOGIN_SUCESS") ||
-                        act.equals("android.net.conn.CONNECTIVITY_CHANGE"))) {
-                    Slog.v(TAG, "add this in front "+ r.intent);
-                    mOrderedBroadcasts.add(0 ,r);
-                    return;
-                }
-            }
+        if (mDispatchPolicy.shouldEnqueueFirst(r)) {
+            Slog.v(TAG, "add this in front "+ r.intent);
+            mOrderedBroadcasts.addFirst(r);
+            return;
         }
         mOrderedBroadcasts.add(r);
     }
 
     public void insertOrderedBroadcastAtBeginLocked(BroadcastRecord r) {
-        mOrderedBroadcasts.add( 0, r );
+        mOrderedBroadcasts.addFirst(r);
     }
 
     public final boolean replaceParallelBroadcastLocked(BroadcastRecord r) {
-        for (int i=mParallelBroadcasts.size()-1; i>=0; i--) {
-            if (r.intent.filterEquals(mParallelBroadcasts.get(i).intent)) {
-                if (DEBUG_BROADCAST) Slog.v(TAG,
-                        "***** DROPPING PARALLEL ["
-                + mQueueName + "]: " + r.intent);
-                mParallelBroadcasts.set(i, r);
-                return true;
-            }
+        final int i = mParallelBroadcasts.lastIndexOfFilter(r.intent);
+        if (i >= 0) {
+            if (DEBUG_BROADCAST) Slog.v(TAG,
+                    "***** DROPPING PARALLEL ["
+            + mQueueName + "]: " + r.intent);
+            mParallelBroadcasts.replace(i, r);
+            return true;
         }
         return false;
     }
 
     public final boolean replaceOrderedBroadcastLocked(BroadcastRecord r) {
-        for (int i=mOrderedBroadcasts.size()-1; i>0; i--) {
-            if (r.intent.filterEquals(mOrderedBroadcasts.get(i).intent)) {
-                if (DEBUG_BROADCAST) Slog.v(TAG,
-                        "***** DROPPING ORDERED ["
-                        + mQueueName + "]: " + r.intent);
-                mOrderedBroadcasts.set(i, r);
-                return true;
-            }
+        // The head is already being dispatched and must not be replaced.
+        final int i = mOrderedBroadcasts.lastIndexOfFilter(r.intent);
+        if (i > 0) {
+            if (DEBUG_BROADCAST) Slog.v(TAG,
+                    "***** DROPPING ORDERED ["
+                    + mQueueName + "]: " + r.intent);
+            mOrderedBroadcasts.replace(i, r);
+            return true;
         }
         return false;
     }
@@ -284,6 +278,13 @@ public final class BroadcastQueue {
         boolean didSomething = false;
         final BroadcastRecord br = mPendingBroadcast;
         if (br != null && br.curApp.pid == app.pid) {
+            final long wait = SystemClock.uptimeMillis() - mPendingBroadcastStartTime;
+            mLatencyStats.noteAction(br.intent.getAction(), BroadcastLatencyStats.PROCESS_START,
+                    wait);
+            if (br.curComponent != null) {
+                mLatencyStats.notePackage(br.curComponent.getPackageName(),
+                        BroadcastLatencyStats.PROCESS_START, wait);
+            }
             try {
                 mPendingBroadcast = null;
                 processCurBroadcastLocked(br, app);
@@ -366,6 +367,12 @@ public final class BroadcastQueue {
             String resultData, Bundle resultExtras, boolean resultAbort, boolean waitForServices) {
         final int state = r.state;
         final ActivityInfo receiver = r.curReceiver;
+        if (state != BroadcastRecord.IDLE && r.receiverTime > 0) {
+            final String pkg = receiver != null ? receiver.packageName
+                    : r.curFilter != null ? r.curFilter.packageName : null;
+            mLatencyStats.notePackage(pkg, BroadcastLatencyStats.DISPATCH_TO_FINISH,
+                    SystemClock.uptimeMillis() - r.receiverTime);
+        }
         r.state = BroadcastRecord.IDLE;
         if (state == BroadcastRecord.IDLE) {
             Slog.w(TAG, "finishReceiver [" + mQueueName + "] called but state is IDLE");
@@ -571,9 +578,12 @@ public final class BroadcastQueue {
 
             // First, deliver any non-serialized broadcasts right away.
             while (mParallelBroadcasts.size() > 0) {
-                r = mParallelBroadcasts.remove(0);
+                final long enqueueTime = mParallelBroadcasts.getEnqueueTime(0);
+                r = mParallelBroadcasts.removeFirst();
                 r.dispatchTime = SystemClock.uptimeMillis();
                 r.dispatchClockTime = System.currentTimeMillis();
+                mLatencyStats.noteAction(r.intent.getAction(),
+                        BroadcastLatencyStats.ENQUEUE_TO_DISPATCH, r.dispatchTime - enqueueTime);
                 final int N = r.receivers.size();
                 if (DEBUG_BROADCAST_LIGHT) Slog.v(TAG, "Processing parallel broadcast ["
                         + mQueueName + "] " + r);
@@ -588,22 +598,7 @@ public final class BroadcastQueue {
                 if (DEBUG_BROADCAST_LIGHT) Slog.v(TAG, "Done with parallel broadcast ["
                         + mQueueName + "] " + r);
             }
-            String jsmobile = SystemProperties.get("ro.jsmobile.launcher" , "");
-            String proj_type = SystemProperties.get("sys.proj.type", null);
-            if ("true".equals(jsmobile) || "unicom".equals(proj_type) || "mobile".equals(proj_type)) {
-                if (mOrderedBroadcasts.size() >= 2) {
-                    BroadcastRecord br = mOrderedBroadcasts.get(1);
-                    if (br.nextReceiver != 0 && insertnum == 0) {
-			Slog.d(TAG , "had send to num is : "+br.nextReceiver);
-			insertnum = br.nextReceiver;
-			if(br.state == BroadcastRecord.APP_RECEIVE)//broadcast receiving
-				br.nextReceiver = br.nextReceiver-1;
-			else
-				br.nextReceiver = br.nextReceiver+1;
-			br.state = BroadcastRecord.IDLE;
-                    }
-                }
-            }
+            mDispatchPolicy.preemptSecondOrderedLocked(mOrderedBroadcasts);
             // Now take care of the next serialized one...
 
             // If we are waiting for a process to come up to handle the next
@@ -720,7 +715,8 @@ public final class BroadcastQueue {
 
                     // ... and on to the next...
                     addBroadcastToHistoryLocked(r);
-                    mOrderedBroadcasts.remove(0);
+                    mOrderedBroadcasts.removeFirst();
+                    mService.mBootBroadcastThrottle.onBroadcastFinishedLocked(r);
                     
                     r = null;
                     looped = true;
@@ -737,6 +733,9 @@ public final class BroadcastQueue {
             if (recIdx == 0) {
                 r.dispatchTime = r.receiverTime;
                 r.dispatchClockTime = System.currentTimeMillis();
+                mLatencyStats.noteAction(r.intent.getAction(),
+                        BroadcastLatencyStats.ENQUEUE_TO_DISPATCH,
+                        r.dispatchTime - mOrderedBroadcasts.getEnqueueTime(0));
                 if (DEBUG_BROADCAST_LIGHT) Slog.v(TAG, "Processing ordered broadcast ["
                         + mQueueName + "] " + r);
             }
@@ -1017,6 +1016,18 @@ public final class BroadcastQueue {
                 }
             }
 
+            // While booting, only the launcher and friends may cold start a
+            // process for a boot broadcast; everyone else waits their turn.
+            if (mService.mBootBroadcastThrottle.parkColdStartLocked(this, r, info)) {
+                r.receiver = null;
+                r.curFilter = null;
+                r.curComponent = null;
+                r.curReceiver = null;
+                r.state = BroadcastRecord.IDLE;
+                scheduleBroadcastsLocked();
+                return;
+            }
+
             // Not running -- get it started, to be executed when the app comes up.
            if (DEBUG_BROADCAST)  Slog.v(TAG,
                                         "Need to start app ["
@@ -1043,6 +1054,7 @@ public final class BroadcastQueue {
 
             mPendingBroadcast = r;
             mPendingBroadcastRecvIndex = recIdx;
+            mPendingBroadcastStartTime = SystemClock.uptimeMillis();
         }
     }
 
@@ -1174,6 +1186,10 @@ public final class BroadcastQueue {
         System.arraycopy(mBroadcastHistory, 0, mBroadcastHistory, 1,
                 MAX_BROADCAST_HISTORY-1);
         r.finishTime = SystemClock.uptimeMillis();
+        if (r.dispatchTime > 0) {
+            mLatencyStats.noteAction(r.intent.getAction(),
+                    BroadcastLatencyStats.DISPATCH_TO_FINISH, r.finishTime - r.dispatchTime);
+        }
         mBroadcastHistory[0] = r;
         System.arraycopy(mBroadcastSummaryHistory, 0, mBroadcastSummaryHistory, 1,
                 MAX_BROADCAST_SUMMARY_HISTORY-1);
@@ -1329,6 +1345,19 @@ public final class BroadcastQueue {
             }
         }
 
+        if (dumpPackage == null && dumpAll) {
+            if (needSep) {
+                pw.println();
+            }
+            needSep = true;
+            dumpLatencyLocked(pw);
+        }
+
         return needSep;
     }
+
+    final void dumpLatencyLocked(PrintWriter pw) {
+        pw.println("  Broadcast latency [" + mQueueName + "]:");
+        mLatencyStats.dump(pw, "    ");
+    }
 }
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2012 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.am;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import android.content.pm.ResolveInfo;
+import android.util.Slog;
+
+/**
+ * Per-action filtering and ordering rules applied to the manifest receivers
+ * resolved for a broadcast.
+ *
+ * The rule set is built once when the activity manager starts, for the
+ * province the device was built for, and is only read afterwards.  Actions
+ * without any rule cost a single hash lookup and no allocation; actions with
+ * rules are rewritten in place with one pass over the resolved list.
+ *
+ * All methods must be called with the activity manager lock held.
+ */
+final class BroadcastReceiverRules {
+    /**
+     * Runtime gate for a rule.  Evaluated once per broadcast, never per
+     * receiver.
+     */
+    interface Condition {
+        boolean isActive();
+    }
+
+    static final int TYPE_BLACKLIST = 0;
+    static final int TYPE_PRIORITY = 1;
+    static final int TYPE_DEFER = 2;
+
+    static final class Rule {
+        final int type;
+        final Condition condition;
+        final HashSet<String> packages;
+
+        Rule(int _type, Condition _condition, String[] _packages) {
+            type = _type;
+            condition = _condition;
+            packages = new HashSet<String>(_packages.length * 2);
+            for (String pkg : _packages) {
+                packages.add(pkg);
+            }
+        }
+
+        boolean isActive() {
+            return condition == null || condition.isActive();
+        }
+    }
+
+    /**
+     * Rules are kept as arrays so that the set of active rules for a
+     * broadcast can be tracked in an int bitmask.
+     */
+    private static final int MAX_RULES_PER_ACTION = 32;
+
+    private final HashMap<String, Rule[]> mRulesByAction = new HashMap<String, Rule[]>();
+
+    /**
+     * Scratch list for receivers moved to the front; reused across
+     * broadcasts since we are always called under the AMS lock.
+     */
+    private final ArrayList<ResolveInfo> mFront = new ArrayList<ResolveInfo>();
+
+    /** Never deliver the action to any of {@code packages}. */
+    BroadcastReceiverRules blacklist(String action, Condition condition, String... packages) {
+        return addRule(action, new Rule(TYPE_BLACKLIST, condition, packages));
+    }
+
+    /**
+     * Deliver the action to {@code packages} before any other receiver,
+     * keeping their relative resolution order.
+     */
+    BroadcastReceiverRules prioritize(String action, Condition condition, String... packages) {
+        return addRule(action, new Rule(TYPE_PRIORITY, condition, packages));
+    }
+
+    /**
+     * Take {@code packages} out of the normal dispatch and hand them to the
+     * caller supplied sink, to be delivered later.
+     */
+    BroadcastReceiverRules defer(String action, Condition condition, String... packages) {
+        return addRule(action, new Rule(TYPE_DEFER, condition, packages));
+    }
+
+    private BroadcastReceiverRules addRule(String action, Rule rule) {
+        Rule[] rules = mRulesByAction.get(action);
+        if (rules == null) {
+            rules = new Rule[] { rule };
+        } else {
+            if (rules.length >= MAX_RULES_PER_ACTION) {
+                throw new IllegalStateException("Too many receiver rules for " + action);
+            }
+            Rule[] newRules = new Rule[rules.length + 1];
+            System.arraycopy(rules, 0, newRules, 0, rules.length);
+            newRules[rules.length] = rule;
+            rules = newRules;
+        }
+        mRulesByAction.put(action, rules);
+        return this;
+    }
+
+    boolean hasRules(String action) {
+        return action != null && mRulesByAction.containsKey(action);
+    }
+
+    /**
+     * Apply all active rules for {@code action} to {@code receivers}.
+     *
+     * @param deferred receives the receivers removed by defer rules; may be
+     * null if the action has no such rule.
+     * @return the filtered list, which is {@code receivers} itself or null
+     * if nothing is left.
+     */
+    List<ResolveInfo> apply(String action, List<ResolveInfo> receivers,
+            List<ResolveInfo> deferred) {
+        if (action == null || receivers == null) {
+            return receivers;
+        }
+        final Rule[] rules = mRulesByAction.get(action);
+        if (rules == null) {
+            return receivers;
+        }
+
+        int active = 0;
+        for (int i=0; i<rules.length; i++) {
+            if (rules[i].isActive()) {
+                active |= 1 << i;
+            }
+        }
+        if (active == 0) {
+            return receivers;
+        }
+
+        final ArrayList<ResolveInfo> front = mFront;
+        final int N = receivers.size();
+        int kept = 0;
+        for (int i=0; i<N; i++) {
+            final ResolveInfo ri = receivers.get(i);
+            final String pkg = ri.activityInfo != null ? ri.activityInfo.packageName : null;
+            int type = -1;
+            if (pkg != null) {
+                for (int j=0; j<rules.length; j++) {
+                    if ((active & (1 << j)) != 0 && rules[j].packages.contains(pkg)) {
+                        type = rules[j].type;
+                        if (type == TYPE_BLACKLIST) {
+                            break;
+                        }
+                    }
+                }
+            }
+            if (type == TYPE_BLACKLIST) {
+                if (ActivityManagerService.DEBUG_BROADCAST) {
+                    Slog.v(BroadcastQueue.TAG, "Not delivering " + action + " to " + pkg);
+                }
+            } else if (type == TYPE_DEFER && deferred != null) {
+                deferred.add(ri);
+            } else if (type == TYPE_PRIORITY) {
+                front.add(ri);
+            } else {
+                receivers.set(kept++, ri);
+            }
+        }
+
+        // Slide the kept receivers up behind the prioritized ones, then drop
+        // the tail from the end so no element is shifted twice.
+        final int F = front.size();
+        if (F > 0) {
+            for (int i=kept-1; i>=0; i--) {
+                receivers.set(i + F, receivers.get(i));
+            }
+            for (int i=0; i<F; i++) {
+                receivers.set(i, front.get(i));
+            }
+            front.clear();
+        }
+        for (int i=N-1; i>=kept+F; i--) {
+            receivers.remove(i);
+        }
+        return receivers.size() > 0 ? receivers : null;
+    }
+
+    void dump(PrintWriter pw, String prefix) {
+        for (Map.Entry<String, Rule[]> ent : mRulesByAction.entrySet()) {
+            pw.print(prefix); pw.print(ent.getKey()); pw.println(":");
+            for (Rule rule : ent.getValue()) {
+                pw.print(prefix); pw.print("  ");
+                pw.print(rule.type == TYPE_BLACKLIST ? "blacklist"
+                        : rule.type == TYPE_PRIORITY ? "priority" : "defer");
+                pw.print(rule.condition != null ? " (conditional, "
+                        + (rule.isActive() ? "active" : "inactive") + ")" : "");
+                pw.print(" "); pw.println(rule.packages);
+            }
+        }
+    }
+}
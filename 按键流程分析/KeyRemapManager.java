@@ -0,0 +1,167 @@
+/*
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.policy.impl;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+import android.hardware.input.InputManager;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseIntArray;
+import android.view.InputDevice;
+import android.view.KeyCharacterMap;
+import android.view.KeyEvent;
+
+import com.android.internal.util.XmlUtils;
+
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Stores per-application key remappings.
+ * <p>
+ * Some operator applications expect a vendor key code where the remote sends a standard one,
+ * e.g. the SyIptv player wants key 181 instead of HOME. The remappings are read from
+ * key_remaps.xml, keyed by the package of the activity on top, and the replacement key is
+ * injected directly into the input manager, so no "input keyevent" process has to be started.
+ */
+final class KeyRemapManager {
+
+    private static final String TAG = "KeyRemapManager";
+
+    private static final String TAG_KEY_REMAPS = "key_remaps";
+    private static final String ATTR_VERSION = "version";
+    private static final String TAG_REMAP = "remap";
+    private static final String ATTR_PACKAGE = "package";
+    private static final String ATTR_KEY_CODE = "keyCode";
+    private static final String ATTR_TO_KEY_CODE = "toKeyCode";
+
+    private static final int KEY_REMAP_FILE_VERSION = 1;
+
+    private static final class PackageRemap {
+        final String packageName;
+        final SparseIntArray keys = new SparseIntArray();
+
+        PackageRemap(String _packageName) {
+            packageName = _packageName;
+        }
+
+        boolean matches(String topPackage) {
+            return topPackage.startsWith(packageName)
+                    && (topPackage.length() == packageName.length()
+                            || topPackage.charAt(packageName.length()) == '.');
+        }
+    }
+
+    private final ArrayList<PackageRemap> mRemaps = new ArrayList<PackageRemap>();
+
+    public KeyRemapManager(Context context) {
+        loadKeyRemaps(context);
+    }
+
+    /**
+     * Returns the key code {@code keyCode} should be replaced with while {@code top} is the
+     * top activity, or {@link KeyEvent#KEYCODE_UNKNOWN} if it is not remapped. A remapping
+     * for a package also applies to packages nested under it.
+     */
+    int getRemappedKey(ComponentName top, int keyCode) {
+        if (top == null || mRemaps.size() == 0) {
+            return KeyEvent.KEYCODE_UNKNOWN;
+        }
+        final String topPackage = top.getPackageName();
+        for (int i = 0; i < mRemaps.size(); i++) {
+            final PackageRemap remap = mRemaps.get(i);
+            if (remap.matches(topPackage)) {
+                return remap.keys.get(keyCode, KeyEvent.KEYCODE_UNKNOWN);
+            }
+        }
+        return KeyEvent.KEYCODE_UNKNOWN;
+    }
+
+    /**
+     * Injects a down/up pair for {@code keyCode}. Injection is asynchronous because this is
+     * called from the input dispatcher's own policy callbacks.
+     */
+    static void injectKey(Context context, int keyCode) {
+        final long now = SystemClock.uptimeMillis();
+        final InputManager inputManager = (InputManager) context.getSystemService(
+                Context.INPUT_SERVICE);
+        inputManager.injectInputEvent(new KeyEvent(now, now, KeyEvent.ACTION_DOWN, keyCode, 0,
+                0, KeyCharacterMap.VIRTUAL_KEYBOARD, 0, 0, InputDevice.SOURCE_KEYBOARD),
+                InputManager.INJECT_INPUT_EVENT_MODE_ASYNC);
+        inputManager.injectInputEvent(new KeyEvent(now, now, KeyEvent.ACTION_UP, keyCode, 0,
+                0, KeyCharacterMap.VIRTUAL_KEYBOARD, 0, 0, InputDevice.SOURCE_KEYBOARD),
+                InputManager.INJECT_INPUT_EVENT_MODE_ASYNC);
+    }
+
+    private PackageRemap remapFor(String packageName) {
+        for (int i = 0; i < mRemaps.size(); i++) {
+            if (mRemaps.get(i).packageName.equals(packageName)) {
+                return mRemaps.get(i);
+            }
+        }
+        PackageRemap remap = new PackageRemap(packageName);
+        mRemaps.add(remap);
+        return remap;
+    }
+
+    private void loadKeyRemaps(Context context) {
+        XmlResourceParser parser = null;
+        try {
+            parser = context.getResources().getXml(com.android.internal.R.xml.key_remaps);
+            XmlUtils.beginDocument(parser, TAG_KEY_REMAPS);
+            int version = parser.getAttributeIntValue(null, ATTR_VERSION, 0);
+            if (KEY_REMAP_FILE_VERSION == version) {
+                while (true) {
+                    XmlUtils.nextElement(parser);
+                    String element = parser.getName();
+                    if (element == null) {
+                        break;
+                    }
+                    if (TAG_REMAP.equals(element)) {
+                        String packageName = parser.getAttributeValue(null, ATTR_PACKAGE);
+                        String keyCodeName = parser.getAttributeValue(null, ATTR_KEY_CODE);
+                        String toKeyCodeName = parser.getAttributeValue(null, ATTR_TO_KEY_CODE);
+                        if (packageName == null || keyCodeName == null || toKeyCodeName == null) {
+                            Log.w(TAG, "Incomplete remap at " + parser.getPositionDescription());
+                            continue;
+                        }
+                        int keyCode = KeyEvent.keyCodeFromString(keyCodeName);
+                        int toKeyCode = KeyEvent.keyCodeFromString(toKeyCodeName);
+                        if (keyCode != KeyEvent.KEYCODE_UNKNOWN
+                                && toKeyCode != KeyEvent.KEYCODE_UNKNOWN) {
+                            remapFor(packageName).keys.put(keyCode, toKeyCode);
+                        }
+                    }
+                }
+            }
+        } catch (Resources.NotFoundException e) {
+            Log.w(TAG, "key remaps file not found", e);
+        } catch (XmlPullParserException e) {
+            Log.w(TAG, "XML parser exception reading key remaps file", e);
+        } catch (IOException e) {
+            Log.w(TAG, "I/O exception reading key remaps file", e);
+        } finally {
+            if (parser != null) {
+                parser.close();
+            }
+        }
+    }
+}
@@ -63,6 +63,7 @@ import android.os.Process;
 import android.os.RemoteException;
 import android.os.ServiceManager;
 import android.os.SystemClock;
+import android.os.ProvinceProfile;
 import android.os.SystemProperties;
 import android.os.UEventObserver;
 import android.os.UserHandle;
@@ -104,6 +105,7 @@ import android.hardware.input.IInputManager;
 import android.hardware.input.InputManager;
 
 import com.android.internal.R;
+import com.android.internal.app.TopActivityTracker;
 import com.android.internal.policy.PolicyManager;
 import com.android.internal.policy.impl.keyguard.KeyguardServiceDelegate;
 import com.android.internal.statusbar.IStatusBarService;
@@ -818,6 +820,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 
     // Maps global key codes to the components that will handle them.
     private GlobalKeyManager mGlobalKeyManager;
+    private KeyRemapManager mKeyRemapManager;
 
     // Fallback actions by key code.
     private final SparseArray<KeyCharacterMap.FallbackAction> mFallbackActions =
@@ -1143,6 +1146,18 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             resolver.registerContentObserver(Settings.Global.getUriFor(
                     Settings.Global.DISPLAY_OUTPUTMODE_AUTO), false, this,
                     UserHandle.USER_ALL);
+            resolver.registerContentObserver(Settings.System.getUriFor(
+                    SYSTEM_SLEEP_TIME_DELAY), false, this,
+                    UserHandle.USER_ALL);
+            resolver.registerContentObserver(Settings.System.getUriFor(
+                    SCREEN_SAVER_DELAY), false, this,
+                    UserHandle.USER_ALL);
+            resolver.registerContentObserver(Settings.System.getUriFor(
+                    ROOM_UPGRADE_FLAG), false, this,
+                    UserHandle.USER_ALL);
+            resolver.registerContentObserver(Settings.System.getUriFor(
+                    IS_RESPOND_HOME_KEY), false, this,
+                    UserHandle.USER_ALL);
             updateSettings();
         }
 
@@ -1283,9 +1298,9 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             // begin: add by tianchining at 20190327: handle PowerKey
             //mHandler.postDelayed(mPowerLongPress, ViewConfiguration.getGlobalActionKeyTimeout());
             long time=ViewConfiguration.getGlobalActionKeyTimeout();
-            if(SystemProperties.get("ro.ysten.province","master").contains("ningxia")){
+            if(ProvinceProfile.get().is(ProvinceProfile.Region.NINGXIA)){
                 time=5000;
-            }else if(SystemProperties.get("ro.ysten.province","master").contains("hubei")){
+            }else if(ProvinceProfile.get().is(ProvinceProfile.Region.HUBEI)){
                 time=3000;
             }
             mHandler.postDelayed(mPowerLongPress, time);
@@ -1371,7 +1386,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                 Log.d(TAG, "press long power key, proj_type is " + proj_type);
                 if ("mobile".equals(proj_type)) {
                     //begin:add by zhanghk at 20191205:start poweroff.apk when long press power key
-                    if(SystemProperties.get("ro.ysten.province","master").contains("hubei")){
+                    if(ProvinceProfile.get().is(ProvinceProfile.Region.HUBEI)){
                         Intent poweroffIntent = new Intent();  
                         poweroffIntent.setAction("com.ysten.action.poweroff"); 
                         mContext.startService(poweroffIntent);  
@@ -1478,7 +1493,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
     private final Runnable mPowerShortPress = new Runnable() {
         public void run() {
             // begin: add by ysten.tianchining at 20190327: showSleepDelayDialog
-            if(SystemProperties.get("ro.ysten.province","master").contains("ningxia")){
+            if(ProvinceProfile.get().is(ProvinceProfile.Region.NINGXIA)){
                 showSleepDelayDialog();
                 return;
             }
@@ -1717,7 +1732,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         mHomeIntent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK
                 | Intent.FLAG_ACTIVITY_RESET_TASK_IF_NEEDED);
         //begin:add by zhanghk at 20190530:add Intent.CATEGORY_LAUNCHER for Huawei Launcher 
-        if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")){
+        if(ProvinceProfile.get().nameContains("CM201_zhejiang")){
 	    mHomeIntent.addCategory(Intent.CATEGORY_LAUNCHER);
         }
         //end:add by zhanghk at 20190530:add Intent.CATEGORY_LAUNCHER for Huawei Launcher 
@@ -1853,11 +1868,12 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                 com.android.internal.R.bool.config_enableScreenshotChord);
 
         mGlobalKeyManager = new GlobalKeyManager(mContext);
+        mKeyRemapManager = new KeyRemapManager(mContext);
 
         // Controls rotation and the like.
         mMboxOutputModeManager = (MboxOutputModeManager) mContext.getSystemService(Context.MBOX_OUTPUTMODE_SERVICE);
 	//begin by ysten zhuhengxuan at 20190413 for 江西广告apk 下发第一张图作为开机logo
-	if(SystemProperties.get("ro.ysten.province").contains("jiangxi") && SystemProperties.get("persist.sys.launcher.value","0").equals("1")){
+	if(ProvinceProfile.get().is(ProvinceProfile.Region.JIANGXI) && SystemProperties.get("persist.sys.launcher.value","0").equals("1")){
 		mHandler.postDelayed(changeLogoRunnable,8*60*1000);
 		Log.i(TAG, "----zhuhengxuan----8分钟后开启更新开机logo线程");
 	}
@@ -1880,16 +1896,16 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             screenTurnedOff(WindowManagerPolicy.OFF_BECAUSE_OF_USER);
         }
 //add by ysten.huanghongyan 2018.11.27 for CM201_henan
-        if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")
+        if(ProvinceProfile.get().nameContains("CM201_henan")
             //add by zhanghk at 20190522:for 4 hour standby
-            ||SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")
+            ||ProvinceProfile.get().nameContains("CM201_zhejiang")
 			//add by huxiang at 20190524 for jike default 4 hour sleepTime
-			||SystemProperties.get("ro.ysten.province","master").contains("CM202_jike")){
+			||ProvinceProfile.get().nameContains("CM202_jike")){
 	        filter = new IntentFilter();
             filter.addAction("com.ysten.delay.poweroff");
 	        context.registerReceiver(mDelayPowerOffReceiver, filter);
 	        mHandler.removeCallbacks(mSystemSleep);
-	        int sleepDelay = Settings.System.getInt(mContext.getContentResolver(),SYSTEM_SLEEP_TIME_DELAY,-1);
+	        int sleepDelay = mSleepDelaySetting;
 	      if(sleepDelay == -1){
 	 	    Settings.System.putInt(mContext.getContentResolver(),SYSTEM_SLEEP_TIME_DELAY,240);
 	      }
@@ -1899,7 +1915,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         }
 	    //end by ysten.huanghongyan 2018.11.27 for CM201_henan 
         // begin: add by ysten.tianchining at 20180325: add mGoToSleepReceiver for ningxia
-        else if(SystemProperties.get("ro.ysten.province","master").contains("ningxia")){
+        else if(ProvinceProfile.get().is(ProvinceProfile.Region.NINGXIA)){
              filter = new IntentFilter();
             filter.addAction("com.ysten.ningxia.GoToSleep");
             context.registerReceiver(mGoToSleepReceiver, filter);
@@ -1914,7 +1930,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 			mSystemLogManager.startRecord();
         }
         //begin by ysten.zhangjunjian ,20181128,add for hubei
-        if (SystemProperties.get("ro.ysten.province","master").equals("CM201_hubei")) { 
+        if (ProvinceProfile.get().nameEquals("CM201_hubei")) { 
 		    Log.d(TAG, "mRefershTokenReceiver add com.iptv.refersh.token ");
             filter = new IntentFilter();
             filter.addAction("com.iptv.refersh.token");
@@ -1933,13 +1949,13 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             context.registerReceiver(mScreenSaverReceiver, filter);
             Log.d(TAG, "PhoneWindowManager init()");
             mHandler.removeCallbacks(mLaunchScreenSaver);
-            int delay = Settings.System.getInt(mContext.getContentResolver(), SCREEN_SAVER_DELAY, -1);
+            int delay = mScreenSaverDelaySetting;
             if(delay > 0){
                 mHandler.postDelayed(mLaunchScreenSaver, delay*60*1000);
             } 
         //add by tanhy
          mHandler.removeCallbacks(mSystemSleep);
-          int sleepDelay = Settings.System.getInt(mContext.getContentResolver(),SYSTEM_SLEEP_TIME_DELAY,-1);
+          int sleepDelay = mSleepDelaySetting;
 
               if(sleepDelay > 0)
                   mHandler.postDelayed(mSystemSleep,sleepDelay*60*1000);
@@ -1956,7 +1972,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 		InitMobileKeyMap();
         mAutoLogMultKeyTrigger = new AutoLogMultKeyTrigger(mContext);//added by yzs at 20190424:multikey trigger autolog
 		/*begin:add by zhanghk at 20191009:timing analog key to prevent network disconnect*/
-		if(SystemProperties.get("ro.ysten.province","master").contains("homeschool")){
+		if(ProvinceProfile.get().has(ProvinceProfile.FLAG_HOMESCHOOL)){
 			mHandler.removeCallbacks(analogKeyRunnable);
 			int analogKeyTime = SystemProperties.getInt("persist.sys.analogkey.time",-1);
 			if(analogKeyTime > 0)
@@ -1979,7 +1995,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                     mInPlaying = true;
                 } else if(action.equals("com.ysten.viper.endplay")){
                     mInPlaying = false;
-                    int delay = Settings.System.getInt(mContext.getContentResolver(), SCREEN_SAVER_DELAY, -1);
+                    int delay = mScreenSaverDelaySetting;
                     mHandler.removeCallbacks(mLaunchScreenSaver);
                     if(delay > 0){
                         mHandler.postDelayed(mLaunchScreenSaver, delay*60*1000);
@@ -1988,7 +2004,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 			
 			{
 			Log.i("THY","PhoneWindowManager receive broadcast: Intent.ACTION_SCREEN_ON");		
-			int sleepDelay = Settings.System.getInt(mContext.getContentResolver(),SYSTEM_SLEEP_TIME_DELAY,-1);
+			int sleepDelay = mSleepDelaySetting;
 			if(sleepDelay > 0)
 				mHandler.postDelayed(mSystemSleep,sleepDelay*60*1000);
 		}else if(action.equals(Intent.ACTION_SCREEN_OFF))
@@ -2023,7 +2039,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             if(!TextUtils.isEmpty(action)){
                 if(action.equals("com.ysten.delay.poweroff")){
                    mHandler.removeCallbacks(mSystemSleep);
-               	  int sleepDelay = Settings.System.getInt(mContext.getContentResolver(),SYSTEM_SLEEP_TIME_DELAY,-1); 
+               	  int sleepDelay = mSleepDelaySetting; 
 
                           if(sleepDelay > 0)
                 	          mHandler.postDelayed(mSystemSleep,sleepDelay*SLEEP_DELAY_UNIT);
@@ -2241,6 +2257,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
     public void updateSettings() {
         ContentResolver resolver = mContext.getContentResolver();
         boolean updateRotation = false;
+        updateKeySettings(resolver);
         synchronized (mLock) {
             mEndcallBehavior = Settings.System.getIntForUser(resolver,
                     Settings.System.END_BUTTON_BEHAVIOR,
@@ -3116,14 +3133,14 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         {
             Log.d(TAG, "custom.type:viper3");
 			   if(mInPlaying)return;
-			   int delay = Settings.System.getInt(mContext.getContentResolver(), SCREEN_SAVER_DELAY, -1);
+			   int delay = mScreenSaverDelaySetting;
 			   if(delay < 0)return;
 			   
 			final AudioManager am = (AudioManager)mContext.getSystemService(Context.AUDIO_SERVICE);//determin music is action
 			   boolean isPlayingAudio = false;
 			   if(null != am)isPlayingAudio = SystemProperties.get("service.media.playstatus","none").equals("running");
 			
-			   boolean isUpgrading=(Settings.System.getInt(mContext.getContentResolver(), ROOM_UPGRADE_FLAG, -1)==1);
+			   boolean isUpgrading=mRoomUpgrading;
 			   Log.d(TAG, "about to start ScreenSaver = " + delay);
 			   if (/*MediaPlayer.isPlayingVideo()||*/isUpgrading || isPlayingAudio) {
 				   mHandler.removeCallbacks(mLaunchScreenSaver);
@@ -3144,25 +3161,25 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 		   {
 					public void run()
 				{ 
-        if(SystemProperties.get("ro.ysten.custom.type","none").equals("viper")||SystemProperties.get("ro.ysten.province").contains("CM201_hubei"))
+        if(SystemProperties.get("ro.ysten.custom.type","none").equals("viper")||ProvinceProfile.get().nameContains("CM201_hubei"))
         {
             Log.d(TAG, "custom.type:viper4");
 			 if(mInPlaying)return;
-				 int sleepDelay = Settings.System.getInt(mContext.getContentResolver(), SYSTEM_SLEEP_TIME_DELAY, -1);
+				 int sleepDelay = mSleepDelaySetting;
 				 //add by guangchao.su 2018.10.12 for A20_shandong settings devicesleep begin
 				 int devicesleep = SystemProperties.getInt("persist.sys.devicesleep", 1);
 				 Log.d("ysten_sgc_shandong"," use this devicesleep123 is "+devicesleep);
 				 if(sleepDelay < 0)return;
 				 if(devicesleep == 0)return;
 				 //add by guangchao.su 2018.10.12 for A20_shandong settings devicesleep end
-				 boolean isUpgrading=(Settings.System.getInt(mContext.getContentResolver(), ROOM_UPGRADE_FLAG, -1)==1);
+				 boolean isUpgrading=mRoomUpgrading;
 				 Log.d(TAG, "about to start sleep  = " + sleepDelay);
 					 final AudioManager am = (AudioManager)mContext.getSystemService(Context.AUDIO_SERVICE);//determin music is action
 					 boolean isPlayingAudio = false;
 					 if(null != am)isPlayingAudio = SystemProperties.get("service.media.playstatus","none").equals("running");
 	 
 				//add by guangchao.su 2019.02.20 for A20_fujian  begin
-				if (SystemProperties.get("ro.ysten.province").contains("fujian")||SystemProperties.get("ro.ysten.province").contains("CM201_hubei")){
+				if (ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)||ProvinceProfile.get().nameContains("CM201_hubei")){
                     if (isUpgrading) {
                     mHandler.removeCallbacks(mSystemSleep);
                     mHandler.postDelayed(mSystemSleep,sleepDelay*60*1000);
@@ -3179,19 +3196,19 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 					mananger.goToSleep(SystemClock.uptimeMillis());
 					}
                  //add by zhanghk at 20181109 begin:show jiangsu poweroff tip
-                 if("CM201_jiangsu".equals(SystemProperties.get("ro.ysten.province"))
-				 ||"cm201_jiangxi".equals(SystemProperties.get("ro.ysten.province"))
-				 ||"cm201_guizhou".equals(SystemProperties.get("ro.ysten.province"))){//add by zhaolianghua for jiangxi
+                 if(ProvinceProfile.get().nameEquals("CM201_jiangsu")
+				 ||ProvinceProfile.get().nameEquals("cm201_jiangxi")
+				 ||ProvinceProfile.get().nameEquals("cm201_guizhou")){//add by zhaolianghua for jiangxi
                          showSleepDelayDialog();
                  }
                  //add by zhanghk at 20181109 end:show jiangsu poweroff tip
 				//add by ysten.huanghongyan 2018.11.27 for CM201_henan	
-				if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
+				if(ProvinceProfile.get().nameContains("CM201_henan")){
 					showSleepDelayDialog();
 				}
 				//end by ysten.huanghongyan 2018.11.27 for CM201_henan 
                                 //begin:add by zhanghk at 20190522:for 4 hour standby
-                                if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")){
+                                if(ProvinceProfile.get().nameContains("CM201_zhejiang")){
                                     mPowerManager.goToSleep(SystemClock.uptimeMillis());
                                 }
                                 //end:add by zhanghk at 20190522:for 4 hour standby   
@@ -3210,6 +3227,23 @@ public class PhoneWindowManager implements WindowManagerPolicy {
      private static final String KEY_DOWN_HAPPEN_LOCK = "com.android.internal.policy.impl.KEY_DOWN_HAPPEN_LOCK";
      private static final String KEY_DOWN_HAPPEN_CHILD_LOCK = "com.android.internal.policy.impl.KEY_DOWN_HAPPEN_SHILD_LOCK";
      private static boolean press3Second = false;//add by caishuo press sj key for neimeng A20c at 20190525
+    private static final String IS_RESPOND_HOME_KEY = "IS_RESPOND_HOME_KEY";
+
+    // Mirrors of the settings above that are consulted for every key press.
+    // Kept current by mSettingsObserver so the key path does not have to ask
+    // the settings provider.
+    private volatile int mSleepDelaySetting = -1;
+    private volatile int mScreenSaverDelaySetting = -1;
+    private volatile boolean mRoomUpgrading;
+    private volatile int mRespondHomeKeySetting;
+
+    private void updateKeySettings(ContentResolver resolver) {
+        mSleepDelaySetting = Settings.System.getInt(resolver, SYSTEM_SLEEP_TIME_DELAY, -1);
+        mScreenSaverDelaySetting = Settings.System.getInt(resolver, SCREEN_SAVER_DELAY, -1);
+        mRoomUpgrading = Settings.System.getInt(resolver, ROOM_UPGRADE_FLAG, -1) == 1;
+        mRespondHomeKeySetting = Settings.System.getInt(resolver, IS_RESPOND_HOME_KEY, 0);
+    }
+
     /** {@inheritDoc} */
     @Override
     public long interceptKeyBeforeDispatching(WindowState win, KeyEvent event, int policyFlags) {
@@ -3221,11 +3255,11 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         final boolean down = event.getAction() == KeyEvent.ACTION_DOWN;
         final boolean canceled = event.isCanceled();
 		//add by huxiang at 2019/8/17 for sleepTime invalid
-		if(SystemProperties.get("ro.ysten.province","master").contains("CM201_hubei")){
+		if(ProvinceProfile.get().nameContains("CM201_hubei")){
 		   final boolean up = event.getAction() == KeyEvent.ACTION_UP;
            if(up){
 	            mHandler.removeCallbacks(mSystemSleep);
-                int sleepDelay = Settings.System.getInt(mContext.getContentResolver(),SYSTEM_SLEEP_TIME_DELAY,-1);
+                int sleepDelay = mSleepDelaySetting;
                 
                 Log.d("mark-add", "sleepDelay = " + sleepDelay);
         
@@ -3236,7 +3270,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 		}
 		//add end by huxiang at 2019/8/17 for sleepTime invalid
 		//add by ysten.huanghongyan 2018.11.27 for CM201_henan
-		if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
+		if(ProvinceProfile.get().nameContains("CM201_henan")){
 		   final boolean up = event.getAction() == KeyEvent.ACTION_UP;
            if(up){
 	    /*if(isCancelDialog){
@@ -3247,7 +3281,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 	    }*/
 	            //add by tanhy
 	            mHandler.removeCallbacks(mSystemSleep);
-                int sleepDelay = Settings.System.getInt(mContext.getContentResolver(),SYSTEM_SLEEP_TIME_DELAY,-1);
+                int sleepDelay = mSleepDelaySetting;
         
                 if(sleepDelay > 0)
                    mHandler.postDelayed(mSystemSleep,sleepDelay*SLEEP_DELAY_UNIT);
@@ -3306,7 +3340,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         
 		//begin by lizheng 20181205 remove mSystemSleep if keycode down----add by guangchao.su 2019.02.20 for A20_fujian  begin
 		if(down){
-				int sleepDelay = Settings.System.getInt(mContext.getContentResolver(),SYSTEM_SLEEP_TIME_DELAY,-1);
+				int sleepDelay = mSleepDelaySetting;
 				if(sleepDelay>0){
 			        mHandler.removeCallbacks(mSystemSleep);
 			        mHandler.postDelayed(mSystemSleep,sleepDelay*60*1000);
@@ -3314,7 +3348,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 			}
 		//end by lizheng 20181205 remove mSystemSleep if keycode down----add by guangchao.su 2019.02.20 for A20_fujian  end
 		/*begin:add by zhanghk at 20191009:timing analog key to prevent network disconnect*/
-		if(SystemProperties.get("ro.ysten.province","master").contains("homeschool")){
+		if(ProvinceProfile.get().has(ProvinceProfile.FLAG_HOMESCHOOL)){
 			mHandler.removeCallbacks(analogKeyRunnable);
 			int analogKeyTime = SystemProperties.getInt("persist.sys.analogkey.time",-1);
 			if(analogKeyTime > 0)
@@ -3329,9 +3363,9 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         //added by yzs at 20190424 multikey trigger autolog end
                
         //add by zhanghk at 20181109 begin:add jiangsu content    
-		if(SystemProperties.get("ro.ysten.province","master").contains("CM201_jiangsu")
-				||"cm201_jiangxi".equals(SystemProperties.get("ro.ysten.province"))
-				||"cm201_guizhou".equals(SystemProperties.get("ro.ysten.province"))){//add by zhaolianghua for jiangxi
+		if(ProvinceProfile.get().nameContains("CM201_jiangsu")
+				||ProvinceProfile.get().nameEquals("cm201_jiangxi")
+				||ProvinceProfile.get().nameEquals("cm201_guizhou")){//add by zhaolianghua for jiangxi
 			if(isCancelDialog){
 				mHandler.removeCallbacks(mSleepCancleTimer);
 				mCount=30;
@@ -3341,7 +3375,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 			if(down){
 				//add by zhanghk at 20181204:fix sleep abnormally problem
 				mHandler.removeCallbacks(mSystemSleep);
-				int sleepDelay = Settings.System.getInt(mContext.getContentResolver(),SYSTEM_SLEEP_TIME_DELAY,-1);
+				int sleepDelay = mSleepDelaySetting;
 				if(sleepDelay>0){
 			        mHandler.postDelayed(mSystemSleep, sleepDelay*60*1000);
 				}
@@ -3353,8 +3387,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
        if (keyCode == KeyEvent.KEYCODE_HOME) {
             //add by sunjh at 20191126 for CM502:合家固话中断处理
             if (("true").equals(SystemProperties.get("persist.sys.iscm502", "false"))) {
-                ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-                String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+                String currentPackage=getTopComponent(mContext).getClassName();
                 Log.d("sjh", "currentPackage=" + currentPackage);
                 if (!SystemProperties.get("sys.hejiaguhua.incalling", "0").equals("0")) {
                     if (down) {
@@ -3371,16 +3404,15 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             }
             //add by sunjh at 20191126 for CM502:合家固话中断处理
             
-            int isResponHomeKey=Settings.System.getInt(mContext.getContentResolver(), "IS_RESPOND_HOME_KEY", 0);
-            if(isResponHomeKey!=0 && SystemProperties.get("ro.ysten.province").equals("CM201_beijing"))
+            int isResponHomeKey=mRespondHomeKeySetting;
+            if(isResponHomeKey!=0 && ProvinceProfile.get().nameEquals("CM201_beijing"))
             {
                 Log.d(TAG, "do not response home key 2");
                 return -1;
             }
 			//add by huxiang at 20190506 for fix home press bug
-			if(SystemProperties.get("ro.ysten.province").equals("CM202_jike")||SystemProperties.get("ro.ysten.province").equals("CM202_hunan_gate")){
-				ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-                String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+			if(ProvinceProfile.get().nameEquals("CM202_jike")||ProvinceProfile.get().nameEquals("CM202_hunan_gate")){
+                String currentPackage=getTopComponent(mContext).getClassName();
 			    Log.d(TAG," currentPackage = " + currentPackage);
 				if("com.ysten.com.gatewayprogress.MainActivity".equals(currentPackage)||"com.ysten.com.gatewayprogress.SplashActivity".equals(currentPackage)){
 			       return -1;
@@ -3388,9 +3420,8 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 			}
 
 			//add by ysten-mark for heilongjiang with forbidden homekey at auth apk
-			if(SystemProperties.get("ro.ysten.province").equals("CM201_heilongjiang")){
-				ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-                String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+			if(ProvinceProfile.get().nameEquals("CM201_heilongjiang")){
+                String currentPackage=getTopComponent(mContext).getClassName();
 			    Log.d("mark"," currentPackage = " + currentPackage);
 				if("com.android.iptvauth".equals(currentPackage)){
 			       return -1;
@@ -3409,9 +3440,8 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 
 			//add end by huxiang at 20190506 for fix home press bug
 			//begin : add by zhuyu at 20190725 for  forbidden  homeKey when calling 
-            if(SystemProperties.get("ro.ysten.province").equals("A20_neimeng")){
-               ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-               String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+            if(ProvinceProfile.get().nameEquals("A20_neimeng")){
+               String currentPackage=getTopComponent(mContext).getClassName();
                Log.d(TAG," currentPackage = " + currentPackage);
                if("com.ysten.hejiaguhua.CallActivity".equals(currentPackage)){
                    return -1;
@@ -3419,9 +3449,8 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             }
             //end : add by zhuyu at 20190725 for  forbidden  homeKey when calling 
 		    //add by huxiang at 20190625 for anhui_gate fix home press bug
-			if(SystemProperties.get("ro.ysten.province").equals("CM202_anhui_gate")){
-				ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-                String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+			if(ProvinceProfile.get().nameEquals("CM202_anhui_gate")){
+                String currentPackage=getTopComponent(mContext).getClassName();
 			    Log.d(TAG," currentPackage = " + currentPackage);
 				if(currentPackage.contains("com.android.provision")){
 			       return -1;
@@ -3430,9 +3459,8 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 			//add end by huxiang at 20190625 for anhui_gate fix home press bug
 
                     //add by zhangjunjian at 20191118 for guangdong fix home press bug
-                        if(SystemProperties.get("ro.ysten.province").equals("CM201_guangdong")){
-                                ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-                                String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+                        if(ProvinceProfile.get().nameEquals("CM201_guangdong")){
+                                String currentPackage=getTopComponent(mContext).getClassName();
                                 Log.d(TAG," currentPackage = " + currentPackage);
                                 if(currentPackage.contains("com.ysten.auth.guangdong.MainActivity")||("false".equals(SystemProperties.get("sys.logined","false")))){
                                      return -1;
@@ -3440,9 +3468,8 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                         }
                         //add end by zhangjunjian at 2019118 for guangdong fix home press bug
 		    //add by huxiang at 20190817 for hubei forbidden home key
-			if(SystemProperties.get("ro.ysten.province").equals("CM201_hubei")){
-				ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-                String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+			if(ProvinceProfile.get().nameEquals("CM201_hubei")){
+                String currentPackage=getTopComponent(mContext).getClassName();
 			    Log.d(TAG," currentPackage = " + currentPackage);
 				if(currentPackage.contains("com.android.iptvauth")){
 			       return -1;
@@ -3454,10 +3481,9 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 
 
         //begin add by ysten zengzhiliang at 20181120:sync from CM201-2_beijing guo an yu yin model proc
-		if(SystemProperties.get("ro.ysten.province","master").contains("CM201_beijing"))
+		if(ProvinceProfile.get().nameContains("CM201_beijing"))
 		{
-           ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-           String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+           String currentPackage=getTopComponent(mContext).getClassName();
             Log.d(TAG," currentPackage = " + currentPackage);
             //begin:add by ysten zengzhiliang at 20181127:F5 replace F17
 	        if(down && repeatCount == 0&& keyCode == KeyEvent.KEYCODE_F5) {
@@ -3489,9 +3515,9 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 			}
 			if(down && keyCode == KeyEvent.KEYCODE_F23) {
 				Log.d(TAG,"start yun shi jie");
-                if(Settings.System.getInt(mContext.getContentResolver(), "IS_RESPOND_HOME_KEY", 0)==0)
+                if(mRespondHomeKeySetting==0)
                 {
-                    String TopPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+                    String TopPackage=getTopComponent(mContext).getClassName();
                     if(!TopPackage.equals("com.istv.ui.app.usercenter.QrcodeActivity"))
                     {
                         Intent intent = new Intent();
@@ -3504,7 +3530,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                 }
                 else
                 {
-                    String TopPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+                    String TopPackage=getTopComponent(mContext).getClassName();
                     if(!(TopPackage.equals("com.istv.ui.app.login.LoginActivity")
                             ||TopPackage.equals("com.istv.ui.app.login.SupplementPhoneActivity")))
                     {
@@ -3524,11 +3550,10 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         
 
     //begin add by ysten zengzhiliang at 20181120:sync from CM201-2_beijing
-	ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);  
-	String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();  
+	String currentPackage=getTopComponent(mContext).getClassName();  
 	Log.d(TAG," currentPackage = " + currentPackage);
 	if (down && currentPackage != null && currentPackage.startsWith("com.ysten.setting") 
-            && SystemProperties.get("ro.ysten.province","master").contains("CM201_beijing"))
+            && ProvinceProfile.get().nameContains("CM201_beijing"))
 		{
 	                 Log.d(TAG,"adbEanbledSetp:"+adbEanbledSetp);
 		if((keyCode==KeyEvent.KEYCODE_DPAD_UP||keyCode==KeyEvent.KEYCODE_DPAD_DOWN||keyCode==KeyEvent.KEYCODE_DPAD_LEFT||keyCode==KeyEvent.KEYCODE_DPAD_RIGHT))
@@ -3618,7 +3643,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         //add by chenliang at 20181120 end:press some key to start agingdragonbox
         
 	//add by zhanghk at 20181018 begin:press some key to start allapp
-        if("CM201_hunan".equals(SystemProperties.get("ro.ysten.province"))) {
+        if(ProvinceProfile.get().nameEquals("CM201_hunan")) {
             Log.d("zhanghk","mkeyAllappCount:"+mkeyAllappCount);
             if(keyCode == KeyEvent.KEYCODE_CHANNEL_UP && true == down) {
                 mkeyAllappCount = 1;
@@ -3701,7 +3726,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 			}
 		}
         //begin:add by zhuhengxuan at 20190624 for jiangxi OTT IPTV four color key
-        if("cm201_jiangxi".equals(SystemProperties.get("ro.ysten.province"))){
+        if(ProvinceProfile.get().nameEquals("cm201_jiangxi")){
             if(down&&
                 (keyCode == KeyEvent.KEYCODE_RED ||
                     keyCode == KeyEvent.KEYCODE_GREEN ||
@@ -3715,7 +3740,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         }
         //end:add by zhuhengxuan at 20190624 for jiangxi OTT IPTV four color key
 		//begin:add by zhuhengxuan at 20190624 for hebei  IPTV volume key
-        /*if(SystemProperties.get("ro.ysten.province", "master").contains("cm201_hebei")){
+        /*if(ProvinceProfile.get().nameContains("cm201_hebei")){
             if(down && (keyCode == KeyEvent.KEYCODE_VOLUME_UP ||
                 keyCode == KeyEvent.KEYCODE_VOLUME_DOWN ||
                 keyCode == KeyEvent.KEYCODE_VOLUME_MUTE)){
@@ -3733,7 +3758,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         }*/
         //end:add by zhuhengxuan at 20190930 for hebei  IPTV volume key
     //begin add by ysten zengzhiliang at 20181120:sync from CM201-2_beijing 4 color key proc
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_beijing"))
+        if(ProvinceProfile.get().nameEquals("CM201_beijing"))
         {
             if(	down
 				&&
@@ -3749,7 +3774,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
     //end add by ysten zengzhiliang at 20181120:sync from CM201-2_beijing 4 color key proc
     
     //begin:add  by ysten zengzhiliang at 20190123 yunnan 4 color key proc
-	    if(SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("CM201_yunnan"))
+	    if(ProvinceProfile.get().nameEqualsIgnoreCase("CM201_yunnan"))
         {
             if(	down
 				&&
@@ -3763,14 +3788,14 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 
         }
     //end:add  by ysten zengzhiliang at 20190123 yunnan 4 color key proc
-        if(SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("CM201_homeschool"))
+        if(ProvinceProfile.get().nameEqualsIgnoreCase("CM201_homeschool"))
         {
             if(down && (keyCode == KeyEvent.KEYCODE_F6 || keyCode == KeyEvent.KEYCODE_F7)){
                 doFunAction_school(keyCode);
             }
         }
             //begin: add by ysten xumiao at 20181218:hubei add KEYCODE
-	    if (SystemProperties.get("ro.ysten.province","master").contains("hubei")) {
+	    if (ProvinceProfile.get().is(ProvinceProfile.Region.HUBEI)) {
 		    if(	down && (keyCode == KeyEvent.KEYCODE_F6 ||
 				    keyCode == KeyEvent.KEYCODE_F7 ||
 				    keyCode == KeyEvent.KEYCODE_F8 ||
@@ -3787,13 +3812,13 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                        }
                       if(!TextUtils.isEmpty(bussiness) && !bussiness.equalsIgnoreCase("iptv")) {
 			Log.d(TAG, "event.getAction :" + event.getAction()+" ACTION_UP : "+KeyEvent.ACTION_UP);
-                         if(!SystemProperties.get("sys.key.home").equals("on")&&Settings.System.getInt(mContext.getContentResolver(), "IS_RESPOND_HOME_KEY", 0)==0){
+                         if(!SystemProperties.get("sys.key.home").equals("on")&&mRespondHomeKeySetting==0){
                              doFunActionHB(keyCode); 
                           } else {
 			     Log.d(TAG, "doFunActionHB else");
 		          }		   
 	              } else {
-                             if(!SystemProperties.get("sys.key.home").equals("on")&&Settings.System.getInt(mContext.getContentResolver(), "IS_RESPOND_HOME_KEY", 0)==0){
+                             if(!SystemProperties.get("sys.key.home").equals("on")&&mRespondHomeKeySetting==0){
                                doIPTVFuncationHB(keyCode); 
                              } else {
 			       Log.d(TAG, "doIPTVFunActionHB else");
@@ -3877,7 +3902,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                         if ((event.getFlags() & KeyEvent.FLAG_LONG_PRESS) != 0) {  
                             if (!keyguardOn) {
                                 mistvlongpress=true;
-                                if(!SystemProperties.get("ro.ysten.province","master").contains("neimeng")){//begain by xiulong press sj key toast voice at 20190607 for neimeng
+                                if(!ProvinceProfile.get().is(ProvinceProfile.Region.NEIMENG)){//begain by xiulong press sj key toast voice at 20190607 for neimeng
 									handleLongPressForIsTV(keyCode,true);
 								}  //end  by xiulong press sj key toast voice at 20190607
 								//begain by caishuo 20190525 for neimeng A20c
@@ -3899,7 +3924,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 						press3Second = false;//add by caishuo at 20190525 for neimeng A20c
                         if(mistvlongpress) {
                             mistvlongpress=false;
-                            if(!SystemProperties.get("ro.ysten.province","master").contains("neimeng")){//begain by xiulong press sj key toast voice at 20190607 for neimeng
+                            if(!ProvinceProfile.get().is(ProvinceProfile.Region.NEIMENG)){//begain by xiulong press sj key toast voice at 20190607 for neimeng
 									handleLongPressForIsTV(keyCode,true);
 								}//end  by xiulong press sj key toast voice at 20190607 
                         } else {
@@ -3972,7 +3997,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         // timeout.
         if (keyCode == KeyEvent.KEYCODE_HOME) {
             //add by ysten.lijg,20190328,for paizhang apk
-            if (!down && SystemProperties.get("sys.key.home").equals("discon")&&SystemProperties.get("ro.ysten.province").contains("hubei")) {
+            if (!down && SystemProperties.get("sys.key.home").equals("discon")&&ProvinceProfile.get().is(ProvinceProfile.Region.HUBEI)) {
                 Log.d(TAG, "home discon");
                 Intent intent = new Intent("android.intent.action.MAIN");
                 intent.setClassName("com.ysten.netdiscon", "com.ysten.netdiscon.MainActivity");
@@ -3992,21 +4017,21 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 	    if(isActivityRunning(mContext,"m.amt.app.ZeroHelpActivity")){
 		    return -1;
 	    }
-	    if(!down&&SystemProperties.get("ro.ysten.province").contains("hebei")){
+	    if(!down&&ProvinceProfile.get().is(ProvinceProfile.Region.HEBEI)){
 		    doIPTVFuncationHE(keyCode);
 		    return -1;
 	    }
 	    //add by zhaolianghua end
-        if (!down && SystemProperties.get("ro.ysten.province", "master").contains("CM201_ahaschool")) {
+        if (!down && ProvinceProfile.get().nameContains("CM201_ahaschool")) {
             goAhaschoolHome();
             return -1;
         }
-        if (!down && SystemProperties.get("ro.ysten.province", "master").contains("CM201_homeschool")) {
+        if (!down && ProvinceProfile.get().nameContains("CM201_homeschool")) {
             goHomeschoolHome();
             return -1;
         }
 	    //add by zhaolianghua for jiangxi HOME keycode @20181129
-	    if (!down&&SystemProperties.get("ro.ysten.province").contains("jiangxi")) {
+	    if (!down&&ProvinceProfile.get().is(ProvinceProfile.Region.JIANGXI)) {
 	            //begin by zhuhengxuan 判断ott，和判断是否是错误弹框状态，有错误弹框状态就不能响应首页键
 		    if(SystemProperties.get("persist.sys.launcher.value","0").equals("1")){
 			    Log.d(TAG,"zhuhengxuan----HOME键，且是OTT模式，接下来进行错误提示框ProvisionJX阶段判断");
@@ -4017,7 +4042,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 		    }
 	            //end by zhuhengxuan for jiangxi HOME keycode @20181129
 		    ActivityManager am1 = (ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-		    ComponentName cn1 = am1.getRunningTasks(1).get(0).topActivity;
+		    ComponentName cn1 = getTopComponent(mContext);
 		    packageName = cn1.getPackageName();
 		    String className =cn1.getClassName();
 		    String launcher=SystemProperties.get("persist.sys.launcher.value");
@@ -4033,9 +4058,9 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 		//add by ysten.huanghongyan 2018.11.27 for CM201_henan
 		//add by wuguoqing 2019.03.03 for iptv-gs home start
 		//add by xumiao 2019.0419 for iptv-gs home start
-		if (!down&&SystemProperties.get("ro.ysten.province").contains("CM201_IPTV_gansu")) {
+		if (!down&&ProvinceProfile.get().nameContains("CM201_IPTV_gansu")) {
 			ActivityManager am1 = (ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-			ComponentName cn1 = am1.getRunningTasks(1).get(0).topActivity;
+			ComponentName cn1 = getTopComponent(mContext);
 			packageName = cn1.getPackageName();
 			//Log.d("gansutopActivity","pkgName = "+packageName);
 			List<ActivityManager.RunningAppProcessInfo> appList = mActivityManager.getRunningAppProcesses() ;
@@ -4053,7 +4078,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 		}
 		//add by wuguoqing 2019.03.03 for iptv-gs home end
 		//add by xumiao 2019.0419 for iptv-gs home end
-		if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
+		if(ProvinceProfile.get().nameContains("CM201_henan")){
 		    if (keyCode == KeyEvent.KEYCODE_HOME) {
 				String username = getValueFromStb("username")+"";		       
 		        Log.d(TAG,"username:"+username);
@@ -4141,13 +4166,13 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                 } else {
                 //begin by ysten.zhangjunjian,20181128,for hubei
 				//update by huxiang at 20190817 for fix hubei industry apk home press bug
-                if (!(SystemProperties.get("ro.ysten.province").contains("fujian")||SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")
-					||(SystemProperties.get("ro.ysten.province","master").contains("CM201_hubei")&&"iptv".equals(SystemProperties.get("persist.sys.hb.bussiness"))))) {
+                if (!(ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)||ProvinceProfile.get().nameContains("CM201_henan")
+					||(ProvinceProfile.get().nameContains("CM201_hubei")&&"iptv".equals(SystemProperties.get("persist.sys.hb.bussiness"))))) {
                     launchHomeFromHotKey();
 					}
                 }
-				Log.i(TAG,"ro.ysten.province="+SystemProperties.get("ro.ysten.province","master"));
-                if(SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("CM201_hubei")){
+				Log.i(TAG,"ro.ysten.province="+ProvinceProfile.get().name());
+                if(ProvinceProfile.get().nameEqualsIgnoreCase("CM201_hubei")){
 			    Uri uri = Uri.parse("content://stbconfig/summary");
                              String username = "";
                       try{
@@ -4203,15 +4228,10 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                           }
                         if(!down){
                              Log.d("zjj", "111"+topPackage); 
-                              if(topPackage.contains("com.SyMedia.SyIptv.SyIptv")){
-
-                               try{
-                                    java.lang.Process p = Runtime.getRuntime().exec("input keyevent 181 ");
-		                  }
-        	        	 catch(Exception e){
-                                   Log.i("zjj", "key error");
-	                 	}
-
+                              int remappedKey = mKeyRemapManager.getRemappedKey(
+                                      getTopComponent(mContext), keyCode);
+                              if(remappedKey != KeyEvent.KEYCODE_UNKNOWN){
+                                  KeyRemapManager.injectKey(mContext, remappedKey);
                               }else{
 	                        Intent iptvIntent = new Intent();
 				            iptvIntent.setAction("com.android.smart.terminal.iptv");
@@ -4252,7 +4272,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 			}
 			//end by ysten.zhangjunjian,20181128,for hubei
 			//begin by ysten.zhangjunjian,20181016,for guangdong
-		if(SystemProperties.get("ro.ysten.province","master").equals("CM201_guangdong")){
+		if(ProvinceProfile.get().nameEquals("CM201_guangdong")){
                     if(SystemProperties.get("sys.logined","false").equals("true")){
                         if(!down){
                                 Intent iptvIntent = new Intent();
@@ -4270,7 +4290,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                    }
             //end by ysten.zhangjunjian,20181016,for guangdong
 				//begin by ysten.zhangy,20190521,for neimeng home  key
-			if(SystemProperties.get("ro.ysten.province","master").contains("neimeng")){
+			if(ProvinceProfile.get().is(ProvinceProfile.Region.NEIMENG)){
 					Log.d(TAG, "neimeng homekey");
                     String topPackageName = getTopActivity(mContext);
                     if(!TextUtils.isEmpty(topPackageName) && !topPackageName.equals("com.udte.launcher.cmcc")) {
@@ -4293,7 +4313,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                 }
             //end by ysten.zhangy,20190521,for neimeng
             //begin by ysten.xuyunfeng, 20191025 for ningxia handle home key
-            if(SystemProperties.get("ro.ysten.province","master").equals("CM201_ningxia"))
+            if(ProvinceProfile.get().nameEquals("CM201_ningxia"))
             {
                 String topPackageName = getTopActivity(mContext);
                 Log.d(TAG, "CM201_xingxia: topPackageName = "+topPackageName);
@@ -4334,7 +4354,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             }
             //end by ysten.xuyunfeng, 20191025 for ningxia handle home key
                //ben by lizheng 20181129 for fujian keycode_home
-            if (!down&&SystemProperties.get("ro.ysten.province").contains("fujian")) {
+            if (!down&&ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)) {
 				Log.d(TAG, "fujian homekey");
 				//add by guangchao.su 2019.02.20 for A20_fujian  begin
 				boolean launcherStarted=SystemProperties.getBoolean("persist.sys.launcher.started",true);
@@ -4400,7 +4420,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         } else if (keyCode == KeyEvent.KEYCODE_MENU) {
             //begin:add by zhangjunjian at 20190215:enable menu key useless 
               Log.d("zjj", "c1111111");
-            if(SystemProperties.get("ro.ysten.province","master").contains("hubei")){
+            if(ProvinceProfile.get().is(ProvinceProfile.Region.HUBEI)){
                 Log.d("zjj", "00000000"+getTopActivity(mContext));
                 if(getTopActivity(mContext).contains("Iptv")){
                        return -1;
@@ -4596,7 +4616,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             return -1;
         } else if (keyCode == KeyEvent.KEYCODE_SYSRQ) {
 	    //modify by zhaolianghua for jiangxi @20181229
-	    if(!"cm201_jiangxi".equals(SystemProperties.get("ro.ysten.province"))){
+	    if(!ProvinceProfile.get().nameEquals("cm201_jiangxi")){
 		    if (down && repeatCount == 0) {
 			    mHandler.post(mScreenshotRunnable);
 		    }
@@ -4832,7 +4852,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 
 			Log.d(TAG, "PhoneWindowManager init()");
 			mHandler.removeCallbacks(mLaunchScreenSaver);
-			int delay = Settings.System.getInt(mContext.getContentResolver(), SCREEN_SAVER_DELAY, -1);
+			int delay = mScreenSaverDelaySetting;
 			if(delay > 0){
 				mHandler.postDelayed(mLaunchScreenSaver, delay*60*1000);
 			} 
@@ -4840,13 +4860,13 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 		 mHandler.removeCallbacks(mSystemSleep);
 		 String devicesleep = SystemProperties.get("persist.sys.tvdevicesleep", "1");
 		Log.d("ysten_sgc_shandong"," use this devicesleep is "+devicesleep);
-		  int sleepDelay = Settings.System.getInt(mContext.getContentResolver(),SYSTEM_SLEEP_TIME_DELAY,-1);
+		  int sleepDelay = mSleepDelaySetting;
 		Log.d("ysten_sgc_shandong"," use this sleepDelay is "+sleepDelay);
 			  if(sleepDelay > 0)
 				  mHandler.postDelayed(mSystemSleep,sleepDelay*60*1000);
         }
 		
-        if(SystemProperties.get("ro.ysten.province","master").contains("jidi")) {
+        if(ProvinceProfile.get().has(ProvinceProfile.FLAG_JIDI)) {
             if(down && robotKeyComponent(keyCode)) {
 		      Slog.d(TAG,"catchrobot");
 		      Intent intentset = new Intent(Intent.ACTION_MAIN);
@@ -4865,7 +4885,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             }
         }
         //begin: add by tianchining at 20191118: switch mode
-        else if(SystemProperties.get("ro.ysten.province", "master").equals("CM201_ningxia")){
+        else if(ProvinceProfile.get().nameEquals("CM201_ningxia")){
             if(down && robotKeyComponent2(keyCode)){
                Intent tempIntent = new Intent();
                ComponentName tempComponentName = new ComponentName("com.ysten.auth", 
@@ -4985,20 +5005,14 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         //end: add by tianchining at 20191118: menu+up,up,up
 
         private String getTopActivityInfo(Context context) {
-            ActivityManager manager = ((ActivityManager)context.getSystemService(Context.ACTIVITY_SERVICE));
-            //TopActivityInfo info = new TopActivityInfo();
-                List localList = manager.getRunningTasks(1);
-                ActivityManager.RunningTaskInfo localRunningTaskInfo = (ActivityManager.RunningTaskInfo)localList.get(0);
-                String packageName = localRunningTaskInfo.topActivity.getPackageName();
-                //info.topActivityName = localRunningTaskInfo.topActivity.getClassName();
-            return packageName;
+            return getTopComponent(context).getPackageName();
         }
     //end: add by zongzy 20190117: add for jidi delaycheck
 	
 	
 	    //begin by ysten.lizheng,20181127,for fujian
     private void sendBroadcastToHome(){
-		int homeKey = Settings.System.getInt(mContext.getContentResolver(), "IS_RESPOND_HOME_KEY", 0);
+		int homeKey = mRespondHomeKeySetting;
 		//begin by lizheng to solve home key no response 20190309
 		if (homeKey==1 && getTopPackage(mContext).equals("tv.icntv.ott")){
 			Log.d(TAG, "fujian homekey444");
@@ -5504,7 +5518,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
      */
     void launchHomeFromHotKey() {
         //begin:add by zhanghk at 20190916:kill some apk when press home key
-        if(SystemProperties.get("ro.ysten.province","master").contains("jiangsu")){
+        if(ProvinceProfile.get().is(ProvinceProfile.Region.JIANGSU)){
 	    freeMemory(apkNameListJS);
         }
 	//end:add by zhanghk at 20190916:kill some apk when press home key
@@ -6757,7 +6771,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
         int def_timeout = 2 * 60 * 1000; //default 2min
         int timeout = SystemProperties.getInt("persist.sys.autosuspend.timeout", def_timeout);
 	//begin:add by zhanghk at 20190604:add zhejiang hdmi standby time
-	if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")){
+	if(ProvinceProfile.get().nameContains("CM201_zhejiang")){
 	    timeout = 5 * 60 * 1000; //5 minute
 	}
 	//end:add by zhanghk at 20190604:add zhejiang hdmi standby time
@@ -6836,8 +6850,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 			}
 			else
 			{
-				ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);  
-				String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getPackageName();
+				String currentPackage=getTopComponent(mContext).getPackageName();
 				Log.d(TAG, "HDMI currentPackage:" + currentPackage);
 				if("com.softwinner.dragonbox".equals(currentPackage)){
 					return;
@@ -6880,8 +6893,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                        }
                        else
                        {
-                               ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);  
-                               String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getPackageName();
+                               String currentPackage=getTopComponent(mContext).getPackageName();
                                Log.d(TAG, "HDMI currentPackage:" + currentPackage);
                               if("com.softwinner.dragonbox".equals(currentPackage)){
                                        return;
@@ -7468,7 +7480,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 		return;
 		}
 		//end by ysten.lizheng,20181012,fix four color key bug
-		if (Settings.System.getInt(mContext.getContentResolver(), "IS_RESPOND_HOME_KEY", 0)==1){
+		if (mRespondHomeKeySetting==1){
 		return;  
 		}
 		
@@ -7667,7 +7679,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                 if(mWindowManagerFuncs.isReboot() || 
 				(SystemProperties.get("sys.proj.type", "ott").equals("mobile") && suspendbycec)){
                     //begin: add by xuyunfeng at 20191122: ningxia iptv fake standby
-                    if(SystemProperties.get("ro.ysten.province", "master").contains("master")){ //add by xuyunfeng at 20191224:fallback ningxia fake standby
+                    if(ProvinceProfile.get().nameContains("master")){ //add by xuyunfeng at 20191224:fallback ningxia fake standby
                         Log.d(TAG, "press power key, fake standby!");
                         result |= ACTION_WAKE_UP;
                     //end: add by xuyunfeng at 20191122: ningxia iptv fake standby
@@ -7695,7 +7707,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 
         //begin: add by ysten.tianchi at 20190708: handle home key
         if(keyCode == KeyEvent.KEYCODE_HOME){
-            if(SystemProperties.get("ro.ysten.province", "master").contains("ningxia")){
+            if(ProvinceProfile.get().is(ProvinceProfile.Region.NINGXIA)){
                 String authStatus = getValueFromStb("authStatus")+"";
                 if(!"AuthSuccess".equals(authStatus)){
                     return 0;
@@ -7717,7 +7729,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
             return result;
         }
 		//add by ysten-mark for heilongjiang broadcast button
-		if((keyCode != 136) && SystemProperties.get("ro.ysten.province", "master").contains("heilongjiang")){
+		if((keyCode != 136) && ProvinceProfile.get().is(ProvinceProfile.Region.HEILONGJIANG)){
            isIcntvLive=false;
 		   Log.d(TAG, "heilongjiang isIcntvLive false");
 		}
@@ -7732,7 +7744,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                 if((mFocusedApp.toString().contains("com.bestv.ott.mediaplayer.activity.BestvPlayer")
                         || mFocusedApp.toString().contains("com.bestv.online.activity.ChainNewsActivity")))
                     mIsBtvPlyShow = true;*/
-                if (SystemProperties.get("ro.ysten.province").equals("cm201_hebei")){
+                if (ProvinceProfile.get().nameEquals("cm201_hebei")){
                     if((keyCode == KeyEvent.KEYCODE_VOLUME_UP ||
                               keyCode == KeyEvent.KEYCODE_VOLUME_DOWN ||
                               keyCode == KeyEvent.KEYCODE_VOLUME_MUTE)){
@@ -7801,7 +7813,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                         || (keyCode == KeyEvent.KEYCODE_MUTE)) {
                         Log.d(TAG, "........................mute");   
                         //begin by lizheng 20181129 for fujian iptv mute key						
-						if(SystemProperties.get("ro.ysten.province","master").contains("fujian")
+						if(ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)
 							&& (SystemProperties.getInt("persist.sys.launcher.value",0)==2)){
 								if (down) {
 							doIPTVFuncationFJ(keyCode);
@@ -7883,7 +7895,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                 break;
             }
             case KeyEvent.KEYCODE_MOBILE_M: {
-                if (down&&(SystemProperties.get("ro.ysten.province","master").equals("CM201_guangdong"))){
+                if (down&&(ProvinceProfile.get().nameEquals("CM201_guangdong"))){
                     Log.d("zjj","M key");
                      Intent intent = new Intent();
                intent.setComponent(new ComponentName("cn.gd.snm.appstore", "cn.gd.snm.appstore.MainActivity"));
@@ -7944,8 +7956,8 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                 }
                 disableCecSuspend();
 				if(SystemProperties.get("ro.ysten.custom.type","none").equals("viper")
-					&& !SystemProperties.get("ro.ysten.province","master").contains("jidi")
-					&& !SystemProperties.get("ro.ysten.province","master").contains("beijing"))
+					&& !ProvinceProfile.get().has(ProvinceProfile.FLAG_JIDI)
+					&& !ProvinceProfile.get().is(ProvinceProfile.Region.BEIJING))
 				{
 					Log.d(TAG, "custom.type:viper7");
 					if (down && isScreenOn) {
@@ -8013,13 +8025,13 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                         String tender_type = SystemProperties.get("sys.proj.tender.type", null);
                         Log.d(TAG, "press power key, proj_type is " + proj_type + ", tender_type is " + tender_type);
                         //begin:add by zhanghk at 20190522:directly powerOff when press power key
-                        if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")){
+                        if(ProvinceProfile.get().nameContains("CM201_zhejiang")){
                             mPowerManager.goToSleep(SystemClock.uptimeMillis());
                             break;
                         }
                         //begin:add by zhanghk at 20190522:directly powerOff when press power key
                         //begin:add by zhanghk at 20191224:screen off when press power key
-                        if(SystemProperties.get("ro.ysten.province","master").contains("hubei")){
+                        if(ProvinceProfile.get().is(ProvinceProfile.Region.HUBEI)){
                             if(SystemProperties.get("sys.fake.standby", "1").equals("1")){
                                 if(!TextUtils.isEmpty(SystemProperties.get("dhcp6c.eth0.dns1", "")) && ("0".equals(SystemProperties.get("sys.v6net.ok","0")))){
                                     SystemProperties.set("sys.v6net.ok","1");
@@ -8167,7 +8179,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 					{
                             Intent intent = new Intent();
 							//add by guangchao.su 2018.09.21 for A20_shandong settings
-							String productName = SystemProperties.get("ro.ysten.province");
+							String productName = ProvinceProfile.get().name();
 							Log.d("ysten_sgc","use this productName is "+productName);
 							if(productName.equals("A20_shandong")){
 								intent.setComponent(new ComponentName("com.android.settings", "com.android.settings.MainActivity_new"));
@@ -8197,8 +8209,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                                                         }
 							else if (productName.contains("neimeng")){//add by zhangy 2019.05.21 for A20_neimeng  begin
 							//begin : add by zhuyu at 20190731 for  forbidden   setting Key when calling 
-                                ActivityManager activityManager=(ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-                                String currentPackage=activityManager.getRunningTasks(1).get(0).topActivity.getClassName();
+                                String currentPackage=getTopComponent(mContext).getClassName();
                                 Log.d(TAG," zhuyu currentPackage = " + currentPackage);
                                 if("com.ysten.hejiaguhua.CallActivity".equals(currentPackage)){
                                    return 0;
@@ -8264,7 +8275,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 	       case KeyEvent.KEYCODE_XIRIRED:
 	       case KeyEvent.KEYCODE_XIRIGREEN:
     	   case KeyEvent.KEYCODE_XIRIBLUE:
-               if(SystemProperties.get("ro.ysten.province","master").contains("fujian")){
+               if(ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)){
 			   //begin by lizheng to solve four color key bug 20190306
 				boolean launcherStarted=SystemProperties.getBoolean("persist.sys.launcher.started",true);
 				if (!launcherStarted)
@@ -8294,7 +8305,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 	   case KeyEvent.KEYCODE_PROG_RED:
 	   case KeyEvent.KEYCODE_PROG_YELLOW:
 	   {
-		if(SystemProperties.get("ro.ysten.province","master").contains("hebei")){
+		if(ProvinceProfile.get().is(ProvinceProfile.Region.HEBEI)){
 			if(down) {
 				doIPTVFuncationHE(keyCode);
 			}
@@ -8309,23 +8320,23 @@ public class PhoneWindowManager implements WindowManagerPolicy {
            case KeyEvent.KEYCODE_POUND:
 	   {
 		   if (down) {
-			   if(SystemProperties.get("ro.ysten.province","master").equals("CM201_guangdong")){
+			   if(ProvinceProfile.get().nameEquals("CM201_guangdong")){
 				   Log.i("zjj", "zjj  guangdong"+keyCode);
 				   doGDFunAction(keyCode);
 			   }
 			   //add by zhaolianghua for fourcolor key @20181213
-			   /*if(SystemProperties.get("ro.ysten.province","master").equals("cm201_jiangxi")){
+			   /*if(ProvinceProfile.get().nameEquals("cm201_jiangxi")){
 				   doJXFunAction(keyCode);
 			   }*/
 			   //add by zhaolianghua end
                 // begin: add by ysten.tianchining at 20190326: add ningxia for fourcolor key
-               if(SystemProperties.get("ro.ysten.province", "master").contains("ningxia")){
+               if(ProvinceProfile.get().is(ProvinceProfile.Region.NINGXIA)){
                     doNXFunction(keyCode);
                 }
                 // end: add by ysten.tianchining at 20190326: add ningxia for fourcolor key
 
 			   //add by mark add heilongjiang fourcolor key
-			   if (SystemProperties.get("ro.ysten.province", "master").contains("heilongjiang")){
+			   if (ProvinceProfile.get().is(ProvinceProfile.Region.HEILONGJIANG)){
 				   if (SystemProperties.getInt("persist.sys.launcher.value", 1) == 1)
 				   {
 		               if(SystemProperties.get("sys.key.home").equals("off"))
@@ -8346,7 +8357,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
 					Log.d(TAG, "key KEYCODE_POWER isScreenOn--->>" + isScreenOn);
 				   // mContext.startService(new Intent("com.ysten.action.poweroff"));
                   if(SystemProperties.get("ro.ysten.custom.type","none").equals("viper")
-                        && !SystemProperties.get("ro.ysten.province","master").contains("jidi"))
+                        && !ProvinceProfile.get().has(ProvinceProfile.FLAG_JIDI))
                   {
                         Log.d(TAG, "custom.type:viper7");
                        if (down && isScreenOn) {
@@ -8418,7 +8429,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                                 || ("telecom".equals(proj_type) && "sichuan".equals(tender_type))) {
                             if(!mWindowManagerFuncs.isShutdownDialogShow() || !mWindowManagerFuncs.isShutdownProcessDialogShow()){
                                 //begin:add by zhanghk at 20191023:power off directly when press power key
-                                if(SystemProperties.get("ro.ysten.province","master").contains("zhejiang")){
+                                if(ProvinceProfile.get().is(ProvinceProfile.Region.ZHEJIANG)){
                                     mPowerManager.goToSleep(SystemClock.uptimeMillis());
                                     return 0;
                                 }
@@ -8463,7 +8474,7 @@ public class PhoneWindowManager implements WindowManagerPolicy {
                             Intent mintent = new Intent();
                             //begin by ysten zhuhengxuan at 20190315 IPTV的home键信息上报
                             //mintent.putExtra("intentMsg", "HOME");
-			    if(SystemProperties.get("ro.ysten.province","master").equals("cm201_jiangxi")){
+			    if(ProvinceProfile.get().nameEquals("cm201_jiangxi")){
 				mintent.putExtra("intentMsg", "EPGDomain");
 			    }else{
                                 mintent.putExtra("intentMsg", "HOME");
@@ -8531,7 +8542,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
 	//begin by ysten lizheng 20181127 Iptv key
 	private String getTopPackage(Context context){
 		mActivityManager = (ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-        String packageName  = mActivityManager.getRunningTasks(1).get(0).topActivity.getPackageName();
+        String packageName  = getTopComponent(mContext).getPackageName();
 		return packageName;
 	}
 
@@ -8723,11 +8734,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
 		}
 	}
 	private void inputkeyevent(int keycode){
-		try{
-			Runtime.getRuntime().exec("input keyevent "+ keycode);
-		}catch(Exception e){
-			Log.d(TAG,"here key error");
-		}
+		KeyRemapManager.injectKey(mContext, keycode);
 	}
     // begin: add by ysten.tianchining at 20190326: add for fourcolor key
     private void doNXFunction(int keyCode){
@@ -8748,16 +8755,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
                 break;
         }
         if (IPTVKey!=0){
-            //long now = SystemClock.uptimeMillis();
-            //KeyEvent keyEvent = new KeyEvent(now, now, KeyEvent.ACTION_DOWN, IPTVKey, 0);
-            //InputManager inputManager = (InputManager) mContext.getSystemService(Context.INPUT_SERVICE);
-            //inputManager.injectInputEvent(keyEvent, InputManager.INJECT_INPUT_EVENT_MODE_ASYNC);
-            try{
-                Runtime.getRuntime().exec("input keyevent "+ IPTVKey);
-            }
-            catch(Exception e){
-                Log.i(TAG, "TCN_ADD: doIPTVFuncation orror");
-            }
+            KeyRemapManager.injectKey(mContext, IPTVKey);
         }
     }
     //end: add by ysten.tianchining at 20190326: add for fourcolor key
@@ -8766,7 +8764,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
 	// add by ysten-mark for heilongjiang fourcolor key
 	private void doFunActionHLJ(int keyCode) {
 		ActivityManager am = (ActivityManager)mContext.getSystemService(Context.ACTIVITY_SERVICE);
-		ComponentName cn = am.getRunningTasks(1).get(0).topActivity;
+		ComponentName cn = getTopComponent(mContext);
 		String packageName = cn.getPackageName();
 		String className =cn.getClassName();
 		Log.d("mark","top activity is "+packageName +"/"+className);
@@ -8836,12 +8834,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
                 break;
         }
           if (IPTVKey!=0){
-                try{
-                    Runtime.getRuntime().exec("input keyevent "+ IPTVKey);
-                   }
-                   catch(Exception e){
-                       Log.i("zjj", "doIPTVFuncation orror");
-                   }
+                KeyRemapManager.injectKey(mContext, IPTVKey);
                }
     }     
     //end by ysten.zhangjunjian,20181119,for guangdong key
@@ -8909,12 +8902,24 @@ private void doFunAction_cm201_yunnan( int keyCode)
 	    return platform;
     }	
 
+    /**
+     * Component of the activity on top of the front stack.  Served from the
+     * snapshot the activity manager publishes on every resume, so key
+     * handling does not have to make a getRunningTasks() call; asks the
+     * activity manager only until the first activity has resumed.
+     */
+    static ComponentName getTopComponent(Context context) {
+        ComponentName top = TopActivityTracker.getTopComponent();
+        if (top == null) {
+            ActivityManager manager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            top = manager.getRunningTasks(1).get(0).topActivity;
+        }
+        return top;
+    }
+
     public static String getTopActivity(Context context) {
 	    try {
-            ActivityManager manager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
-            List localList = manager.getRunningTasks(1);
-            ActivityManager.RunningTaskInfo localRunningTaskInfo = (ActivityManager.RunningTaskInfo)localList.get(0);
-            return localRunningTaskInfo.topActivity.getClassName();
+            return getTopComponent(context).getClassName();
         } catch (Exception e) {
             Log.d(TAG, "current app:" + e);
         }
@@ -9964,7 +9969,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
 		String licence = SystemProperties.get("sys.start.licence", "all");
 		try {
             //begin by ysten.xumiao,20190419,for CM201_IPTV_gansu GO HOME
-			if(SystemProperties.get("ro.ysten.province").contains("CM201_IPTV_gansu")){
+			if(ProvinceProfile.get().nameContains("CM201_IPTV_gansu")){
 				Log.i(TAG,"wuguoqing CM201_IPTV_gansu GO HOME");
 				Intent gsLauncherIntent = new Intent();
 				ComponentName componentName =null;
@@ -10020,7 +10025,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
 	}else if(mbPackageExist){
 		mContext.startActivityAsUser(mHomeIntent, UserHandle.CURRENT);
 	}//begin by ysten.xumiao,20190303,for CM201_IPTV_gansu GO HOME
-	else if(SystemProperties.get("ro.ysten.province").contains("CM201_IPTV_gansu")){
+	else if(ProvinceProfile.get().nameContains("CM201_IPTV_gansu")){
 		Log.i(TAG,"CM201_IPTV_gansu GO HOME");
 		Intent mIntent1 = mContext.getPackageManager().getLaunchIntentForPackage("com.pukka.gslauncher");
 		Intent gsLauncherIntent = new Intent();
@@ -10054,7 +10059,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
 		}
 		//begin by ysten.xumiao,20190303,for CM201_IPTV_gansu GO HOME
 	    //begin by huxiang,20190526,for CM202_jike GO HOME
-	else if(SystemProperties.get("ro.ysten.province").contains("CM202_jike")){
+	else if(ProvinceProfile.get().nameContains("CM202_jike")){
 		Log.i(TAG,"CM202_jike GO HOME");
 		//Intent mIntent2 = mContext.getPackageManager().getLaunchIntentForPackage(packageName);
 		Intent jkLauncherIntent = new Intent();
@@ -10452,7 +10457,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
                         }
                     }
 	//add by ysten.huanghongyan 2018.11.27 for CM201_henan
-					if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
+					if(ProvinceProfile.get().nameContains("CM201_henan")){
 					String lirphycode ="0x00" + mMobilekeyMapList.get(i).physicskeycode + "DD22"; 
                     
 					Intent phicmiguKeyEventIntent =new Intent("com.chinamobile.action.IR_TEST");
@@ -11023,7 +11028,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
 	
 	void showSleepDelayDialog() {
  		//add by ysten.huanghongyan 2018.11.27 for CM201_henan
-		if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
+		if(ProvinceProfile.get().nameContains("CM201_henan")){
 			mCount = 60;
          //mHandler.post(new Runnable() {
          //    @Override
@@ -11044,7 +11049,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
                  //abandon  Title
  		        //mBuilder.setTitle(com.android.internal.R.string.action_suspend_title);
                  //builder.setMessage(com.android.internal.R.string.action_suspend_hold);
-            int sleepDelay = Settings.System.getInt(mContext.getContentResolver(), SYSTEM_SLEEP_TIME_DELAY, -1);
+            int sleepDelay = mSleepDelaySetting;
             if(sleepDelay >= 60) {
                 mBuilder.setTitle(mContext.getResources().getString(com.android.internal.R.string.standby_warn_title,sleepDelay/60));
             }else if(sleepDelay < 60 && sleepDelay > 0) {
@@ -11077,7 +11082,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
          	isCancelDialog=true; 
 		}
         //end by ysten.huanghongyan 2018.11.27 for CM201_henan   
-		else if(SystemProperties.get("ro.ysten.province","master").contains("ningxia")){
+		else if(ProvinceProfile.get().is(ProvinceProfile.Region.NINGXIA)){
         //begin: add by tianchining at 20190327: showSleepDelayDialog for ningxia
             mSleepDelayTextView = new TextView(mContext);
             mSleepDelayTextView.setText(mContext.getResources().getString(com.android.internal.R.string.standby_warn_nx));
@@ -11099,7 +11104,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
 			mSleepDelayTextView = new TextView(mContext);
 			Slog.d(TAG, "mSleepDelayTextView 1 "  + mSleepDelayTextView);
 			/*add by zhaolianghua for jiangxi string @20190221*/
-			if("cm201_jiangxi".equals(SystemProperties.get("ro.ysten.province"))){
+			if(ProvinceProfile.get().nameEquals("cm201_jiangxi")){
 				mSleepDelayTextView.setText(
 						mContext.getResources().getString(com.android.internal.R.string.standby_warn_jx,mCount));
 			}else{
@@ -11145,7 +11150,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
                 mHandler.postDelayed(mSleepCancleTimer, 1000);
                 Slog.d(TAG, "mSleepDelayTextView 5 " + mSleepDelayTextView);
 		/*modify by zhaolianghua @20190221*/
-		if("cm201_jiangxi".equals(SystemProperties.get("ro.ysten.province"))){
+		if(ProvinceProfile.get().nameEquals("cm201_jiangxi")){
 			mSleepDelayTextView.setText(mContext.getResources().getString(com.android.internal.R.string.standby_warn_jx,mCount));
 		}else{
                 	mSleepDelayTextView.setText(mContext.getResources().getString(com.android.internal.R.string.standby_warn,mCount)); 
@@ -11194,8 +11199,8 @@ private void doFunAction_cm201_yunnan( int keyCode)
 			    mShowPowerDialog = false;
 			    //auto poweroff
 			    /*modify by zhaolianghua for jiangxi @20190221*/
-			    if("cm201_jiangxi".equals(SystemProperties.get("ro.ysten.province"))
-				||"cm201_guizhou".equals(SystemProperties.get("ro.ysten.province"))){
+			    if(ProvinceProfile.get().nameEquals("cm201_jiangxi")
+				||ProvinceProfile.get().nameEquals("cm201_guizhou")){
 				    mPowerManager.goToSleep(SystemClock.uptimeMillis());
 			    }else{
 				    mWindowManagerFuncs.shutdown(true);
@@ -11217,15 +11222,8 @@ private void doFunAction_cm201_yunnan( int keyCode)
     //add by zhanghk at 20181109 end:add jiangsu auto poweroff tip
     //add by zhaolianghua for hebei @20181119
     public static boolean isActivityRunning(Context mContext, String activityClassName){
-	    ActivityManager activityManager = (ActivityManager) mContext.getSystemService(Context.ACTIVITY_SERVICE);
-	    List<RunningTaskInfo> info = activityManager.getRunningTasks(1);
-	    if(info != null && info.size() > 0){
-		    ComponentName component = info.get(0).topActivity;
-		    if(component.getClassName().contains(activityClassName)){
-			    return true;
-		    }
-	    }
-	    return false;
+	    ComponentName component = getTopComponent(mContext);
+	    return component != null && component.getClassName().contains(activityClassName);
     }
     //add by zhaolianghua end
     //begin: add by ysten xumiao at 20181218:hubei add KEYCODE
@@ -11276,11 +11274,7 @@ private void doFunAction_cm201_yunnan( int keyCode)
         }
 		Log.i(TAG,"IPTVKey111111111111111="+IPTVKey);
 		if (IPTVKey!=0){
-		    try{
-                java.lang.Process p = Runtime.getRuntime().exec("input keyevent "+ IPTVKey);
-		    } catch(Exception e){
-                Log.i(TAG, "doIPTVFuncation orror");
-		    }
+		    KeyRemapManager.injectKey(mContext, IPTVKey);
 		}
 	}
     //end: add by ysten xumiao at 20181218:hubei add KEYCODE	
@@ -11370,9 +11364,8 @@ private void doFunAction_cm201_yunnan( int keyCode)
 
     private void freeMemory(String apkNameList[]){
 	ActivityManager activityManager = (ActivityManager) mContext.getSystemService(Context.ACTIVITY_SERVICE);
-        List<RunningTaskInfo> info = activityManager.getRunningTasks(1);
-        if(info != null && info.size() > 0){
-            ComponentName component = info.get(0).topActivity;
+        ComponentName component = getTopComponent(mContext);
+        if(component != null){
 	    Log.d("freeMemory", "top activity " + component.getClassName());
             String topPkg=component.getPackageName();
             int j = 0;
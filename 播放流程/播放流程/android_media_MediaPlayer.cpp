@@ -1156,6 +1156,47 @@ static jobject android_media_MediaPlayer_getSubtitleBitmap(JNIEnv *env, jobject
 
 }
 
+static jint android_media_MediaPlayer_getSubtitleBitmapWidth(JNIEnv *env, jobject thiz)
+{
+    return bitmapW;
+}
+
+static jint android_media_MediaPlayer_getSubtitleBitmapHeight(JNIEnv *env, jobject thiz)
+{
+    return bitmapH;
+}
+
+// Like getSubtitleBitmap, but into a bitmap the caller reuses across frames.
+// Returns false if it is not the size of the current subtitle frame.
+static jboolean android_media_MediaPlayer_renderSubtitleBitmap(JNIEnv *env, jobject thiz,
+        jobject jBitmap)
+{
+    if (jBitmap == NULL || bitmapW <= 0 || bitmapH <= 0) {
+        return false;
+    }
+    SkBitmap *bitmap = (SkBitmap *) env->GetIntField(jBitmap, fields.nativeBitmap);
+    if (bitmap == NULL || bitmap->width() != bitmapW || bitmap->height() != bitmapH
+            || bitmap->config() != SkBitmap::kARGB_8888_Config) {
+        return false;
+    }
+    bitmap->lockPixels();
+    void *pixels = bitmap->getPixels();
+    if (pixels == NULL) {
+        bitmap->unlockPixels();
+        return false;
+    }
+    if (bitmapMemory != NULL) {
+        memcpy(pixels, (void *)bitmapMemory->pointer(), bitmapW * bitmapH * 4);
+        bitmapMemory = NULL;
+    } else {
+        // Same as the freshly allocated bitmap getSubtitleBitmap returns.
+        memset(pixels, 0, bitmap->getSize());
+    }
+    bitmap->unlockPixels();
+    bitmap->notifyPixelsChanged();
+    return true;
+}
+
 // ----------------------------------------------------------------------------
 
 static JNINativeMethod gMethods[] = {
@@ -1201,6 +1242,9 @@ static JNINativeMethod gMethods[] = {
     {"setNextMediaPlayer",  "(Landroid/media/MediaPlayer;)V",   (void *)android_media_MediaPlayer_setNextMediaPlayer},
     {"updateProxyConfig", "(Landroid/net/ProxyProperties;)V", (void *)android_media_MediaPlayer_updateProxyConfig},
     {"getSubtitleBitmap",  "()Landroid/graphics/Bitmap;",     (void *)android_media_MediaPlayer_getSubtitleBitmap},
+    {"native_getSubtitleBitmapWidth", "()I",                    (void *)android_media_MediaPlayer_getSubtitleBitmapWidth},
+    {"native_getSubtitleBitmapHeight", "()I",                   (void *)android_media_MediaPlayer_getSubtitleBitmapHeight},
+    {"native_renderSubtitleBitmap", "(Landroid/graphics/Bitmap;)Z", (void *)android_media_MediaPlayer_renderSubtitleBitmap},
     {"setprop", "(Ljava/lang/String;Ljava/lang/String;)V",      (void *)android_media_MediaPlayer_setprop},
     {"getprop", "(Ljava/lang/String;)Ljava/lang/String;",       (void *)android_media_MediaPlayer_getprop},
     {"writeSysfs", "(Ljava/lang/String;Ljava/lang/String;)V",      (void *)android_media_MediaPlayer_writeSysfs},
@@ -156,6 +156,7 @@ import android.os.SELinux;
 import android.os.ServiceManager;
 import android.os.StrictMode;
 import android.os.SystemClock;
+import android.os.ProvinceProfile;
 import android.os.SystemProperties;
 import android.os.UpdateLock;
 import android.os.UserHandle;
@@ -1270,7 +1271,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                         Dialog d = new AppErrorDialog(mContext,
                                 ActivityManagerService.this, res, proc);
                         /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-                        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu") && 
+                        if(ProvinceProfile.get().nameEquals("CM201_jiangsu") && 
                             proc.info.processName.contains("com.ysten.android.istouch"))
                         {
                             Slog.w(TAG, "com.ysten.android.istouch crash");
@@ -1511,7 +1512,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                     String pkg = bundle.getString("pkg");
                     String reason = bundle.getString("reason");
                     //begin:add by xuyunfeng at 20200107 launcher self-update not parse dex file
-                    if(SystemProperties.get("ro.ysten.province", "master").equals("CM201_ningxia")) {
+                    if(ProvinceProfile.get().nameEquals("CM201_ningxia")) {
                         Slog.d(TAG, "kill_pkg: pkg="+pkg+", reason="+reason);
                         boolean evenPersist = false;
                         // persist app upgrading, should kill the running app disable auto start
@@ -3183,7 +3184,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         Intent intent = new Intent(mTopAction, mTopData != null ? Uri.parse(mTopData) : null);
         boolean bPackageExist = false;
         //begin: add by tianchining at 20190814
-        if (SystemProperties.get("ro.ysten.province", "master").equals("A20_jidi_chongqing")) {
+        if (ProvinceProfile.get().nameEquals("A20_jidi_chongqing")) {
           boolean isHome = true;
           SystemProperties.set("sys.app.launcher.displayed", "1");
           ComponentName componentName = null;
@@ -3218,7 +3219,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         //end: add by tianchining at 20190814
 
         //begin by ysten.zhangjunjian,20180911,add for hubei
-        if (SystemProperties.get("ro.ysten.province","master").equals("CM201_hubei")) {
+        if (ProvinceProfile.get().nameEquals("CM201_hubei")) {
                     boolean isHome = true;
                     SystemProperties.set("sys.app.launcher.displayed", "1");
                    
@@ -3231,7 +3232,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                     }
          //end by ysten.zhangjunjian,20180911,add for hubei
 		//begin by ysten.huanghongyan,20181121,add for henan		 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("CM201_heilongjiang")){
+         }else if(ProvinceProfile.get().nameContains("CM201_heilongjiang")){
 			boolean isHome = true;
 			SystemProperties.set("sys.app.launcher.displayed", "1");
 			Log.d(TAG, "mark debug ------com.android.iptvauth for heilongjiang------");
@@ -3242,7 +3243,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 			{
 				intent.addCategory(Intent.CATEGORY_HOME);
 			}
-		 }else if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
+		 }else if(ProvinceProfile.get().nameContains("CM201_henan")){
                     boolean isHome = true;
                     SystemProperties.set("sys.app.launcher.displayed", "1");
 					//隐藏wifi
@@ -3255,7 +3256,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                       }
 		 //end by ysten.huanghongyan,20181121,add for henan
          //begin by ysten.zhanghk at 20190520,add for zhejiang		 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("CM201_zhejiang")){
+         }else if(ProvinceProfile.get().nameContains("CM201_zhejiang")){
                     boolean isHome = true;
                     ComponentName componentName = new ComponentName("com.yst.whitebox","com.yst.whitebox.MainActivity");
                     intent.setComponent(componentName);
@@ -3265,7 +3266,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                       }
          //end by ysten.zhanghk at 20190520,add for zhejiang
 		 //begin by ysten.zhangy,20190521,add for neimeng,first start Auth apk 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("neimeng")){
+         }else if(ProvinceProfile.get().is(ProvinceProfile.Region.NEIMENG)){
 		            boolean isHome = true;
                     ComponentName componentName = new ComponentName("com.ysten.auth","com.ysten.auth.LaucherActivity");
                     intent.setComponent(componentName);
@@ -3274,7 +3275,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                       intent.addCategory(Intent.CATEGORY_HOME);
                       }
 		 //end by ysten.zhangy,20190521,add for neimeng,first start Auth apk 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("CM201_ahaschool")){
+         }else if(ProvinceProfile.get().nameContains("CM201_ahaschool")){
 			 //begin by ysten.lijg,20190423,add for ahaschool
                     boolean isHome = true;
                     SystemProperties.set("sys.app.launcher.displayed", "1");
@@ -3286,7 +3287,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                       }
 		 //end by ysten.lijg,20190423,add for ahaschool
 		 //begin by huxiang,20190504,add for jiangsu jike		 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("CM201_homeschool")){
+         }else if(ProvinceProfile.get().nameContains("CM201_homeschool")){
 			 //begin by ysten.lijg,20190625,add for homeschool
                     boolean isHome = true;
                     SystemProperties.set("sys.app.launcher.displayed", "1");
@@ -3297,7 +3298,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                       intent.addCategory(Intent.CATEGORY_HOME);
                       }
 		 //end by ysten.lijg,20190625,add for homeschool	 
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("CM202_jike")||SystemProperties.get("ro.ysten.province","master").contains("CM202_hunan_gate")){
+         }else if(ProvinceProfile.get().nameContains("CM202_jike")||ProvinceProfile.get().nameContains("CM202_hunan_gate")){
               if (isActivityRunning(mContext,"com.ysten.com.gatewayprogress.SplashActivity")){
                   
                 }else{
@@ -3308,7 +3309,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                 //}
                     }
 		 //end by huxiang,20190504,add for jiangsu jike
-         }else if(SystemProperties.get("ro.ysten.province","master").equals("CM201_ningxia")){
+         }else if(ProvinceProfile.get().nameEquals("CM201_ningxia")){
           //begin: add by ysten.tianchining at 20190311 for ningxia: add a case
             Log.d(TAG, "TCN_ADD ==> getHomeIntent");
             boolean isHome = true;
@@ -3326,7 +3327,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                 Log.d(TAG, "TCN_ADD ==> getHomeIntent: CATEGORY_HOME");
             }
           //end: add by ysten.tianchining at 20190311 for ningxia: add a case
-         }else if(SystemProperties.get("ro.ysten.province","master").contains("A20_sc")){
+         }else if(ProvinceProfile.get().nameContains("A20_sc")){
                     boolean isHome = true;
                     ComponentName componentName = new ComponentName("com.ysten.zeroconf","com.ysten.zeroconf.MainActivity");
                     intent.setComponent(componentName);
@@ -3545,7 +3546,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             }
         }
 		//add by huxiang at 20190504 for jike default launcher
-		if(SystemProperties.get("ro.ysten.province","master").equals("CM202_jike")){
+		if(ProvinceProfile.get().nameEquals("CM202_jike")){
 		    packageName="tv.icntv.ott";
 			className="tv.icntv.ott.icntv";
 		}
@@ -3785,7 +3786,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             ensureBootCompleted();
         }
         /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")|| SystemProperties.get("ro.ysten.province","master").equals("CM202_jike")){
+        if(ProvinceProfile.get().nameEquals("CM201_jiangsu")|| ProvinceProfile.get().nameEquals("CM202_jike")){
             setDefaultLauncher(userId);
         }
         /*add by zhanghk at 20181030 end:add jiangsu customized content*/
@@ -3824,7 +3825,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         } else {
         intent = getHomeIntent();
 	//add by zhaolianghua for jiangxi start up @20181129
-	if(SystemProperties.get("ro.ysten.province").contains("jiangxi")){
+	if(ProvinceProfile.get().is(ProvinceProfile.Region.JIANGXI)){
 		int value=SystemProperties.getInt("persist.sys.launcher.value",0);
 		if(value==1){
 			if(TextUtils.isEmpty(SystemProperties.get("sys.ysten.checkend"))){
@@ -3851,13 +3852,13 @@ public final class ActivityManagerService extends ActivityManagerNative
 		}
 	}	//add by zhaolianghua end
 		//begin: add by zhuhengxuan at 20190909 for hebei IPTV start
-		if("cm201_hebei".equals(SystemProperties.get("ro.ysten.province","master"))){
+		if(ProvinceProfile.get().nameEquals("cm201_hebei")){
 			ComponentName componentName = new ComponentName("com.android.smart.terminal.iptv", "com.amt.app.IPTVActivity");
 			intent.setComponent(componentName);
 		}
 		//end: add by zhuhengxuan at 20190909 for hebei delay IPTV start
         //begin by ysten.zhangjunjian,20190410,guangdong launcher
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_guangdong")){
+        if(ProvinceProfile.get().nameEquals("CM201_guangdong")){
             if (isActivityRunning(mContext,"com.ysten.auth.guangdong.MainActivity")){
                 return true;
             }else{
@@ -3868,7 +3869,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
         //end by ysten.zhangjunjian,20190410,guangdong launcher
 		//begin by ysten wenglei,20200303 for guangdong_zhuoying launcher
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_guangdong_zhuoying")){
+        if(ProvinceProfile.get().nameEquals("CM201_guangdong_zhuoying")){
 		    String value=SystemProperties.get("persist.sys.app.falg", "0");
             SystemProperties.set("sys.app.launcher.displayed", "1");
             SystemProperties.set("persist.sys.unifiedversion", "1");
@@ -3891,7 +3892,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 		}
         //end by ysten wenglei,20200303 for guangdong_zhuoying launcher
         //add by mark at 20190625 for A20_anhui launcher
-        if(SystemProperties.get("ro.ysten.province","master").equals("A20_anhui")){
+        if(ProvinceProfile.get().nameEquals("A20_anhui")){
               if (isActivityRunning(mContext,"com.chinamobile.launcherjs.main")){
                       return true;
                 }else{
@@ -3902,7 +3903,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                     }
         }
         //add by huxiang at 20190622 for CM202_anhui_gate launcher
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM202_anhui_gate")){
+        if(ProvinceProfile.get().nameEquals("CM202_anhui_gate")){
 			if (isActivityRunning(mContext,"com.android.provision.SplashActivity")){
                       return true;
                 }else{
@@ -3913,7 +3914,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
         //add end by huxiang at 20190622 for CM202_anhui_gate launcher
 	//begin by ysten.lizheng,20181127,fujian launcher
-	if(SystemProperties.get("ro.ysten.province").contains("fujian")){
+	if(ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)){
         int value=SystemProperties.getInt("persist.sys.launcher.value",0);
         boolean launcherSwitch=SystemProperties.getBoolean("persist.sys.launcher.switch",false);
 	      if(value==1&&!launcherSwitch){              
@@ -4034,10 +4035,10 @@ public final class ActivityManagerService extends ActivityManagerNative
                     intent.setFlags(intent.getFlags() | Intent.FLAG_ACTIVITY_NEW_TASK);
 		    //modify by zhaolianghua for delay start launcher@20190117
 			//modify by zhuhengxuan for hebei delay start launcher@20190117
-			if("cm201_hebei".equals(SystemProperties.get("ro.ysten.province","master"))){
+			if(ProvinceProfile.get().nameEquals("cm201_hebei")){
 				Log.d(TAG,"----zhuhengxuan----hebei start delay launcher");
 				delayStartIPTVLauncher(intent, aInfo,"com.android.smart.terminal.iptv");
-			}else if("cm201_jiangxi".equals(SystemProperties.get("ro.ysten.province","master"))){
+			}else if(ProvinceProfile.get().nameEquals("cm201_jiangxi")){
 		            //modify:add by zhuhengxuan for 江西延时启动launcher 并且整合广东launcher启动代码 防止代码相互影响@20190506
 			    Log.d(TAG,"----zhuhengxuan----jiangxi start delay launcher");
 			    int launchervalue_jiangxi=SystemProperties.getInt("persist.sys.launcher.value",0);
@@ -4048,7 +4049,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 			        delayStartWaitLauncher(intent, aInfo);
 			    }
 		    //modify:end by zhuhengxuan for 江西延时启动launcher 并且整合广东launcher启动代码 防止代码相互影响@20190506
-		    }else if(SystemProperties.get("ro.ysten.province","master").contains("jidi")){
+		    }else if(ProvinceProfile.get().has(ProvinceProfile.FLAG_JIDI)){
 						final Intent fintent=intent;
 						final ActivityInfo fainfo=aInfo;
 						int time = Integer.parseInt( SystemProperties.get("persist.sys.launcher.delaytime", "0") );
@@ -4094,7 +4095,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
         
         /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+        if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
             mHandler.postDelayed(new Runnable() {
                 @Override
                 public void run() {
@@ -4383,7 +4384,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             String profileFile, ParcelFileDescriptor profileFd, Bundle options) {
 
             //begin: add by ysten.tianchining at 20190408: handle start tvclient 
-            if(intent != null && SystemProperties.get("ro.ysten.province").contains("ningxia")){
+            if(intent != null && ProvinceProfile.get().is(ProvinceProfile.Region.NINGXIA)){
                 if(intent.getComponent() != null 
                     && intent.getComponent().getClassName() != null){
                     String pkgName = intent.getComponent().getClassName();
@@ -4400,7 +4401,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             //end: add by ysten.tianchining at 20190408: handle start tvclient    
 
 	    //add by zhaolianghua for jiangxi start up @20181129
-	    if(intent!=null&&SystemProperties.get("ro.ysten.province").contains("jiangxi")){
+	    if(intent!=null&&ProvinceProfile.get().is(ProvinceProfile.Region.JIANGXI)){
 		    if(intent.getComponent()!=null){
 			    if(intent.getComponent().getClassName()!=null){
 				    String pkgName=intent.getComponent().getClassName();
@@ -4425,7 +4426,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 		    }
 	    }	    //add by zhaolianghua end 
 		//begin by lizheng 20181127 stop tm1 autoboot
-		if(intent!=null&&SystemProperties.get("ro.ysten.province").contains("fujian")){
+		if(intent!=null&&ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)){
                 if(intent.getComponent()!=null){
                   if(intent.getComponent().getClassName()!=null){
                   	String pkgName=intent.getComponent().getClassName();
@@ -6512,11 +6513,40 @@ public final class ActivityManagerService extends ActivityManagerNative
 
     @Override
     public final void attachApplication(IApplicationThread thread) {
+        final int callingPid = Binder.getCallingPid();
+        final long origId = Binder.clearCallingIdentity();
+        ensureProcessDexOpt(callingPid);
         synchronized (this) {
-            int callingPid = Binder.getCallingPid();
-            final long origId = Binder.clearCallingIdentity();
             attachApplicationLocked(thread, callingPid);
-            Binder.restoreCallingIdentity(origId);
+        }
+        Binder.restoreCallingIdentity(origId);
+    }
+
+    /**
+     * Optimize the code of the process {@code pid} that is attaching, before
+     * the lock is taken: dexopt waits on the package manager's install lock,
+     * which an install holds throughout.  The package manager also optimizes
+     * the packages sharing the process's uid, whose code may be loaded into
+     * it.  The calls made under the lock in attachApplicationLocked() are
+     * then no-ops.
+     */
+    private void ensureProcessDexOpt(int pid) {
+        final ProcessRecord app;
+        synchronized (mPidsSelfLocked) {
+            app = mPidsSelfLocked.get(pid);
+        }
+        if (app == null) {
+            return;
+        }
+        final ApplicationInfo info = app.instrumentationInfo != null
+                ? app.instrumentationInfo : app.info;
+        try {
+            if (AppGlobals.getPackageManager().performDexOpt(info.packageName)) {
+                synchronized (this) {
+                    mDidDexOpt = true;
+                }
+            }
+        } catch (RemoteException e) {
         }
     }
 
@@ -6691,7 +6721,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             ActivityStack stack = ActivityRecord.getStackLocked(token);
             if (stack != null) {
 		//add by zhaolianghua for jiangxi start up @20181129
-		if(!bootComplete&&SystemProperties.get("ro.ysten.province").contains("jiangxi")){
+		if(!bootComplete&&ProvinceProfile.get().is(ProvinceProfile.Region.JIANGXI)){
 			ActivityRecord r = ActivityRecord.forToken(token);
 			if(r.info.name.contains("com.huawei.stb.tm1")||r.info.name.contains("tv.icntv.ott")
 					||r.info.name.contains("com.ysten.sjiptv")
@@ -6703,7 +6733,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 		}
 		//add by zhaolianghua end
 		//begin by ysten lizheng 20181127 for fujian
-        if(SystemProperties.get("ro.ysten.province").contains("fujian")){
+        if(ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)){
             	  	   ActivityRecord r = ActivityRecord.forToken(token);
 					   			Log.d(TAG,"r.info.name=" +r.info.name);
 					   if (!bootComplete){
@@ -9700,8 +9730,8 @@ public final class ActivityManagerService extends ActivityManagerNative
             app.maxAdj = ProcessList.PERSISTENT_PROC_ADJ;
         }
         if (app.thread == null && mPersistentStartingProcesses.indexOf(app) < 0) {
-        if (SystemProperties.get("ro.ysten.province", "master").equals("CM201_hubei")
-           || SystemProperties.get("ro.ysten.province", "master").equals("A20_jidi_chongqing")) {
+        if (ProvinceProfile.get().nameEquals("CM201_hubei")
+           || ProvinceProfile.get().nameEquals("A20_jidi_chongqing")) {
             //begin by ysten.lijg,20190508,add for hubei
             if (allowPersistentStart) {
                  mPersistentStartingProcesses.add(app);
@@ -10986,7 +11016,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                 return;
             }
             //add by ysten wenglei at 20200213 for guangdong_zhuoying:修复广东开机动画关闭后黑屏
-			if (!SystemProperties.get("ro.ysten.province", "master").equals("CM201_guangdong_zhuoying")){
+			if (!ProvinceProfile.get().nameEquals("CM201_guangdong_zhuoying")){
                 Log.wtf(TAG, "xxxx xxxx in systemReady ensureBootCompleted");
                 ensureBootCompleted();
 			}
@@ -11091,7 +11121,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             mBooting = true;
             if (mNeedRmRecoveryDir) {
                 //modify by huxiang at 2019/7/10 for TR069 update
-				if(!SystemProperties.get("ro.ysten.province","master").equals("CM202_anhui_gate")){
+				if(!ProvinceProfile.get().nameEquals("CM202_anhui_gate")){
                     rmRecoveryDir();
 				}
 				//modify end by huxiang at 2019/7/10 for TR069 update
@@ -12363,7 +12393,7 @@ public final class ActivityManagerService extends ActivityManagerNative
     }
     //begin:add by ysten zengzhiliang at 20190123:apk whitelist
     private boolean isInWhiteList(String packageName) {
-        if(SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("cm201_yunnan"))
+        if(ProvinceProfile.get().nameEqualsIgnoreCase("cm201_yunnan"))
         {
             for (int i = 0; i < mYunnanWhiteList.length; i++) {
 				if (packageName.equals(mYunnanWhiteList[i])) {
@@ -12373,7 +12403,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
 
     //begin:add by mark at 20190919:apk whitelist
-        if(SystemProperties.get("ro.ysten.province","master").contains("cm201_heilongjiang"))
+        if(ProvinceProfile.get().nameContains("cm201_heilongjiang"))
         {
             for (int i = 0; i < mHLJWhiteList.length; i++) {
 				if (packageName.equals(mHLJWhiteList[i])) {
@@ -12383,14 +12413,14 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
 
 	//begin:add by ysten zhuhengxuan at 20190123:apk whitelist
-	if(SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("cm201_jiangxi")){
+	if(ProvinceProfile.get().nameEqualsIgnoreCase("cm201_jiangxi")){
 		for (int i = 0; i < mJiangxiWhiteList.length; i++) {
 			if (packageName.equals(mJiangxiWhiteList[i])) {
 				return true;
 			}
 		}
         }
-        if(SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("cm201_hebei")){
+        if(ProvinceProfile.get().nameEqualsIgnoreCase("cm201_hebei")){
                 for (int i = 0; i < mHebeiWhiteList.length; i++) {
                         if (packageName.equals(mHebeiWhiteList[i])) {
                                 return true;
@@ -14235,7 +14265,7 @@ public final class ActivityManagerService extends ActivityManagerNative
     private final void cleanUpApplicationRecordLocked(ProcessRecord app,
             boolean restarting, boolean allowRestart, int index) {
         //begin:add by zhanghk at 20190916:prevent launcher is killed when playing 4K video
-        if(SystemProperties.get("ro.ysten.province","master").contains("jiangsu")){
+        if(ProvinceProfile.get().is(ProvinceProfile.Region.JIANGSU)){
             DevInfoManager manager = (DevInfoManager) mContext.getSystemService(DevInfoManager.DATA_SERVER);
             String packageName = manager.getValue(DevInfoManager.Launcher);
             Log.d(TAG,"jiangsu default package name:"+packageName);
@@ -15124,7 +15154,7 @@ public final class ActivityManagerService extends ActivityManagerNative
             // pm is in same process, this will never happen.
         }
 		//add by ysten.huanghongyan 2018.11.27 for CM201_henan		
-		if(SystemProperties.get("ro.ysten.province","master").contains("CM201_henan")){
+		if(ProvinceProfile.get().nameContains("CM201_henan")){
 			if(("android.intent.action.BOOT_COMPLETED".equals(act)) || ("android.net.conn.CONNECTIVITY_CHANGE".equals(act))) {
 				if(receivers != null) {
 					for (int i=0; i<receivers.size(); i++) {
@@ -15144,7 +15174,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 			}
 		} 		
         //end by ysten.huanghongyan 2018.11.27 for CM201_henan 
-        if(!SystemProperties.get("ro.ysten.province", "master").equals("CM201_guangdong_zhuoying")){
+        if(!ProvinceProfile.get().nameEquals("CM201_guangdong_zhuoying")){
             if(act != null && act.equals("android.net.conn.CONNECTIVITY_CHANGE")){
                 ResolveInfo ri = null;
                 for(int i =0; i < receivers.size(); i++){
@@ -15191,7 +15221,7 @@ public final class ActivityManagerService extends ActivityManagerNative
  
 	 
         /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-		if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+		if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
 		    if (DEBUG_BROADCAST)
 		        Log.d(TAG,"-------------collectReceiverComponents---------------receivers="+receivers+"----intent="+intent);
 		    act = intent.getAction();
@@ -15255,7 +15285,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 		}
         /*add by zhanghk at 20181030 end:add jiangsu customized content*/
 	//add by zhaolianghua for jiangxi start up @20181129
-	if (SystemProperties.get("ro.ysten.province","master").contains("jiangxi")){
+	if (ProvinceProfile.get().is(ProvinceProfile.Region.JIANGXI)){
 		boolean launcherProvision=SystemProperties.getBoolean("persist.sys.launcher.provision",false);
 		int launcherValue=SystemProperties.getInt("persist.sys.launcher.value",0);
 		//add by zhuhengxuan at 20190506 for 防止ProvisionJX过早启动
@@ -15278,7 +15308,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 	}
 	//add by zhaolianghua end
 	//begin by lizheng 20181127 fujian stop tm1 autoboot
-		if(SystemProperties.get("ro.ysten.province","master").contains("fujian")){
+		if(ProvinceProfile.get().is(ProvinceProfile.Region.FUJIAN)){
 			//Log.d(TAG,"-------------collectReceiverComponents CONNECTIVITY_CHANGE---------------receivers="+receivers+"----intent="+intent);
 		boolean launcherSwitch=SystemProperties.getBoolean("persist.sys.launcher.switch",false);
 		boolean launcherProvision=SystemProperties.getBoolean("persist.sys.launcher.provision",false);
@@ -15306,7 +15336,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 				}
 		}
         //end by lizheng 20181127 fujian stop tm1 autoboot
-        if (SystemProperties.get("ro.ysten.province", "master").contains("hubei")) {
+        if (ProvinceProfile.get().is(ProvinceProfile.Region.HUBEI)) {
             if(act != null && act.equals("android.intent.action.BOOT_COMPLETED")){
                 ResolveInfo ri = null;
                 for(int i =0; i < receivers.size(); i++){
@@ -15386,7 +15416,7 @@ public final class ActivityManagerService extends ActivityManagerNative
 	}
     
     private boolean isDelayBootPackage(String pkg) {
-        if (SystemProperties.get("ro.ysten.province", "master").contains("hubei")) {
+        if (ProvinceProfile.get().is(ProvinceProfile.Region.HUBEI)) {
             for(String s:mHubeiDelayReceiverArray) {
                 if(pkg.equals(s))
                     return true;
@@ -15518,7 +15548,7 @@ public final class ActivityManagerService extends ActivityManagerNative
     }
 
     private boolean iptvIsWhitelistedPackage(String pkgName) {
-        if(SystemProperties.get("ro.ysten.province", "master").contains("hubei")){
+        if(ProvinceProfile.get().is(ProvinceProfile.Region.HUBEI)){
            return (pkgName.equals("com.android.smart.terminal.iptv")
                       || pkgName.equals("com.bestv.ott.baseservices")
                       || pkgName.equals("com.android.iptvauth")
@@ -15550,7 +15580,7 @@ public final class ActivityManagerService extends ActivityManagerNative
         }
 
         /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-		if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+		if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
 		    if (DEBUG_BROADCAST)
 		        Log.d(TAG,"---------zjw----broadcastIntentLocked----action="+intent.getAction());
 		    if("cn.10086.action.HDC_LOGIN_STATUS_UPDATE".equals(intent.getAction()) 
@@ -15580,9 +15610,9 @@ public final class ActivityManagerService extends ActivityManagerNative
 		    }
         }
         
-        if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")
+        if(ProvinceProfile.get().nameEquals("CM201_jiangsu")
                 //add by ysten zengzhiliang at 20190125:yunnan change from FLAG_EXCLUDE_STOPPED_PACKAGES
-                ||SystemProperties.get("ro.ysten.province","master").equalsIgnoreCase("cm201_yunnan")){
+                ||ProvinceProfile.get().nameEqualsIgnoreCase("cm201_yunnan")){
             // By default broadcasts do not go to stopped apps.
             intent.addFlags(Intent.FLAG_INCLUDE_STOPPED_PACKAGES); //jscmcc change from FLAG_EXCLUDE_STOPPED_PACKAGES
         } else {
@@ -18786,7 +18816,7 @@ public final class ActivityManagerService extends ActivityManagerNative
                 intent.putExtra(Intent.EXTRA_USER_HANDLE, userId);
                 intent.addFlags(Intent.FLAG_RECEIVER_NO_ABORT);
                 /*add by zhanghk at 20181030 begin:add jiangsu customized content*/
-				if(SystemProperties.get("ro.ysten.province","master").equals("CM201_jiangsu")){
+				if(ProvinceProfile.get().nameEquals("CM201_jiangsu")){
 				    intent.addFlags(Intent.FLAG_RECEIVER_FOREGROUND);
 				}
                 /*add by zhanghk at 20181030 end:add jiangsu customized content*/
@@ -74,6 +74,7 @@ import android.content.ContentResolver;
 import android.provider.Settings.SettingNotFoundException;
 
 import com.android.internal.app.HeavyWeightSwitcherActivity;
+import com.android.internal.app.TopActivityTracker;
 import com.android.internal.os.TransferPipe;
 import com.android.server.am.ActivityManagerService.PendingActivityLaunch;
 import com.android.server.am.ActivityStack.ActivityState;
@@ -2472,6 +2473,7 @@ public final class ActivityStackSupervisor {
         final ActivityStack stack = r.task.stack;
         if (isFrontStack(stack)) {
             mService.updateUsageStats(r, true);
+            TopActivityTracker.publish(r.realActivity);
         }
         if (allResumedActivitiesComplete()) {
             ensureActivitiesVisibleLocked(null, 0);
@@ -44,6 +44,7 @@ import android.database.sqlite.SQLiteDebug.DbStats;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.hardware.display.DisplayManagerGlobal;
+import android.media.SubtitleBitmapPool;
 import android.net.IConnectivityManager;
 import android.net.Proxy;
 import android.net.ProxyProperties;
@@ -1010,6 +1011,13 @@ public final class ActivityThread {
                 pw.println(" Asset Allocations");
                 pw.print(assetAlloc);
             }
+
+            String subtitleAlloc = SubtitleBitmapPool.getAllocations();
+            if (subtitleAlloc != null) {
+                pw.println(" ");
+                pw.println(" Subtitle Bitmaps");
+                pw.print(subtitleAlloc);
+            }
         }
 
         @Override
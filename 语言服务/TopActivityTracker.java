@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2013 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.internal.app;
+
+import android.content.ComponentName;
+
+/**
+ * Component of the activity that was most recently resumed in the front
+ * stack, published by the activity manager from inside the system process.
+ *
+ * This lets system process code that only needs "what is on top", such as
+ * the window manager policy on every HOME or BACK key, read it with a
+ * volatile load instead of a getRunningTasks(1) binder call that takes the
+ * activity manager lock and builds RunningTaskInfo objects.  The value is
+ * only meaningful in the system process; everywhere else it stays null.
+ *
+ * {@hide}
+ */
+public final class TopActivityTracker {
+    private static volatile ComponentName sTopComponent;
+
+    private TopActivityTracker() {
+    }
+
+    /**
+     * Called by the activity manager, with its lock held, when an activity
+     * in the front stack has resumed.
+     */
+    public static void publish(ComponentName component) {
+        sTopComponent = component;
+    }
+
+    /**
+     * The last published top component, or null if no activity has resumed
+     * yet (or this is not the system process).
+     */
+    public static ComponentName getTopComponent() {
+        return sTopComponent;
+    }
+}
@@ -25,6 +25,7 @@ import android.net.LocalServerSocket;
 import android.opengl.EGL14;
 import android.os.Debug;
 import android.os.Process;
+import android.os.ProvinceProfile;
 import android.os.SystemClock;
 import android.os.SystemProperties;
 import android.os.Trace;
@@ -715,6 +716,10 @@ public class ZygoteInit {
 
             registerZygoteSocket();
 
+            // Parse the operator build profile once, before anything is
+            // forked, so every process inherits it already initialized.
+            ProvinceProfile.get();
+
             Log.d(TAG, "BootStage start  preload stage");
             if(!SystemProperties.getBoolean("config.enable_quickboot", false)) {
                 long begintime = SystemClock.uptimeMillis();